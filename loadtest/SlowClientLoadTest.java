@@ -0,0 +1,142 @@
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.net.InetSocketAddress;
+import java.net.Socket;
+import java.net.URI;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Load generator for POST /api/events/location with many concurrent slow clients.
+ *
+ * Each client sends the headers and the first half of the body, pauses for
+ * --body-delay-ms (a slow mobile uplink), sends the rest and reads the response, then
+ * starts over on a new connection. While a client trickles its body, the server is
+ * blocked reading it. In the platform-thread model that ties up a Tomcat worker, which
+ * is the case virtual threads are meant to fix.
+ *
+ * Needs only a JDK 21:
+ *   java loadtest/SlowClientLoadTest.java --clients 3000 --duration-s 30 --body-delay-ms 200
+ */
+public class SlowClientLoadTest {
+
+    public static void main(String[] args) throws Exception {
+        Map<String, String> options = parse(args);
+        URI target = URI.create(options.getOrDefault("url", "http://localhost:8080") + "/api/events/location");
+        int clients = Integer.parseInt(options.getOrDefault("clients", "3000"));
+        int durationSeconds = Integer.parseInt(options.getOrDefault("duration-s", "30"));
+        int warmupSeconds = Integer.parseInt(options.getOrDefault("warmup-s", "5"));
+        long bodyDelayMs = Long.parseLong(options.getOrDefault("body-delay-ms", "200"));
+        int vehicles = Integer.parseInt(options.getOrDefault("vehicles", "10000"));
+
+        long start = System.nanoTime();
+        long measureFrom = start + warmupSeconds * 1_000_000_000L;
+        long deadline = measureFrom + durationSeconds * 1_000_000_000L;
+
+        List<long[]> latencies = new ArrayList<>();
+        Map<String, AtomicLong> outcomes = new ConcurrentHashMap<>();
+        try (var executor = Executors.newVirtualThreadPerTaskExecutor()) {
+            for (int c = 0; c < clients; c++) {
+                long[] samples = new long[1 << 16];
+                latencies.add(samples);
+                executor.submit(() -> runClient(target, vehicles, bodyDelayMs, measureFrom, deadline, samples, outcomes));
+            }
+        }
+
+        long[] all = latencies.stream().flatMapToLong(samples -> {
+            int count = (int) samples[0];
+            return Arrays.stream(samples, 1, 1 + count);
+        }).sorted().toArray();
+
+        System.out.printf("clients=%d duration=%ds body-delay=%dms%n", clients, durationSeconds, bodyDelayMs);
+        System.out.printf("outcomes=%s%n", new TreeMap<>(outcomes));
+        if (all.length == 0) {
+            System.out.println("no successful requests");
+            return;
+        }
+        System.out.printf("throughput=%.0f req/s  p50=%.1fms  p99=%.1fms  max=%.1fms  (latency includes the %dms body delay)%n",
+                all.length / (double) durationSeconds,
+                percentile(all, 0.50), percentile(all, 0.99), all[all.length - 1] / 1e6, bodyDelayMs);
+    }
+
+    // samples[0] holds the count, samples[1..] the latencies in nanos of successful requests
+    private static void runClient(URI target, int vehicles, long bodyDelayMs, long measureFrom, long deadline,
+                                  long[] samples, Map<String, AtomicLong> outcomes) {
+        ThreadLocalRandom random = ThreadLocalRandom.current();
+        int port = target.getPort() < 0 ? 80 : target.getPort();
+        while (System.nanoTime() < deadline) {
+            String body = String.format("{\"vehicleId\":\"LT%d\",\"lat\":%.5f,\"lon\":%.5f,\"timestamp\":%d}",
+                    random.nextInt(vehicles), 12.84 + random.nextDouble() * 0.4, 77.58 + random.nextDouble() * 0.15,
+                    System.currentTimeMillis());
+            byte[] bytes = body.getBytes(StandardCharsets.UTF_8);
+            String head = "POST " + target.getPath() + " HTTP/1.1\r\n"
+                    + "Host: " + target.getHost() + ":" + port + "\r\n"
+                    + "Content-Type: application/json\r\n"
+                    + "Content-Length: " + bytes.length + "\r\n"
+                    + "Connection: close\r\n\r\n";
+
+            long sent = System.nanoTime();
+            String outcome;
+            try (Socket socket = new Socket()) {
+                socket.connect(new InetSocketAddress(target.getHost(), port), 10_000);
+                socket.setSoTimeout(60_000);
+                OutputStream out = socket.getOutputStream();
+                out.write(head.getBytes(StandardCharsets.US_ASCII));
+                out.write(bytes, 0, bytes.length / 2);
+                out.flush();
+                Thread.sleep(bodyDelayMs);
+                out.write(bytes, bytes.length / 2, bytes.length - bytes.length / 2);
+                out.flush();
+                outcome = readStatus(socket.getInputStream());
+            } catch (Exception e) {
+                outcome = e.getClass().getSimpleName();
+            }
+            long done = System.nanoTime();
+
+            if (sent < measureFrom || done > deadline) {
+                continue;
+            }
+            outcomes.computeIfAbsent(outcome, key -> new AtomicLong()).incrementAndGet();
+            int count = (int) samples[0];
+            if (outcome.equals("200") && count < samples.length - 1) {
+                samples[1 + count] = done - sent;
+                samples[0] = count + 1;
+            }
+        }
+    }
+
+    // Returns the status code and drains the response until the server closes the connection
+    private static String readStatus(InputStream in) throws Exception {
+        byte[] buffer = new byte[4096];
+        int read = in.read(buffer);
+        if (read < 12) {
+            return "short-response";
+        }
+        String status = new String(buffer, 9, 3, StandardCharsets.US_ASCII);
+        while (in.read(buffer) >= 0) {
+            // drain
+        }
+        return status;
+    }
+
+    private static double percentile(long[] sorted, double p) {
+        int index = (int) Math.ceil(p * sorted.length) - 1;
+        return sorted[Math.max(0, index)] / 1e6;
+    }
+
+    private static Map<String, String> parse(String[] args) {
+        Map<String, String> options = new ConcurrentHashMap<>();
+        for (int i = 0; i + 1 < args.length; i += 2) {
+            options.put(args[i].replaceFirst("^--", ""), args[i + 1]);
+        }
+        return options;
+    }
+}
@@ -0,0 +1,47 @@
+#!/bin/bash
+
+# Compares the default platform-thread model with the virtual-thread profile under
+# many concurrent slow clients. Needs Redis on localhost:6379 (docker compose up redis)
+# and JDK 21. Usage: ./loadtest/compare_thread_modes.sh [clients] [duration-s] [body-delay-ms]
+
+set -e
+
+CLIENTS=${1:-3000}
+DURATION=${2:-30}
+BODY_DELAY=${3:-200}
+PORT=8080
+
+YELLOW="\033[1;33m"
+BLUE="\033[0;34m"
+RESET="\033[0m"
+
+cd "$(dirname "$0")/.."
+mvn -B -q package -DskipTests
+JAR=$(ls target/geofence-service-*.jar | grep -v original | head -n1)
+
+run_mode() {
+    NAME=$1
+    shift
+    echo -e "${YELLOW}========== $NAME ==========${RESET}"
+    java -jar "$JAR" --server.port=$PORT --logging.level.com.geofence.service=WARN "$@" > "target/loadtest-$NAME.log" 2>&1 &
+    APP_PID=$!
+    trap 'kill $APP_PID 2>/dev/null' EXIT
+
+    for _ in $(seq 1 60); do
+        if curl -sf "http://localhost:$PORT/actuator/health" > /dev/null; then
+            break
+        fi
+        sleep 1
+    done
+
+    java loadtest/SlowClientLoadTest.java --url "http://localhost:$PORT" \
+        --clients "$CLIENTS" --duration-s "$DURATION" --body-delay-ms "$BODY_DELAY"
+
+    kill $APP_PID
+    wait $APP_PID 2>/dev/null || true
+    trap - EXIT
+}
+
+echo -e "${BLUE}$CLIENTS clients, ${DURATION}s, ${BODY_DELAY}ms body delay per request${RESET}"
+run_mode platform
+run_mode virtual --spring.profiles.active=virtual
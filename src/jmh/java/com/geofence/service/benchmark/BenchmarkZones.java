@@ -0,0 +1,81 @@
+package com.geofence.service.benchmark;
+
+import com.geofence.service.model.Zone;
+import org.locationtech.jts.geom.Coordinate;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+
+/**
+ * Synthetic zone sets: regular polygons centred in the cells of a square grid over
+ * Bangalore, so zones never overlap and the gaps between them are guaranteed misses.
+ */
+final class BenchmarkZones {
+
+    private static final double MIN_LON = 77.40;
+    private static final double MIN_LAT = 12.80;
+    private static final double EXTENT = 0.50;
+
+    private final int gridSide;
+    private final double cellSize;
+    private final double radius;
+    private final List<Zone> zones;
+
+    BenchmarkZones(int zoneCount, int vertices) {
+        this.gridSide = (int) Math.ceil(Math.sqrt(zoneCount));
+        this.cellSize = EXTENT / gridSide;
+        this.radius = cellSize * 0.4;
+        this.zones = new ArrayList<>(zoneCount);
+        for (int i = 0; i < zoneCount; i++) {
+            zones.add(new Zone("zone_" + i, regularPolygon(centerLon(i), centerLat(i), radius, vertices)));
+        }
+    }
+
+    List<Zone> zones() {
+        return zones;
+    }
+
+    /**
+     * Query points as {lat, lon} pairs; {@code hitRatio} of them fall inside a zone.
+     */
+    double[][] queries(int count, double hitRatio, long seed) {
+        Random random = new Random(seed);
+        double[][] queries = new double[count][];
+        for (int q = 0; q < count; q++) {
+            if (random.nextDouble() < hitRatio) {
+                int zone = random.nextInt(zones.size());
+                // Well inside the inscribed circle of even a square
+                double angle = random.nextDouble() * 2 * Math.PI;
+                double distance = random.nextDouble() * radius * 0.65;
+                queries[q] = new double[]{
+                        centerLat(zone) + Math.sin(angle) * distance,
+                        centerLon(zone) + Math.cos(angle) * distance};
+            } else {
+                // Grid corners lie between zones
+                int col = random.nextInt(gridSide + 1);
+                int row = random.nextInt(gridSide + 1);
+                queries[q] = new double[]{MIN_LAT + row * cellSize, MIN_LON + col * cellSize};
+            }
+        }
+        return queries;
+    }
+
+    private double centerLon(int zone) {
+        return MIN_LON + (zone % gridSide + 0.5) * cellSize;
+    }
+
+    private double centerLat(int zone) {
+        return MIN_LAT + (zone / gridSide + 0.5) * cellSize;
+    }
+
+    static Coordinate[] regularPolygon(double lon, double lat, double radius, int vertices) {
+        Coordinate[] ring = new Coordinate[vertices + 1];
+        for (int v = 0; v < vertices; v++) {
+            double angle = 2 * Math.PI * v / vertices + Math.PI / vertices;
+            ring[v] = new Coordinate(lon + Math.cos(angle) * radius, lat + Math.sin(angle) * radius);
+        }
+        ring[vertices] = ring[0];
+        return ring;
+    }
+}
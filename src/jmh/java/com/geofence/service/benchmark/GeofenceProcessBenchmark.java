@@ -0,0 +1,95 @@
+package com.geofence.service.benchmark;
+
+import com.geofence.service.metrics.GeofenceMetrics;
+import com.geofence.service.model.LocationEvent;
+import com.geofence.service.model.ZoneTransitionEvent;
+import com.geofence.service.repository.InMemoryZoneStore;
+import com.geofence.service.service.GeofenceService;
+import com.geofence.service.service.OccupancyService;
+import com.geofence.service.service.TransitionBroadcaster;
+import com.geofence.service.service.TransitionLogService;
+import com.geofence.service.service.VehicleStateCache;
+import com.geofence.service.service.VehicleStateService;
+import com.geofence.service.service.ZoneService;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.openjdk.jmh.annotations.*;
+
+import java.time.Duration;
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * End-to-end {@link GeofenceService#process} and {@code processBatch} over the built-in
+ * zones, with an in-memory state store in place of Redis.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+public class GeofenceProcessBenchmark {
+
+    private static final int EVENTS = 8192;
+    private static final int VEHICLES = 1000;
+
+    // Points inside each built-in zone, plus one outside all of them
+    private static final double[][] POINTS = {
+            {13.2250, 77.7100}, {12.8700, 77.6850}, {12.9750, 77.6100}, {12.9350, 77.6650},
+            {12.9050, 77.6400}, {12.9750, 77.6450}, {12.9300, 77.6200}, {12.9900, 77.5400}};
+
+    // Share of pings that stay in the vehicle's previous zone
+    @Param({"0.5", "0.9", "1.0"})
+    public double sameZoneRatio;
+
+    @Param({"false", "true"})
+    public boolean stateCache;
+
+    private GeofenceService geofenceService;
+    private LocationEvent[] events;
+    private List<LocationEvent> batch;
+    private int next;
+    // Stale events are ignored, so every invocation moves time forward
+    private long clock;
+
+    @Setup
+    public void setUp() {
+        ZoneService zoneService = new ZoneService(new InMemoryZoneStore(), Duration.ZERO);
+        zoneService.init();
+        VehicleStateCache cache = new VehicleStateCache(stateCache, 100_000, Duration.ofMinutes(5), Duration.ofDays(1));
+        GeofenceMetrics metrics = new GeofenceMetrics(new SimpleMeterRegistry(), 10_000);
+        VehicleStateService stateService = new VehicleStateService(new InMemoryVehicleStateStore(), cache, metrics);
+        TransitionBroadcaster broadcaster = new TransitionBroadcaster(metrics, 0, 1, "drop-oldest", Duration.ofSeconds(15));
+        TransitionLogService transitionLog = new TransitionLogService(null, metrics, false, 1, 1);
+        OccupancyService occupancy = new OccupancyService(null, null, metrics, false, Duration.ofSeconds(5));
+        geofenceService = new GeofenceService(zoneService, stateService, metrics, broadcaster, transitionLog,
+                occupancy, 0, false);
+
+        Random random = new Random(42);
+        int[] lastPoint = new int[VEHICLES];
+        events = new LocationEvent[EVENTS];
+        for (int i = 0; i < EVENTS; i++) {
+            int vehicle = random.nextInt(VEHICLES);
+            if (random.nextDouble() >= sameZoneRatio) {
+                lastPoint[vehicle] = random.nextInt(POINTS.length);
+            }
+            double[] point = POINTS[lastPoint[vehicle]];
+            events[i] = new LocationEvent("V" + vehicle, point[0], point[1], 0L);
+        }
+        batch = List.of(events).subList(0, 500);
+    }
+
+    @Benchmark
+    public ZoneTransitionEvent process() {
+        LocationEvent event = events[next++ & (EVENTS - 1)];
+        event.setTimestamp(++clock);
+        return geofenceService.process(event);
+    }
+
+    @Benchmark
+    @OperationsPerInvocation(500)
+    public List<ZoneTransitionEvent> processBatch() {
+        for (LocationEvent event : batch) {
+            event.setTimestamp(++clock);
+        }
+        return geofenceService.processBatch(batch);
+    }
+}
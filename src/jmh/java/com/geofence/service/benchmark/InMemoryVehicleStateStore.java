@@ -0,0 +1,121 @@
+package com.geofence.service.benchmark;
+
+import com.geofence.service.exception.StaleVehicleStateException;
+import com.geofence.service.model.VehicleState;
+import com.geofence.service.model.ZoneMembershipChange;
+import com.geofence.service.repository.VehicleStateStore;
+
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Map;
+import java.util.Objects;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Redis stand-in so processing benchmarks measure the service code, not the network.
+ * Stores copies, like a real round trip through a serializer would, and guards writes
+ * by timestamp like the save-state script.
+ */
+final class InMemoryVehicleStateStore implements VehicleStateStore {
+
+    // Marks a compared vehicle without a stored state
+    private static final VehicleState NONE = new VehicleState();
+
+    private final Map<String, VehicleState> states = new ConcurrentHashMap<>();
+
+    @Override
+    public VehicleState get(String vehicleId) {
+        return copy(states.get(vehicleId));
+    }
+
+    @Override
+    public Map<String, VehicleState> getAll(Collection<String> vehicleIds) {
+        Map<String, VehicleState> result = new HashMap<>();
+        for (String vehicleId : vehicleIds) {
+            VehicleState state = states.get(vehicleId);
+            if (state != null) {
+                result.put(vehicleId, copy(state));
+            }
+        }
+        return result;
+    }
+
+    @Override
+    public void save(VehicleState state) {
+        states.put(state.getVehicleId(), copy(state));
+    }
+
+    @Override
+    public void saveAll(Collection<VehicleState> states) {
+        states.forEach(this::save);
+    }
+
+    // No reverse index here; Redis would maintain it in the same round trip
+
+    @Override
+    public void save(VehicleState state, ZoneMembershipChange change) {
+        if (!saveIfNewer(state)) {
+            throw new StaleVehicleStateException(Set.of(state.getVehicleId()));
+        }
+    }
+
+    @Override
+    public void saveAll(Collection<VehicleState> states, Map<String, ZoneMembershipChange> changes) {
+        Set<String> stale = new HashSet<>();
+        for (VehicleState state : states) {
+            if (!saveIfNewer(state)) {
+                stale.add(state.getVehicleId());
+            }
+        }
+        if (!stale.isEmpty()) {
+            throw new StaleVehicleStateException(stale);
+        }
+    }
+
+    @Override
+    public void touch(VehicleState state) {
+        save(state, null);
+    }
+
+    @Override
+    public void touchAll(Collection<VehicleState> states) {
+        saveAll(states, Map.of());
+    }
+
+    @Override
+    public Map<String, Advance> advanceAll(Collection<VehicleState> next) {
+        Map<String, Advance> result = new HashMap<>();
+        for (VehicleState state : next) {
+            VehicleState[] previous = new VehicleState[1];
+            states.compute(state.getVehicleId(), (vehicleId, stored) -> {
+                if (state.getZones() != null && stored != null && stored.getZones() != null
+                        && stored.getLastUpdated() < state.getLastUpdated()
+                        && Objects.equals(stored.getCurrentZone(), state.getCurrentZone())
+                        && Arrays.equals(stored.getZones(), state.getZones())) {
+                    return copy(state);
+                }
+                previous[0] = stored == null ? NONE : copy(stored);
+                return stored;
+            });
+            result.put(state.getVehicleId(), previous[0] == null
+                    ? new Advance(true, null)
+                    : new Advance(false, previous[0] == NONE ? null : previous[0]));
+        }
+        return result;
+    }
+
+    private boolean saveIfNewer(VehicleState state) {
+        VehicleState copy = copy(state);
+        return states.merge(state.getVehicleId(), copy,
+                (stored, next) -> stored.getLastUpdated() >= next.getLastUpdated() ? stored : next) == copy;
+    }
+
+    private static VehicleState copy(VehicleState state) {
+        return state == null
+                ? null
+                : new VehicleState(state.getVehicleId(), state.getCurrentZone(), state.getLastUpdated(), state.getZones());
+    }
+}
@@ -0,0 +1,50 @@
+package com.geofence.service.benchmark;
+
+import com.geofence.service.model.Zone;
+import org.locationtech.jts.geom.Coordinate;
+import org.locationtech.jts.geom.Envelope;
+import org.locationtech.jts.geom.GeometryFactory;
+import org.locationtech.jts.geom.Point;
+import org.locationtech.jts.geom.Polygon;
+import org.locationtech.jts.geom.prep.PreparedGeometry;
+import org.locationtech.jts.geom.prep.PreparedGeometryFactory;
+import org.locationtech.jts.index.strtree.STRtree;
+
+import java.util.List;
+
+/**
+ * Reference implementation on plain JTS (STR-tree plus prepared polygons) to compare
+ * {@code ZoneIndex} against.
+ */
+final class JtsReferenceIndex {
+
+    private final GeometryFactory geometryFactory = new GeometryFactory();
+    private final String[] zoneIds;
+    private final PreparedGeometry[] geometries;
+    private final STRtree tree = new STRtree();
+
+    JtsReferenceIndex(List<Zone> zones) {
+        zoneIds = new String[zones.size()];
+        geometries = new PreparedGeometry[zones.size()];
+        for (int i = 0; i < zones.size(); i++) {
+            Polygon polygon = geometryFactory.createPolygon(zones.get(i).getPolygon());
+            zoneIds[i] = zones.get(i).getZoneId();
+            geometries[i] = PreparedGeometryFactory.prepare(polygon);
+            tree.insert(polygon.getEnvelopeInternal(), i);
+        }
+        tree.build();
+    }
+
+    String detect(double lat, double lon) {
+        Coordinate coordinate = new Coordinate(lon, lat);
+        Point point = geometryFactory.createPoint(coordinate);
+        int[] match = {-1};
+        tree.query(new Envelope(coordinate), item -> {
+            int ordinal = (Integer) item;
+            if ((match[0] < 0 || ordinal < match[0]) && geometries[ordinal].covers(point)) {
+                match[0] = ordinal;
+            }
+        });
+        return match[0] < 0 ? null : zoneIds[match[0]];
+    }
+}
@@ -0,0 +1,48 @@
+package com.geofence.service.benchmark;
+
+import com.geofence.service.geo.ZoneIndex;
+import org.openjdk.jmh.annotations.*;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Zone detection latency as polygons get more vertices (1000 zones).
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+public class PolygonComplexityBenchmark {
+
+    private static final int QUERIES = 4096;
+
+    @Param({"4", "16", "64", "250", "1000"})
+    public int vertices;
+
+    @Param({"0.0", "0.5", "1.0"})
+    public double hitRatio;
+
+    private ZoneIndex zoneIndex;
+    private JtsReferenceIndex jtsIndex;
+    private double[][] queries;
+    private int next;
+
+    @Setup
+    public void setUp() {
+        BenchmarkZones zones = new BenchmarkZones(1000, vertices);
+        zoneIndex = new ZoneIndex(zones.zones());
+        jtsIndex = new JtsReferenceIndex(zones.zones());
+        queries = zones.queries(QUERIES, hitRatio, 42);
+    }
+
+    @Benchmark
+    public String zoneIndex() {
+        double[] query = queries[next++ & (QUERIES - 1)];
+        return zoneIndex.detect(query[0], query[1]);
+    }
+
+    @Benchmark
+    public String jtsReference() {
+        double[] query = queries[next++ & (QUERIES - 1)];
+        return jtsIndex.detect(query[0], query[1]);
+    }
+}
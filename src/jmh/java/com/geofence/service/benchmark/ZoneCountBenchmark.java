@@ -0,0 +1,76 @@
+package com.geofence.service.benchmark;
+
+import com.geofence.service.geo.CellCacheStats;
+import com.geofence.service.geo.ZoneIndex;
+import com.geofence.service.geo.ZoneIndexFile;
+import org.openjdk.jmh.annotations.*;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Zone detection latency as the number of zones grows (8-vertex polygons), for a built
+ * index, for the same index mapped from a compiled file, and for the built index with a
+ * cell cache. The query set repeats, so the cache measures its warm (hit) path plus the
+ * exact tests of boundary cells.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+public class ZoneCountBenchmark {
+
+    private static final int QUERIES = 4096;
+
+    @Param({"10", "100", "1000", "10000", "100000"})
+    public int zoneCount;
+
+    @Param({"0.0", "0.5", "1.0"})
+    public double hitRatio;
+
+    private ZoneIndex zoneIndex;
+    private ZoneIndex mappedIndex;
+    private ZoneIndex cachedIndex;
+    private JtsReferenceIndex jtsIndex;
+    private double[][] queries;
+    private int next;
+
+    @Setup
+    public void setUp() throws IOException {
+        BenchmarkZones zones = new BenchmarkZones(zoneCount, 8);
+        zoneIndex = new ZoneIndex(zones.zones());
+        Path file = Files.createTempFile("zones", ZoneIndexFile.EXTENSION);
+        ZoneIndexFile.write(zoneIndex, file);
+        mappedIndex = ZoneIndexFile.map(file);
+        // The mapping outlives the file
+        Files.delete(file);
+        cachedIndex = zoneIndex.withCellCache(0.0005, 65536, new CellCacheStats());
+        jtsIndex = new JtsReferenceIndex(zones.zones());
+        queries = zones.queries(QUERIES, hitRatio, 42);
+    }
+
+    @Benchmark
+    public String zoneIndex() {
+        double[] query = queries[next++ & (QUERIES - 1)];
+        return zoneIndex.detect(query[0], query[1]);
+    }
+
+    @Benchmark
+    public String mappedZoneIndex() {
+        double[] query = queries[next++ & (QUERIES - 1)];
+        return mappedIndex.detect(query[0], query[1]);
+    }
+
+    @Benchmark
+    public String cellCachedZoneIndex() {
+        double[] query = queries[next++ & (QUERIES - 1)];
+        return cachedIndex.detect(query[0], query[1]);
+    }
+
+    @Benchmark
+    public String jtsReference() {
+        double[] query = queries[next++ & (QUERIES - 1)];
+        return jtsIndex.detect(query[0], query[1]);
+    }
+}
@@ -1,10 +1,14 @@
 package com.geofence.service.config;
 
+import org.springframework.beans.factory.annotation.Value;
 import org.springframework.context.annotation.Bean;
 import org.springframework.context.annotation.Configuration;
+import org.springframework.data.redis.connection.ReactiveRedisConnectionFactory;
 import org.springframework.data.redis.connection.RedisConnectionFactory;
+import org.springframework.data.redis.core.ReactiveRedisTemplate;
 import org.springframework.data.redis.core.RedisTemplate;
 import org.springframework.data.redis.serializer.GenericJackson2JsonRedisSerializer;
+import org.springframework.data.redis.serializer.RedisSerializationContext;
 import org.springframework.data.redis.serializer.StringRedisSerializer;
 
 @Configuration
@@ -14,7 +18,8 @@ public class RedisConfig {
     // No need to define LettuceConnectionFactory - Spring Boot does it automatically
 
     @Bean
-    public RedisTemplate<String, Object> redisTemplate(RedisConnectionFactory connectionFactory) {
+    public RedisTemplate<String, Object> redisTemplate(RedisConnectionFactory connectionFactory,
+                                                       @Value("${geofence.state.codec:json}") String stateCodec) {
         RedisTemplate<String, Object> template = new RedisTemplate<>();
         template.setConnectionFactory(connectionFactory);
 
@@ -22,11 +27,38 @@ public class RedisConfig {
         template.setKeySerializer(new StringRedisSerializer());
         template.setHashKeySerializer(new StringRedisSerializer());
 
-        // Value as JSON
-        template.setValueSerializer(new GenericJackson2JsonRedisSerializer());
+        // Value as JSON; VehicleState optionally in compact binary (both are always readable)
+        template.setValueSerializer(new VehicleStateRedisSerializer(isBinary(stateCodec)));
         template.setHashValueSerializer(new GenericJackson2JsonRedisSerializer());
 
         template.afterPropertiesSet();
         return template;
     }
+
+    /**
+     * Non-blocking counterpart of {@link #redisTemplate}, with the same serializers so both
+     * read and write the same keyspace. Replaces Spring Boot's JDK-serializing default.
+     */
+    @Bean
+    public ReactiveRedisTemplate<String, Object> reactiveRedisTemplate(
+            ReactiveRedisConnectionFactory connectionFactory,
+            @Value("${geofence.state.codec:json}") String stateCodec) {
+        StringRedisSerializer keySerializer = new StringRedisSerializer();
+        RedisSerializationContext<String, Object> context = RedisSerializationContext
+                .<String, Object>newSerializationContext(keySerializer)
+                .value(new VehicleStateRedisSerializer(isBinary(stateCodec)))
+                .hashKey(keySerializer)
+                .hashValue(new GenericJackson2JsonRedisSerializer())
+                .build();
+        return new ReactiveRedisTemplate<>(connectionFactory, context);
+    }
+
+    private static boolean isBinary(String stateCodec) {
+        return switch (stateCodec) {
+            case "json" -> false;
+            case "binary" -> true;
+            default -> throw new IllegalArgumentException(
+                    "geofence.state.codec must be 'json' or 'binary', was '" + stateCodec + "'");
+        };
+    }
 }
@@ -0,0 +1,150 @@
+package com.geofence.service.config;
+
+import com.geofence.service.model.VehicleState;
+import org.springframework.data.redis.serializer.GenericJackson2JsonRedisSerializer;
+import org.springframework.data.redis.serializer.RedisSerializer;
+import org.springframework.data.redis.serializer.SerializationException;
+
+import java.nio.charset.StandardCharsets;
+
+/**
+ * Redis value serializer with a compact binary encoding for {@link VehicleState}.
+ *
+ * Binary layout: magic byte, version byte, unsigned varint {@code lastUpdated},
+ * varint zone length + 1 (0 = outside all zones) followed by the UTF-8 zone ID.
+ * Version 2 appends the zone membership as a varint count followed by the ascending
+ * keys, delta-encoded as varints; states without membership keep version 1.
+ * The vehicle ID is not stored, since it is already part of the key; readers set it
+ * from the key. Everything else, and every value that does not start with the magic
+ * byte, goes through JSON, so both encodings can be read during a migration.
+ */
+public class VehicleStateRedisSerializer implements RedisSerializer<Object> {
+
+    // Not a valid first byte of UTF-8 text, so it can never start a JSON value
+    static final byte MAGIC = (byte) 0xB5;
+    static final byte VERSION = 1;
+    static final byte VERSION_WITH_ZONES = 2;
+
+    private final RedisSerializer<Object> json = new GenericJackson2JsonRedisSerializer();
+    private final boolean writeBinary;
+
+    public VehicleStateRedisSerializer(boolean writeBinary) {
+        this.writeBinary = writeBinary;
+    }
+
+    @Override
+    public byte[] serialize(Object value) throws SerializationException {
+        if (writeBinary && value instanceof VehicleState state) {
+            return encode(state);
+        }
+        return json.serialize(value);
+    }
+
+    @Override
+    public Object deserialize(byte[] bytes) throws SerializationException {
+        if (bytes != null && bytes.length > 0 && bytes[0] == MAGIC) {
+            return decode(bytes);
+        }
+        return json.deserialize(bytes);
+    }
+
+    static byte[] encode(VehicleState state) {
+        byte[] zone = state.getCurrentZone() == null
+                ? null
+                : state.getCurrentZone().getBytes(StandardCharsets.UTF_8);
+        int zoneLength = zone == null ? 0 : zone.length + 1;
+        int[] zones = state.getZones();
+        int size = 2 + varintSize(state.getLastUpdated()) + varintSize(zoneLength) + (zone == null ? 0 : zone.length);
+        if (zones != null) {
+            size += varintSize(zones.length);
+            for (int i = 0; i < zones.length; i++) {
+                size += varintSize(zoneDelta(zones, i));
+            }
+        }
+        byte[] out = new byte[size];
+        out[0] = MAGIC;
+        out[1] = zones == null ? VERSION : VERSION_WITH_ZONES;
+        int pos = writeVarint(out, 2, state.getLastUpdated());
+        pos = writeVarint(out, pos, zoneLength);
+        if (zone != null) {
+            System.arraycopy(zone, 0, out, pos, zone.length);
+            pos += zone.length;
+        }
+        if (zones != null) {
+            pos = writeVarint(out, pos, zones.length);
+            for (int i = 0; i < zones.length; i++) {
+                pos = writeVarint(out, pos, zoneDelta(zones, i));
+            }
+        }
+        return out;
+    }
+
+    static VehicleState decode(byte[] bytes) {
+        if (bytes.length < 2 || (bytes[1] != VERSION && bytes[1] != VERSION_WITH_ZONES)) {
+            throw new SerializationException("Unsupported vehicle state encoding version");
+        }
+        int[] pos = {2};
+        long lastUpdated = readVarint(bytes, pos);
+        int zoneLength = (int) readVarint(bytes, pos);
+        String zone = null;
+        if (zoneLength > 0) {
+            if (pos[0] + zoneLength - 1 > bytes.length) {
+                throw new SerializationException("Truncated vehicle state value");
+            }
+            zone = new String(bytes, pos[0], zoneLength - 1, StandardCharsets.UTF_8);
+            pos[0] += zoneLength - 1;
+        }
+        int[] zones = null;
+        if (bytes[1] == VERSION_WITH_ZONES) {
+            long count = readVarint(bytes, pos);
+            if (count > bytes.length - pos[0]) {
+                throw new SerializationException("Truncated vehicle state value");
+            }
+            zones = new int[(int) count];
+            long key = 0;
+            for (int i = 0; i < zones.length; i++) {
+                key += readVarint(bytes, pos);
+                zones[i] = (int) key;
+            }
+        }
+        return new VehicleState(null, zone, lastUpdated, zones);
+    }
+
+    // Keys are ascending and non-negative, so gaps are small non-negative numbers
+    private static long zoneDelta(int[] zones, int i) {
+        return i == 0 ? zones[0] & 0xFFFFFFFFL : (long) zones[i] - zones[i - 1];
+    }
+
+    private static int varintSize(long value) {
+        int size = 1;
+        while ((value & ~0x7FL) != 0) {
+            value >>>= 7;
+            size++;
+        }
+        return size;
+    }
+
+    private static int writeVarint(byte[] out, int pos, long value) {
+        while ((value & ~0x7FL) != 0) {
+            out[pos++] = (byte) ((value & 0x7F) | 0x80);
+            value >>>= 7;
+        }
+        out[pos++] = (byte) value;
+        return pos;
+    }
+
+    private static long readVarint(byte[] bytes, int[] pos) {
+        long value = 0;
+        for (int shift = 0; shift < 64; shift += 7) {
+            if (pos[0] >= bytes.length) {
+                throw new SerializationException("Truncated vehicle state value");
+            }
+            byte b = bytes[pos[0]++];
+            value |= (long) (b & 0x7F) << shift;
+            if ((b & 0x80) == 0) {
+                return value;
+            }
+        }
+        throw new SerializationException("Malformed varint in vehicle state value");
+    }
+}
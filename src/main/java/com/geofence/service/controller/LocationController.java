@@ -2,9 +2,13 @@ package com.geofence.service.controller;
 
 import com.geofence.service.exception.ResourceNotFoundException;
 import com.geofence.service.model.LocationEvent;
+import com.geofence.service.model.VehicleDwell;
 import com.geofence.service.model.VehicleState;
 import com.geofence.service.model.ZoneTransitionEvent;
 import com.geofence.service.service.GeofenceService;
+import com.geofence.service.service.LocationStreamProcessor;
+import com.geofence.service.service.OccupancyService;
+import com.geofence.service.service.ShardedEventProcessor;
 import com.geofence.service.service.VehicleStateService;
 import io.swagger.v3.oas.annotations.Operation;
 import io.swagger.v3.oas.annotations.Parameter;
@@ -13,12 +17,20 @@ import io.swagger.v3.oas.annotations.media.Schema;
 import io.swagger.v3.oas.annotations.responses.ApiResponse;
 import io.swagger.v3.oas.annotations.responses.ApiResponses;
 import io.swagger.v3.oas.annotations.tags.Tag;
+import jakarta.servlet.http.HttpServletResponse;
 import jakarta.validation.Valid;
+import jakarta.validation.constraints.NotEmpty;
+import jakarta.validation.constraints.Size;
 import lombok.extern.slf4j.Slf4j;
+import org.springframework.core.task.SimpleAsyncTaskExecutor;
+import org.springframework.http.MediaType;
 import org.springframework.http.ResponseEntity;
 import org.springframework.web.bind.annotation.*;
+import org.springframework.web.context.request.async.WebAsyncTask;
 
+import java.io.InputStream;
 import java.util.HashMap;
+import java.util.List;
 import java.util.Map;
 
 @Slf4j
@@ -27,12 +39,27 @@ import java.util.Map;
 @Tag(name = "Location Tracking", description = "APIs for processing vehicle location events and zone transitions")
 public class LocationController {
 
+    static final int MAX_BATCH_SIZE = 1000;
+
+    // A device stream is open for as long as the device is, so it runs on its own virtual
+    // thread and the request thread goes back to Tomcat's pool for ordinary requests
+    private final SimpleAsyncTaskExecutor streamExecutor = new SimpleAsyncTaskExecutor("location-stream-");
+
     private final GeofenceService geofenceService;
+    private final ShardedEventProcessor shardedProcessor;
     private final VehicleStateService stateService;
+    private final LocationStreamProcessor streamProcessor;
+    private final OccupancyService occupancyService;
 
-    public LocationController(GeofenceService geofenceService, VehicleStateService stateService) {
+    public LocationController(GeofenceService geofenceService, ShardedEventProcessor shardedProcessor,
+                              VehicleStateService stateService, LocationStreamProcessor streamProcessor,
+                              OccupancyService occupancyService) {
         this.geofenceService = geofenceService;
+        this.shardedProcessor = shardedProcessor;
         this.stateService = stateService;
+        this.streamProcessor = streamProcessor;
+        this.occupancyService = occupancyService;
+        this.streamExecutor.setVirtualThreads(true);
     }
 
     @Operation(
@@ -43,6 +70,7 @@ public class LocationController {
             @ApiResponse(responseCode = "200", description = "Event processed successfully",
                     content = @Content(schema = @Schema(implementation = ZoneTransitionEvent.class))),
             @ApiResponse(responseCode = "400", description = "Invalid input"),
+            @ApiResponse(responseCode = "429", description = "Ingestion queue full (sharded mode)"),
             @ApiResponse(responseCode = "500", description = "Internal server error")
     })
     @PostMapping("/events/location")
@@ -51,19 +79,69 @@ public class LocationController {
         
         log.debug("Received location event for vehicle: {}", event.getVehicleId());
         
-        ZoneTransitionEvent transition = geofenceService.process(event);
+        ZoneTransitionEvent transition = shardedProcessor.isEnabled()
+                ? shardedProcessor.process(event)
+                : geofenceService.process(event);
         
         if (transition != null) {
             log.info("Zone transition detected: {}", transition);
             return ResponseEntity.ok(transition);
         } else {
-            Map<String, String> response = new HashMap<>();
-            response.put("message", "No zone change detected");
-            response.put("vehicleId", event.getVehicleId());
-            return ResponseEntity.ok(response);
+            return ResponseEntity.ok(noZoneChange(event.getVehicleId()));
         }
     }
 
+    @Operation(
+            summary = "Process a batch of location events",
+            description = "Accepts up to " + MAX_BATCH_SIZE + " location events, applies them per vehicle in " +
+                    "timestamp order and returns the resulting zone transitions in input order"
+    )
+    @ApiResponses(value = {
+            @ApiResponse(responseCode = "200", description = "Batch processed successfully"),
+            @ApiResponse(responseCode = "400", description = "Invalid input"),
+            @ApiResponse(responseCode = "429", description = "Ingestion queue full (sharded mode)"),
+            @ApiResponse(responseCode = "500", description = "Internal server error")
+    })
+    @PostMapping("/events/location/batch")
+    public ResponseEntity<List<ZoneTransitionEvent>> handleLocationBatch(
+            @RequestBody
+            @NotEmpty(message = "Batch must contain at least one event")
+            @Size(max = MAX_BATCH_SIZE, message = "Batch must contain at most " + MAX_BATCH_SIZE + " events")
+            List<@Valid LocationEvent> events) {
+
+        log.debug("Received batch of {} location events", events.size());
+
+        List<ZoneTransitionEvent> transitions = shardedProcessor.isEnabled()
+                ? shardedProcessor.processBatch(events)
+                : geofenceService.processBatch(events);
+        return ResponseEntity.ok(transitions);
+    }
+
+    @Operation(
+            summary = "Stream location events",
+            description = "Accepts a long-lived stream of newline-delimited location events and writes each " +
+                    "resulting zone transition back as one JSON line on the same connection. Invalid or " +
+                    "rejected events produce an error line; malformed JSON ends the stream"
+    )
+    @ApiResponses(value = {
+            @ApiResponse(responseCode = "200", description = "Stream processed; transitions and per-event errors " +
+                    "are in the body"),
+            @ApiResponse(responseCode = "415", description = "Body is not application/x-ndjson")
+    })
+    @PostMapping(value = "/events/location/stream",
+            consumes = MediaType.APPLICATION_NDJSON_VALUE,
+            produces = MediaType.APPLICATION_NDJSON_VALUE)
+    public WebAsyncTask<Void> handleLocationStream(InputStream body, HttpServletResponse response) {
+        log.debug("Location stream opened");
+
+        response.setContentType(MediaType.APPLICATION_NDJSON_VALUE);
+        // No timeout: the stream lasts until the client closes it
+        return new WebAsyncTask<>(0L, streamExecutor, () -> {
+            streamProcessor.process(body, response.getOutputStream());
+            return null;
+        });
+    }
+
     @Operation(
             summary = "Get vehicle zone status",
             description = "Returns the current zone and last updated timestamp for a vehicle"
@@ -88,4 +166,24 @@ public class LocationController {
         
         return ResponseEntity.ok(state);
     }
+
+    @Operation(
+            summary = "Get vehicle dwell times",
+            description = "Returns the total time the vehicle spent in each zone over completed visits; " +
+                    "updated every occupancy flush interval"
+    )
+    @GetMapping("/vehicles/{vehicleId}/dwell")
+    public ResponseEntity<VehicleDwell> getDwell(
+            @Parameter(description = "Vehicle ID to query")
+            @PathVariable String vehicleId) {
+
+        return ResponseEntity.ok(occupancyService.getVehicle(vehicleId));
+    }
+
+    static Map<String, String> noZoneChange(String vehicleId) {
+        Map<String, String> response = new HashMap<>();
+        response.put("message", "No zone change detected");
+        response.put("vehicleId", vehicleId);
+        return response;
+    }
 }
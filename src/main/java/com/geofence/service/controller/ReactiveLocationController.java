@@ -0,0 +1,90 @@
+package com.geofence.service.controller;
+
+import com.geofence.service.exception.ResourceNotFoundException;
+import com.geofence.service.model.LocationEvent;
+import com.geofence.service.model.VehicleState;
+import com.geofence.service.model.ZoneTransitionEvent;
+import com.geofence.service.service.ReactiveGeofenceService;
+import com.geofence.service.service.ReactiveVehicleStateService;
+import io.swagger.v3.oas.annotations.Operation;
+import io.swagger.v3.oas.annotations.Parameter;
+import io.swagger.v3.oas.annotations.media.Content;
+import io.swagger.v3.oas.annotations.media.Schema;
+import io.swagger.v3.oas.annotations.responses.ApiResponse;
+import io.swagger.v3.oas.annotations.responses.ApiResponses;
+import io.swagger.v3.oas.annotations.tags.Tag;
+import jakarta.validation.Valid;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.http.ResponseEntity;
+import org.springframework.web.bind.annotation.*;
+import reactor.core.publisher.Mono;
+
+/**
+ * Non-blocking variants of the single-event and vehicle-zone endpoints, enabled with
+ * {@code geofence.reactive.enabled}.
+ *
+ * Handlers return a {@link Mono}, which Spring MVC serves as an async request: the
+ * servlet thread is released as soon as the handler returns and the response is
+ * written when Redis answers, so in-flight requests do not hold a thread each.
+ */
+@Slf4j
+@RestController
+@RequestMapping("/api/reactive")
+@ConditionalOnProperty(name = "geofence.reactive.enabled", havingValue = "true")
+@Tag(name = "Location Tracking (reactive)", description = "Non-blocking variants of the location tracking APIs")
+public class ReactiveLocationController {
+
+    private final ReactiveGeofenceService geofenceService;
+    private final ReactiveVehicleStateService stateService;
+
+    public ReactiveLocationController(ReactiveGeofenceService geofenceService,
+                                      ReactiveVehicleStateService stateService) {
+        this.geofenceService = geofenceService;
+        this.stateService = stateService;
+    }
+
+    @Operation(
+            summary = "Process location event (non-blocking)",
+            description = "Same contract as POST /api/events/location"
+    )
+    @ApiResponses(value = {
+            @ApiResponse(responseCode = "200", description = "Event processed successfully",
+                    content = @Content(schema = @Schema(implementation = ZoneTransitionEvent.class))),
+            @ApiResponse(responseCode = "400", description = "Invalid input"),
+            @ApiResponse(responseCode = "500", description = "Internal server error")
+    })
+    @PostMapping("/events/location")
+    public Mono<ResponseEntity<?>> handleLocation(@Valid @RequestBody LocationEvent event) {
+        log.debug("Received location event for vehicle: {}", event.getVehicleId());
+
+        return geofenceService.process(event)
+                .<ResponseEntity<?>>map(transition -> {
+                    log.info("Zone transition detected: {}", transition);
+                    return ResponseEntity.ok(transition);
+                })
+                .switchIfEmpty(Mono.fromSupplier(
+                        () -> ResponseEntity.ok(LocationController.noZoneChange(event.getVehicleId()))));
+    }
+
+    @Operation(
+            summary = "Get vehicle zone status (non-blocking)",
+            description = "Same contract as GET /api/vehicles/{vehicleId}/zone"
+    )
+    @ApiResponses(value = {
+            @ApiResponse(responseCode = "200", description = "Vehicle state found",
+                    content = @Content(schema = @Schema(implementation = VehicleState.class))),
+            @ApiResponse(responseCode = "404", description = "Vehicle not found"),
+            @ApiResponse(responseCode = "500", description = "Internal server error")
+    })
+    @GetMapping("/vehicles/{vehicleId}/zone")
+    public Mono<ResponseEntity<VehicleState>> getZone(
+            @Parameter(description = "Vehicle ID to query")
+            @PathVariable String vehicleId) {
+        log.debug("Querying zone for vehicle: {}", vehicleId);
+
+        return stateService.getState(vehicleId)
+                .switchIfEmpty(Mono.error(() -> new ResourceNotFoundException("Vehicle not found: " + vehicleId)))
+                .map(ResponseEntity::ok);
+    }
+}
@@ -0,0 +1,194 @@
+package com.geofence.service.controller;
+
+import com.geofence.service.model.LoggedTransition;
+import com.geofence.service.model.TransitionPage;
+import com.geofence.service.model.ZoneTransitionEvent;
+import com.geofence.service.service.TransitionBroadcaster;
+import com.geofence.service.service.TransitionBroadcaster.OverflowPolicy;
+import com.geofence.service.service.TransitionBroadcaster.Subscription;
+import com.geofence.service.service.TransitionLogService;
+import io.swagger.v3.oas.annotations.Operation;
+import io.swagger.v3.oas.annotations.Parameter;
+import io.swagger.v3.oas.annotations.responses.ApiResponse;
+import io.swagger.v3.oas.annotations.responses.ApiResponses;
+import io.swagger.v3.oas.annotations.tags.Tag;
+import jakarta.validation.constraints.Max;
+import jakarta.validation.constraints.Min;
+import jakarta.validation.constraints.Pattern;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.http.MediaType;
+import org.springframework.http.ResponseEntity;
+import org.springframework.web.bind.annotation.DeleteMapping;
+import org.springframework.web.bind.annotation.GetMapping;
+import org.springframework.web.bind.annotation.PathVariable;
+import org.springframework.web.bind.annotation.PostMapping;
+import org.springframework.web.bind.annotation.RequestBody;
+import org.springframework.web.bind.annotation.RequestMapping;
+import org.springframework.web.bind.annotation.RequestParam;
+import org.springframework.web.bind.annotation.RestController;
+import org.springframework.web.servlet.mvc.method.annotation.SseEmitter;
+
+import java.io.IOException;
+import java.net.URI;
+import java.util.List;
+import java.util.Map;
+
+@Slf4j
+@RestController
+@RequestMapping("/api/transitions")
+@Tag(name = "Transitions", description = "Live feed and durable log of zone transitions for downstream consumers")
+public class TransitionController {
+
+    private final TransitionBroadcaster broadcaster;
+    private final TransitionLogService transitionLog;
+
+    public TransitionController(TransitionBroadcaster broadcaster, TransitionLogService transitionLog) {
+        this.broadcaster = broadcaster;
+        this.transitionLog = transitionLog;
+    }
+
+    @Operation(
+            summary = "Query logged transitions",
+            description = "Pages through the transition log, oldest first. from/to are epoch millis of when " +
+                    "transitions were logged; pass nextCursor from the response as cursor to get the next page"
+    )
+    @ApiResponses(value = {
+            @ApiResponse(responseCode = "200", description = "Page of transitions"),
+            @ApiResponse(responseCode = "400", description = "Invalid cursor or limit")
+    })
+    @GetMapping
+    public ResponseEntity<TransitionPage> query(
+            @Parameter(description = "Only transitions of this vehicle")
+            @RequestParam(required = false) String vehicleId,
+            @Parameter(description = "Logged at or after, epoch millis")
+            @RequestParam(required = false) Long from,
+            @Parameter(description = "Logged at or before, epoch millis")
+            @RequestParam(required = false) Long to,
+            @Parameter(description = "nextCursor of the previous page")
+            @RequestParam(required = false) @Pattern(regexp = "\\d+-\\d+") String cursor,
+            @RequestParam(defaultValue = "100") @Min(1) @Max(1000) int limit) {
+
+        return ResponseEntity.ok(transitionLog.query(vehicleId, from, to, cursor, limit));
+    }
+
+    @Operation(
+            summary = "Create consumer group",
+            description = "Creates a consumer group on the transition log. start is 0 to replay the whole " +
+                    "log, $ for new transitions only, or epoch millis to replay from that time"
+    )
+    @ApiResponses(value = {
+            @ApiResponse(responseCode = "201", description = "Group created"),
+            @ApiResponse(responseCode = "409", description = "Group already exists")
+    })
+    @PostMapping("/groups/{group}")
+    public ResponseEntity<Map<String, String>> createGroup(
+            @PathVariable String group,
+            @RequestParam(defaultValue = "$") @Pattern(regexp = "0|\\$|\\d+") String start) {
+
+        transitionLog.createGroup(group, start);
+        return ResponseEntity.created(URI.create("/api/transitions/groups/" + group))
+                .body(Map.of("group", group, "start", start));
+    }
+
+    @Operation(summary = "Delete consumer group", description = "Removes the group and its pending entries")
+    @DeleteMapping("/groups/{group}")
+    public ResponseEntity<Void> deleteGroup(@PathVariable String group) {
+        return transitionLog.deleteGroup(group)
+                ? ResponseEntity.noContent().build()
+                : ResponseEntity.notFound().build();
+    }
+
+    @Operation(
+            summary = "Read as group consumer",
+            description = "Delivers transitions not yet delivered to the group. With pending=true, " +
+                    "redelivers those this consumer received but has not acknowledged, e.g. after a restart"
+    )
+    @ApiResponses(value = {
+            @ApiResponse(responseCode = "200", description = "Transitions, possibly none"),
+            @ApiResponse(responseCode = "404", description = "Group not found")
+    })
+    @GetMapping("/groups/{group}/entries")
+    public ResponseEntity<List<LoggedTransition>> readGroup(
+            @PathVariable String group,
+            @RequestParam String consumer,
+            @RequestParam(defaultValue = "100") @Min(1) @Max(1000) int count,
+            @RequestParam(defaultValue = "false") boolean pending) {
+
+        return ResponseEntity.ok(transitionLog.readGroup(group, consumer, count, pending));
+    }
+
+    @Operation(summary = "Acknowledge transitions",
+            description = "Marks transitions, by id, as processed by the group so they are not redelivered")
+    @PostMapping("/groups/{group}/ack")
+    public ResponseEntity<Map<String, Long>> acknowledge(
+            @PathVariable String group,
+            @RequestBody List<@Pattern(regexp = "\\d+-\\d+") String> ids) {
+
+        return ResponseEntity.ok(Map.of("acknowledged", transitionLog.acknowledge(group, ids)));
+    }
+
+    @Operation(
+            summary = "Subscribe to zone transitions",
+            description = "Server-sent events: a 'transition' event per zone transition as it is stored, " +
+                    "'dropped' with a count when the subscriber fell behind and transitions were discarded, " +
+                    "and periodic heartbeat comments"
+    )
+    @ApiResponses(value = {
+            @ApiResponse(responseCode = "200", description = "Event stream opened"),
+            @ApiResponse(responseCode = "400", description = "Unknown overflow policy"),
+            @ApiResponse(responseCode = "503", description = "Subscriber limit reached")
+    })
+    @GetMapping(value = "/stream", produces = MediaType.TEXT_EVENT_STREAM_VALUE)
+    public SseEmitter stream(
+            @Parameter(description = "Only transitions from, to, into or out of this zone")
+            @RequestParam(required = false) String zoneId,
+            @Parameter(description = "Only transitions of this vehicle")
+            @RequestParam(required = false) String vehicleId,
+            @Parameter(description = "drop-oldest, drop-newest or disconnect when this subscriber's buffer is full")
+            @RequestParam(required = false) String overflow) {
+
+        OverflowPolicy policy = overflow == null ? null : OverflowPolicy.from(overflow);
+        // No timeout: heartbeats detect clients that went away
+        SseEmitter emitter = new SseEmitter(0L);
+        Subscription subscription = broadcaster.subscribe(zoneId, vehicleId, policy, new EmitterSink(emitter));
+        emitter.onCompletion(subscription::close);
+        emitter.onTimeout(subscription::close);
+        emitter.onError(error -> subscription.close());
+        return emitter;
+    }
+
+    private record EmitterSink(SseEmitter emitter) implements TransitionBroadcaster.Sink {
+
+        @Override
+        public void send(ZoneTransitionEvent transition) throws IOException {
+            emitter.send(SseEmitter.event().name("transition").data(transition, MediaType.APPLICATION_JSON));
+        }
+
+        @Override
+        public void dropped(long count) throws IOException {
+            emitter.send(SseEmitter.event().name("dropped").data(Map.of("count", count), MediaType.APPLICATION_JSON));
+        }
+
+        @Override
+        public void heartbeat() throws IOException {
+            emitter.send(SseEmitter.event().comment("heartbeat"));
+        }
+
+        @Override
+        public void close(boolean overflowed) {
+            if (overflowed) {
+                try {
+                    emitter.send(SseEmitter.event().name("overflow")
+                            .data(Map.of("message", "Subscriber buffer full, disconnecting"), MediaType.APPLICATION_JSON));
+                } catch (IOException | IllegalStateException e) {
+                    // Client is gone already
+                }
+            }
+            try {
+                emitter.complete();
+            } catch (IllegalStateException e) {
+                // Already completed
+            }
+        }
+    }
+}
@@ -1,13 +1,21 @@
 package com.geofence.service.controller;
 
 import com.geofence.service.dto.ZoneDTO;
+import com.geofence.service.model.ZoneOccupancy;
+import com.geofence.service.model.ZoneVehiclesPage;
+import com.geofence.service.service.OccupancyService;
 import com.geofence.service.service.ZoneService;
 import io.swagger.v3.oas.annotations.Operation;
+import io.swagger.v3.oas.annotations.Parameter;
 import io.swagger.v3.oas.annotations.tags.Tag;
+import jakarta.validation.constraints.Max;
+import jakarta.validation.constraints.Min;
+import jakarta.validation.constraints.Pattern;
 import lombok.extern.slf4j.Slf4j;
 import org.springframework.http.ResponseEntity;
 import org.springframework.web.bind.annotation.*;
 
+import java.net.URI;
 import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
@@ -19,9 +27,11 @@ import java.util.Map;
 public class ZoneController {
 
     private final ZoneService zoneService;
+    private final OccupancyService occupancyService;
 
-    public ZoneController(ZoneService zoneService) {
+    public ZoneController(ZoneService zoneService, OccupancyService occupancyService) {
         this.zoneService = zoneService;
+        this.occupancyService = occupancyService;
     }
 
     @Operation(summary = "Get all zones", description = "Returns a list of all configured geofence zones")
@@ -32,6 +42,59 @@ public class ZoneController {
         return ResponseEntity.ok(zones);
     }
 
+    @Operation(summary = "Get zone", description = "Returns a single geofence zone")
+    @GetMapping("/{zoneId}")
+    public ResponseEntity<ZoneDTO> getZone(@PathVariable String zoneId) {
+        return ResponseEntity.ok(zoneService.getZone(zoneId));
+    }
+
+    @Operation(summary = "Create zone",
+            description = "Creates a zone from a closed polygon ring; the zone is active for detection when the call returns")
+    @PostMapping
+    public ResponseEntity<ZoneDTO> createZone(@RequestBody ZoneDTO zone) {
+        log.debug("Creating zone {}", zone.getZoneId());
+        ZoneDTO created = zoneService.createZone(zone);
+        return ResponseEntity.created(URI.create("/api/zones/" + created.getZoneId())).body(created);
+    }
+
+    @Operation(summary = "Update zone", description = "Replaces the polygon of an existing zone")
+    @PutMapping("/{zoneId}")
+    public ResponseEntity<ZoneDTO> updateZone(@PathVariable String zoneId, @RequestBody ZoneDTO zone) {
+        log.debug("Updating zone {}", zoneId);
+        return ResponseEntity.ok(zoneService.updateZone(zoneId, zone));
+    }
+
+    @Operation(summary = "Delete zone", description = "Removes a zone from detection")
+    @DeleteMapping("/{zoneId}")
+    public ResponseEntity<Void> deleteZone(@PathVariable String zoneId) {
+        log.debug("Deleting zone {}", zoneId);
+        zoneService.deleteZone(zoneId);
+        occupancyService.deleteZone(zoneId);
+        return ResponseEntity.noContent().build();
+    }
+
+    @Operation(summary = "Get zone occupancy",
+            description = "Returns the number of vehicles currently in the zone and the average time vehicles " +
+                    "stayed in it; updated every occupancy flush interval")
+    @GetMapping("/{zoneId}/occupancy")
+    public ResponseEntity<ZoneOccupancy> getOccupancy(@PathVariable String zoneId) {
+        zoneService.getZone(zoneId);
+        return ResponseEntity.ok(occupancyService.getZone(zoneId));
+    }
+
+    @Operation(summary = "List vehicles in zone",
+            description = "Returns the vehicles currently inside the zone, ordered by when they entered; pass " +
+                    "nextCursor from the response as cursor to get the next page")
+    @GetMapping("/{zoneId}/vehicles")
+    public ResponseEntity<ZoneVehiclesPage> getVehicles(
+            @PathVariable String zoneId,
+            @Parameter(description = "nextCursor of the previous page")
+            @RequestParam(required = false) @Pattern(regexp = "\\d{1,18}:.+") String cursor,
+            @RequestParam(defaultValue = "100") @Min(1) @Max(1000) int limit) {
+        zoneService.getZone(zoneId);
+        return ResponseEntity.ok(occupancyService.getVehicles(zoneId, cursor, limit));
+    }
+
     @Operation(summary = "Detect zone for coordinates", description = "Returns the zone ID for given lat/lon coordinates")
     @GetMapping("/detect")
     public ResponseEntity<Map<String, String>> detectZone(
@@ -48,5 +111,20 @@ public class ZoneController {
         
         return ResponseEntity.ok(response);
     }
-}
 
+    @Operation(summary = "Detect all zones for coordinates",
+            description = "Returns every zone containing the lat/lon coordinates, first-registered first")
+    @GetMapping("/detect/all")
+    public ResponseEntity<Map<String, Object>> detectAllZones(
+            @RequestParam double lat,
+            @RequestParam double lon) {
+
+        log.debug("Detecting all zones for lat={}, lon={}", lat, lon);
+        Map<String, Object> response = new HashMap<>();
+        response.put("lat", String.valueOf(lat));
+        response.put("lon", String.valueOf(lon));
+        response.put("zoneIds", zoneService.detectAllZones(lat, lon));
+
+        return ResponseEntity.ok(response);
+    }
+}
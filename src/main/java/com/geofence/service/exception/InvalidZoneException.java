@@ -0,0 +1,7 @@
+package com.geofence.service.exception;
+
+public class InvalidZoneException extends RuntimeException {
+    public InvalidZoneException(String message) {
+        super(message);
+    }
+}
@@ -0,0 +1,7 @@
+package com.geofence.service.exception;
+
+public class ResourceConflictException extends RuntimeException {
+    public ResourceConflictException(String message) {
+        super(message);
+    }
+}
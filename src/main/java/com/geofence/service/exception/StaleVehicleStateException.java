@@ -0,0 +1,23 @@
+package com.geofence.service.exception;
+
+import org.springframework.dao.OptimisticLockingFailureException;
+
+import java.util.Set;
+
+/**
+ * A guarded state write found a state at least as new in Redis, written by another
+ * replica, and left it alone. Other states of the same bulk write were stored.
+ */
+public class StaleVehicleStateException extends OptimisticLockingFailureException {
+
+    private final Set<String> vehicleIds;
+
+    public StaleVehicleStateException(Set<String> vehicleIds) {
+        super("Newer state already stored for vehicles " + vehicleIds);
+        this.vehicleIds = Set.copyOf(vehicleIds);
+    }
+
+    public Set<String> getVehicleIds() {
+        return vehicleIds;
+    }
+}
@@ -0,0 +1,175 @@
+package com.geofence.service.geo;
+
+/**
+ * Memoized detection answers per grid cell, for {@link ZoneIndex#withCellCache}.
+ *
+ * Space is cut into square cells of {@code cellSize} degrees. The first lookup in a
+ * cell classifies it against every zone whose bounding box reaches it: if no zone edge
+ * comes near the cell, each point in it lies in exactly the same zones, so the cell
+ * stores that answer and later lookups return it without any polygon test. A cell that
+ * a zone edge crosses is stored as a boundary cell, and lookups there run the exact
+ * test. Cells are tested against a slightly enlarged rectangle, so rounding can only
+ * turn a cell into a boundary cell, never change an answer.
+ *
+ * The table is a fixed-size array indexed by a hash of the cell coordinates; a new cell
+ * replaces whatever occupied its slot. Entries are immutable and read and written
+ * without locks: a racing lookup either sees a complete entry or classifies the cell
+ * itself. Since an index never changes, its cache needs no invalidation; a zone change
+ * builds a new index with an empty cache.
+ */
+final class CellCache {
+
+    private static final int[] NO_KEYS = new int[0];
+    private static final long GOLDEN = 0x9E3779B97F4A7C15L;
+
+    private final PackedRTree tree;
+    private final Doubles coords;
+    private final Ints zoneRings;
+    private final Ints ringStarts;
+    private final Ints keys;
+    private final double cellSize;
+    private final double inverse;
+    private final double margin;
+    private final Cell[] table;
+    private final int mask;
+    private final CellCacheStats stats;
+
+    /**
+     * Answer for every point of one cell, or a marker that the exact test is needed.
+     */
+    static final class Cell {
+
+        private final long id;
+        // Keys of the zones covering the cell, null for a boundary cell
+        final int[] keys;
+        // Position of the first such zone, -1 if none
+        final int first;
+
+        private Cell(long id, int[] keys, int first) {
+            this.id = id;
+            this.keys = keys;
+            this.first = first;
+        }
+
+        boolean isBoundary() {
+            return keys == null;
+        }
+    }
+
+    CellCache(PackedRTree tree, Doubles coords, Ints zoneRings, Ints ringStarts, Ints keys, double cellSize,
+              int maxCells, CellCacheStats stats) {
+        if (!(cellSize >= ZoneIndex.MIN_CELL_SIZE) || maxCells < 1) {
+            throw new IllegalArgumentException(
+                    "Cell size must be at least " + ZoneIndex.MIN_CELL_SIZE + " and cache size positive");
+        }
+        this.tree = tree;
+        this.coords = coords;
+        this.zoneRings = zoneRings;
+        this.ringStarts = ringStarts;
+        this.keys = keys;
+        this.cellSize = cellSize;
+        this.inverse = 1 / cellSize;
+        this.margin = cellSize / 1024;
+        int capacity = Integer.highestOneBit(Math.max(2, maxCells) * 2 - 1);
+        this.table = new Cell[capacity];
+        this.mask = capacity - 1;
+        this.stats = stats;
+    }
+
+    Cell lookup(double x, double y) {
+        long column = (long) Math.floor(x * inverse);
+        long row = (long) Math.floor(y * inverse);
+        long id = (row << 32) ^ (column & 0xFFFFFFFFL);
+        int slot = (int) ((id * GOLDEN) >>> 32) & mask;
+        Cell cell = table[slot];
+        if (cell != null && cell.id == id) {
+            if (cell.isBoundary()) {
+                stats.boundary.increment();
+            } else {
+                stats.hits.increment();
+            }
+            return cell;
+        }
+        stats.misses.increment();
+        cell = classify(id, column * cellSize, row * cellSize);
+        table[slot] = cell;
+        return cell;
+    }
+
+    private Cell classify(long id, double cellX, double cellY) {
+        double minX = cellX - margin;
+        double minY = cellY - margin;
+        double maxX = cellX + cellSize + margin;
+        double maxY = cellY + cellSize + margin;
+        double centerX = cellX + cellSize / 2;
+        double centerY = cellY + cellSize / 2;
+
+        int[] candidates = tree.findIntersecting(minX, minY, maxX, maxY);
+        int[] covering = new int[candidates.length];
+        int count = 0;
+        double[] range = new double[2];
+        for (int item : candidates) {
+            int fromRing = zoneRings.get(item);
+            int toRing = zoneRings.get(item + 1);
+            for (int ring = fromRing; ring < toRing; ring++) {
+                if (crossesRing(ringStarts.get(ring), ringStarts.get(ring + 1), minX, minY, maxX, maxY, range)) {
+                    return new Cell(id, null, -1);
+                }
+            }
+            // No edge near the cell: the whole cell is on the same side as its centre
+            if (FlatPolygon.contains(coords, ringStarts, fromRing, toRing, centerX, centerY)) {
+                covering[count++] = item;
+            }
+        }
+        if (count == 0) {
+            return new Cell(id, NO_KEYS, -1);
+        }
+        // Candidates are in ascending position, so keys ascend too
+        int[] cellKeys = new int[count];
+        for (int i = 0; i < count; i++) {
+            cellKeys[i] = keys.get(covering[i]);
+        }
+        return new Cell(id, cellKeys, covering[0]);
+    }
+
+    private boolean crossesRing(int from, int to, double minX, double minY, double maxX, double maxY,
+                                double[] range) {
+        for (int i = from + 1; i < to; i++) {
+            if (segmentIntersects(coords.get(2 * i - 2), coords.get(2 * i - 1), coords.get(2 * i),
+                    coords.get(2 * i + 1), minX, minY, maxX, maxY, range)) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    // Liang-Barsky: clips the segment's parameter range [0, 1] against each side of the box
+    static boolean segmentIntersects(double x1, double y1, double x2, double y2,
+                                     double minX, double minY, double maxX, double maxY, double[] range) {
+        double dx = x2 - x1;
+        double dy = y2 - y1;
+        range[0] = 0;
+        range[1] = 1;
+        return clip(-dx, x1 - minX, range) && clip(dx, maxX - x1, range)
+                && clip(-dy, y1 - minY, range) && clip(dy, maxY - y1, range);
+    }
+
+    private static boolean clip(double p, double q, double[] range) {
+        if (p == 0) {
+            return q >= 0;
+        }
+        double r = q / p;
+        if (p < 0) {
+            if (r > range[1]) {
+                return false;
+            }
+            range[0] = Math.max(range[0], r);
+        } else {
+            if (r < range[0]) {
+                return false;
+            }
+            range[1] = Math.min(range[1], r);
+        }
+        return true;
+    }
+}
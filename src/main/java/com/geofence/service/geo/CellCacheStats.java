@@ -0,0 +1,34 @@
+package com.geofence.service.geo;
+
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Lookup counts of the cell caches of successive indexes, see {@link ZoneIndex#withCellCache}.
+ */
+public final class CellCacheStats {
+
+    final LongAdder hits = new LongAdder();
+    final LongAdder boundary = new LongAdder();
+    final LongAdder misses = new LongAdder();
+
+    /**
+     * Lookups answered from an interior or exterior cell, without a polygon test.
+     */
+    public long hits() {
+        return hits.sum();
+    }
+
+    /**
+     * Lookups in a known boundary cell, which ran the exact test.
+     */
+    public long boundary() {
+        return boundary.sum();
+    }
+
+    /**
+     * Lookups that found their cell uncached and classified it.
+     */
+    public long misses() {
+        return misses.sum();
+    }
+}
@@ -0,0 +1,47 @@
+package com.geofence.service.geo;
+
+import java.nio.DoubleBuffer;
+
+/**
+ * Read-only doubles of an index section: a heap array for a built index, a buffer over
+ * the mapping for one read from a {@link ZoneIndexFile}. Plain array reads are markedly
+ * faster than {@link DoubleBuffer#get(int)}, so built indexes keep them.
+ */
+final class Doubles {
+
+    private final double[] array;
+    private final DoubleBuffer buffer;
+
+    private Doubles(double[] array, DoubleBuffer buffer) {
+        this.array = array;
+        this.buffer = buffer;
+    }
+
+    static Doubles of(double[] array) {
+        return new Doubles(array, null);
+    }
+
+    static Doubles of(DoubleBuffer buffer) {
+        return new Doubles(null, buffer);
+    }
+
+    double get(int index) {
+        return array != null ? array[index] : buffer.get(index);
+    }
+
+    int length() {
+        return array != null ? array.length : buffer.capacity();
+    }
+
+    void get(int index, double[] target, int offset, int length) {
+        if (array != null) {
+            System.arraycopy(array, index, target, offset, length);
+        } else {
+            buffer.get(index, target, offset, length);
+        }
+    }
+
+    DoubleBuffer asBuffer() {
+        return array != null ? DoubleBuffer.wrap(array) : buffer.duplicate();
+    }
+}
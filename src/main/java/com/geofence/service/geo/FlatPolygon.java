@@ -0,0 +1,240 @@
+package com.geofence.service.geo;
+
+import org.locationtech.jts.algorithm.CGAlgorithmsDD;
+import org.locationtech.jts.geom.Coordinate;
+
+import java.util.List;
+
+/**
+ * Polygon rings stored as flat primitive arrays for allocation-free containment tests.
+ *
+ * The crossing-number test mirrors JTS {@code RayCrossingCounter} segment by segment,
+ * including its robust orientation predicate, so results (boundary points included)
+ * are identical to {@code Polygon.contains(point) || Polygon.touches(point)}.
+ *
+ * A zone may have several rings: the shells and holes of every polygon of a
+ * MultiPolygon. A point is inside if it lies on any ring, or inside an odd number of
+ * them, which for a valid (Multi)Polygon is exactly JTS containment: a point in a hole
+ * is inside its shell and the hole, and so outside. {@link ZoneIndex} runs the same
+ * test on its packed vertex buffer through {@link #contains(Doubles, Ints, int, int, double, double)}.
+ */
+public final class FlatPolygon {
+
+    // Returned by crossings for a point on the ring
+    private static final int ON_RING = -1;
+
+    // x, y of each vertex, ring after ring
+    private final Doubles coords;
+    // First vertex of each ring, plus the vertex count
+    private final Ints ringStarts;
+    private final int ringCount;
+    private final int vertexCount;
+    private final double minX;
+    private final double minY;
+    private final double maxX;
+    private final double maxY;
+
+    /**
+     * @param ring closed ring in JTS order (x=lon, y=lat), first and last coordinate equal
+     */
+    public FlatPolygon(Coordinate[] ring) {
+        this(List.<Coordinate[]>of(ring));
+    }
+
+    /**
+     * @param rings closed rings in JTS order, such as the shell and holes of each polygon
+     *              of a MultiPolygon; the first one is what {@link #getRingStart} numbers 0
+     */
+    public FlatPolygon(List<Coordinate[]> rings) {
+        this(interleave(rings), starts(rings));
+    }
+
+    /**
+     * Copy of the rings {@code fromRing} to {@code toRing} packed in a {@link ZoneIndex}.
+     */
+    FlatPolygon(Doubles packed, Ints ringStarts, int fromRing, int toRing) {
+        this(copy(packed, ringStarts.get(fromRing), ringStarts.get(toRing)), rebase(ringStarts, fromRing, toRing));
+    }
+
+    private FlatPolygon(double[] xys, int[] ringStarts) {
+        if (ringStarts.length < 2) {
+            throw new IllegalArgumentException("Polygon must have at least one ring");
+        }
+        this.coords = Doubles.of(xys);
+        this.ringStarts = Ints.of(ringStarts);
+        this.ringCount = ringStarts.length - 1;
+        this.vertexCount = xys.length / 2;
+        double x0 = Double.POSITIVE_INFINITY, y0 = Double.POSITIVE_INFINITY;
+        double x1 = Double.NEGATIVE_INFINITY, y1 = Double.NEGATIVE_INFINITY;
+        for (int i = 0; i < xys.length; i += 2) {
+            x0 = Math.min(x0, xys[i]);
+            y0 = Math.min(y0, xys[i + 1]);
+            x1 = Math.max(x1, xys[i]);
+            y1 = Math.max(y1, xys[i + 1]);
+        }
+        this.minX = x0;
+        this.minY = y0;
+        this.maxX = x1;
+        this.maxY = y1;
+    }
+
+    private static double[] interleave(List<Coordinate[]> rings) {
+        int vertices = 0;
+        for (Coordinate[] ring : rings) {
+            if (ring.length < 4 || !ring[0].equals2D(ring[ring.length - 1])) {
+                throw new IllegalArgumentException("Polygon ring must be closed and have at least 4 coordinates");
+            }
+            vertices += ring.length;
+        }
+        double[] xys = new double[vertices * 2];
+        int at = 0;
+        for (Coordinate[] ring : rings) {
+            for (Coordinate coordinate : ring) {
+                xys[at++] = coordinate.x;
+                xys[at++] = coordinate.y;
+            }
+        }
+        return xys;
+    }
+
+    private static int[] starts(List<Coordinate[]> rings) {
+        int[] starts = new int[rings.size() + 1];
+        for (int i = 0; i < rings.size(); i++) {
+            starts[i + 1] = starts[i] + rings.get(i).length;
+        }
+        return starts;
+    }
+
+    private static int[] rebase(Ints ringStarts, int fromRing, int toRing) {
+        int[] starts = new int[toRing - fromRing + 1];
+        int first = ringStarts.get(fromRing);
+        for (int i = 0; i < starts.length; i++) {
+            starts[i] = ringStarts.get(fromRing + i) - first;
+        }
+        return starts;
+    }
+
+    private static double[] copy(Doubles packed, int from, int to) {
+        double[] xys = new double[(to - from) * 2];
+        packed.get(2 * from, xys, 0, xys.length);
+        return xys;
+    }
+
+    public double getMinX() {
+        return minX;
+    }
+
+    public double getMinY() {
+        return minY;
+    }
+
+    public double getMaxX() {
+        return maxX;
+    }
+
+    public double getMaxY() {
+        return maxY;
+    }
+
+    public int getVertexCount() {
+        return vertexCount;
+    }
+
+    public int getRingCount() {
+        return ringCount;
+    }
+
+    /**
+     * Returns the first vertex of the ring, or the vertex count for {@code ring == getRingCount()}.
+     */
+    public int getRingStart(int ring) {
+        return ringStarts.get(ring);
+    }
+
+    public double getX(int vertex) {
+        return coords.get(2 * vertex);
+    }
+
+    public double getY(int vertex) {
+        return coords.get(2 * vertex + 1);
+    }
+
+    /**
+     * Copies the vertices into {@code packed} as x, y pairs, starting at vertex {@code at}.
+     */
+    void copyTo(double[] packed, int at) {
+        coords.get(0, packed, 2 * at, 2 * vertexCount);
+    }
+
+    /**
+     * Returns true if (x, y) lies in the interior or on the boundary of the polygon.
+     */
+    public boolean contains(double x, double y) {
+        if (x < minX || x > maxX || y < minY || y > maxY) {
+            return false;
+        }
+        return contains(coords, ringStarts, 0, ringCount, x, y);
+    }
+
+    /**
+     * Even-odd test against the rings {@code fromRing} (inclusive) to {@code toRing}
+     * (exclusive), each stored as x, y pairs in {@code coords} from its start in
+     * {@code ringStarts} to the next ring's.
+     */
+    static boolean contains(Doubles coords, Ints ringStarts, int fromRing, int toRing, double x, double y) {
+        boolean inside = false;
+        for (int ring = fromRing; ring < toRing; ring++) {
+            int crossings = crossings(coords, ringStarts.get(ring), ringStarts.get(ring + 1), x, y);
+            if (crossings == ON_RING) {
+                return true;
+            }
+            inside ^= (crossings & 1) == 1;
+        }
+        return inside;
+    }
+
+    /**
+     * Crossing-number test against the closed ring stored as x, y pairs in
+     * {@code coords} from vertex {@code from} (inclusive) to {@code to} (exclusive):
+     * the number of crossings, or {@link #ON_RING} if the point is on the ring.
+     */
+    private static int crossings(Doubles coords, int from, int to, double x, double y) {
+        int crossings = 0;
+        double x2 = coords.get(2 * from), y2 = coords.get(2 * from + 1);
+        for (int i = from + 1; i < to; i++) {
+            // Each vertex is read once: a segment starts where the previous one ended
+            double x1 = x2, y1 = y2;
+            x2 = coords.get(2 * i);
+            y2 = coords.get(2 * i + 1);
+
+            // Segment strictly to the left of the point
+            if (x1 < x && x2 < x) {
+                continue;
+            }
+            if (x == x2 && y == y2) {
+                return ON_RING;
+            }
+            // Horizontal segment on the ray
+            if (y1 == y && y2 == y) {
+                if (x >= Math.min(x1, x2) && x <= Math.max(x1, x2)) {
+                    return ON_RING;
+                }
+                continue;
+            }
+            // Segment straddles the ray (half-open on the lower end)
+            if ((y1 > y && y2 <= y) || (y2 > y && y1 <= y)) {
+                int orientation = CGAlgorithmsDD.orientationIndex(x1, y1, x2, y2, x, y);
+                if (orientation == 0) {
+                    return ON_RING;
+                }
+                if (y2 < y1) {
+                    orientation = -orientation;
+                }
+                if (orientation > 0) {
+                    crossings++;
+                }
+            }
+        }
+        return crossings;
+    }
+}
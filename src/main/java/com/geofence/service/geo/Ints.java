@@ -0,0 +1,37 @@
+package com.geofence.service.geo;
+
+import java.nio.IntBuffer;
+
+/**
+ * Read-only ints of an index section, see {@link Doubles}.
+ */
+final class Ints {
+
+    private final int[] array;
+    private final IntBuffer buffer;
+
+    private Ints(int[] array, IntBuffer buffer) {
+        this.array = array;
+        this.buffer = buffer;
+    }
+
+    static Ints of(int[] array) {
+        return new Ints(array, null);
+    }
+
+    static Ints of(IntBuffer buffer) {
+        return new Ints(null, buffer);
+    }
+
+    int get(int index) {
+        return array != null ? array[index] : buffer.get(index);
+    }
+
+    int length() {
+        return array != null ? array.length : buffer.capacity();
+    }
+
+    IntBuffer asBuffer() {
+        return array != null ? IntBuffer.wrap(array) : buffer.duplicate();
+    }
+}
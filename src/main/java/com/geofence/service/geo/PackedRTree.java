@@ -0,0 +1,413 @@
+package com.geofence.service.geo;
+
+import java.nio.DoubleBuffer;
+import java.nio.IntBuffer;
+import java.util.Arrays;
+import java.util.stream.IntStream;
+
+/**
+ * Static, bulk-loaded R-tree over item bounding boxes, stored in flat arrays.
+ *
+ * Items are ordered along a Hilbert curve and packed bottom-up into nodes of
+ * {@code nodeSize} children, so the tree is built in O(n log n) and a point query
+ * walks only the nodes whose boxes contain the point without allocating. Large trees
+ * compute and sort the Hilbert keys on all cores.
+ *
+ * A built tree keeps its nodes in heap arrays; one read from a {@link ZoneIndexFile}
+ * queries the mapped file in place.
+ */
+public final class PackedRTree {
+
+    public static final int DEFAULT_NODE_SIZE = 16;
+
+    // Below this many items, forking costs more than the sort it would spread
+    static final int PARALLEL_THRESHOLD = 8192;
+
+    private static final int[] EMPTY = new int[0];
+
+    /**
+     * Exact test applied to items whose bounding box contains the query point.
+     */
+    @FunctionalInterface
+    public interface ItemPredicate {
+        boolean test(int item, double x, double y);
+    }
+
+    private final int nodeSize;
+    private final int numItems;
+    // minX, minY, maxX, maxY of each node
+    private final Doubles boxes;
+    // Leaves hold the item id, internal nodes the position of their first child
+    private final Ints indices;
+    // End position (exclusive) of each level, leaves first
+    private final int[] levelBounds;
+
+    public PackedRTree(double[] minX, double[] minY, double[] maxX, double[] maxY, int nodeSize) {
+        if (nodeSize < 2) {
+            throw new IllegalArgumentException("Node size must be at least 2");
+        }
+        this.nodeSize = nodeSize;
+        this.numItems = minX.length;
+
+        int[] bounds = new int[32];
+        int levels = 0;
+        int count = numItems;
+        int numNodes = numItems;
+        bounds[levels++] = numNodes;
+        if (numItems > 0) {
+            do {
+                count = (count + nodeSize - 1) / nodeSize;
+                numNodes += count;
+                bounds[levels++] = numNodes;
+            } while (count != 1);
+        }
+        this.levelBounds = Arrays.copyOf(bounds, levels);
+
+        double[] boxes = new double[numNodes * 4];
+        int[] indices = new int[numNodes];
+        loadLeaves(minX, minY, maxX, maxY, boxes, indices);
+        buildUpperLevels(boxes, indices);
+        this.boxes = Doubles.of(boxes);
+        this.indices = Ints.of(indices);
+    }
+
+    /**
+     * Tree over buffers written by an earlier build, such as a mapped index file.
+     */
+    PackedRTree(int nodeSize, int numItems, int[] levelBounds, DoubleBuffer boxes, IntBuffer indices) {
+        int numNodes = levelBounds[levelBounds.length - 1];
+        if (nodeSize < 2 || levelBounds[0] != numItems
+                || boxes.capacity() != (long) numNodes * 4 || indices.capacity() != numNodes) {
+            throw new IllegalArgumentException("Inconsistent packed R-tree layout");
+        }
+        this.nodeSize = nodeSize;
+        this.numItems = numItems;
+        this.levelBounds = levelBounds.clone();
+        this.boxes = Doubles.of(boxes);
+        this.indices = Ints.of(indices);
+    }
+
+    public int size() {
+        return numItems;
+    }
+
+    /**
+     * Bytes taken by the node boxes and indices.
+     */
+    public long sizeInBytes() {
+        return (long) boxes.length() * Double.BYTES + (long) indices.length() * Integer.BYTES;
+    }
+
+    int nodeSize() {
+        return nodeSize;
+    }
+
+    int[] levelBounds() {
+        return levelBounds.clone();
+    }
+
+    DoubleBuffer boxes() {
+        return boxes.asBuffer();
+    }
+
+    IntBuffer indices() {
+        return indices.asBuffer();
+    }
+
+    /**
+     * Returns the smallest item id whose box contains (x, y) and that passes the
+     * predicate, or -1 if there is none.
+     */
+    public int findFirst(double x, double y, ItemPredicate predicate) {
+        if (numItems == 0) {
+            return -1;
+        }
+        int root = indices.length() - 1;
+        if (!boxContains(root, x, y)) {
+            return -1;
+        }
+        return searchNode(root, levelBounds.length - 1, x, y, predicate, -1);
+    }
+
+    /**
+     * Returns the ids of all items whose box contains (x, y) and that pass the
+     * predicate, in ascending order. Returns a shared empty array when nothing matches.
+     */
+    public int[] findAll(double x, double y, ItemPredicate predicate) {
+        if (numItems == 0) {
+            return EMPTY;
+        }
+        int root = indices.length() - 1;
+        if (!boxContains(root, x, y)) {
+            return EMPTY;
+        }
+        Matches matches = new Matches();
+        collectNode(root, levelBounds.length - 1, x, y, predicate, matches);
+        return matches.toSortedArray();
+    }
+
+    /**
+     * Returns the ids of all items whose box intersects the given box, borders included,
+     * in ascending order. Returns a shared empty array when nothing matches.
+     */
+    public int[] findIntersecting(double minX, double minY, double maxX, double maxY) {
+        if (numItems == 0) {
+            return EMPTY;
+        }
+        int root = indices.length() - 1;
+        if (!boxIntersects(root, minX, minY, maxX, maxY)) {
+            return EMPTY;
+        }
+        Matches matches = new Matches();
+        intersectNode(root, levelBounds.length - 1, minX, minY, maxX, maxY, matches);
+        return matches.toSortedArray();
+    }
+
+    /**
+     * Returns the leaf position of each item, the inverse of the leaf level's item ids.
+     */
+    int[] leafPositions() {
+        int[] leaves = new int[numItems];
+        for (int pos = 0; pos < numItems; pos++) {
+            leaves[indices.get(pos)] = pos;
+        }
+        return leaves;
+    }
+
+    boolean leafContains(int leaf, double x, double y) {
+        return boxContains(leaf, x, y);
+    }
+
+    /**
+     * Returns whether the box of any other item intersects the box of this leaf.
+     */
+    boolean leafOverlapsOthers(int leaf) {
+        int box = leaf << 2;
+        return findIntersecting(boxes.get(box), boxes.get(box + 1), boxes.get(box + 2), boxes.get(box + 3))
+                .length > 1;
+    }
+
+    private int searchNode(int node, int level, double x, double y, ItemPredicate predicate, int best) {
+        int start = indices.get(node);
+        int end = Math.min(start + nodeSize, levelBounds[level - 1]);
+        for (int pos = start; pos < end; pos++) {
+            if (!boxContains(pos, x, y)) {
+                continue;
+            }
+            if (level == 1) {
+                int item = indices.get(pos);
+                if ((best < 0 || item < best) && predicate.test(item, x, y)) {
+                    best = item;
+                }
+            } else {
+                best = searchNode(pos, level - 1, x, y, predicate, best);
+            }
+        }
+        return best;
+    }
+
+    private void collectNode(int node, int level, double x, double y, ItemPredicate predicate, Matches matches) {
+        int start = indices.get(node);
+        int end = Math.min(start + nodeSize, levelBounds[level - 1]);
+        for (int pos = start; pos < end; pos++) {
+            if (!boxContains(pos, x, y)) {
+                continue;
+            }
+            if (level == 1) {
+                int item = indices.get(pos);
+                if (predicate.test(item, x, y)) {
+                    matches.add(item);
+                }
+            } else {
+                collectNode(pos, level - 1, x, y, predicate, matches);
+            }
+        }
+    }
+
+    private void intersectNode(int node, int level, double minX, double minY, double maxX, double maxY,
+                               Matches matches) {
+        int start = indices.get(node);
+        int end = Math.min(start + nodeSize, levelBounds[level - 1]);
+        for (int pos = start; pos < end; pos++) {
+            if (!boxIntersects(pos, minX, minY, maxX, maxY)) {
+                continue;
+            }
+            if (level == 1) {
+                matches.add(indices.get(pos));
+            } else {
+                intersectNode(pos, level - 1, minX, minY, maxX, maxY, matches);
+            }
+        }
+    }
+
+    private boolean boxIntersects(int pos, double minX, double minY, double maxX, double maxY) {
+        int box = pos << 2;
+        return maxX >= boxes.get(box) && minX <= boxes.get(box + 2)
+                && maxY >= boxes.get(box + 1) && minY <= boxes.get(box + 3);
+    }
+
+    private boolean boxContains(int pos, double x, double y) {
+        int box = pos << 2;
+        return x >= boxes.get(box) && x <= boxes.get(box + 2) && y >= boxes.get(box + 1) && y <= boxes.get(box + 3);
+    }
+
+    private static void putBox(double[] boxes, int pos, double x0, double y0, double x1, double y1) {
+        int box = pos << 2;
+        boxes[box] = x0;
+        boxes[box + 1] = y0;
+        boxes[box + 2] = x1;
+        boxes[box + 3] = y1;
+    }
+
+    private void loadLeaves(double[] minX, double[] minY, double[] maxX, double[] maxY,
+                            double[] boxes, int[] indices) {
+        if (numItems == 0) {
+            return;
+        }
+        double x0 = Double.POSITIVE_INFINITY, y0 = Double.POSITIVE_INFINITY;
+        double x1 = Double.NEGATIVE_INFINITY, y1 = Double.NEGATIVE_INFINITY;
+        for (int i = 0; i < numItems; i++) {
+            x0 = Math.min(x0, minX[i]);
+            y0 = Math.min(y0, minY[i]);
+            x1 = Math.max(x1, maxX[i]);
+            y1 = Math.max(y1, maxY[i]);
+        }
+        double width = x1 - x0;
+        double height = y1 - y0;
+
+        // Sort key: Hilbert value of the box centre in the high bits, item id in the low bits
+        long[] keys = new long[numItems];
+        int hilbertMax = (1 << 16) - 1;
+        double originX = x0, originY = y0;
+        IntStream items = IntStream.range(0, numItems);
+        (numItems >= PARALLEL_THRESHOLD ? items.parallel() : items).forEach(i -> {
+            int hx = width > 0 ? (int) (hilbertMax * ((minX[i] + maxX[i]) / 2 - originX) / width) : 0;
+            int hy = height > 0 ? (int) (hilbertMax * ((minY[i] + maxY[i]) / 2 - originY) / height) : 0;
+            keys[i] = ((hilbert(hx, hy) & 0xFFFFFFFFL) << 32) | i;
+        });
+        // Keys are unique (item id in the low bits), so both sorts give the same order
+        if (numItems >= PARALLEL_THRESHOLD) {
+            Arrays.parallelSort(keys);
+        } else {
+            Arrays.sort(keys);
+        }
+
+        for (int pos = 0; pos < numItems; pos++) {
+            int item = (int) keys[pos];
+            putBox(boxes, pos, minX[item], minY[item], maxX[item], maxY[item]);
+            indices[pos] = item;
+        }
+    }
+
+    private void buildUpperLevels(double[] boxes, int[] indices) {
+        int pos = 0;
+        int out = numItems;
+        for (int level = 0; level < levelBounds.length - 1; level++) {
+            int end = levelBounds[level];
+            while (pos < end) {
+                int first = pos;
+                double x0 = Double.POSITIVE_INFINITY, y0 = Double.POSITIVE_INFINITY;
+                double x1 = Double.NEGATIVE_INFINITY, y1 = Double.NEGATIVE_INFINITY;
+                for (int i = 0; i < nodeSize && pos < end; i++, pos++) {
+                    int box = pos << 2;
+                    x0 = Math.min(x0, boxes[box]);
+                    y0 = Math.min(y0, boxes[box + 1]);
+                    x1 = Math.max(x1, boxes[box + 2]);
+                    y1 = Math.max(y1, boxes[box + 3]);
+                }
+                putBox(boxes, out, x0, y0, x1, y1);
+                indices[out] = first;
+                out++;
+            }
+        }
+    }
+
+    // Small growable int list; overlaps are rare, so the first slots are kept in fields
+    private static final class Matches {
+        private int first;
+        private int second;
+        private int[] more;
+        private int size;
+
+        void add(int item) {
+            if (size == 0) {
+                first = item;
+            } else if (size == 1) {
+                second = item;
+            } else {
+                if (more == null) {
+                    more = new int[4];
+                } else if (size - 2 == more.length) {
+                    more = Arrays.copyOf(more, more.length * 2);
+                }
+                more[size - 2] = item;
+            }
+            size++;
+        }
+
+        int[] toSortedArray() {
+            if (size == 0) {
+                return EMPTY;
+            }
+            int[] out = new int[size];
+            out[0] = first;
+            if (size > 1) {
+                out[1] = second;
+            }
+            if (size > 2) {
+                System.arraycopy(more, 0, out, 2, size - 2);
+            }
+            if (size > 1) {
+                Arrays.sort(out);
+            }
+            return out;
+        }
+    }
+
+    // Hilbert curve index of (x, y) on a 2^16 grid (after "Fast Hilbert curve generation" by rawrunprotected)
+    static int hilbert(int x, int y) {
+        int a = x ^ y;
+        int b = 0xFFFF ^ a;
+        int c = 0xFFFF ^ (x | y);
+        int d = x & (y ^ 0xFFFF);
+
+        int A = a | (b >>> 1);
+        int B = (a >>> 1) ^ a;
+        int C = ((c >>> 1) ^ (b & (d >>> 1))) ^ c;
+        int D = ((a & (c >>> 1)) ^ (d >>> 1)) ^ d;
+
+        a = A; b = B; c = C; d = D;
+        A = (a & (a >>> 2)) ^ (b & (b >>> 2));
+        B = (a & (b >>> 2)) ^ (b & ((a ^ b) >>> 2));
+        C ^= (a & (c >>> 2)) ^ (b & (d >>> 2));
+        D ^= (b & (c >>> 2)) ^ ((a ^ b) & (d >>> 2));
+
+        a = A; b = B; c = C; d = D;
+        A = (a & (a >>> 4)) ^ (b & (b >>> 4));
+        B = (a & (b >>> 4)) ^ (b & ((a ^ b) >>> 4));
+        C ^= (a & (c >>> 4)) ^ (b & (d >>> 4));
+        D ^= (b & (c >>> 4)) ^ ((a ^ b) & (d >>> 4));
+
+        a = A; b = B; c = C; d = D;
+        C ^= (a & (c >>> 8)) ^ (b & (d >>> 8));
+        D ^= (b & (c >>> 8)) ^ ((a ^ b) & (d >>> 8));
+
+        a = C ^ (C >>> 1);
+        b = D ^ (D >>> 1);
+
+        int i0 = x ^ y;
+        int i1 = b | (0xFFFF ^ (i0 | a));
+
+        i0 = (i0 | (i0 << 8)) & 0x00FF00FF;
+        i0 = (i0 | (i0 << 4)) & 0x0F0F0F0F;
+        i0 = (i0 | (i0 << 2)) & 0x33333333;
+        i0 = (i0 | (i0 << 1)) & 0x55555555;
+
+        i1 = (i1 | (i1 << 8)) & 0x00FF00FF;
+        i1 = (i1 | (i1 << 4)) & 0x0F0F0F0F;
+        i1 = (i1 | (i1 << 2)) & 0x33333333;
+        i1 = (i1 | (i1 << 1)) & 0x55555555;
+
+        return (i1 << 1) | i0;
+    }
+}
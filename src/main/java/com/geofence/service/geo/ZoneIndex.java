@@ -0,0 +1,538 @@
+package com.geofence.service.geo;
+
+import com.geofence.service.model.Zone;
+
+import java.nio.ByteBuffer;
+import java.nio.DoubleBuffer;
+import java.nio.IntBuffer;
+import java.nio.charset.StandardCharsets;
+import java.util.List;
+import java.util.stream.IntStream;
+
+/**
+ * Immutable spatial index over a set of zones.
+ *
+ * Zone envelopes are bulk-loaded into a {@link PackedRTree} and every ring is packed
+ * into one vertex buffer, so a lookup only runs the exact point test against the few
+ * zones whose bounding box contains the point, and allocates nothing. A zone may have
+ * several rings, the shells and holes of a MultiPolygon, tested as in {@link FlatPolygon}.
+ * When zones overlap, the zone that was registered first wins, matching the original
+ * linear scan.
+ *
+ * Every zone also has an int key, strictly increasing in registration order, which
+ * {@link #detectAll} returns for multi-zone membership. Keys stay valid across index
+ * rebuilds as long as the caller keeps them stable (the zone store's creation sequence).
+ *
+ * The whole index, zone IDs and their hash table included, is held in flat sections
+ * with the layout of a {@link ZoneIndexFile}. A built index keeps them in heap arrays
+ * and can be written out as is; a mapped file provides the same sections off-heap and
+ * is queried in place. Zone ID strings are decoded on first use and kept.
+ *
+ * {@link #withCellCache} adds a per-cell cache of lookup answers on top of the same
+ * sections, for fleets that keep reporting from the same areas.
+ */
+public final class ZoneIndex {
+
+    /**
+     * Smallest cell edge of {@link #withCellCache}, in degrees (about 1 cm). A cell ID
+     * packs the row and column into 32 bits each, and below 360 / 2^32 degrees two
+     * columns 360 degrees apart would share an ID.
+     */
+    public static final double MIN_CELL_SIZE = 1e-7;
+
+    // Length of one degree of latitude, and of longitude at the equator
+    private static final double METERS_PER_DEGREE = 111_320;
+    private static final byte SOLO = 1;
+    private static final byte OVERLAPPED = 2;
+
+    private final int size;
+    private final Ints keys;
+    // First ring of each zone, plus the total ring count
+    private final Ints zoneRings;
+    // First vertex of each ring, plus the total vertex count
+    private final Ints ringStarts;
+    // x, y of every vertex, ring after ring
+    private final Doubles coords;
+    // UTF-8 zone IDs back to back, and the offset of each, plus the total length
+    private final ByteBuffer idBytes;
+    private final Ints idOffsets;
+    // Open addressing on String.hashCode: position + 1 of the zone, 0 for an empty slot
+    private final Ints idTable;
+    private final PackedRTree tree;
+    private final PackedRTree.ItemPredicate containment;
+    // Strings are immutable, so racing decodes of the same ID are harmless
+    private final String[] zoneIds;
+    // Null unless created by withCellCache
+    private final CellCache cells;
+    // Built by the first lookup with a previous membership
+    private volatile SoloZones soloZones;
+
+    /**
+     * Index whose zone keys are the list positions.
+     */
+    public ZoneIndex(List<Zone> zones) {
+        this(zones, positions(zones.size()));
+    }
+
+    /**
+     * @param keys membership key of each zone, strictly increasing
+     */
+    public ZoneIndex(List<Zone> zones, int[] keys) {
+        this(zones.stream().map(Zone::getZoneId).toArray(String[]::new), toPolygons(zones), keys);
+    }
+
+    /**
+     * Index over rings that are already flattened, such as those of a bulk import.
+     *
+     * @param zoneIds unique zone IDs in registration order
+     * @param keys membership key of each zone, strictly increasing
+     */
+    public ZoneIndex(String[] zoneIds, FlatPolygon[] polygons, int[] keys) {
+        this(Packed.of(zoneIds, polygons, keys));
+    }
+
+    private ZoneIndex(Packed packed) {
+        this(packed.size, packed.keys, packed.zoneRings, packed.rings, packed.coords, packed.idOffsets, packed.ids,
+                packed.idTable, packed.tree, packed.zoneIds);
+    }
+
+    /**
+     * Index over the buffers of an earlier build, such as those mapped by {@link ZoneIndexFile}.
+     */
+    ZoneIndex(int size, IntBuffer keys, IntBuffer zoneRings, IntBuffer ringStarts, DoubleBuffer coords,
+              IntBuffer idOffsets, ByteBuffer idBytes, IntBuffer idTable, PackedRTree tree) {
+        this(size, Ints.of(keys), Ints.of(zoneRings), Ints.of(ringStarts), Doubles.of(coords), Ints.of(idOffsets),
+                idBytes, Ints.of(idTable), tree, null);
+    }
+
+    private ZoneIndex(int size, Ints keys, Ints zoneRings, Ints ringStarts, Doubles coords, Ints idOffsets,
+                      ByteBuffer idBytes, Ints idTable, PackedRTree tree, String[] zoneIds) {
+        int tableSize = idTable.length();
+        if (keys.length() != size || zoneRings.length() != size + 1
+                || ringStarts.length() != zoneRings.get(size) + 1
+                || 2L * ringStarts.get(ringStarts.length() - 1) != coords.length() || idOffsets.length() != size + 1
+                || tableSize <= size || Integer.bitCount(tableSize) != 1 || tree.size() != size) {
+            throw new IllegalArgumentException("Inconsistent zone index layout for " + size + " zones");
+        }
+        this.size = size;
+        this.keys = keys;
+        this.zoneRings = zoneRings;
+        this.ringStarts = ringStarts;
+        this.coords = coords;
+        this.idOffsets = idOffsets;
+        this.idBytes = idBytes;
+        this.idTable = idTable;
+        this.tree = tree;
+        this.zoneIds = zoneIds != null ? zoneIds : new String[size];
+        Ints rings = this.zoneRings;
+        Ints starts = this.ringStarts;
+        Doubles vertices = this.coords;
+        // The tree has already checked the zone's bounding box
+        this.containment = (item, x, y) ->
+                FlatPolygon.contains(vertices, starts, rings.get(item), rings.get(item + 1), x, y);
+        this.cells = null;
+    }
+
+    private ZoneIndex(ZoneIndex source, CellCache cells) {
+        this.size = source.size;
+        this.keys = source.keys;
+        this.zoneRings = source.zoneRings;
+        this.ringStarts = source.ringStarts;
+        this.coords = source.coords;
+        this.idOffsets = source.idOffsets;
+        this.idBytes = source.idBytes;
+        this.idTable = source.idTable;
+        this.tree = source.tree;
+        this.zoneIds = source.zoneIds;
+        this.containment = source.containment;
+        this.cells = cells;
+    }
+
+    /**
+     * Returns an index over the same zones that remembers, per square cell of
+     * {@code cellSize} degrees, which zones cover the whole cell. Lookups in a cached
+     * cell that no zone edge crosses skip the R-tree and the polygon tests; lookups near
+     * an edge still run them, so answers are exactly those of this index. At most about
+     * {@code maxCells} cells are kept, a new cell replacing an older one on collision.
+     * The cache belongs to the returned index and is dropped with it.
+     *
+     * @param cellSize at least {@link #MIN_CELL_SIZE}
+     * @param stats counters to add this cache's lookups to, shared across indexes
+     */
+    public ZoneIndex withCellCache(double cellSize, int maxCells, CellCacheStats stats) {
+        return new ZoneIndex(this, new CellCache(tree, coords, zoneRings, ringStarts, keys, cellSize, maxCells, stats));
+    }
+
+    public int size() {
+        return size;
+    }
+
+    /**
+     * Returns the ID of the first zone that contains or touches the point, or null.
+     */
+    public String detect(double lat, double lon) {
+        if (cells != null) {
+            CellCache.Cell cell = cells.lookup(lon, lat);
+            if (!cell.isBoundary()) {
+                return cell.first < 0 ? null : zoneIdAt(cell.first);
+            }
+        }
+        int match = tree.findFirst(lon, lat, containment); // x=lon, y=lat as in JTS
+        return match < 0 ? null : zoneIdAt(match);
+    }
+
+    /**
+     * Returns the keys of every zone that contains or touches the point, ascending,
+     * so the first key (if any) belongs to the zone {@link #detect} returns.
+     * The array must not be modified: an empty result is shared, and so is every
+     * result answered from the cell cache.
+     */
+    public int[] detectAll(double lat, double lon) {
+        if (cells != null) {
+            CellCache.Cell cell = cells.lookup(lon, lat);
+            if (!cell.isBoundary()) {
+                return cell.keys;
+            }
+        }
+        int[] matches = tree.findAll(lon, lat, containment);
+        // Item ids are positions; keys increase with position, so the order is kept
+        for (int i = 0; i < matches.length; i++) {
+            matches[i] = keys.get(matches[i]);
+        }
+        return matches;
+    }
+
+    /**
+     * Same as {@link #detectAll(double, double)}, for a point whose last known
+     * membership was {@code previous}. Most pings land in the zone of the ping before:
+     * when {@code previous} is a single zone whose bounding box overlaps no other zone's,
+     * a point inside that zone cannot be in any other, so one box test and one ring test
+     * answer the lookup and {@code previous} itself is returned. Any other case runs the
+     * full lookup, so the answer never depends on {@code previous}.
+     */
+    public int[] detectAll(double lat, double lon, int[] previous) {
+        if (previous != null && previous.length == 1) {
+            int position = positionOfKey(previous[0]);
+            if (position >= 0 && soloZones().contains(position, lon, lat)) {
+                return previous;
+            }
+        }
+        return detectAll(lat, lon);
+    }
+
+    /**
+     * Returns whether the point is inside the zone with this key or within
+     * {@code meters} of its boundary, holes included, or false if the zone is not in
+     * the index. Distances use a flat projection around the point, which is accurate to
+     * well under a meter over the few tens of meters of a GPS error.
+     */
+    public boolean isWithinDistance(int key, double lat, double lon, double meters) {
+        int position = positionOfKey(key);
+        if (position < 0) {
+            return false;
+        }
+        int fromRing = zoneRings.get(position);
+        int toRing = zoneRings.get(position + 1);
+        if (FlatPolygon.contains(coords, ringStarts, fromRing, toRing, lon, lat)) {
+            return true;
+        }
+        double scaleX = METERS_PER_DEGREE * Math.cos(Math.toRadians(lat));
+        double limit = meters * meters;
+        for (int ring = fromRing; ring < toRing; ring++) {
+            int from = ringStarts.get(ring);
+            int to = ringStarts.get(ring + 1);
+            // Vertices relative to the point, in meters
+            double x1 = (coords.get(2 * from) - lon) * scaleX;
+            double y1 = (coords.get(2 * from + 1) - lat) * METERS_PER_DEGREE;
+            for (int i = from + 1; i < to; i++) {
+                double x2 = (coords.get(2 * i) - lon) * scaleX;
+                double y2 = (coords.get(2 * i + 1) - lat) * METERS_PER_DEGREE;
+                double dx = x2 - x1;
+                double dy = y2 - y1;
+                double length = dx * dx + dy * dy;
+                // Closest point of the segment to the origin
+                double t = length == 0 ? 0 : Math.max(0, Math.min(1, -(x1 * dx + y1 * dy) / length));
+                double px = x1 + t * dx;
+                double py = y1 + t * dy;
+                if (px * px + py * py <= limit) {
+                    return true;
+                }
+                x1 = x2;
+                y1 = y2;
+            }
+        }
+        return false;
+    }
+
+    /**
+     * Returns the ID of the zone with this key, or null if it is not in the index.
+     */
+    public String zoneId(int key) {
+        int position = positionOfKey(key);
+        return position < 0 ? null : zoneIdAt(position);
+    }
+
+    private int positionOfKey(int key) {
+        int low = 0;
+        int high = size - 1;
+        while (low <= high) {
+            int mid = (low + high) >>> 1;
+            int midKey = keys.get(mid);
+            if (midKey < key) {
+                low = mid + 1;
+            } else if (midKey > key) {
+                high = mid - 1;
+            } else {
+                return mid;
+            }
+        }
+        return -1;
+    }
+
+    /**
+     * Returns the key of the zone with this ID, or -1 if it is not in the index.
+     */
+    public int key(String zoneId) {
+        int position = position(zoneId);
+        return position < 0 ? -1 : keys.get(position);
+    }
+
+    /**
+     * Returns the ID of the zone at this position in registration order.
+     */
+    public String zoneIdAt(int position) {
+        String zoneId = zoneIds[position];
+        if (zoneId == null) {
+            int start = idOffsets.get(position);
+            byte[] utf8 = new byte[idOffsets.get(position + 1) - start];
+            idBytes.get(start, utf8);
+            zoneId = new String(utf8, StandardCharsets.UTF_8);
+            zoneIds[position] = zoneId;
+        }
+        return zoneId;
+    }
+
+    /**
+     * Returns a copy of the rings of the zone with this ID, or null if it is not in the index.
+     */
+    public FlatPolygon polygon(String zoneId) {
+        int position = position(zoneId);
+        return position < 0 ? null : polygonAt(position);
+    }
+
+    /**
+     * Returns a copy of the rings of the zone at this position.
+     */
+    public FlatPolygon polygonAt(int position) {
+        return new FlatPolygon(coords, ringStarts, zoneRings.get(position), zoneRings.get(position + 1));
+    }
+
+    public int vertexCount() {
+        return ringStarts.get(ringCount());
+    }
+
+    int ringCount() {
+        return zoneRings.get(size);
+    }
+
+    /**
+     * Bytes taken by the index's buffers, about the size of its {@link ZoneIndexFile}.
+     * They are on the heap for a built index and off-heap for a mapped one.
+     */
+    public long sizeInBytes() {
+        return tree.sizeInBytes() + (long) Double.BYTES * coords.length() + idBytes.capacity()
+                + (long) Integer.BYTES * (keys.length() + zoneRings.length() + ringStarts.length()
+                + idOffsets.length() + idTable.length());
+    }
+
+    PackedRTree tree() {
+        return tree;
+    }
+
+    // Sections for ZoneIndexFile; duplicates leave the shared buffers' positions alone
+    IntBuffer keys() {
+        return keys.asBuffer();
+    }
+
+    IntBuffer zoneRings() {
+        return zoneRings.asBuffer();
+    }
+
+    IntBuffer ringStarts() {
+        return ringStarts.asBuffer();
+    }
+
+    DoubleBuffer coords() {
+        return coords.asBuffer();
+    }
+
+    IntBuffer idOffsets() {
+        return idOffsets.asBuffer();
+    }
+
+    ByteBuffer idBytes() {
+        return idBytes.duplicate();
+    }
+
+    IntBuffer idTable() {
+        return idTable.asBuffer();
+    }
+
+    private int position(String zoneId) {
+        int mask = idTable.length() - 1;
+        for (int slot = spread(zoneId.hashCode()) & mask; ; slot = (slot + 1) & mask) {
+            int entry = idTable.get(slot);
+            if (entry == 0) {
+                return -1;
+            }
+            if (zoneIdAt(entry - 1).equals(zoneId)) {
+                return entry - 1;
+            }
+        }
+    }
+
+    private SoloZones soloZones() {
+        SoloZones solo = soloZones;
+        if (solo == null) {
+            solo = new SoloZones();
+            soloZones = solo;
+        }
+        return solo;
+    }
+
+    private static int spread(int hash) {
+        return hash ^ (hash >>> 16);
+    }
+
+    // Flattening is independent per zone, so large zone sets use every core
+    private static FlatPolygon[] toPolygons(List<Zone> zones) {
+        FlatPolygon[] polygons = new FlatPolygon[zones.size()];
+        IntStream positions = IntStream.range(0, polygons.length);
+        (polygons.length >= PackedRTree.PARALLEL_THRESHOLD ? positions.parallel() : positions)
+                .forEach(i -> polygons[i] = new FlatPolygon(zones.get(i).getPolygon()));
+        return polygons;
+    }
+
+    private static int[] positions(int n) {
+        int[] positions = new int[n];
+        for (int i = 0; i < n; i++) {
+            positions[i] = i;
+        }
+        return positions;
+    }
+
+    /**
+     * Zones that no other zone's bounding box overlaps, found zone by zone as lookups
+     * need them. Racing checks of the same zone store the same answer.
+     */
+    private final class SoloZones {
+
+        private final int[] leaves = tree.leafPositions();
+        // Per position: 0 until checked, then SOLO or OVERLAPPED
+        private final byte[] overlap = new byte[size];
+
+        boolean contains(int position, double x, double y) {
+            int leaf = leaves[position];
+            if (!tree.leafContains(leaf, x, y)) {
+                return false;
+            }
+            byte state = overlap[position];
+            if (state == 0) {
+                state = tree.leafOverlapsOthers(leaf) ? OVERLAPPED : SOLO;
+                overlap[position] = state;
+            }
+            return state == SOLO && FlatPolygon.contains(coords, ringStarts, zoneRings.get(position),
+                    zoneRings.get(position + 1), x, y);
+        }
+    }
+
+    /**
+     * Sections of a new index, packed from flattened rings into heap arrays.
+     */
+    private record Packed(int size, Ints keys, Ints zoneRings, Ints rings, Doubles coords, Ints idOffsets,
+                          ByteBuffer ids, Ints idTable, PackedRTree tree, String[] zoneIds) {
+
+        static Packed of(String[] zoneIds, FlatPolygon[] polygons, int[] keys) {
+            int n = zoneIds.length;
+            if (polygons.length != n || keys.length != n) {
+                throw new IllegalArgumentException("Expected " + n + " polygons and zone keys, got "
+                        + polygons.length + " and " + keys.length);
+            }
+            for (int i = 1; i < n; i++) {
+                if (keys[i] <= keys[i - 1]) {
+                    throw new IllegalArgumentException("Zone keys must be strictly increasing");
+                }
+            }
+
+            int[] zoneRings = new int[n + 1];
+            long rings = 0;
+            long vertices = 0;
+            for (int i = 0; i < n; i++) {
+                zoneRings[i] = (int) rings;
+                rings += polygons[i].getRingCount();
+                vertices += polygons[i].getVertexCount();
+                // Each section of a ZoneIndexFile is limited to 2 GB
+                if (vertices > Integer.MAX_VALUE / 2 / Double.BYTES) {
+                    throw new IllegalArgumentException("Too many vertices for one zone index: " + vertices);
+                }
+            }
+            zoneRings[n] = (int) rings;
+            int[] ringStarts = new int[(int) rings + 1];
+            int ring = 0;
+            int vertex = 0;
+            for (int i = 0; i < n; i++) {
+                FlatPolygon polygon = polygons[i];
+                for (int r = 0; r < polygon.getRingCount(); r++) {
+                    ringStarts[ring++] = vertex + polygon.getRingStart(r);
+                }
+                vertex += polygon.getVertexCount();
+            }
+            ringStarts[ring] = vertex;
+            double[] coords = new double[(int) vertices * 2];
+            double[] minX = new double[n];
+            double[] minY = new double[n];
+            double[] maxX = new double[n];
+            double[] maxY = new double[n];
+            for (int i = 0; i < n; i++) {
+                FlatPolygon polygon = polygons[i];
+                polygon.copyTo(coords, ringStarts[zoneRings[i]]);
+                minX[i] = polygon.getMinX();
+                minY[i] = polygon.getMinY();
+                maxX[i] = polygon.getMaxX();
+                maxY[i] = polygon.getMaxY();
+            }
+            PackedRTree tree = new PackedRTree(minX, minY, maxX, maxY, PackedRTree.DEFAULT_NODE_SIZE);
+
+            byte[][] utf8 = new byte[n][];
+            int[] idOffsets = new int[n + 1];
+            long idLength = 0;
+            for (int i = 0; i < n; i++) {
+                utf8[i] = zoneIds[i].getBytes(StandardCharsets.UTF_8);
+                idOffsets[i] = (int) idLength;
+                idLength += utf8[i].length;
+                if (idLength > Integer.MAX_VALUE) {
+                    throw new IllegalArgumentException("Zone IDs too long for one zone index");
+                }
+            }
+            idOffsets[n] = (int) idLength;
+            byte[] ids = new byte[(int) idLength];
+            for (int i = 0; i < n; i++) {
+                System.arraycopy(utf8[i], 0, ids, idOffsets[i], utf8[i].length);
+            }
+
+            // At most half full, so probes stay short
+            int tableSize = Integer.highestOneBit(Math.max(1, n) * 2 - 1) << 1;
+            int[] idTable = new int[tableSize];
+            int mask = tableSize - 1;
+            for (int i = 0; i < n; i++) {
+                int slot = spread(zoneIds[i].hashCode()) & mask;
+                while (idTable[slot] != 0) {
+                    slot = (slot + 1) & mask;
+                }
+                idTable[slot] = i + 1;
+            }
+            return new Packed(n, Ints.of(keys.clone()), Ints.of(zoneRings), Ints.of(ringStarts), Doubles.of(coords),
+                    Ints.of(idOffsets), ByteBuffer.wrap(ids), Ints.of(idTable), tree, zoneIds.clone());
+        }
+    }
+}
@@ -0,0 +1,216 @@
+package com.geofence.service.geo;
+
+import java.io.IOException;
+import java.nio.Buffer;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.DoubleBuffer;
+import java.nio.IntBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.AtomicMoveNotSupportedException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+
+/**
+ * Binary snapshot of a {@link ZoneIndex}, written once by an offline compile and
+ * memory-mapped at startup.
+ *
+ * The file is the index's buffers back to back, so {@link #map} only reads the header
+ * and maps each section, and the index then reads the mapping directly: startup does
+ * not depend on the number of zones, and the index is paged in by the OS instead of
+ * taking Java heap. Layout, little-endian,
+ * every section starting at a multiple of 8 bytes:
+ * <pre>
+ *   header      magic "GZIX", version, zone count, R-tree node size, tree levels,
+ *               tree nodes, vertices, zone ID bytes, ID table slots, rings (4 bytes each)
+ *   levels      int[levels]          end of each tree level
+ *   boxes       double[4 * nodes]    minX, minY, maxX, maxY of each tree node
+ *   nodes       int[nodes]           item id of each leaf, first child of each inner node
+ *   keys        int[zones]           zone key, strictly increasing
+ *   zone rings  int[zones + 1]       first ring of each zone
+ *   rings       int[rings + 1]       first vertex of each ring
+ *   coords      double[2 * vertices] lon, lat of every vertex
+ *   id offsets  int[zones + 1]       start of each zone ID in the ID bytes
+ *   id table    int[slots]           open-addressing table of zone positions + 1
+ *   id bytes    byte[]               UTF-8 zone IDs
+ * </pre>
+ * A section is at most 2 GB, so an index holds up to about 130 million vertices.
+ */
+public final class ZoneIndexFile {
+
+    public static final String EXTENSION = ".zidx";
+    public static final int VERSION = 2;
+
+    private static final int MAGIC = 0x58495A47; // "GZIX" read as a little-endian int
+    private static final int HEADER_BYTES = 40;
+    private static final int CHUNK_BYTES = 1 << 16;
+
+    private ZoneIndexFile() {
+    }
+
+    public static boolean isIndexFile(Path path) {
+        return path.getFileName().toString().endsWith(EXTENSION);
+    }
+
+    /**
+     * Writes the index to a temporary file next to {@code path} and moves it into place,
+     * so a replica starting meanwhile never maps a partly written file.
+     */
+    public static void write(ZoneIndex index, Path path) throws IOException {
+        PackedRTree tree = index.tree();
+        int[] levelBounds = tree.levelBounds();
+        ByteBuffer header = ByteBuffer.allocate(HEADER_BYTES).order(ByteOrder.LITTLE_ENDIAN)
+                .putInt(MAGIC)
+                .putInt(VERSION)
+                .putInt(index.size())
+                .putInt(tree.nodeSize())
+                .putInt(levelBounds.length)
+                .putInt(levelBounds[levelBounds.length - 1])
+                .putInt(index.vertexCount())
+                .putInt(index.idBytes().capacity())
+                .putInt(index.idTable().capacity())
+                .putInt(index.ringCount())
+                .flip();
+
+        Path absolute = path.toAbsolutePath();
+        // Not Files.createTempFile, whose owner-only permissions would hide the file from replicas
+        Path temp = absolute.resolveSibling(absolute.getFileName() + ".tmp");
+        try {
+            try (FileChannel channel = FileChannel.open(temp, StandardOpenOption.CREATE,
+                    StandardOpenOption.TRUNCATE_EXISTING, StandardOpenOption.WRITE)) {
+                writeFully(channel, header);
+                for (Buffer section : new Buffer[]{IntBuffer.wrap(levelBounds), tree.boxes(), tree.indices(),
+                        index.keys(), index.zoneRings(), index.ringStarts(), index.coords(), index.idOffsets(), index.idTable(),
+                        index.idBytes()}) {
+                    // Zero padding rather than a seek, so the file also ends on the last section
+                    long position = channel.position();
+                    writeFully(channel, ByteBuffer.allocate((int) (align(position) - position)));
+                    writeSection(channel, section.clear());
+                }
+                channel.force(true);
+            }
+            try {
+                Files.move(temp, absolute, StandardCopyOption.ATOMIC_MOVE, StandardCopyOption.REPLACE_EXISTING);
+            } catch (AtomicMoveNotSupportedException e) {
+                Files.move(temp, absolute, StandardCopyOption.REPLACE_EXISTING);
+            }
+        } finally {
+            Files.deleteIfExists(temp);
+        }
+    }
+
+    /**
+     * Maps a file written by {@link #write}. Only the header and level bounds are read;
+     * everything else stays in the mapping, which lives as long as the returned index.
+     */
+    public static ZoneIndex map(Path path) throws IOException {
+        try (FileChannel channel = FileChannel.open(path, StandardOpenOption.READ)) {
+            ByteBuffer header = ByteBuffer.allocate(HEADER_BYTES).order(ByteOrder.LITTLE_ENDIAN);
+            int read = 0;
+            while (header.hasRemaining() && read >= 0) {
+                read = channel.read(header);
+            }
+            if (header.hasRemaining() || header.getInt(0) != MAGIC) {
+                throw new IOException(path + " is not a compiled zone index");
+            }
+            int version = header.getInt(4);
+            if (version != VERSION) {
+                throw new IOException(path + " is zone index version " + version + ", expected " + VERSION
+                        + "; recompile it");
+            }
+            int zones = header.getInt(8);
+            int nodeSize = header.getInt(12);
+            int levelCount = header.getInt(16);
+            int nodes = header.getInt(20);
+            int vertices = header.getInt(24);
+            int idLength = header.getInt(28);
+            int tableSize = header.getInt(32);
+            int ringCount = header.getInt(36);
+            if (zones < 0 || levelCount < 1 || levelCount > 32 || nodes < 0 || vertices < 0 || idLength < 0
+                    || tableSize < 1 || ringCount < 0) {
+                throw new IOException(path + " has a corrupt zone index header");
+            }
+
+            Sections sections = new Sections(channel, HEADER_BYTES);
+            int[] levelBounds = new int[levelCount];
+            sections.next((long) levelCount * Integer.BYTES).asIntBuffer().get(levelBounds);
+            DoubleBuffer boxes = sections.next((long) nodes * 4 * Double.BYTES).asDoubleBuffer();
+            IntBuffer indices = sections.next((long) nodes * Integer.BYTES).asIntBuffer();
+            IntBuffer keys = sections.next((long) zones * Integer.BYTES).asIntBuffer();
+            IntBuffer zoneRings = sections.next((long) (zones + 1) * Integer.BYTES).asIntBuffer();
+            IntBuffer rings = sections.next((long) (ringCount + 1) * Integer.BYTES).asIntBuffer();
+            DoubleBuffer coords = sections.next((long) vertices * 2 * Double.BYTES).asDoubleBuffer();
+            IntBuffer idOffsets = sections.next((long) (zones + 1) * Integer.BYTES).asIntBuffer();
+            IntBuffer idTable = sections.next((long) tableSize * Integer.BYTES).asIntBuffer();
+            ByteBuffer ids = sections.next(idLength);
+            if (sections.end != channel.size()) {
+                throw new IOException(path + " is " + channel.size() + " bytes, its header describes "
+                        + sections.end);
+            }
+            try {
+                PackedRTree tree = new PackedRTree(nodeSize, zones, levelBounds, boxes, indices);
+                return new ZoneIndex(zones, keys, zoneRings, rings, coords, idOffsets, ids, idTable, tree);
+            } catch (IllegalArgumentException e) {
+                throw new IOException(path + " is not a consistent zone index: " + e.getMessage(), e);
+            }
+        }
+    }
+
+    // Encodes a section in file byte order through a small chunk, whatever buffer backs it
+    private static void writeSection(FileChannel channel, Buffer section) throws IOException {
+        if (section instanceof ByteBuffer bytes) {
+            writeFully(channel, bytes);
+            return;
+        }
+        ByteBuffer chunk = ByteBuffer.allocate(CHUNK_BYTES).order(ByteOrder.LITTLE_ENDIAN);
+        while (section.hasRemaining()) {
+            chunk.clear();
+            int count;
+            if (section instanceof DoubleBuffer doubles) {
+                count = Math.min(doubles.remaining(), CHUNK_BYTES / Double.BYTES);
+                chunk.asDoubleBuffer().put(0, doubles, doubles.position(), count);
+                chunk.limit(count * Double.BYTES);
+            } else {
+                IntBuffer ints = (IntBuffer) section;
+                count = Math.min(ints.remaining(), CHUNK_BYTES / Integer.BYTES);
+                chunk.asIntBuffer().put(0, ints, ints.position(), count);
+                chunk.limit(count * Integer.BYTES);
+            }
+            section.position(section.position() + count);
+            writeFully(channel, chunk);
+        }
+    }
+
+    private static void writeFully(FileChannel channel, ByteBuffer bytes) throws IOException {
+        while (bytes.hasRemaining()) {
+            channel.write(bytes);
+        }
+    }
+
+    private static long align(long position) {
+        return (position + 7) & ~7L;
+    }
+
+    // Maps consecutive aligned sections of the file, checking they fit
+    private static final class Sections {
+
+        private final FileChannel channel;
+        private long end;
+
+        Sections(FileChannel channel, long start) {
+            this.channel = channel;
+            this.end = start;
+        }
+
+        ByteBuffer next(long bytes) throws IOException {
+            long start = align(end);
+            if (bytes > Integer.MAX_VALUE || start + bytes > channel.size()) {
+                throw new IOException("Zone index is truncated");
+            }
+            end = start + bytes;
+            return channel.map(FileChannel.MapMode.READ_ONLY, start, bytes).order(ByteOrder.LITTLE_ENDIAN);
+        }
+    }
+}
@@ -0,0 +1,291 @@
+package com.geofence.service.metrics;
+
+import com.geofence.service.geo.CellCacheStats;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.DistributionSummary;
+import io.micrometer.core.instrument.FunctionCounter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import java.util.Collection;
+import java.util.EnumMap;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.ToDoubleFunction;
+
+/**
+ * Domain metrics for the geofence pipeline.
+ *
+ * Every meter on the per-event path is registered up front and held in a field, so
+ * recording is a {@code System.nanoTime()} delta plus a lock-free update, with no tag
+ * lookups or allocations. Timers publish percentile histograms for p99 SLOs.
+ */
+@Component
+public class GeofenceMetrics {
+
+    public enum Stage {
+        DETECT, STATE_READ, STATE_WRITE
+    }
+
+    public enum RedisOperation {
+        GET, GET_ALL, SAVE, SAVE_ALL, TOUCH, TOUCH_ALL, ADVANCE, ADVANCE_ALL
+    }
+
+    /**
+     * Why an event was dropped without a state write or transition.
+     */
+    public enum IgnoredEvent {
+        // Older than the vehicle's stored state
+        STALE,
+        // Same timestamp as the vehicle's stored state
+        DUPLICATE,
+        // Another replica stored a state at least as new between the read and the write
+        SUPERSEDED
+    }
+
+    private static final String NO_ZONE = "none";
+    private static final String OVERFLOW = "other";
+
+    private final MeterRegistry registry;
+    private final int maxZonePairs;
+
+    private final Timer process;
+    private final Timer batch;
+    private final DistributionSummary batchSize;
+    private final Map<Stage, Timer> singleStages = new EnumMap<>(Stage.class);
+    private final Map<Stage, Timer> batchStages = new EnumMap<>(Stage.class);
+    private final Map<RedisOperation, Timer> redis = new EnumMap<>(RedisOperation.class);
+    private final Map<IgnoredEvent, Counter> ignored = new EnumMap<>(IgnoredEvent.class);
+    private final Counter cacheHits;
+    private final Counter cacheMisses;
+    private final Counter ingestRejected;
+    private final Counter subscriberDropped;
+    private final Counter subscriberDisconnected;
+    private final Timer transitionLogWrite;
+    private final Counter transitionLogAppended;
+    private final Counter transitionLogDropped;
+    private final Timer occupancyFlush;
+
+    // from zone -> to zone -> counter, registered on first sight and capped in number
+    private final ConcurrentMap<String, ConcurrentMap<String, Counter>> transitions = new ConcurrentHashMap<>();
+    private final AtomicInteger zonePairs = new AtomicInteger();
+    private final Counter overflowTransitions;
+
+    public GeofenceMetrics(MeterRegistry registry,
+                           @Value("${geofence.metrics.max-zone-pairs:10000}") int maxZonePairs) {
+        this.registry = registry;
+        this.maxZonePairs = maxZonePairs;
+
+        this.process = timer("geofence.process", "End-to-end processing of one location event").register(registry);
+        this.batch = timer("geofence.process.batch", "End-to-end processing of one event batch").register(registry);
+        this.batchSize = DistributionSummary.builder("geofence.process.batch.size")
+                .description("Events per batch")
+                .publishPercentileHistogram()
+                .register(registry);
+        for (Stage stage : Stage.values()) {
+            String name = stage.name().toLowerCase();
+            singleStages.put(stage, timer("geofence.process.stage", "Time spent per processing stage")
+                    .tag("stage", name).tag("mode", "single").register(registry));
+            batchStages.put(stage, timer("geofence.process.stage", "Time spent per processing stage")
+                    .tag("stage", name).tag("mode", "batch").register(registry));
+        }
+        for (RedisOperation operation : RedisOperation.values()) {
+            redis.put(operation, timer("geofence.redis", "Round trip of vehicle state operations against Redis")
+                    .tag("operation", operation.name().toLowerCase()).register(registry));
+        }
+        for (IgnoredEvent reason : IgnoredEvent.values()) {
+            ignored.put(reason, Counter.builder("geofence.events.ignored")
+                    .description("Events dropped as out of order or duplicate")
+                    .tag("reason", reason.name().toLowerCase())
+                    .register(registry));
+        }
+        this.cacheHits = Counter.builder("geofence.state.cache.requests")
+                .description("Vehicle state lookups served by the in-process cache")
+                .tag("result", "hit")
+                .register(registry);
+        this.cacheMisses = Counter.builder("geofence.state.cache.requests")
+                .description("Vehicle state lookups served by the in-process cache")
+                .tag("result", "miss")
+                .register(registry);
+        this.ingestRejected = Counter.builder("geofence.ingest.rejected")
+                .description("Events rejected because their ingestion shard was full")
+                .register(registry);
+        this.subscriberDropped = Counter.builder("geofence.transitions.subscriber.dropped")
+                .description("Transitions dropped because a subscriber's buffer was full")
+                .register(registry);
+        this.subscriberDisconnected = Counter.builder("geofence.transitions.subscriber.disconnected")
+                .description("Subscribers disconnected because their buffer was full")
+                .register(registry);
+        this.transitionLogWrite = timer("geofence.transitions.log.write",
+                "Round trip of one pipelined batch of transition log appends").register(registry);
+        this.transitionLogAppended = Counter.builder("geofence.transitions.log.appended")
+                .description("Transitions written to the transition log")
+                .register(registry);
+        this.transitionLogDropped = Counter.builder("geofence.transitions.log.dropped")
+                .description("Transitions not logged because the log buffer was full")
+                .register(registry);
+        this.occupancyFlush = timer("geofence.occupancy.flush",
+                "Round trip of one pipelined flush of occupancy and dwell deltas").register(registry);
+        this.overflowTransitions = transitionCounter(OVERFLOW, OVERFLOW);
+    }
+
+    public void recordProcess(long nanos) {
+        process.record(nanos, TimeUnit.NANOSECONDS);
+    }
+
+    public void recordBatch(int size, long nanos) {
+        batch.record(nanos, TimeUnit.NANOSECONDS);
+        batchSize.record(size);
+    }
+
+    public void recordStage(Stage stage, long nanos) {
+        singleStages.get(stage).record(nanos, TimeUnit.NANOSECONDS);
+    }
+
+    public void recordBatchStage(Stage stage, long nanos) {
+        batchStages.get(stage).record(nanos, TimeUnit.NANOSECONDS);
+    }
+
+    public void recordRedis(RedisOperation operation, long nanos) {
+        redis.get(operation).record(nanos, TimeUnit.NANOSECONDS);
+    }
+
+    public void recordEventIgnored(IgnoredEvent reason) {
+        ignored.get(reason).increment();
+    }
+
+    public void recordEventsIgnored(IgnoredEvent reason, int events) {
+        ignored.get(reason).increment(events);
+    }
+
+    public void recordCacheHit() {
+        cacheHits.increment();
+    }
+
+    public void recordCacheMiss() {
+        cacheMisses.increment();
+    }
+
+    public void recordIngestRejected(int events) {
+        ingestRejected.increment(events);
+    }
+
+    /**
+     * Publishes the backlog of one ingestion shard.
+     */
+    public void registerIngestQueue(int shard, Collection<?> queue) {
+        Gauge.builder("geofence.ingest.queue.size", queue, Collection::size)
+                .description("Tasks waiting in an ingestion shard")
+                .tag("shard", Integer.toString(shard))
+                .register(registry);
+    }
+
+    /**
+     * Publishes the number of live transition subscribers.
+     */
+    public void registerSubscribers(Collection<?> subscribers) {
+        Gauge.builder("geofence.transitions.subscribers", subscribers, Collection::size)
+                .description("Connected transition stream subscribers")
+                .register(registry);
+    }
+
+    public void recordSubscriberDropped(long transitions) {
+        subscriberDropped.increment(transitions);
+    }
+
+    public void recordSubscriberDisconnected() {
+        subscriberDisconnected.increment();
+    }
+
+    /**
+     * Publishes the number of transitions waiting to be written to the transition log.
+     */
+    public void registerTransitionLogBuffer(Collection<?> buffer) {
+        Gauge.builder("geofence.transitions.log.buffer", buffer, Collection::size)
+                .description("Transitions waiting to be written to the transition log")
+                .register(registry);
+    }
+
+    public void recordTransitionLogWrite(int transitions, long nanos) {
+        transitionLogWrite.record(nanos, TimeUnit.NANOSECONDS);
+        transitionLogAppended.increment(transitions);
+    }
+
+    public void recordTransitionLogDropped(long transitions) {
+        transitionLogDropped.increment(transitions);
+    }
+
+    /**
+     * Publishes the number of zone visits that have started and not ended yet.
+     */
+    public void registerOpenVisits(Map<?, ?> openVisits) {
+        Gauge.builder("geofence.occupancy.open-visits", openVisits, Map::size)
+                .description("Zone visits awaiting an exit to compute their dwell time")
+                .register(registry);
+    }
+
+    /**
+     * Publishes the lookups of the zone index cell cache, by how they were answered.
+     */
+    public void registerZoneCellCache(CellCacheStats stats) {
+        cellCacheCounter(stats, "hit", CellCacheStats::hits);
+        cellCacheCounter(stats, "boundary", CellCacheStats::boundary);
+        cellCacheCounter(stats, "miss", CellCacheStats::misses);
+    }
+
+    private void cellCacheCounter(CellCacheStats stats, String result, ToDoubleFunction<CellCacheStats> count) {
+        FunctionCounter.builder("geofence.zones.cell-cache.requests", stats, count)
+                .description("Zone detections through the cell cache: hit skips the polygon tests, "
+                        + "boundary runs them, miss classifies a new cell")
+                .tag("result", result)
+                .register(registry);
+    }
+
+    public void recordOccupancyFlush(long nanos) {
+        occupancyFlush.record(nanos, TimeUnit.NANOSECONDS);
+    }
+
+    public void recordTransition(String fromZone, String toZone) {
+        String from = fromZone == null ? NO_ZONE : fromZone;
+        String to = toZone == null ? NO_ZONE : toZone;
+        ConcurrentMap<String, Counter> byTarget = transitions.get(from);
+        Counter counter = byTarget == null ? null : byTarget.get(to);
+        if (counter == null) {
+            counter = registerTransition(from, to);
+        }
+        counter.increment();
+    }
+
+    private Counter registerTransition(String from, String to) {
+        ConcurrentMap<String, Counter> byTarget = transitions.computeIfAbsent(from, key -> new ConcurrentHashMap<>());
+        // Bound the tag cardinality; pairs beyond the cap are counted together
+        Counter counter = byTarget.computeIfAbsent(to, key -> {
+            if (zonePairs.incrementAndGet() > maxZonePairs) {
+                zonePairs.decrementAndGet();
+                return null;
+            }
+            return transitionCounter(from, key);
+        });
+        return counter != null ? counter : overflowTransitions;
+    }
+
+    private Counter transitionCounter(String from, String to) {
+        return Counter.builder("geofence.transitions")
+                .description("Zone transitions per (from, to) zone pair")
+                .tag("from", from)
+                .tag("to", to)
+                .register(registry);
+    }
+
+    private static Timer.Builder timer(String name, String description) {
+        return Timer.builder(name)
+                .description(description)
+                .publishPercentileHistogram();
+    }
+}
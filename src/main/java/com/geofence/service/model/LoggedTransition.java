@@ -0,0 +1,19 @@
+package com.geofence.service.model;
+
+import com.fasterxml.jackson.annotation.JsonUnwrapped;
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+/**
+ * A transition read back from the transition log, with its stream entry ID.
+ */
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+public class LoggedTransition {
+    // Redis stream entry ID, {append millis}-{sequence}; also the pagination cursor
+    private String id;
+    @JsonUnwrapped
+    private ZoneTransitionEvent transition;
+}
@@ -0,0 +1,18 @@
+package com.geofence.service.model;
+
+import com.fasterxml.jackson.annotation.JsonInclude;
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.util.List;
+
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+public class TransitionPage {
+    private List<LoggedTransition> transitions;
+    // Pass as cursor to continue after this page; absent once the range is exhausted
+    @JsonInclude(JsonInclude.Include.NON_NULL)
+    private String nextCursor;
+}
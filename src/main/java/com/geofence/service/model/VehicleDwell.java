@@ -0,0 +1,16 @@
+package com.geofence.service.model;
+
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.util.Map;
+
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+public class VehicleDwell {
+    private String vehicleId;
+    // Total time spent in each zone over completed visits, by zone ID
+    private Map<String, Long> dwellMs;
+}
@@ -1,5 +1,6 @@
 package com.geofence.service.model;
 
+import com.fasterxml.jackson.annotation.JsonInclude;
 import lombok.AllArgsConstructor;
 import lombok.Data;
 import lombok.NoArgsConstructor;
@@ -14,4 +15,13 @@ public class VehicleState implements Serializable {
     private String vehicleId;
     private String currentZone;
     private long lastUpdated;
+
+    // Keys of every zone the vehicle is in, ascending (see ZoneIndex#detectAll); treated as
+    // immutable. Null for states written before multi-zone membership was tracked.
+    @JsonInclude(JsonInclude.Include.NON_NULL)
+    private int[] zones;
+
+    public VehicleState(String vehicleId, String currentZone, long lastUpdated) {
+        this(vehicleId, currentZone, lastUpdated, null);
+    }
 }
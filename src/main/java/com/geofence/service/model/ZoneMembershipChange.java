@@ -0,0 +1,54 @@
+package com.geofence.service.model;
+
+import lombok.Getter;
+
+import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * Net change to one vehicle's zone memberships, written to the per-zone reverse index
+ * together with its state: zones entered, with the time of entry, and zones exited.
+ */
+@Getter
+public class ZoneMembershipChange {
+
+    private final Map<String, Long> entered = new LinkedHashMap<>(2);
+    private final Set<String> exited = new LinkedHashSet<>(2);
+
+    /**
+     * Returns the change made by the transition, or null if there is none.
+     */
+    public static ZoneMembershipChange of(ZoneTransitionEvent transition) {
+        if (transition == null) {
+            return null;
+        }
+        ZoneMembershipChange change = new ZoneMembershipChange();
+        change.add(transition);
+        return change;
+    }
+
+    /**
+     * Folds in a later transition of the same vehicle; the last enter or exit of a zone wins.
+     */
+    public void add(ZoneTransitionEvent transition) {
+        for (String zoneId : orEmpty(transition.getExited())) {
+            entered.remove(zoneId);
+            exited.add(zoneId);
+        }
+        for (String zoneId : orEmpty(transition.getEntered())) {
+            exited.remove(zoneId);
+            entered.put(zoneId, transition.getTimestamp());
+        }
+    }
+
+    public boolean isEmpty() {
+        return entered.isEmpty() && exited.isEmpty();
+    }
+
+    private static List<String> orEmpty(List<String> zoneIds) {
+        return zoneIds != null ? zoneIds : List.of();
+    }
+}
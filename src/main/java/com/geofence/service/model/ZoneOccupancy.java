@@ -0,0 +1,20 @@
+package com.geofence.service.model;
+
+import com.fasterxml.jackson.annotation.JsonInclude;
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+public class ZoneOccupancy {
+    private String zoneId;
+    // Vehicles whose latest ping was inside the zone
+    private long vehicles;
+    // Completed visits, i.e. exits matched with their entry, and their total time inside
+    private long visits;
+    private long totalDwellMs;
+    @JsonInclude(JsonInclude.Include.NON_NULL)
+    private Long averageDwellMs;
+}
@@ -1,9 +1,12 @@
 package com.geofence.service.model;
 
+import com.fasterxml.jackson.annotation.JsonInclude;
 import lombok.AllArgsConstructor;
 import lombok.Data;
 import lombok.NoArgsConstructor;
 
+import java.util.List;
+
 @Data
 @NoArgsConstructor
 @AllArgsConstructor
@@ -12,4 +15,14 @@ public class ZoneTransitionEvent {
     private String fromZone;
     private String toZone;
     private long timestamp;
+
+    // Per-zone membership changes; fromZone/toZone only follow the first-registered zone
+    @JsonInclude(JsonInclude.Include.NON_NULL)
+    private List<String> entered;
+    @JsonInclude(JsonInclude.Include.NON_NULL)
+    private List<String> exited;
+
+    public ZoneTransitionEvent(String vehicleId, String fromZone, String toZone, long timestamp) {
+        this(vehicleId, fromZone, toZone, timestamp, null, null);
+    }
 }
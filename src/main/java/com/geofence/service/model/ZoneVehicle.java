@@ -0,0 +1,14 @@
+package com.geofence.service.model;
+
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+public class ZoneVehicle {
+    private String vehicleId;
+    // Timestamp of the event with which the vehicle entered the zone
+    private long enteredAt;
+}
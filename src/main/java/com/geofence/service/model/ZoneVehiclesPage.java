@@ -0,0 +1,21 @@
+package com.geofence.service.model;
+
+import com.fasterxml.jackson.annotation.JsonInclude;
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.util.List;
+
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+public class ZoneVehiclesPage {
+    private String zoneId;
+    // Vehicles in the zone in total, not just on this page
+    private long total;
+    private List<ZoneVehicle> vehicles;
+    // Pass as cursor to continue after this page; absent on the last page
+    @JsonInclude(JsonInclude.Include.NON_NULL)
+    private String nextCursor;
+}
@@ -0,0 +1,89 @@
+package com.geofence.service.repository;
+
+import com.geofence.service.model.VehicleState;
+import org.springframework.core.io.ClassPathResource;
+import org.springframework.data.redis.core.RedisOperations;
+import org.springframework.data.redis.core.script.RedisScript;
+import org.springframework.data.redis.serializer.RedisSerializer;
+
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.function.BiFunction;
+import java.util.function.Function;
+
+/**
+ * {@code redis/advance-state.lua}, which compares a vehicle state with the stored one
+ * and either stores it or returns the stored state, in one atomic step; see
+ * {@link VehicleStateStore#advanceAll}. Like {@link SaveStateScript}, arguments are raw
+ * bytes so both layouts share the script. The reply is all bulk strings, so it passes
+ * through the pipeline's byte array serializer untouched.
+ */
+final class AdvanceStateScript {
+
+    @SuppressWarnings("rawtypes")
+    static final RedisScript<List> SCRIPT = RedisScript.of(new ClassPathResource("redis/advance-state.lua"), List.class);
+    static final RedisSerializer<byte[]> REPLY = RedisSerializer.byteArray();
+
+    // Membership argument of a state that is only compared with, never stored
+    private static final String READ_ONLY = "-";
+    private static final String WRITTEN = "1";
+
+    private AdvanceStateScript() {
+    }
+
+    /**
+     * @param state the state as one value, or as alternating hash fields and values
+     */
+    static List<byte[]> args(VehicleState next, List<byte[]> state) {
+        List<byte[]> args = new ArrayList<>(3 + state.size());
+        args.add(SaveStateScript.bytes(Long.toString(next.getLastUpdated())));
+        args.add(SaveStateScript.bytes(next.getCurrentZone() == null ? "" : next.getCurrentZone()));
+        args.add(SaveStateScript.bytes(
+                next.getZones() == null ? READ_ONLY : HashVehicleStateStore.formatZones(next.getZones())));
+        args.addAll(state);
+        return args;
+    }
+
+    /**
+     * Runs the script for every state in one pipeline.
+     *
+     * @param decode turns the vehicle ID and the stored part of a reply into the stored
+     *               state, null if there is none
+     */
+    @SuppressWarnings("unchecked")
+    static Map<String, VehicleStateStore.Advance> advanceAll(
+            RedisOperations<String, ?> redisTemplate, String keyPrefix, Collection<VehicleState> states,
+            Function<VehicleState, List<byte[]>> stateArgs, BiFunction<String, List<byte[]>, VehicleState> decode) {
+        if (states.isEmpty()) {
+            return Map.of();
+        }
+        List<VehicleState> ordered = List.copyOf(states);
+        List<ScriptPipeline.Call> calls = new ArrayList<>(ordered.size());
+        for (VehicleState state : ordered) {
+            calls.add(new ScriptPipeline.Call(List.of(keyPrefix + state.getVehicleId()),
+                    args(state, stateArgs.apply(state))));
+        }
+        List<Object> replies = ScriptPipeline.execute(redisTemplate, SCRIPT, REPLY, calls);
+
+        Map<String, VehicleStateStore.Advance> advances = new HashMap<>();
+        for (int i = 0; i < ordered.size() && i < replies.size(); i++) {
+            String vehicleId = ordered.get(i).getVehicleId();
+            List<byte[]> reply = (List<byte[]>) replies.get(i);
+            if (WRITTEN.equals(string(reply.get(0)))) {
+                advances.put(vehicleId, new VehicleStateStore.Advance(true, null));
+            } else {
+                advances.put(vehicleId, new VehicleStateStore.Advance(false,
+                        decode.apply(vehicleId, reply.subList(1, reply.size()))));
+            }
+        }
+        return advances;
+    }
+
+    static String string(byte[] value) {
+        return value == null ? null : new String(value, StandardCharsets.UTF_8);
+    }
+}
@@ -0,0 +1,18 @@
+package com.geofence.service.repository;
+
+import java.util.ArrayList;
+import java.util.List;
+
+final class Batches {
+
+    private Batches() {
+    }
+
+    static <T> List<List<T>> partition(List<T> items, int batchSize) {
+        List<List<T>> chunks = new ArrayList<>();
+        for (int from = 0; from < items.size(); from += batchSize) {
+            chunks.add(items.subList(from, Math.min(from + batchSize, items.size())));
+        }
+        return chunks;
+    }
+}
@@ -0,0 +1,246 @@
+package com.geofence.service.repository;
+
+import com.geofence.service.model.VehicleState;
+import com.geofence.service.model.ZoneMembershipChange;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.dao.DataAccessException;
+import org.springframework.data.redis.core.RedisOperations;
+import org.springframework.data.redis.core.SessionCallback;
+import org.springframework.data.redis.core.StringRedisTemplate;
+import org.springframework.stereotype.Repository;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Delta layout: a hash at {@code vstate:{id}} with the zone, the last-seen time and the
+ * comma-separated zone membership keys in separate fields. A same-zone ping is a single {@code HSET vstate:{id} ts <millis>},
+ * without touching the zone or serializing the whole state.
+ *
+ * Uses its own key prefix so it never collides with {@code vehicle:*} string values
+ * written by the default layout. Guarded writes and touches go through the save-state
+ * script, which compares the {@code ts} field.
+ */
+@Repository
+@ConditionalOnProperty(name = "geofence.state.layout", havingValue = "hash")
+public class HashVehicleStateStore implements VehicleStateStore {
+
+    static final String KEY_PREFIX = "vstate:";
+    static final String ZONE_FIELD = "zone";
+    static final String TIMESTAMP_FIELD = "ts";
+    static final String ZONES_FIELD = "zones";
+
+    // Zone IDs are never empty, so an empty field value stands for "outside all zones"
+    private static final String NO_ZONE = "";
+    static final List<Object> FIELDS = List.of(ZONE_FIELD, TIMESTAMP_FIELD, ZONES_FIELD);
+
+    private final StringRedisTemplate redisTemplate;
+    private final boolean guardWrites;
+
+    public HashVehicleStateStore(StringRedisTemplate redisTemplate,
+                                 @Value("${geofence.state.guard-writes:true}") boolean guardWrites) {
+        this.redisTemplate = redisTemplate;
+        this.guardWrites = guardWrites;
+    }
+
+    @Override
+    public VehicleState get(String vehicleId) {
+        List<Object> fields = redisTemplate.opsForHash().multiGet(KEY_PREFIX + vehicleId, FIELDS);
+        return toState(vehicleId, fields);
+    }
+
+    @Override
+    public Map<String, VehicleState> getAll(Collection<String> vehicleIds) {
+        if (vehicleIds.isEmpty()) {
+            return Map.of();
+        }
+        List<String> ids = List.copyOf(vehicleIds);
+        List<Object> replies = redisTemplate.executePipelined(new SessionCallback<Object>() {
+            @Override
+            @SuppressWarnings("unchecked")
+            public <K, V> Object execute(RedisOperations<K, V> operations) throws DataAccessException {
+                RedisOperations<String, String> ops = (RedisOperations<String, String>) operations;
+                for (String id : ids) {
+                    ops.opsForHash().multiGet(KEY_PREFIX + id, FIELDS);
+                }
+                return null;
+            }
+        });
+
+        Map<String, VehicleState> states = new HashMap<>();
+        for (int i = 0; i < ids.size() && i < replies.size(); i++) {
+            VehicleState state = toState(ids.get(i), (List<?>) replies.get(i));
+            if (state != null) {
+                states.put(ids.get(i), state);
+            }
+        }
+        return states;
+    }
+
+    @Override
+    public void save(VehicleState state) {
+        redisTemplate.opsForHash().putAll(KEY_PREFIX + state.getVehicleId(), toFields(state));
+    }
+
+    @Override
+    public void saveAll(Collection<VehicleState> states) {
+        if (states.isEmpty()) {
+            return;
+        }
+        redisTemplate.executePipelined(new SessionCallback<Object>() {
+            @Override
+            @SuppressWarnings("unchecked")
+            public <K, V> Object execute(RedisOperations<K, V> operations) throws DataAccessException {
+                RedisOperations<String, String> ops = (RedisOperations<String, String>) operations;
+                for (VehicleState state : states) {
+                    ops.opsForHash().putAll(KEY_PREFIX + state.getVehicleId(), toFields(state));
+                }
+                return null;
+            }
+        });
+    }
+
+    @Override
+    public void save(VehicleState state, ZoneMembershipChange change) {
+        if (guardWrites) {
+            SaveStateScript.saveGuarded(redisTemplate, KEY_PREFIX, state, change, stateArgs(state));
+            return;
+        }
+        if (!SaveStateScript.hasChange(change)) {
+            save(state);
+            return;
+        }
+        redisTemplate.execute(SaveStateScript.SCRIPT, SaveStateScript.ARGS, SaveStateScript.RESULT,
+                SaveStateScript.keys(KEY_PREFIX + state.getVehicleId(), change),
+                SaveStateScript.args(state.getVehicleId(), change, null, stateArgs(state)).toArray());
+    }
+
+    @Override
+    public void saveAll(Collection<VehicleState> states, Map<String, ZoneMembershipChange> changes) {
+        if (guardWrites) {
+            SaveStateScript.saveAllGuarded(redisTemplate, KEY_PREFIX, states, changes,
+                    HashVehicleStateStore::stateArgs);
+            return;
+        }
+        saveAll(SaveStateScript.saveChanged(redisTemplate, KEY_PREFIX, states, changes,
+                HashVehicleStateStore::stateArgs));
+    }
+
+    static List<byte[]> stateArgs(VehicleState state) {
+        Map<String, String> fields = toFields(state);
+        List<byte[]> args = new ArrayList<>(fields.size() * 2);
+        fields.forEach((field, value) -> {
+            args.add(SaveStateScript.bytes(field));
+            args.add(SaveStateScript.bytes(value));
+        });
+        return args;
+    }
+
+    // Only the timestamp field, as a guarded write's state
+    static List<byte[]> timestampArgs(VehicleState state) {
+        return List.of(SaveStateScript.bytes(TIMESTAMP_FIELD),
+                SaveStateScript.bytes(Long.toString(state.getLastUpdated())));
+    }
+
+    @Override
+    public void touch(VehicleState state) {
+        if (guardWrites) {
+            SaveStateScript.saveGuarded(redisTemplate, KEY_PREFIX, state, null, timestampArgs(state));
+            return;
+        }
+        redisTemplate.opsForHash().put(KEY_PREFIX + state.getVehicleId(), TIMESTAMP_FIELD,
+                Long.toString(state.getLastUpdated()));
+    }
+
+    @Override
+    public void touchAll(Collection<VehicleState> states) {
+        if (states.isEmpty()) {
+            return;
+        }
+        if (guardWrites) {
+            SaveStateScript.saveAllGuarded(redisTemplate, KEY_PREFIX, states, Map.of(),
+                    HashVehicleStateStore::timestampArgs);
+            return;
+        }
+        redisTemplate.executePipelined(new SessionCallback<Object>() {
+            @Override
+            @SuppressWarnings("unchecked")
+            public <K, V> Object execute(RedisOperations<K, V> operations) throws DataAccessException {
+                RedisOperations<String, String> ops = (RedisOperations<String, String>) operations;
+                for (VehicleState state : states) {
+                    ops.opsForHash().put(KEY_PREFIX + state.getVehicleId(), TIMESTAMP_FIELD,
+                            Long.toString(state.getLastUpdated()));
+                }
+                return null;
+            }
+        });
+    }
+
+    @Override
+    public Map<String, Advance> advanceAll(Collection<VehicleState> states) {
+        return AdvanceStateScript.advanceAll(redisTemplate, KEY_PREFIX, states, HashVehicleStateStore::stateArgs,
+                (vehicleId, fields) -> toState(vehicleId, fields.stream().map(AdvanceStateScript::string).toList()));
+    }
+
+    static Map<String, String> toFields(VehicleState state) {
+        Map<String, String> fields = new HashMap<>(4);
+        fields.put(ZONE_FIELD, state.getCurrentZone() == null ? NO_ZONE : state.getCurrentZone());
+        fields.put(TIMESTAMP_FIELD, Long.toString(state.getLastUpdated()));
+        if (state.getZones() != null) {
+            fields.put(ZONES_FIELD, formatZones(state.getZones()));
+        }
+        return fields;
+    }
+
+    static String formatZones(int[] zones) {
+        StringBuilder out = new StringBuilder(zones.length * 4);
+        for (int i = 0; i < zones.length; i++) {
+            if (i > 0) {
+                out.append(',');
+            }
+            out.append(zones[i]);
+        }
+        return out.toString();
+    }
+
+    static int[] parseZones(String value) {
+        if (value.isEmpty()) {
+            return new int[0];
+        }
+        int count = 1;
+        for (int i = 0; i < value.length(); i++) {
+            if (value.charAt(i) == ',') {
+                count++;
+            }
+        }
+        int[] zones = new int[count];
+        int start = 0;
+        for (int i = 0; i < count; i++) {
+            int end = value.indexOf(',', start);
+            if (end < 0) {
+                end = value.length();
+            }
+            zones[i] = Integer.parseInt(value, start, end, 10);
+            start = end + 1;
+        }
+        return zones;
+    }
+
+    static VehicleState toState(String vehicleId, List<?> fields) {
+        if (fields == null || (fields.get(0) == null && fields.get(1) == null)) {
+            return null;
+        }
+        String zone = (String) fields.get(0);
+        String timestamp = (String) fields.get(1);
+        String zones = (String) fields.get(2);
+        return new VehicleState(
+                vehicleId,
+                zone == null || zone.isEmpty() ? null : zone,
+                timestamp == null ? 0L : Long.parseLong(timestamp),
+                zones == null ? null : parseZones(zones));
+    }
+}
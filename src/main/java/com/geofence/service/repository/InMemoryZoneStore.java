@@ -0,0 +1,66 @@
+package com.geofence.service.repository;
+
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.stereotype.Repository;
+
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Process-local zone store for single-instance deployments and tests. Zone changes
+ * are lost on restart and are not shared between replicas.
+ */
+@Repository
+@ConditionalOnProperty(name = "geofence.zones.store", havingValue = "memory")
+public class InMemoryZoneStore implements ZoneStore {
+
+    private final Map<String, ZoneRecord> zones = new ConcurrentHashMap<>();
+    private final AtomicLong sequence = new AtomicLong();
+    private final AtomicLong version = new AtomicLong();
+
+    @Override
+    public List<ZoneRecord> findAll() {
+        List<ZoneRecord> records = new ArrayList<>(zones.values());
+        records.sort(Comparator.comparingLong(ZoneRecord::getSequence));
+        return records;
+    }
+
+    @Override
+    public long nextSequence() {
+        return sequence.incrementAndGet();
+    }
+
+    @Override
+    public void save(ZoneRecord record) {
+        zones.put(record.getZoneId(), record);
+    }
+
+    @Override
+    public boolean saveIfAbsent(ZoneRecord record) {
+        return zones.putIfAbsent(record.getZoneId(), record) == null;
+    }
+
+    @Override
+    public boolean replaceIfPresent(ZoneRecord record) {
+        return zones.replace(record.getZoneId(), record) != null;
+    }
+
+    @Override
+    public void delete(String zoneId) {
+        zones.remove(zoneId);
+    }
+
+    @Override
+    public long bumpVersion() {
+        return version.incrementAndGet();
+    }
+
+    @Override
+    public long getVersion() {
+        return version.get();
+    }
+}
@@ -0,0 +1,141 @@
+package com.geofence.service.repository;
+
+import com.geofence.service.model.VehicleDwell;
+import com.geofence.service.model.ZoneOccupancy;
+import org.springframework.data.redis.connection.StringRedisConnection;
+import org.springframework.data.redis.core.Cursor;
+import org.springframework.data.redis.core.RedisCallback;
+import org.springframework.data.redis.core.ScanOptions;
+import org.springframework.data.redis.core.StringRedisTemplate;
+import org.springframework.stereotype.Repository;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+
+/**
+ * Occupancy and dwell aggregates, kept as counters that every replica adds its deltas to:
+ * <pre>
+ * zonestats:{zoneId}   Hash: visits, dwell (total millis)
+ * dwell:{vehicleId}    Hash: zoneId -> total millis in that zone
+ * dwellers:{zoneId}    Set: vehicles with a dwell total in that zone
+ * </pre>
+ * The vehicle count is the size of the zone's reverse index ({@link ZoneMembershipStore}),
+ * which the state stores keep exact, rather than a counter that drifts when an exit is
+ * seen without its entry. A zone query is one pipeline of a hash read and a ZCARD,
+ * independent of the number of vehicles.
+ */
+@Repository
+public class OccupancyStore {
+
+    static final String ZONE_PREFIX = "zonestats:";
+    static final String VEHICLE_PREFIX = "dwell:";
+    static final String DWELLERS_PREFIX = "dwellers:";
+    static final String VISITS_FIELD = "visits";
+    static final String DWELL_FIELD = "dwell";
+
+    // Vehicles whose dwell fields are removed per pipeline when a zone is deleted
+    private static final int DELETE_BATCH = 1000;
+
+    private final StringRedisTemplate redisTemplate;
+
+    public OccupancyStore(StringRedisTemplate redisTemplate) {
+        this.redisTemplate = redisTemplate;
+    }
+
+    /**
+     * Per-zone deltas to add, from the visits completed since the last flush.
+     */
+    public record ZoneDelta(String zoneId, long visits, long dwellMs) {
+    }
+
+    /**
+     * Dwell time to add to one vehicle's total in one zone.
+     */
+    public record VehicleDelta(String vehicleId, String zoneId, long dwellMs) {
+    }
+
+    /**
+     * Adds all deltas in one pipeline.
+     */
+    public void add(List<ZoneDelta> zones, List<VehicleDelta> vehicles) {
+        if (zones.isEmpty() && vehicles.isEmpty()) {
+            return;
+        }
+        redisTemplate.executePipelined((RedisCallback<Object>) connection -> {
+            StringRedisConnection strings = (StringRedisConnection) connection;
+            for (ZoneDelta zone : zones) {
+                String key = ZONE_PREFIX + zone.zoneId();
+                strings.hIncrBy(key, VISITS_FIELD, zone.visits());
+                strings.hIncrBy(key, DWELL_FIELD, zone.dwellMs());
+            }
+            for (VehicleDelta vehicle : vehicles) {
+                strings.hIncrBy(VEHICLE_PREFIX + vehicle.vehicleId(), vehicle.zoneId(), vehicle.dwellMs());
+                strings.sAdd(DWELLERS_PREFIX + vehicle.zoneId(), vehicle.vehicleId());
+            }
+            return null;
+        });
+    }
+
+    @SuppressWarnings("unchecked")
+    public ZoneOccupancy getZone(String zoneId) {
+        List<Object> replies = redisTemplate.executePipelined((RedisCallback<Object>) connection -> {
+            StringRedisConnection strings = (StringRedisConnection) connection;
+            strings.hMGet(ZONE_PREFIX + zoneId, VISITS_FIELD, DWELL_FIELD);
+            strings.zCard(ZoneMembershipStore.KEY_PREFIX + zoneId);
+            return null;
+        });
+        List<Object> values = (List<Object>) replies.get(0);
+        long visits = parse(values.get(0));
+        long dwell = parse(values.get(1));
+        long vehicles = replies.get(1) == null ? 0 : (Long) replies.get(1);
+        return new ZoneOccupancy(zoneId, vehicles, visits, dwell, visits == 0 ? null : dwell / visits);
+    }
+
+    public VehicleDwell getVehicle(String vehicleId) {
+        Map<Object, Object> entries = redisTemplate.opsForHash().entries(VEHICLE_PREFIX + vehicleId);
+        Map<String, Long> dwell = new TreeMap<>();
+        entries.forEach((zoneId, millis) -> dwell.put((String) zoneId, parse(millis)));
+        return new VehicleDwell(vehicleId, dwell);
+    }
+
+    /**
+     * Removes the aggregates of a deleted zone, including its field in the dwell totals
+     * of every vehicle that visited it, so a zone later created with the same ID starts
+     * from zero.
+     */
+    public void deleteZone(String zoneId) {
+        String dwellers = DWELLERS_PREFIX + zoneId;
+        List<String> batch = new ArrayList<>(DELETE_BATCH);
+        try (Cursor<String> members = redisTemplate.opsForSet().scan(dwellers,
+                ScanOptions.scanOptions().count(DELETE_BATCH).build())) {
+            while (members.hasNext()) {
+                batch.add(members.next());
+                if (batch.size() == DELETE_BATCH) {
+                    deleteDwell(batch, zoneId);
+                    batch.clear();
+                }
+            }
+        }
+        deleteDwell(batch, zoneId);
+        redisTemplate.delete(List.of(ZONE_PREFIX + zoneId, dwellers));
+    }
+
+    private void deleteDwell(List<String> vehicleIds, String zoneId) {
+        if (vehicleIds.isEmpty()) {
+            return;
+        }
+        redisTemplate.executePipelined((RedisCallback<Object>) connection -> {
+            StringRedisConnection strings = (StringRedisConnection) connection;
+            for (String vehicleId : vehicleIds) {
+                strings.hDel(VEHICLE_PREFIX + vehicleId, zoneId);
+            }
+            return null;
+        });
+    }
+
+    private static long parse(Object value) {
+        return value == null ? 0 : Long.parseLong((String) value);
+    }
+}
@@ -0,0 +1,70 @@
+package com.geofence.service.repository;
+
+import com.geofence.service.model.VehicleState;
+import com.geofence.service.model.ZoneMembershipChange;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.data.redis.core.ReactiveStringRedisTemplate;
+import org.springframework.stereotype.Repository;
+import reactor.core.publisher.Mono;
+
+import static com.geofence.service.repository.HashVehicleStateStore.FIELDS;
+import static com.geofence.service.repository.HashVehicleStateStore.KEY_PREFIX;
+import static com.geofence.service.repository.HashVehicleStateStore.TIMESTAMP_FIELD;
+
+/**
+ * Reactive access to the delta layout, see {@link HashVehicleStateStore}.
+ */
+@Repository
+@ConditionalOnProperty(name = "geofence.state.layout", havingValue = "hash")
+public class ReactiveHashVehicleStateStore implements ReactiveVehicleStateStore {
+
+    private final ReactiveStringRedisTemplate redisTemplate;
+    private final boolean guardWrites;
+
+    public ReactiveHashVehicleStateStore(ReactiveStringRedisTemplate redisTemplate,
+                                         @Value("${geofence.state.guard-writes:true}") boolean guardWrites) {
+        this.redisTemplate = redisTemplate;
+        this.guardWrites = guardWrites;
+    }
+
+    @Override
+    public Mono<VehicleState> get(String vehicleId) {
+        return redisTemplate.opsForHash().multiGet(KEY_PREFIX + vehicleId, FIELDS)
+                .mapNotNull(fields -> HashVehicleStateStore.toState(vehicleId, fields));
+    }
+
+    @Override
+    public Mono<Void> save(VehicleState state) {
+        return redisTemplate.opsForHash()
+                .putAll(KEY_PREFIX + state.getVehicleId(), HashVehicleStateStore.toFields(state))
+                .then();
+    }
+
+    @Override
+    public Mono<Void> save(VehicleState state, ZoneMembershipChange change) {
+        if (guardWrites) {
+            return SaveStateScript.saveGuarded(redisTemplate, KEY_PREFIX, state, change,
+                    HashVehicleStateStore.stateArgs(state));
+        }
+        if (!SaveStateScript.hasChange(change)) {
+            return save(state);
+        }
+        return redisTemplate.execute(SaveStateScript.SCRIPT,
+                        SaveStateScript.keys(KEY_PREFIX + state.getVehicleId(), change),
+                        SaveStateScript.args(state.getVehicleId(), change, null, HashVehicleStateStore.stateArgs(state)),
+                        SaveStateScript.ARGS_WRITER, SaveStateScript.RESULT_READER)
+                .then();
+    }
+
+    @Override
+    public Mono<Void> touch(VehicleState state) {
+        if (guardWrites) {
+            return SaveStateScript.saveGuarded(redisTemplate, KEY_PREFIX, state, null,
+                    HashVehicleStateStore.timestampArgs(state));
+        }
+        return redisTemplate.opsForHash()
+                .put(KEY_PREFIX + state.getVehicleId(), TIMESTAMP_FIELD, Long.toString(state.getLastUpdated()))
+                .then();
+    }
+}
@@ -0,0 +1,68 @@
+package com.geofence.service.repository;
+
+import com.geofence.service.model.VehicleState;
+import com.geofence.service.model.ZoneMembershipChange;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.data.redis.core.ReactiveRedisTemplate;
+import org.springframework.data.redis.util.ByteUtils;
+import org.springframework.stereotype.Repository;
+import reactor.core.publisher.Mono;
+
+import java.util.List;
+
+import static com.geofence.service.repository.ValueVehicleStateStore.KEY_PREFIX;
+
+/**
+ * Reactive access to the default layout, see {@link ValueVehicleStateStore}.
+ */
+@Repository
+@ConditionalOnProperty(name = "geofence.state.layout", havingValue = "value", matchIfMissing = true)
+public class ReactiveValueVehicleStateStore implements ReactiveVehicleStateStore {
+
+    private final ReactiveRedisTemplate<String, Object> redisTemplate;
+    private final boolean guardWrites;
+
+    public ReactiveValueVehicleStateStore(ReactiveRedisTemplate<String, Object> redisTemplate,
+                                          @Value("${geofence.state.guard-writes:true}") boolean guardWrites) {
+        this.redisTemplate = redisTemplate;
+        this.guardWrites = guardWrites;
+    }
+
+    @Override
+    public Mono<VehicleState> get(String vehicleId) {
+        return redisTemplate.opsForValue().get(KEY_PREFIX + vehicleId)
+                .ofType(VehicleState.class)
+                .map(state -> ValueVehicleStateStore.withVehicleId(state, vehicleId));
+    }
+
+    @Override
+    public Mono<Void> save(VehicleState state) {
+        return redisTemplate.opsForValue().set(KEY_PREFIX + state.getVehicleId(), state).then();
+    }
+
+    @Override
+    public Mono<Void> save(VehicleState state, ZoneMembershipChange change) {
+        if (guardWrites) {
+            return SaveStateScript.saveGuarded(redisTemplate, KEY_PREFIX, state, change, List.of(encode(state)));
+        }
+        if (!SaveStateScript.hasChange(change)) {
+            return save(state);
+        }
+        return redisTemplate.execute(SaveStateScript.SCRIPT,
+                        SaveStateScript.keys(KEY_PREFIX + state.getVehicleId(), change),
+                        SaveStateScript.args(state.getVehicleId(), change, null, List.of(encode(state))),
+                        SaveStateScript.ARGS_WRITER, SaveStateScript.RESULT_READER)
+                .then();
+    }
+
+    private byte[] encode(VehicleState state) {
+        return ByteUtils.getBytes(redisTemplate.getSerializationContext().getValueSerializationPair().write(state));
+    }
+
+    // The value is rewritten as a whole either way
+    @Override
+    public Mono<Void> touch(VehicleState state) {
+        return save(state, null);
+    }
+}
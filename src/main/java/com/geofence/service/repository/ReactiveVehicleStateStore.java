@@ -0,0 +1,31 @@
+package com.geofence.service.repository;
+
+import com.geofence.service.model.VehicleState;
+import com.geofence.service.model.ZoneMembershipChange;
+import reactor.core.publisher.Mono;
+
+/**
+ * Non-blocking counterpart of {@link VehicleStateStore}, selected with the same
+ * {@code geofence.state.layout} and reading and writing the same keys. Nothing is sent
+ * to Redis until the returned {@link Mono} is subscribed. Guarded writes that find a
+ * newer stored state fail with {@link com.geofence.service.exception.StaleVehicleStateException}.
+ */
+public interface ReactiveVehicleStateStore {
+
+    /**
+     * Emits the stored state, or completes empty if the vehicle has none.
+     */
+    Mono<VehicleState> get(String vehicleId);
+
+    Mono<Void> save(VehicleState state);
+
+    /**
+     * See {@link VehicleStateStore#save(VehicleState, ZoneMembershipChange)}.
+     */
+    Mono<Void> save(VehicleState state, ZoneMembershipChange change);
+
+    /**
+     * See {@link VehicleStateStore#touch(VehicleState)}.
+     */
+    Mono<Void> touch(VehicleState state);
+}
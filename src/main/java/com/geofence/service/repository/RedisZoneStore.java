@@ -0,0 +1,93 @@
+package com.geofence.service.repository;
+
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.core.io.ClassPathResource;
+import org.springframework.data.redis.core.RedisTemplate;
+import org.springframework.data.redis.core.script.RedisScript;
+import org.springframework.data.redis.serializer.GenericToStringSerializer;
+import org.springframework.data.redis.serializer.RedisSerializer;
+import org.springframework.stereotype.Repository;
+
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+
+/**
+ * Zones in Redis: a hash {@code zones} of zone ID to {@link ZoneRecord}, the creation
+ * counter {@code zones:seq} and the change counter {@code zones:version}. Updates go
+ * through {@code redis/replace-zone.lua}, which writes only while the zone exists.
+ */
+@Repository
+@ConditionalOnProperty(name = "geofence.zones.store", havingValue = "redis", matchIfMissing = true)
+public class RedisZoneStore implements ZoneStore {
+
+    private static final String ZONES_KEY = "zones";
+    private static final String SEQUENCE_KEY = "zones:seq";
+    private static final String VERSION_KEY = "zones:version";
+    private static final RedisScript<Long> REPLACE_SCRIPT =
+            RedisScript.of(new ClassPathResource("redis/replace-zone.lua"), Long.class);
+    private static final RedisSerializer<Long> REPLACE_RESULT = new GenericToStringSerializer<>(Long.class);
+
+    private final RedisTemplate<String, Object> redisTemplate;
+
+    public RedisZoneStore(RedisTemplate<String, Object> redisTemplate) {
+        this.redisTemplate = redisTemplate;
+    }
+
+    @Override
+    public List<ZoneRecord> findAll() {
+        List<ZoneRecord> records = new ArrayList<>();
+        for (Object value : redisTemplate.opsForHash().values(ZONES_KEY)) {
+            if (value instanceof ZoneRecord record) {
+                records.add(record);
+            }
+        }
+        records.sort(Comparator.comparingLong(ZoneRecord::getSequence));
+        return records;
+    }
+
+    @Override
+    public long nextSequence() {
+        Long sequence = redisTemplate.opsForValue().increment(SEQUENCE_KEY);
+        return sequence == null ? 0 : sequence;
+    }
+
+    @Override
+    public void save(ZoneRecord record) {
+        redisTemplate.opsForHash().put(ZONES_KEY, record.getZoneId(), record);
+    }
+
+    @Override
+    public boolean saveIfAbsent(ZoneRecord record) {
+        return Boolean.TRUE.equals(redisTemplate.opsForHash().putIfAbsent(ZONES_KEY, record.getZoneId(), record));
+    }
+
+    @Override
+    @SuppressWarnings("unchecked")
+    public boolean replaceIfPresent(ZoneRecord record) {
+        // Encoded as HSET would, so the script stores what save() stores
+        byte[] zoneId = ((RedisSerializer<String>) redisTemplate.getHashKeySerializer()).serialize(record.getZoneId());
+        byte[] value = ((RedisSerializer<Object>) redisTemplate.getHashValueSerializer()).serialize(record);
+        Long replaced = redisTemplate.execute(REPLACE_SCRIPT, RedisSerializer.byteArray(), REPLACE_RESULT,
+                List.of(ZONES_KEY), zoneId, value);
+        return replaced != null && replaced == 1;
+    }
+
+    @Override
+    public void delete(String zoneId) {
+        redisTemplate.opsForHash().delete(ZONES_KEY, zoneId);
+    }
+
+    @Override
+    public long bumpVersion() {
+        Long version = redisTemplate.opsForValue().increment(VERSION_KEY);
+        return version == null ? 0 : version;
+    }
+
+    @Override
+    public long getVersion() {
+        // INCR leaves a plain integer, which the JSON value serializer reads back as a number
+        Object version = redisTemplate.opsForValue().get(VERSION_KEY);
+        return version instanceof Number number ? number.longValue() : 0;
+    }
+}
@@ -0,0 +1,175 @@
+package com.geofence.service.repository;
+
+import com.geofence.service.exception.StaleVehicleStateException;
+import com.geofence.service.model.VehicleState;
+import com.geofence.service.model.ZoneMembershipChange;
+import org.springframework.core.io.ClassPathResource;
+import org.springframework.data.redis.core.ReactiveRedisOperations;
+import org.springframework.data.redis.core.RedisOperations;
+import org.springframework.data.redis.core.script.RedisScript;
+import org.springframework.data.redis.serializer.GenericToStringSerializer;
+import org.springframework.data.redis.serializer.RedisElementReader;
+import org.springframework.data.redis.serializer.RedisElementWriter;
+import org.springframework.data.redis.serializer.RedisSerializer;
+import reactor.core.publisher.Mono;
+
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.function.Function;
+
+/**
+ * {@code redis/save-state.lua}, which writes a vehicle state and its zone membership
+ * changes in one atomic step. Every argument is passed as raw bytes, so both state
+ * layouts and the reactive stores share the script.
+ *
+ * A guarded write also passes the state's {@code lastUpdated}, and the script drops it
+ * if the stored state is at least as new, so replicas racing on one vehicle can never
+ * move its state back in time. The check runs inside the write, so it costs no extra
+ * round trip.
+ */
+final class SaveStateScript {
+
+    static final RedisScript<Long> SCRIPT = RedisScript.of(new ClassPathResource("redis/save-state.lua"), Long.class);
+    static final RedisSerializer<byte[]> ARGS = RedisSerializer.byteArray();
+    static final RedisSerializer<Long> RESULT = new GenericToStringSerializer<>(Long.class);
+    static final RedisElementWriter<byte[]> ARGS_WRITER = RedisElementWriter.from(ARGS);
+    static final RedisElementReader<Long> RESULT_READER = RedisElementReader.from(RESULT);
+
+    private SaveStateScript() {
+    }
+
+    static boolean hasChange(ZoneMembershipChange change) {
+        return change != null && !change.isEmpty();
+    }
+
+    static ZoneMembershipChange orNone(ZoneMembershipChange change) {
+        return change != null ? change : new ZoneMembershipChange();
+    }
+
+    static List<String> keys(String stateKey, ZoneMembershipChange change) {
+        List<String> keys = new ArrayList<>(1 + change.getExited().size() + change.getEntered().size());
+        keys.add(stateKey);
+        for (String zoneId : change.getExited()) {
+            keys.add(ZoneMembershipStore.KEY_PREFIX + zoneId);
+        }
+        for (String zoneId : change.getEntered().keySet()) {
+            keys.add(ZoneMembershipStore.KEY_PREFIX + zoneId);
+        }
+        return keys;
+    }
+
+    /**
+     * @param guardTimestamp the state's lastUpdated for a guarded write, null to always write
+     * @param state the state as one value, or as alternating hash fields and values
+     */
+    static List<byte[]> args(String vehicleId, ZoneMembershipChange change, Long guardTimestamp,
+                             List<byte[]> state) {
+        List<byte[]> args = new ArrayList<>(4 + change.getEntered().size() + state.size());
+        args.add(bytes(vehicleId));
+        args.add(guardTimestamp == null ? new byte[0] : bytes(Long.toString(guardTimestamp)));
+        args.add(bytes(Integer.toString(change.getExited().size())));
+        args.add(bytes(Integer.toString(change.getEntered().size())));
+        for (long enteredAt : change.getEntered().values()) {
+            args.add(bytes(Long.toString(enteredAt)));
+        }
+        args.addAll(state);
+        return args;
+    }
+
+    static byte[] bytes(String value) {
+        return value.getBytes(StandardCharsets.UTF_8);
+    }
+
+    /**
+     * Guarded write of one state with its membership change, if any.
+     *
+     * @throws StaleVehicleStateException if a state at least as new is stored
+     */
+    static void saveGuarded(RedisOperations<String, ?> redisTemplate, String keyPrefix, VehicleState state,
+                            ZoneMembershipChange change, List<byte[]> stateArgs) {
+        ZoneMembershipChange membership = orNone(change);
+        Long written = redisTemplate.execute(SCRIPT, ARGS, RESULT,
+                keys(keyPrefix + state.getVehicleId(), membership),
+                args(state.getVehicleId(), membership, state.getLastUpdated(), stateArgs).toArray());
+        if (written != null && written == 0) {
+            throw new StaleVehicleStateException(Set.of(state.getVehicleId()));
+        }
+    }
+
+    /**
+     * Reactive variant of {@link #saveGuarded(RedisOperations, String, VehicleState, ZoneMembershipChange, List)},
+     * failing with {@link StaleVehicleStateException} instead of throwing it.
+     */
+    static Mono<Void> saveGuarded(ReactiveRedisOperations<String, ?> redisTemplate, String keyPrefix,
+                                  VehicleState state, ZoneMembershipChange change, List<byte[]> stateArgs) {
+        ZoneMembershipChange membership = orNone(change);
+        return redisTemplate.execute(SCRIPT, keys(keyPrefix + state.getVehicleId(), membership),
+                        args(state.getVehicleId(), membership, state.getLastUpdated(), stateArgs),
+                        ARGS_WRITER, RESULT_READER)
+                .filter(written -> written == 0)
+                .next()
+                .flatMap(stale -> Mono.error(new StaleVehicleStateException(Set.of(state.getVehicleId()))));
+    }
+
+    /**
+     * Guarded writes of every state, with its change from {@code changes} if any, in one
+     * pipeline. Every state that is not stale is stored.
+     *
+     * @throws StaleVehicleStateException naming the vehicles whose stored state is at least as new
+     */
+    static void saveAllGuarded(RedisOperations<String, ?> redisTemplate, String keyPrefix,
+                               Collection<VehicleState> states, Map<String, ZoneMembershipChange> changes,
+                               Function<VehicleState, List<byte[]>> stateArgs) {
+        if (states.isEmpty()) {
+            return;
+        }
+        List<VehicleState> ordered = List.copyOf(states);
+        List<ScriptPipeline.Call> calls = new ArrayList<>(ordered.size());
+        for (VehicleState state : ordered) {
+            ZoneMembershipChange change = orNone(changes.get(state.getVehicleId()));
+            calls.add(new ScriptPipeline.Call(keys(keyPrefix + state.getVehicleId(), change),
+                    args(state.getVehicleId(), change, state.getLastUpdated(), stateArgs.apply(state))));
+        }
+        List<Object> results = ScriptPipeline.execute(redisTemplate, SCRIPT, RESULT, calls);
+        Set<String> stale = new HashSet<>();
+        for (int i = 0; i < ordered.size() && i < results.size(); i++) {
+            if (results.get(i) instanceof Number written && written.longValue() == 0) {
+                stale.add(ordered.get(i).getVehicleId());
+            }
+        }
+        if (!stale.isEmpty()) {
+            throw new StaleVehicleStateException(stale);
+        }
+    }
+
+    /**
+     * Runs the script for every state with a membership change, in one pipeline.
+     *
+     * @return the states without a change, left for the layout's plain bulk write
+     */
+    static List<VehicleState> saveChanged(RedisOperations<String, ?> redisTemplate, String keyPrefix,
+                                          Collection<VehicleState> states, Map<String, ZoneMembershipChange> changes,
+                                          Function<VehicleState, List<byte[]>> stateArgs) {
+        List<VehicleState> unchanged = new ArrayList<>(states.size());
+        List<VehicleState> changed = new ArrayList<>();
+        for (VehicleState state : states) {
+            (hasChange(changes.get(state.getVehicleId())) ? changed : unchanged).add(state);
+        }
+        if (changed.isEmpty()) {
+            return unchanged;
+        }
+        List<ScriptPipeline.Call> calls = new ArrayList<>(changed.size());
+        for (VehicleState state : changed) {
+            ZoneMembershipChange change = changes.get(state.getVehicleId());
+            calls.add(new ScriptPipeline.Call(keys(keyPrefix + state.getVehicleId(), change),
+                    args(state.getVehicleId(), change, null, stateArgs.apply(state))));
+        }
+        ScriptPipeline.execute(redisTemplate, SCRIPT, RESULT, calls);
+        return unchanged;
+    }
+}
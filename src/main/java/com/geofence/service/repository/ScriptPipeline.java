@@ -0,0 +1,88 @@
+package com.geofence.service.repository;
+
+import org.springframework.data.redis.connection.RedisPipelineException;
+import org.springframework.data.redis.connection.ReturnType;
+import org.springframework.data.redis.core.RedisCallback;
+import org.springframework.data.redis.core.RedisOperations;
+import org.springframework.data.redis.core.script.RedisScript;
+import org.springframework.data.redis.serializer.RedisSerializer;
+
+import java.nio.charset.StandardCharsets;
+import java.util.List;
+
+/**
+ * Pipelined calls of one Lua script, sent by SHA.
+ *
+ * {@code RedisOperations.execute(RedisScript, ...)} sends {@code EVALSHA} and falls
+ * back to {@code EVAL} on {@code NOSCRIPT}, but inside a pipeline it cannot wait for
+ * the error, so it sends the whole script body with every call. The calls are sent as
+ * {@code EVALSHA} here instead. Redis forgets its scripts on a restart, a failover or
+ * {@code SCRIPT FLUSH}, so a pipeline that fails with {@code NOSCRIPT} loads the script
+ * and is sent once more. Every call in it failed, since they all name the same missing
+ * script, so resending runs none of them twice.
+ */
+final class ScriptPipeline {
+
+    /**
+     * One call of the script. Keys are written as UTF-8, like the templates' key serializer.
+     */
+    record Call(List<String> keys, List<byte[]> args) {
+
+        byte[][] keysAndArgs() {
+            byte[][] keysAndArgs = new byte[keys.size() + args.size()][];
+            for (int i = 0; i < keys.size(); i++) {
+                keysAndArgs[i] = keys.get(i).getBytes(StandardCharsets.UTF_8);
+            }
+            for (int i = 0; i < args.size(); i++) {
+                keysAndArgs[keys.size() + i] = args.get(i);
+            }
+            return keysAndArgs;
+        }
+    }
+
+    private ScriptPipeline() {
+    }
+
+    /**
+     * Runs {@code calls} of {@code script} and returns the replies in order.
+     *
+     * @param resultSerializer deserializes bulk replies, as in {@link RedisOperations#executePipelined(RedisCallback, RedisSerializer)}
+     */
+    static List<Object> execute(RedisOperations<String, ?> redisTemplate, RedisScript<?> script,
+                                RedisSerializer<?> resultSerializer, List<Call> calls) {
+        ReturnType returnType = ReturnType.fromJavaType(script.getResultType());
+        RedisCallback<Object> send = connection -> {
+            for (Call call : calls) {
+                connection.scriptingCommands().evalSha(script.getSha1(), returnType, call.keys().size(),
+                        call.keysAndArgs());
+            }
+            return null;
+        };
+        try {
+            return redisTemplate.executePipelined(send, resultSerializer);
+        } catch (RuntimeException e) {
+            if (!isNoScript(e)) {
+                throw e;
+            }
+            byte[] source = script.getScriptAsString().getBytes(StandardCharsets.UTF_8);
+            redisTemplate.execute((RedisCallback<String>) connection -> connection.scriptingCommands().scriptLoad(source));
+            return redisTemplate.executePipelined(send, resultSerializer);
+        }
+    }
+
+    static boolean isNoScript(Throwable error) {
+        for (Throwable cause = error; cause != null; cause = cause.getCause()) {
+            if (cause.getMessage() != null && cause.getMessage().contains("NOSCRIPT")) {
+                return true;
+            }
+            if (cause instanceof RedisPipelineException pipeline) {
+                for (Object reply : pipeline.getPipelineResult()) {
+                    if (reply instanceof Throwable failed && failed != cause && isNoScript(failed)) {
+                        return true;
+                    }
+                }
+            }
+        }
+        return false;
+    }
+}
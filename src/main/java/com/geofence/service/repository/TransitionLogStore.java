@@ -0,0 +1,212 @@
+package com.geofence.service.repository;
+
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.geofence.service.exception.ResourceConflictException;
+import com.geofence.service.exception.ResourceNotFoundException;
+import com.geofence.service.model.LoggedTransition;
+import com.geofence.service.model.ZoneTransitionEvent;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.dao.DataAccessException;
+import org.springframework.data.domain.Range;
+import org.springframework.data.redis.RedisSystemException;
+import org.springframework.data.redis.connection.Limit;
+import org.springframework.data.redis.connection.RedisStreamCommands.XAddOptions;
+import org.springframework.data.redis.connection.StringRedisConnection;
+import org.springframework.data.redis.connection.stream.Consumer;
+import org.springframework.data.redis.connection.stream.MapRecord;
+import org.springframework.data.redis.connection.stream.ReadOffset;
+import org.springframework.data.redis.connection.stream.StreamOffset;
+import org.springframework.data.redis.connection.stream.StreamReadOptions;
+import org.springframework.data.redis.connection.stream.StreamRecords;
+import org.springframework.data.redis.connection.stream.StringRecord;
+import org.springframework.data.redis.core.RedisCallback;
+import org.springframework.data.redis.core.StringRedisTemplate;
+import org.springframework.stereotype.Repository;
+
+import java.io.UncheckedIOException;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Transition log in the Redis stream {@code transitions}. Each entry holds the vehicle
+ * ID (for filtering without parsing) and the transition as JSON. The stream is capped
+ * at roughly {@code geofence.transitions.log.max-length} entries with approximate
+ * trimming, which Redis applies in whole macro nodes and so keeps cheap.
+ */
+@Repository
+public class TransitionLogStore {
+
+    static final String STREAM_KEY = "transitions";
+    static final String VEHICLE_FIELD = "vehicle";
+    static final String DATA_FIELD = "data";
+
+    private final StringRedisTemplate redisTemplate;
+    private final ObjectMapper objectMapper;
+    private final XAddOptions addOptions;
+
+    public TransitionLogStore(StringRedisTemplate redisTemplate, ObjectMapper objectMapper,
+                              @Value("${geofence.transitions.log.max-length:1000000}") long maxLength) {
+        if (maxLength < 1) {
+            throw new IllegalArgumentException("geofence.transitions.log.max-length must be positive");
+        }
+        this.redisTemplate = redisTemplate;
+        this.objectMapper = objectMapper;
+        this.addOptions = XAddOptions.maxlen(maxLength).approximateTrimming(true);
+    }
+
+    /**
+     * Appends the transitions in order, in one pipeline.
+     */
+    public void appendAll(Collection<ZoneTransitionEvent> transitions) {
+        if (transitions.isEmpty()) {
+            return;
+        }
+        List<StringRecord> records = new ArrayList<>(transitions.size());
+        for (ZoneTransitionEvent transition : transitions) {
+            records.add(StreamRecords.string(Map.of(
+                    VEHICLE_FIELD, transition.getVehicleId(),
+                    DATA_FIELD, toJson(transition))).withStreamKey(STREAM_KEY));
+        }
+        redisTemplate.executePipelined((RedisCallback<Object>) connection -> {
+            StringRedisConnection strings = (StringRedisConnection) connection;
+            for (StringRecord record : records) {
+                strings.xAdd(record, addOptions);
+            }
+            return null;
+        });
+    }
+
+    /**
+     * Reads up to {@code count} entries with IDs from {@code start} to {@code end}, both
+     * inclusive (either bound may be a full ID or just milliseconds), and keeps those of
+     * {@code vehicleId}, or all if it is null. Only kept entries are parsed.
+     */
+    public Scan scan(String start, String end, int count, String vehicleId) {
+        List<MapRecord<String, Object, Object>> records = redisTemplate.opsForStream()
+                .range(STREAM_KEY, Range.closed(start, end), Limit.limit().count(count));
+        if (records == null || records.isEmpty()) {
+            return new Scan(List.of(), null, 0);
+        }
+        List<LoggedTransition> matches = new ArrayList<>();
+        for (MapRecord<String, Object, Object> record : records) {
+            if (vehicleId == null || vehicleId.equals(record.getValue().get(VEHICLE_FIELD))) {
+                LoggedTransition transition = toTransition(record);
+                if (transition != null) {
+                    matches.add(transition);
+                }
+            }
+        }
+        return new Scan(matches, records.get(records.size() - 1).getId().getValue(), records.size());
+    }
+
+    /**
+     * @param lastId ID of the last entry read, matching or not; null if none was read
+     * @param scanned number of entries read
+     */
+    public record Scan(List<LoggedTransition> matches, String lastId, int scanned) {
+    }
+
+    /**
+     * Creates a consumer group that delivers entries after {@code offset}; the stream is
+     * created if it does not exist yet.
+     */
+    public void createGroup(String group, ReadOffset offset) {
+        try {
+            redisTemplate.execute((RedisCallback<String>) connection ->
+                    ((StringRedisConnection) connection).xGroupCreate(STREAM_KEY, offset, group, true));
+        } catch (RedisSystemException e) {
+            if (messageContains(e, "BUSYGROUP")) {
+                throw new ResourceConflictException("Consumer group already exists: " + group);
+            }
+            throw e;
+        }
+    }
+
+    public boolean destroyGroup(String group) {
+        try {
+            return Boolean.TRUE.equals(redisTemplate.opsForStream().destroyGroup(STREAM_KEY, group));
+        } catch (RedisSystemException e) {
+            if (messageContains(e, "NOGROUP") || messageContains(e, "no such key")) {
+                return false;
+            }
+            throw e;
+        }
+    }
+
+    /**
+     * Reads entries for a group consumer: new ones, or with {@code pending} the ones
+     * already delivered to this consumer and not yet acknowledged.
+     */
+    @SuppressWarnings("unchecked")
+    public List<LoggedTransition> readGroup(String group, String consumer, int count, boolean pending) {
+        ReadOffset offset = pending ? ReadOffset.from("0") : ReadOffset.lastConsumed();
+        try {
+            List<MapRecord<String, Object, Object>> records = redisTemplate.opsForStream().read(
+                    Consumer.from(group, consumer),
+                    StreamReadOptions.empty().count(count),
+                    StreamOffset.create(STREAM_KEY, offset));
+            return toTransitions(records);
+        } catch (RedisSystemException e) {
+            if (messageContains(e, "NOGROUP")) {
+                throw new ResourceNotFoundException("Consumer group not found: " + group);
+            }
+            throw e;
+        }
+    }
+
+    public long acknowledge(String group, Collection<String> ids) {
+        if (ids.isEmpty()) {
+            return 0;
+        }
+        Long acknowledged = redisTemplate.opsForStream().acknowledge(STREAM_KEY, group, ids.toArray(String[]::new));
+        return acknowledged == null ? 0 : acknowledged;
+    }
+
+    private List<LoggedTransition> toTransitions(List<MapRecord<String, Object, Object>> records) {
+        if (records == null) {
+            return List.of();
+        }
+        List<LoggedTransition> transitions = new ArrayList<>(records.size());
+        for (MapRecord<String, Object, Object> record : records) {
+            LoggedTransition transition = toTransition(record);
+            if (transition != null) {
+                transitions.add(transition);
+            }
+        }
+        return transitions;
+    }
+
+    // Entries not written by this service are skipped
+    private LoggedTransition toTransition(MapRecord<String, Object, Object> record) {
+        Object data = record.getValue().get(DATA_FIELD);
+        return data instanceof String json ? new LoggedTransition(record.getId().getValue(), fromJson(json)) : null;
+    }
+
+    private String toJson(ZoneTransitionEvent transition) {
+        try {
+            return objectMapper.writeValueAsString(transition);
+        } catch (JsonProcessingException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+
+    private ZoneTransitionEvent fromJson(String json) {
+        try {
+            return objectMapper.readValue(json, ZoneTransitionEvent.class);
+        } catch (JsonProcessingException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+
+    private static boolean messageContains(DataAccessException e, String text) {
+        for (Throwable t = e; t != null; t = t.getCause()) {
+            if (t.getMessage() != null && t.getMessage().contains(text)) {
+                return true;
+            }
+        }
+        return false;
+    }
+}
@@ -0,0 +1,196 @@
+package com.geofence.service.repository;
+
+import com.geofence.service.model.VehicleState;
+import com.geofence.service.model.ZoneMembershipChange;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.dao.DataAccessException;
+import org.springframework.data.redis.core.RedisOperations;
+import org.springframework.data.redis.core.RedisTemplate;
+import org.springframework.data.redis.core.SessionCallback;
+import org.springframework.data.redis.serializer.RedisSerializer;
+import org.springframework.stereotype.Repository;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Default layout: the whole {@link VehicleState} serialized as one string value at
+ * {@code vehicle:{id}}. Guarded writes go through the save-state script, which reads
+ * {@code lastUpdated} from the stored value in either encoding.
+ */
+@Repository
+@ConditionalOnProperty(name = "geofence.state.layout", havingValue = "value", matchIfMissing = true)
+public class ValueVehicleStateStore implements VehicleStateStore {
+
+    private final RedisTemplate<String, Object> redisTemplate;
+    private final int maxBatchSize;
+    private final boolean guardWrites;
+
+    static final String KEY_PREFIX = "vehicle:";
+
+    public ValueVehicleStateStore(RedisTemplate<String, Object> redisTemplate,
+                                  @Value("${geofence.state.max-batch-size:500}") int maxBatchSize,
+                                  @Value("${geofence.state.guard-writes:true}") boolean guardWrites) {
+        if (maxBatchSize < 1) {
+            throw new IllegalArgumentException("geofence.state.max-batch-size must be positive");
+        }
+        this.redisTemplate = redisTemplate;
+        this.maxBatchSize = maxBatchSize;
+        this.guardWrites = guardWrites;
+    }
+
+    @Override
+    public VehicleState get(String vehicleId) {
+        return withVehicleId((VehicleState) redisTemplate.opsForValue().get(KEY_PREFIX + vehicleId), vehicleId);
+    }
+
+    /**
+     * Keys are split into MGETs of at most {@code geofence.state.max-batch-size} keys,
+     * and all MGETs are sent in a single pipeline.
+     */
+    @Override
+    public Map<String, VehicleState> getAll(Collection<String> vehicleIds) {
+        if (vehicleIds.isEmpty()) {
+            return Map.of();
+        }
+        List<String> ids = List.copyOf(vehicleIds);
+        List<List<String>> chunks = Batches.partition(ids.stream().map(id -> KEY_PREFIX + id).toList(), maxBatchSize);
+
+        List<Object> values = new ArrayList<>(ids.size());
+        if (chunks.size() == 1) {
+            List<Object> reply = redisTemplate.opsForValue().multiGet(chunks.get(0));
+            if (reply != null) {
+                values.addAll(reply);
+            }
+        } else {
+            List<Object> replies = redisTemplate.executePipelined(new SessionCallback<Object>() {
+                @Override
+                @SuppressWarnings("unchecked")
+                public <K, V> Object execute(RedisOperations<K, V> operations) throws DataAccessException {
+                    RedisOperations<String, Object> ops = (RedisOperations<String, Object>) operations;
+                    for (List<String> chunk : chunks) {
+                        ops.opsForValue().multiGet(chunk);
+                    }
+                    return null;
+                }
+            });
+            for (Object reply : replies) {
+                values.addAll((List<?>) reply);
+            }
+        }
+
+        Map<String, VehicleState> states = new HashMap<>();
+        for (int i = 0; i < ids.size() && i < values.size(); i++) {
+            if (values.get(i) instanceof VehicleState state) {
+                states.put(ids.get(i), withVehicleId(state, ids.get(i)));
+            }
+        }
+        return states;
+    }
+
+    @Override
+    public void save(VehicleState state) {
+        redisTemplate.opsForValue().set(KEY_PREFIX + state.getVehicleId(), state);
+    }
+
+    /**
+     * MSETs of at most {@code geofence.state.max-batch-size} keys, sent in a single pipeline.
+     */
+    @Override
+    public void saveAll(Collection<VehicleState> states) {
+        if (states.isEmpty()) {
+            return;
+        }
+        Map<String, Object> values = new LinkedHashMap<>();
+        for (VehicleState state : states) {
+            values.put(KEY_PREFIX + state.getVehicleId(), state);
+        }
+        List<List<String>> chunks = Batches.partition(new ArrayList<>(values.keySet()), maxBatchSize);
+
+        if (chunks.size() == 1) {
+            redisTemplate.opsForValue().multiSet(values);
+            return;
+        }
+        redisTemplate.executePipelined(new SessionCallback<Object>() {
+            @Override
+            @SuppressWarnings("unchecked")
+            public <K, V> Object execute(RedisOperations<K, V> operations) throws DataAccessException {
+                RedisOperations<String, Object> ops = (RedisOperations<String, Object>) operations;
+                for (List<String> chunk : chunks) {
+                    Map<String, Object> batch = new LinkedHashMap<>();
+                    for (String key : chunk) {
+                        batch.put(key, values.get(key));
+                    }
+                    ops.opsForValue().multiSet(batch);
+                }
+                return null;
+            }
+        });
+    }
+
+    @Override
+    public void save(VehicleState state, ZoneMembershipChange change) {
+        if (guardWrites) {
+            SaveStateScript.saveGuarded(redisTemplate, KEY_PREFIX, state, change, stateArgs(state));
+            return;
+        }
+        if (!SaveStateScript.hasChange(change)) {
+            save(state);
+            return;
+        }
+        redisTemplate.execute(SaveStateScript.SCRIPT, SaveStateScript.ARGS, SaveStateScript.RESULT,
+                SaveStateScript.keys(KEY_PREFIX + state.getVehicleId(), change),
+                SaveStateScript.args(state.getVehicleId(), change, null, stateArgs(state)).toArray());
+    }
+
+    /**
+     * Guarded, every state runs the save-state script, all in one pipeline. Otherwise only
+     * states with a membership change do, and the rest are written as by
+     * {@link #saveAll(Collection)}.
+     */
+    @Override
+    public void saveAll(Collection<VehicleState> states, Map<String, ZoneMembershipChange> changes) {
+        if (guardWrites) {
+            SaveStateScript.saveAllGuarded(redisTemplate, KEY_PREFIX, states, changes, this::stateArgs);
+            return;
+        }
+        saveAll(SaveStateScript.saveChanged(redisTemplate, KEY_PREFIX, states, changes, this::stateArgs));
+    }
+
+    // The value exactly as SET by the template, so reads cannot tell the two write paths apart
+    @SuppressWarnings("unchecked")
+    private List<byte[]> stateArgs(VehicleState state) {
+        return List.of(((RedisSerializer<Object>) redisTemplate.getValueSerializer()).serialize(state));
+    }
+
+    // The binary codec leaves the vehicle ID out of the value since the key carries it
+    static VehicleState withVehicleId(VehicleState state, String vehicleId) {
+        if (state != null && state.getVehicleId() == null) {
+            state.setVehicleId(vehicleId);
+        }
+        return state;
+    }
+
+    @Override
+    public Map<String, Advance> advanceAll(Collection<VehicleState> states) {
+        return AdvanceStateScript.advanceAll(redisTemplate, KEY_PREFIX, states, this::stateArgs,
+                (vehicleId, value) -> withVehicleId(
+                        (VehicleState) redisTemplate.getValueSerializer().deserialize(value.get(0)), vehicleId));
+    }
+
+    // The value is rewritten as a whole either way
+    @Override
+    public void touch(VehicleState state) {
+        save(state, null);
+    }
+
+    @Override
+    public void touchAll(Collection<VehicleState> states) {
+        saveAll(states, Map.of());
+    }
+}
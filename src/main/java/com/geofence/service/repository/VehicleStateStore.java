@@ -0,0 +1,93 @@
+package com.geofence.service.repository;
+
+import com.geofence.service.exception.StaleVehicleStateException;
+import com.geofence.service.model.VehicleState;
+import com.geofence.service.model.ZoneMembershipChange;
+
+import java.util.Collection;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Redis layout for vehicle state, selected with {@code geofence.state.layout}.
+ *
+ * With {@code geofence.state.guard-writes} (the default), the writes taking a
+ * membership change and the touches are guarded: each stores the state only if the
+ * stored one is older, atomically and in the same round trip, and otherwise throws
+ * {@link StaleVehicleStateException}. {@link #save(VehicleState)} and
+ * {@link #saveAll(Collection)} always overwrite.
+ */
+public interface VehicleStateStore {
+
+    /**
+     * Result of {@link #advanceAll} for one vehicle: whether the state was stored and, if
+     * not, the stored state it was compared with (null if the vehicle has none).
+     */
+    record Advance(boolean written, VehicleState previous) {
+    }
+
+    VehicleState get(String vehicleId);
+
+    /**
+     * Loads several states in one round trip; vehicles without state are absent from the map.
+     */
+    Map<String, VehicleState> getAll(Collection<String> vehicleIds);
+
+    void save(VehicleState state);
+
+    /**
+     * Stores several states in one round trip.
+     */
+    void saveAll(Collection<VehicleState> states);
+
+    /**
+     * Saves the state and applies the vehicle's zone membership change to the per-zone
+     * reverse index atomically. A null or empty change saves only the state.
+     *
+     * @throws StaleVehicleStateException if guarded and the stored state is at least as new
+     */
+    void save(VehicleState state, ZoneMembershipChange change);
+
+    /**
+     * Bulk variant of {@link #save(VehicleState, ZoneMembershipChange)}, in one round
+     * trip; {@code changes} is keyed by vehicle ID and may omit unchanged vehicles.
+     *
+     * @throws StaleVehicleStateException if guarded, naming the vehicles whose stored
+     *         state is at least as new; every other state is stored
+     */
+    void saveAll(Collection<VehicleState> states, Map<String, ZoneMembershipChange> changes);
+
+    /**
+     * Persists a state whose zone is unchanged since it was last saved. Layouts that
+     * store the zone separately only write {@code lastUpdated}.
+     *
+     * @throws StaleVehicleStateException if guarded and the stored state is at least as new
+     */
+    void touch(VehicleState state);
+
+    /**
+     * Bulk variant of {@link #touch(VehicleState)}, in one round trip.
+     *
+     * @throws StaleVehicleStateException as {@link #saveAll(Collection, Map)}
+     */
+    void touchAll(Collection<VehicleState> states);
+
+    /**
+     * Stores each state whose vehicle is still in the zones of its stored state, which
+     * must also be older; for every other vehicle, returns the stored state instead of
+     * writing. Each comparison and write is one atomic step in Redis, and the whole call
+     * is one round trip, so a same-zone ping needs no separate read. A state with null
+     * zones is never stored, only compared. Nothing touches the per-zone reverse index:
+     * only unchanged vehicles are written.
+     *
+     * @return the result for every vehicle, keyed by vehicle ID
+     */
+    Map<String, Advance> advanceAll(Collection<VehicleState> states);
+
+    /**
+     * Single-vehicle {@link #advanceAll}.
+     */
+    default Advance advance(VehicleState state) {
+        return advanceAll(List.of(state)).get(state.getVehicleId());
+    }
+}
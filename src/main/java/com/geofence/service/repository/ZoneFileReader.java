@@ -0,0 +1,181 @@
+package com.geofence.service.repository;
+
+import com.fasterxml.jackson.core.JsonParser;
+import com.fasterxml.jackson.core.JsonToken;
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import org.locationtech.jts.geom.Coordinate;
+import org.locationtech.jts.geom.Geometry;
+import org.locationtech.jts.geom.GeometryFactory;
+import org.locationtech.jts.geom.LinearRing;
+import org.locationtech.jts.geom.Polygon;
+import org.locationtech.jts.io.ParseException;
+import org.locationtech.jts.io.WKBReader;
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Locale;
+
+/**
+ * Streams zone geometries out of a file, one feature at a time, so a dataset of any
+ * size is never held in memory as a whole. The format follows the file extension:
+ * <ul>
+ *   <li>{@code .geojson}, {@code .json}: a GeoJSON FeatureCollection of Polygon and
+ *   MultiPolygon features. The zone ID is the feature property named {@code idProperty},
+ *   else the feature's {@code id}.</li>
+ *   <li>{@code .wkb}, {@code .tsv}: one zone per line, the zone ID, a tab and the
+ *   geometry as hex WKB or EWKB, as written by PostGIS {@code COPY (SELECT id, geom ...)}.</li>
+ * </ul>
+ * Features without an ID are named {@code zone-{n}}, n counting features from 1.
+ */
+public final class ZoneFileReader {
+
+    /**
+     * Receives each feature on the reading thread, in file order.
+     */
+    public interface Sink {
+
+        void feature(String zoneId, Geometry geometry);
+
+        /**
+         * A feature that could not be turned into a geometry.
+         */
+        void skipped(String zoneId, String reason);
+    }
+
+    private final ObjectMapper objectMapper;
+    private final GeometryFactory geometryFactory;
+    private final String idProperty;
+
+    public ZoneFileReader(ObjectMapper objectMapper, GeometryFactory geometryFactory, String idProperty) {
+        this.objectMapper = objectMapper;
+        this.geometryFactory = geometryFactory;
+        this.idProperty = idProperty;
+    }
+
+    public void read(Path path, Sink sink) throws IOException {
+        String name = path.getFileName().toString().toLowerCase(Locale.ROOT);
+        if (name.endsWith(".geojson") || name.endsWith(".json")) {
+            try (InputStream in = Files.newInputStream(path)) {
+                readGeoJson(in, sink);
+            }
+        } else if (name.endsWith(".wkb") || name.endsWith(".tsv")) {
+            try (BufferedReader in = Files.newBufferedReader(path, StandardCharsets.UTF_8)) {
+                readHexWkb(in, sink);
+            }
+        } else {
+            throw new IllegalArgumentException("Unsupported zone file " + path
+                    + ", expected .geojson, .json, .wkb or .tsv");
+        }
+    }
+
+    void readGeoJson(InputStream in, Sink sink) throws IOException {
+        try (JsonParser parser = objectMapper.getFactory().createParser(in)) {
+            if (parser.nextToken() != JsonToken.START_OBJECT) {
+                throw new IOException("Zone file is not a GeoJSON FeatureCollection");
+            }
+            int count = 0;
+            while (parser.nextToken() == JsonToken.FIELD_NAME) {
+                String field = parser.currentName();
+                JsonToken value = parser.nextToken();
+                if (!"features".equals(field) || value != JsonToken.START_ARRAY) {
+                    parser.skipChildren();
+                    continue;
+                }
+                // Only the current feature is ever materialized as a tree
+                while (parser.nextToken() == JsonToken.START_OBJECT) {
+                    JsonNode feature = objectMapper.readTree(parser);
+                    feature(feature, ++count, sink);
+                }
+            }
+        }
+    }
+
+    void readHexWkb(BufferedReader in, Sink sink) throws IOException {
+        WKBReader wkbReader = new WKBReader(geometryFactory);
+        int count = 0;
+        String line;
+        while ((line = in.readLine()) != null) {
+            if (line.isBlank()) {
+                continue;
+            }
+            count++;
+            int tab = line.indexOf('\t');
+            String zoneId = tab > 0 ? line.substring(0, tab) : "zone-" + count;
+            try {
+                sink.feature(zoneId, wkbReader.read(WKBReader.hexToBytes(line.substring(tab + 1).trim())));
+            } catch (ParseException | RuntimeException e) {
+                sink.skipped(zoneId, "unreadable WKB: " + e.getMessage());
+            }
+        }
+    }
+
+    private void feature(JsonNode feature, int count, Sink sink) {
+        String zoneId = zoneId(feature, count);
+        JsonNode geometry = feature.get("geometry");
+        if (geometry == null || geometry.isNull()) {
+            sink.skipped(zoneId, "no geometry");
+            return;
+        }
+        String type = geometry.path("type").asText();
+        JsonNode coordinates = geometry.path("coordinates");
+        try {
+            switch (type) {
+                case "Polygon" -> sink.feature(zoneId, polygon(coordinates));
+                case "MultiPolygon" -> {
+                    Polygon[] polygons = new Polygon[coordinates.size()];
+                    for (int i = 0; i < polygons.length; i++) {
+                        polygons[i] = polygon(coordinates.get(i));
+                    }
+                    sink.feature(zoneId, geometryFactory.createMultiPolygon(polygons));
+                }
+                default -> sink.skipped(zoneId, "unsupported geometry type '" + type + "'");
+            }
+        } catch (IllegalArgumentException e) {
+            sink.skipped(zoneId, e.getMessage());
+        }
+    }
+
+    private String zoneId(JsonNode feature, int count) {
+        JsonNode id = feature.path("properties").get(idProperty);
+        if (id == null || id.isNull() || id.isContainerNode()) {
+            id = feature.get("id");
+        }
+        return id == null || id.isNull() || id.isContainerNode() || id.asText().isBlank()
+                ? "zone-" + count
+                : id.asText();
+    }
+
+    // GeoJSON polygon: shell ring first, then holes; positions are [lon, lat, ...]
+    private Polygon polygon(JsonNode rings) {
+        if (!rings.isArray() || rings.isEmpty()) {
+            throw new IllegalArgumentException("polygon without rings");
+        }
+        LinearRing shell = ring(rings.get(0));
+        LinearRing[] holes = new LinearRing[rings.size() - 1];
+        for (int i = 0; i < holes.length; i++) {
+            holes[i] = ring(rings.get(i + 1));
+        }
+        return geometryFactory.createPolygon(shell, holes);
+    }
+
+    private LinearRing ring(JsonNode positions) {
+        if (!positions.isArray()) {
+            throw new IllegalArgumentException("ring is not an array of positions");
+        }
+        Coordinate[] ring = new Coordinate[positions.size()];
+        for (int i = 0; i < ring.length; i++) {
+            JsonNode position = positions.get(i);
+            if (!position.isArray() || position.size() < 2 || !position.get(0).isNumber() || !position.get(1).isNumber()) {
+                throw new IllegalArgumentException("invalid position " + position);
+            }
+            ring[i] = new Coordinate(position.get(0).doubleValue(), position.get(1).doubleValue());
+        }
+        // Throws IllegalArgumentException for open rings or fewer than 4 positions
+        return geometryFactory.createLinearRing(ring);
+    }
+}
@@ -0,0 +1,95 @@
+package com.geofence.service.repository;
+
+import com.geofence.service.model.ZoneVehicle;
+import com.geofence.service.model.ZoneVehiclesPage;
+import org.springframework.data.redis.core.StringRedisTemplate;
+import org.springframework.data.redis.core.ZSetOperations;
+import org.springframework.data.redis.core.ZSetOperations.TypedTuple;
+import org.springframework.stereotype.Repository;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.List;
+import java.util.Set;
+
+/**
+ * Per-zone reverse index: a sorted set at {@code zones:vehicles:{zoneId}} of the vehicles
+ * inside the zone, scored by the time they entered it. Written by the state stores
+ * together with the state (see {@link SaveStateScript}), read here.
+ *
+ * Pages are ordered by entry time, then vehicle ID, which is the sorted set's own order,
+ * so a page is a rank range read: O(log N + page size) regardless of the zone's size.
+ */
+@Repository
+public class ZoneMembershipStore {
+
+    static final String KEY_PREFIX = "zones:vehicles:";
+
+    private final StringRedisTemplate redisTemplate;
+
+    public ZoneMembershipStore(StringRedisTemplate redisTemplate) {
+        this.redisTemplate = redisTemplate;
+    }
+
+    /**
+     * Returns up to {@code limit} vehicles after {@code cursor} (null for the first page).
+     * The cursor is {@code {enteredAt}:{vehicleId}} of the last vehicle of the previous page.
+     */
+    public ZoneVehiclesPage page(String zoneId, String cursor, int limit) {
+        String key = KEY_PREFIX + zoneId;
+        ZSetOperations<String, String> zSet = redisTemplate.opsForZSet();
+        long start = cursor == null ? 0 : startAfter(zSet, key, cursor);
+        Set<TypedTuple<String>> range = zSet.rangeWithScores(key, start, start + limit - 1);
+        Long total = zSet.zCard(key);
+
+        List<ZoneVehicle> vehicles = toVehicles(range);
+        String nextCursor = vehicles.size() < limit ? null : cursor(vehicles.get(vehicles.size() - 1));
+        return new ZoneVehiclesPage(zoneId, total == null ? 0 : total, vehicles, nextCursor);
+    }
+
+    public void delete(String zoneId) {
+        redisTemplate.delete(KEY_PREFIX + zoneId);
+    }
+
+    // Rank of the first member after the cursor
+    private static long startAfter(ZSetOperations<String, String> zSet, String key, String cursor) {
+        int separator = cursor.indexOf(':');
+        long enteredAt = Long.parseLong(cursor, 0, separator, 10);
+        String vehicleId = cursor.substring(separator + 1);
+
+        Double score = zSet.score(key, vehicleId);
+        if (score != null && score.longValue() == enteredAt) {
+            Long rank = zSet.rank(key, vehicleId);
+            if (rank != null) {
+                return rank + 1;
+            }
+        }
+        // The cursor vehicle left or re-entered since: count every member ordered before it
+        Long before = zSet.count(key, Double.NEGATIVE_INFINITY, enteredAt - 1);
+        Set<String> ties = zSet.rangeByScore(key, enteredAt, enteredAt);
+        long start = before == null ? 0 : before;
+        if (ties != null) {
+            for (String tie : ties) {
+                if (tie.compareTo(vehicleId) <= 0) {
+                    start++;
+                }
+            }
+        }
+        return start;
+    }
+
+    private static List<ZoneVehicle> toVehicles(Collection<TypedTuple<String>> range) {
+        if (range == null) {
+            return List.of();
+        }
+        List<ZoneVehicle> vehicles = new ArrayList<>(range.size());
+        for (TypedTuple<String> member : range) {
+            vehicles.add(new ZoneVehicle(member.getValue(), member.getScore() == null ? 0 : member.getScore().longValue()));
+        }
+        return vehicles;
+    }
+
+    private static String cursor(ZoneVehicle vehicle) {
+        return vehicle.getEnteredAt() + ":" + vehicle.getVehicleId();
+    }
+}
@@ -0,0 +1,21 @@
+package com.geofence.service.repository;
+
+import com.geofence.service.dto.ZoneDTO;
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.util.List;
+
+/**
+ * Persisted form of a zone. {@code sequence} records creation order, which decides
+ * the winner when zones overlap, and survives updates and restarts.
+ */
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+public class ZoneRecord {
+    private String zoneId;
+    private long sequence;
+    private List<ZoneDTO.CoordinateDTO> polygon;
+}
@@ -0,0 +1,48 @@
+package com.geofence.service.repository;
+
+import java.util.List;
+
+/**
+ * Persistence for zone definitions, selected with {@code geofence.zones.store}.
+ *
+ * The store also keeps a version number that every change bumps, so replicas sharing
+ * the store can tell when their zone index is out of date.
+ */
+public interface ZoneStore {
+
+    /**
+     * Returns all zones in creation order.
+     */
+    List<ZoneRecord> findAll();
+
+    /**
+     * Allocates the creation sequence for a new zone.
+     */
+    long nextSequence();
+
+    void save(ZoneRecord record);
+
+    /**
+     * Stores the record unless a zone with the same ID exists.
+     *
+     * @return true if the record was stored
+     */
+    boolean saveIfAbsent(ZoneRecord record);
+
+    /**
+     * Stores the record only if a zone with the same ID exists, so an update cannot
+     * recreate a zone that was deleted meanwhile.
+     *
+     * @return true if the record was stored
+     */
+    boolean replaceIfPresent(ZoneRecord record);
+
+    void delete(String zoneId);
+
+    /**
+     * Marks the zone set as changed and returns the new version.
+     */
+    long bumpVersion();
+
+    long getVersion();
+}
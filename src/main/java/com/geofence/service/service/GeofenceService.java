@@ -1,71 +1,464 @@
 package com.geofence.service.service;
 
+import com.geofence.service.exception.StaleVehicleStateException;
+import com.geofence.service.geo.ZoneIndex;
+import com.geofence.service.metrics.GeofenceMetrics;
+import com.geofence.service.metrics.GeofenceMetrics.IgnoredEvent;
+import com.geofence.service.metrics.GeofenceMetrics.Stage;
 import com.geofence.service.model.LocationEvent;
 import com.geofence.service.model.VehicleState;
+import com.geofence.service.model.ZoneMembershipChange;
 import com.geofence.service.model.ZoneTransitionEvent;
+import com.geofence.service.repository.VehicleStateStore.Advance;
 import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
 import org.springframework.stereotype.Service;
 
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
 import java.util.Objects;
+import java.util.Set;
+import java.util.stream.IntStream;
 
+/**
+ * Turns location events into zone transitions.
+ *
+ * The vehicle's stored state is read before detection, so its last membership can
+ * steer the lookup ({@link ZoneIndex#detectAll(double, double, int[])}). With
+ * {@code geofence.zones.exit-buffer-meters} set, a vehicle only leaves a zone once it
+ * is that far outside it, so GPS jitter along a boundary does not produce bursts of
+ * exits and re-entries, each a state write and a published transition.
+ *
+ * An event no newer than the vehicle's stored state is ignored: older ones arrived out
+ * of order, equal ones are redeliveries. Neither writes state nor reports a transition,
+ * so a late ping can never move a vehicle back. Replicas racing on one vehicle are
+ * settled by the guarded write (see {@link com.geofence.service.repository.VehicleStateStore}):
+ * the loser's event is dropped as superseded, its transition unpublished.
+ *
+ * With {@code geofence.state.single-trip}, detection runs first and Redis compares the
+ * result with the stored state in a script ({@link VehicleStateService#advance}): a
+ * vehicle that stayed in its zones is stored in that one round trip, and otherwise the
+ * stored state comes back and the event continues as above.
+ */
 @Slf4j
 @Service
 public class GeofenceService {
 
+    private static final int[] NO_ZONES = new int[0];
+
     private final ZoneService zoneService;
     private final VehicleStateService stateService;
+    private final GeofenceMetrics metrics;
+    private final TransitionBroadcaster broadcaster;
+    private final TransitionLogService transitionLog;
+    private final OccupancyService occupancy;
+    private final double exitBufferMeters;
+    private final boolean singleTrip;
 
-    public GeofenceService(ZoneService zoneService, VehicleStateService stateService) {
+    public GeofenceService(ZoneService zoneService, VehicleStateService stateService, GeofenceMetrics metrics,
+                           TransitionBroadcaster broadcaster, TransitionLogService transitionLog,
+                           OccupancyService occupancy,
+                           @Value("${geofence.zones.exit-buffer-meters:0}") double exitBufferMeters,
+                           @Value("${geofence.state.single-trip:false}") boolean singleTrip) {
+        if (!(exitBufferMeters >= 0)) {
+            throw new IllegalArgumentException("geofence.zones.exit-buffer-meters must not be negative");
+        }
+        if (singleTrip && stateService.isCacheEnabled()) {
+            throw new IllegalArgumentException(
+                    "geofence.state.single-trip cannot be combined with geofence.state.cache.enabled");
+        }
         this.zoneService = zoneService;
         this.stateService = stateService;
+        this.metrics = metrics;
+        this.broadcaster = broadcaster;
+        this.transitionLog = transitionLog;
+        this.occupancy = occupancy;
+        this.exitBufferMeters = exitBufferMeters;
+        this.singleTrip = singleTrip;
     }
 
     public ZoneTransitionEvent process(LocationEvent event) {
-
-        // Detect new zone
-        String newZone = zoneService.detectZone(event.getLat(), event.getLon());
+        if (singleTrip) {
+            return processSingleTrip(event);
+        }
+        long start = System.nanoTime();
 
         // Get previous state
         VehicleState prev = stateService.getState(event.getVehicleId());
         if (prev == null) {
             prev = new VehicleState(event.getVehicleId(), null, 0);
         }
+        IgnoredEvent ignored = outOfOrder(prev, event);
+        if (ignored != null) {
+            metrics.recordEventIgnored(ignored);
+            return null;
+        }
+        long read = System.nanoTime();
 
-        // If zone changed → transition event
-        if (!Objects.equals(prev.getCurrentZone(), newZone)) {
+        // Detect every containing zone against one index snapshot, starting from the last zone
+        ZoneIndex index = zoneService.currentIndex();
+        int[] zones = index.detectAll(event.getLat(), event.getLon(), prev.getZones());
+        long detected = System.nanoTime();
 
-            // 🔥 LOG TRANSITION
-            log.info("Vehicle {} transitioned from {} → {} at timestamp {}",
-                    event.getVehicleId(),
-                    prev.getCurrentZone(),
-                    newZone,
-                    event.getTimestamp());
+        ZoneTransitionEvent transition = applyAndSave(prev, event, index, zones);
+        long written = System.nanoTime();
 
-            ZoneTransitionEvent transition = new ZoneTransitionEvent(
-                    event.getVehicleId(),
-                    prev.getCurrentZone(),
-                    newZone,
-                    event.getTimestamp()
-            );
+        metrics.recordStage(Stage.STATE_READ, read - start);
+        metrics.recordStage(Stage.DETECT, detected - read);
+        metrics.recordStage(Stage.STATE_WRITE, written - detected);
+        metrics.recordProcess(written - start);
+
+        // Only once the new state is stored
+        if (transition != null) {
+            publish(transition);
+        }
+        return transition;
+    }
+
+    // Detects first, without the stored zones as a hint, and offers the result to Redis,
+    // which stores it if the vehicle stayed in its zones or hands back the stored state
+    private ZoneTransitionEvent processSingleTrip(LocationEvent event) {
+        long start = System.nanoTime();
+        ZoneIndex index = zoneService.currentIndex();
+        int[] zones = index.detectAll(event.getLat(), event.getLon());
+        long detected = System.nanoTime();
+
+        Advance advance = stateService.advance(new VehicleState(event.getVehicleId(), primaryZone(index, zones),
+                event.getTimestamp(), zones));
+        ZoneTransitionEvent transition = null;
+        if (!advance.written()) {
+            VehicleState prev = advance.previous() != null
+                    ? advance.previous()
+                    : new VehicleState(event.getVehicleId(), null, 0);
+            IgnoredEvent ignored = outOfOrder(prev, event);
+            if (ignored != null) {
+                metrics.recordEventIgnored(ignored);
+                return null;
+            }
+            transition = applyAndSave(prev, event, index, zones);
+        }
+        long written = System.nanoTime();
+
+        metrics.recordStage(Stage.DETECT, detected - start);
+        metrics.recordStage(Stage.STATE_WRITE, written - detected);
+        metrics.recordProcess(written - start);
 
-            // update state
-            prev.setCurrentZone(newZone);
-            prev.setLastUpdated(event.getTimestamp());
-            stateService.saveState(prev);
+        if (transition != null) {
+            publish(transition);
+        }
+        return transition;
+    }
 
+    // Applies the event and stores the state; null if there is no transition or another
+    // replica stored a newer state meanwhile
+    private ZoneTransitionEvent applyAndSave(VehicleState prev, LocationEvent event, ZoneIndex index, int[] zones) {
+        int[] prevZones = prev.getZones();
+        ZoneTransitionEvent transition = apply(prev, event, index, zones);
+        try {
+            if (transition != null || prev.getZones() != prevZones) {
+                stateService.saveState(prev, ZoneMembershipChange.of(transition));
+            } else {
+                stateService.touch(prev);
+            }
             return transition;
+        } catch (StaleVehicleStateException e) {
+            metrics.recordEventIgnored(IgnoredEvent.SUPERSEDED);
+            return null;
+        }
+    }
+
+    /**
+     * Processes a batch of events with one state read and one state write for the whole batch.
+     * Events are applied in timestamp order (ties keep input order), so each vehicle sees its
+     * pings in sequence and late arrivals within the batch are put back in place; the returned
+     * transitions are ordered by the position of the event that caused them in the input.
+     */
+    public List<ZoneTransitionEvent> processBatch(List<LocationEvent> events) {
+        List<ZoneTransitionEvent> result = new ArrayList<>();
+        for (ZoneTransitionEvent transition : processBatchAligned(events)) {
+            if (transition != null) {
+                result.add(transition);
+            }
+        }
+        return result;
+    }
+
+    /**
+     * Same as {@link #processBatch}, but returns one slot per input event, null where the
+     * event caused no transition.
+     */
+    public ZoneTransitionEvent[] processBatchAligned(List<LocationEvent> events) {
+        if (events.isEmpty()) {
+            return new ZoneTransitionEvent[0];
+        }
+        long start = System.nanoTime();
+        ZoneIndex index = zoneService.currentIndex();
+        int[] order = IntStream.range(0, events.size())
+                .boxed()
+                .sorted(Comparator.comparingLong(i -> events.get(i).getTimestamp()))
+                .mapToInt(Integer::intValue)
+                .toArray();
+
+        int[][] zones = new int[events.size()][];
+        Map<String, VehicleState> states;
+        long readNanos;
+        long detectNanos;
+        if (singleTrip) {
+            for (int i = 0; i < events.size(); i++) {
+                zones[i] = index.detectAll(events.get(i).getLat(), events.get(i).getLon());
+            }
+            long detected = System.nanoTime();
+            states = advanceBatch(events, zones, order, index);
+            detectNanos = detected - start;
+            readNanos = System.nanoTime() - detected;
+        } else {
+            // Single bulk read for every vehicle in the batch
+            List<String> vehicleIds = events.stream().map(LocationEvent::getVehicleId).distinct().toList();
+            states = new HashMap<>(stateService.getStates(vehicleIds));
+            for (String vehicleId : vehicleIds) {
+                states.computeIfAbsent(vehicleId, id -> new VehicleState(id, null, 0));
+            }
+            long read = System.nanoTime();
+
+            // Detect zones up front, CPU only; the stored membership is a hint, exact or not
+            for (int i = 0; i < events.size(); i++) {
+                LocationEvent event = events.get(i);
+                int[] previous = states.get(event.getVehicleId()).getZones();
+                zones[i] = index.detectAll(event.getLat(), event.getLon(), previous);
+            }
+            readNanos = read - start;
+            detectNanos = System.nanoTime() - read;
         }
 
-        // If same zone → update lastUpdated only
+        ZoneTransitionEvent[] transitions = new ZoneTransitionEvent[events.size()];
+        // Net membership change of each vehicle over the batch, for the reverse index
+        Map<String, ZoneMembershipChange> changes = new HashMap<>();
+        // Events applied per vehicle; vehicles whose every event was ignored are not written
+        Map<String, Integer> appliedEvents = new HashMap<>();
+        for (int i : order) {
+            LocationEvent event = events.get(i);
+            VehicleState state = states.get(event.getVehicleId());
+            if (state == null) {
+                // Stored in the single trip already, with no transition
+                continue;
+            }
+            IgnoredEvent ignored = outOfOrder(state, event);
+            if (ignored != null) {
+                metrics.recordEventIgnored(ignored);
+                continue;
+            }
+            appliedEvents.merge(event.getVehicleId(), 1, Integer::sum);
+            transitions[i] = apply(state, event, index, zones[i]);
+            if (transitions[i] != null) {
+                changes.computeIfAbsent(event.getVehicleId(), id -> new ZoneMembershipChange()).add(transitions[i]);
+            }
+        }
+
+        // Single bulk write of the final state of each vehicle
+        long applied = System.nanoTime();
+        List<VehicleState> updated = new ArrayList<>(appliedEvents.size());
+        for (String vehicleId : appliedEvents.keySet()) {
+            updated.add(states.get(vehicleId));
+        }
+        try {
+            stateService.saveStates(updated, changes);
+        } catch (StaleVehicleStateException e) {
+            dropSuperseded(transitions, e.getVehicleIds(), appliedEvents);
+        }
+        long written = System.nanoTime();
+
+        metrics.recordBatchStage(Stage.STATE_READ, readNanos);
+        metrics.recordBatchStage(Stage.DETECT, detectNanos);
+        metrics.recordBatchStage(Stage.STATE_WRITE, written - applied);
+        metrics.recordBatch(events.size(), written - start);
+
+        // In the order applied, so each vehicle's exits follow the entries they close
+        for (int i : order) {
+            if (transitions[i] != null) {
+                publish(transitions[i]);
+            }
+        }
+        return transitions;
+    }
+
+    /**
+     * Offers each vehicle's state after the batch to Redis in one pipeline. A vehicle whose
+     * every event detects the same zones is stored if those are its stored zones; any
+     * other vehicle is only compared. Returns the stored state of every vehicle that was
+     * not written, which the caller applies the events to; written vehicles are absent.
+     */
+    private Map<String, VehicleState> advanceBatch(List<LocationEvent> events, int[][] zones, int[] order,
+                                                   ZoneIndex index) {
+        Map<String, VehicleState> next = new HashMap<>();
+        for (int i : order) {
+            LocationEvent event = events.get(i);
+            VehicleState state = next.get(event.getVehicleId());
+            if (state == null) {
+                next.put(event.getVehicleId(), new VehicleState(event.getVehicleId(), primaryZone(index, zones[i]),
+                        event.getTimestamp(), zones[i]));
+            } else if (state.getZones() != null && Arrays.equals(state.getZones(), zones[i])) {
+                state.setLastUpdated(event.getTimestamp());
+            } else {
+                // Moves within the batch: unknown zones make the script only read
+                state.setZones(null);
+            }
+        }
+        Map<String, Advance> advances = stateService.advanceAll(next.values());
+        Map<String, VehicleState> states = new HashMap<>();
+        for (String vehicleId : next.keySet()) {
+            Advance advance = advances.get(vehicleId);
+            if (advance == null || !advance.written()) {
+                VehicleState previous = advance == null ? null : advance.previous();
+                states.put(vehicleId, previous != null ? previous : new VehicleState(vehicleId, null, 0));
+            }
+        }
+        return states;
+    }
+
+    private static String primaryZone(ZoneIndex index, int[] zones) {
+        return zones.length == 0 ? null : index.zoneId(zones[0]);
+    }
+
+    // Null if the event is newer than the state, else why it is ignored
+    static IgnoredEvent outOfOrder(VehicleState state, LocationEvent event) {
+        if (event.getTimestamp() > state.getLastUpdated()) {
+            return null;
+        }
+        return event.getTimestamp() < state.getLastUpdated() ? IgnoredEvent.STALE : IgnoredEvent.DUPLICATE;
+    }
+
+    // Unreports the transitions of vehicles whose batch write lost to another replica
+    private void dropSuperseded(ZoneTransitionEvent[] transitions, Set<String> vehicleIds,
+                                Map<String, Integer> appliedEvents) {
+        for (int i = 0; i < transitions.length; i++) {
+            if (transitions[i] != null && vehicleIds.contains(transitions[i].getVehicleId())) {
+                transitions[i] = null;
+            }
+        }
+        int events = 0;
+        for (String vehicleId : vehicleIds) {
+            events += appliedEvents.getOrDefault(vehicleId, 0);
+        }
+        metrics.recordEventsIgnored(IgnoredEvent.SUPERSEDED, events);
+    }
+
+    /**
+     * Applies one event to the vehicle state in place and returns the transition, if any.
+     *
+     * A transition is reported when the first-registered zone changes or the vehicle
+     * enters or exits any zone. The membership diff is a merge of two sorted key arrays.
+     * Exits from zones that were deleted since the last ping update the state without
+     * an event, since their IDs are gone. With an exit buffer, zones the vehicle was in
+     * are kept while it is within the buffer of them.
+     */
+    ZoneTransitionEvent apply(VehicleState prev, LocationEvent event, ZoneIndex index, int[] zones) {
+        int[] prevZones = prev.getZones() != null ? prev.getZones() : legacyMembership(prev, index);
+        if (exitBufferMeters > 0) {
+            zones = keepBuffered(prevZones, zones, event, index);
+        }
+        String newZone = primaryZone(index, zones);
         prev.setLastUpdated(event.getTimestamp());
-        stateService.saveState(prev);
 
-        // Optional debug log
-        log.debug("Vehicle {} stayed in zone {} at timestamp {}",
+        if (Arrays.equals(prevZones, zones) && Objects.equals(prev.getCurrentZone(), newZone)) {
+            log.debug("Vehicle {} stayed in zone {} at timestamp {}",
+                    event.getVehicleId(),
+                    newZone,
+                    event.getTimestamp());
+            if (prev.getZones() == null) {
+                // New or legacy state: store the membership, or the next ping cannot advance
+                prev.setZones(zones);
+            }
+            return null;
+        }
+
+        List<String> entered = new ArrayList<>(1);
+        List<String> exited = new ArrayList<>(1);
+        int i = 0, j = 0;
+        while (i < prevZones.length || j < zones.length) {
+            if (j == zones.length || (i < prevZones.length && prevZones[i] < zones[j])) {
+                String zoneId = index.zoneId(prevZones[i++]);
+                if (zoneId != null) {
+                    exited.add(zoneId);
+                }
+            } else if (i == prevZones.length || zones[j] < prevZones[i]) {
+                entered.add(index.zoneId(zones[j++]));
+            } else {
+                i++;
+                j++;
+            }
+        }
+        String prevZone = prev.getCurrentZone();
+        prev.setCurrentZone(newZone);
+        prev.setZones(zones);
+
+        if (Objects.equals(prevZone, newZone) && entered.isEmpty() && exited.isEmpty()) {
+            return null;
+        }
+
+        log.info("Vehicle {} transitioned from {} → {} (entered {}, exited {}) at timestamp {}",
                 event.getVehicleId(),
+                prevZone,
                 newZone,
+                entered,
+                exited,
                 event.getTimestamp());
 
-        return null;
+        if (!Objects.equals(prevZone, newZone)) {
+            metrics.recordTransition(prevZone, newZone);
+        }
+        return new ZoneTransitionEvent(event.getVehicleId(), prevZone, newZone, event.getTimestamp(), entered, exited);
+    }
+
+    /**
+     * Hands a stored transition to live subscribers, the transition log and the occupancy
+     * counters; none of them blocks.
+     */
+    void publish(ZoneTransitionEvent transition) {
+        broadcaster.publish(transition);
+        transitionLog.append(transition);
+        occupancy.record(transition);
+    }
+
+    // Adds back the previous zones the vehicle is still within the exit buffer of, keeping keys sorted
+    private int[] keepBuffered(int[] prevZones, int[] zones, LocationEvent event, ZoneIndex index) {
+        int[] merged = null;
+        int count = 0;
+        int j = 0;
+        for (int i = 0; i < prevZones.length; i++) {
+            int key = prevZones[i];
+            while (j < zones.length && zones[j] < key) {
+                j++;
+            }
+            if (j < zones.length && zones[j] == key) {
+                continue;
+            }
+            if (index.isWithinDistance(key, event.getLat(), event.getLon(), exitBufferMeters)) {
+                if (merged == null) {
+                    merged = new int[prevZones.length - i];
+                }
+                merged[count++] = key;
+            }
+        }
+        if (merged == null) {
+            return zones;
+        }
+        // Kept keys are sorted and not in zones; merge the two
+        int[] result = new int[zones.length + count];
+        int a = 0;
+        int b = 0;
+        for (int k = 0; k < result.length; k++) {
+            result[k] = b == count || (a < zones.length && zones[a] < merged[b]) ? zones[a++] : merged[b++];
+        }
+        return result;
+    }
+
+    // States written before membership was tracked only know their first zone
+    private static int[] legacyMembership(VehicleState state, ZoneIndex index) {
+        int key = state.getCurrentZone() == null ? -1 : index.key(state.getCurrentZone());
+        return key < 0 ? NO_ZONES : new int[]{key};
     }
 }
@@ -0,0 +1,133 @@
+package com.geofence.service.service;
+
+import com.fasterxml.jackson.core.JsonGenerator;
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.databind.MappingIterator;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.ObjectReader;
+import com.geofence.service.exception.ErrorResponse;
+import com.geofence.service.exception.IngestionOverloadedException;
+import com.geofence.service.model.LocationEvent;
+import com.geofence.service.model.ZoneTransitionEvent;
+import jakarta.validation.ConstraintViolation;
+import jakarta.validation.Validator;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.http.HttpStatus;
+import org.springframework.stereotype.Component;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.time.Instant;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * Runs a stream of newline-delimited {@link LocationEvent}s through the geofence
+ * pipeline and writes each resulting {@link ZoneTransitionEvent} back as one JSON line.
+ *
+ * Events are parsed one at a time as they arrive, so a device can keep one connection
+ * open and send a fix per line. Each event goes through the same path as
+ * {@code POST /api/events/location} (sharded when enabled), in stream order. An event
+ * that fails validation or is rejected by a full shard yields an error line and the
+ * stream goes on; malformed JSON or a processing failure ends it after an error line.
+ */
+@Slf4j
+@Component
+public class LocationStreamProcessor {
+
+    private final GeofenceService geofenceService;
+    private final ShardedEventProcessor shardedProcessor;
+    private final ObjectMapper objectMapper;
+    private final ObjectReader eventReader;
+    private final Validator validator;
+
+    public LocationStreamProcessor(GeofenceService geofenceService, ShardedEventProcessor shardedProcessor,
+                                   ObjectMapper objectMapper, Validator validator) {
+        this.geofenceService = geofenceService;
+        this.shardedProcessor = shardedProcessor;
+        this.objectMapper = objectMapper;
+        this.eventReader = objectMapper.readerFor(LocationEvent.class);
+        this.validator = validator;
+    }
+
+    /**
+     * Consumes events until the input ends and returns the number of events read.
+     */
+    public long process(InputStream in, OutputStream out) throws IOException {
+        long events = 0;
+        long transitions = 0;
+        try (MappingIterator<LocationEvent> iterator = eventReader.readValues(in);
+             JsonGenerator generator = objectMapper.getFactory().createGenerator(out)) {
+            generator.setRootValueSeparator(null);
+            while (true) {
+                LocationEvent event;
+                try {
+                    if (!iterator.hasNextValue()) {
+                        break;
+                    }
+                    event = iterator.nextValue();
+                } catch (JsonProcessingException e) {
+                    write(generator, error(HttpStatus.BAD_REQUEST, events + 1,
+                            "Malformed event: " + e.getOriginalMessage(), null));
+                    break;
+                }
+                events++;
+
+                Map<String, String> violations = validate(event);
+                if (!violations.isEmpty()) {
+                    write(generator, error(HttpStatus.BAD_REQUEST, events, "Invalid input parameters", violations));
+                    continue;
+                }
+
+                ZoneTransitionEvent transition;
+                try {
+                    transition = shardedProcessor.isEnabled()
+                            ? shardedProcessor.process(event)
+                            : geofenceService.process(event);
+                } catch (IngestionOverloadedException e) {
+                    write(generator, error(HttpStatus.TOO_MANY_REQUESTS, events, e.getMessage(), null));
+                    continue;
+                } catch (RuntimeException e) {
+                    log.error("Failed to process streamed event {} of vehicle {}", events, event.getVehicleId(), e);
+                    write(generator, error(HttpStatus.INTERNAL_SERVER_ERROR, events,
+                            "An unexpected error occurred", null));
+                    break;
+                }
+                if (transition != null) {
+                    transitions++;
+                    write(generator, transition);
+                }
+            }
+        }
+        log.debug("Location stream closed after {} events and {} transitions", events, transitions);
+        return events;
+    }
+
+    private Map<String, String> validate(LocationEvent event) {
+        Set<ConstraintViolation<LocationEvent>> violations = validator.validate(event);
+        Map<String, String> errors = new HashMap<>();
+        for (ConstraintViolation<LocationEvent> violation : violations) {
+            errors.put(violation.getPropertyPath().toString(), violation.getMessage());
+        }
+        return errors;
+    }
+
+    // One value per line, flushed so the client sees it while the stream is still open
+    private void write(JsonGenerator generator, Object value) throws IOException {
+        objectMapper.writeValue(generator, value);
+        generator.writeRaw('\n');
+        generator.flush();
+    }
+
+    private static ErrorResponse error(HttpStatus status, long event, String message, Map<String, String> errors) {
+        return ErrorResponse.builder()
+                .timestamp(Instant.now().toEpochMilli())
+                .status(status.value())
+                .error(status.getReasonPhrase())
+                .message("Event " + event + ": " + message)
+                .validationErrors(errors)
+                .build();
+    }
+}
@@ -0,0 +1,222 @@
+package com.geofence.service.service;
+
+import com.geofence.service.metrics.GeofenceMetrics;
+import com.geofence.service.model.VehicleDwell;
+import com.geofence.service.model.ZoneOccupancy;
+import com.geofence.service.model.ZoneTransitionEvent;
+import com.geofence.service.model.ZoneVehiclesPage;
+import com.geofence.service.repository.OccupancyStore;
+import com.geofence.service.repository.OccupancyStore.VehicleDelta;
+import com.geofence.service.repository.OccupancyStore.ZoneDelta;
+import com.geofence.service.repository.ZoneMembershipStore;
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Service;
+
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Live zone occupancy and dwell times, updated from transitions instead of scanning vehicle state.
+ *
+ * Each transition updates in-memory counters: the entry time of each open visit is
+ * remembered, and on exit the visit is counted and the time inside is added to the
+ * zone's and the vehicle's dwell totals. The number of vehicles inside a zone is read
+ * from the per-zone reverse index instead of being counted here. The counters are
+ * {@link LongAdder}s, so concurrent ingestion threads do not contend on them. Every
+ * {@code flush-interval}, the accumulated deltas are added to Redis hashes in one
+ * pipeline. Queries read those hashes, so they see every replica's deltas but lag by up
+ * to one interval.
+ *
+ * Open visits are kept only in memory. A visit counts towards dwell time only if its
+ * entry and exit are processed by the same replica, and visits open during a restart
+ * are not counted.
+ *
+ * Which vehicles are inside a zone is answered from the per-zone reverse index, which the
+ * state stores keep exact and which is independent of {@code enabled}.
+ */
+@Slf4j
+@Service
+public class OccupancyService {
+
+    private final OccupancyStore store;
+    private final ZoneMembershipStore membership;
+    private final GeofenceMetrics metrics;
+    private final boolean enabled;
+    private final Duration flushInterval;
+
+    private final Map<String, ZoneCounters> zones = new ConcurrentHashMap<>();
+    private final Map<Visit, Long> openVisits = new ConcurrentHashMap<>();
+    private final Map<Visit, Long> vehicleDwell = new ConcurrentHashMap<>();
+    private ScheduledExecutorService flusher;
+
+    public OccupancyService(OccupancyStore store,
+                            ZoneMembershipStore membership,
+                            GeofenceMetrics metrics,
+                            @Value("${geofence.occupancy.enabled:true}") boolean enabled,
+                            @Value("${geofence.occupancy.flush-interval:5s}") Duration flushInterval) {
+        if (enabled && (flushInterval.isNegative() || flushInterval.isZero())) {
+            throw new IllegalArgumentException("geofence.occupancy.flush-interval must be positive");
+        }
+        this.store = store;
+        this.membership = membership;
+        this.metrics = metrics;
+        this.enabled = enabled;
+        this.flushInterval = flushInterval;
+    }
+
+    @PostConstruct
+    public void startFlusher() {
+        if (!enabled) {
+            return;
+        }
+        metrics.registerOpenVisits(openVisits);
+        long interval = flushInterval.toMillis();
+        flusher = Executors.newSingleThreadScheduledExecutor(runnable -> {
+            Thread thread = new Thread(runnable, "occupancy-flush");
+            thread.setDaemon(true);
+            return thread;
+        });
+        flusher.scheduleWithFixedDelay(this::flush, interval, interval, TimeUnit.MILLISECONDS);
+        log.info("Zone occupancy enabled, flushing every {} ms", interval);
+    }
+
+    @PreDestroy
+    public void stopFlusher() {
+        if (flusher != null) {
+            flusher.shutdown();
+            flush();
+        }
+    }
+
+    public boolean isEnabled() {
+        return enabled;
+    }
+
+    /**
+     * Applies a stored transition to the in-memory counters; never touches Redis.
+     */
+    public void record(ZoneTransitionEvent transition) {
+        if (!enabled) {
+            return;
+        }
+        String vehicleId = transition.getVehicleId();
+        long timestamp = transition.getTimestamp();
+        for (String zoneId : orEmpty(transition.getExited())) {
+            Long since = openVisits.remove(new Visit(vehicleId, zoneId));
+            if (since != null && timestamp >= since) {
+                long dwell = timestamp - since;
+                ZoneCounters counters = counters(zoneId);
+                counters.visits.increment();
+                counters.dwell.add(dwell);
+                vehicleDwell.merge(new Visit(vehicleId, zoneId), dwell, Long::sum);
+            }
+        }
+        for (String zoneId : orEmpty(transition.getEntered())) {
+            openVisits.put(new Visit(vehicleId, zoneId), timestamp);
+        }
+    }
+
+    public ZoneOccupancy getZone(String zoneId) {
+        return store.getZone(zoneId);
+    }
+
+    public VehicleDwell getVehicle(String vehicleId) {
+        return store.getVehicle(vehicleId);
+    }
+
+    /**
+     * Lists the vehicles inside the zone in order of entry, a page at a time.
+     */
+    public ZoneVehiclesPage getVehicles(String zoneId, String cursor, int limit) {
+        return membership.page(zoneId, cursor, limit);
+    }
+
+    /**
+     * Drops the counters, open visits, unflushed dwell and member list of a deleted zone,
+     * whose exits are never reported.
+     */
+    public void deleteZone(String zoneId) {
+        zones.remove(zoneId);
+        openVisits.keySet().removeIf(visit -> visit.zoneId().equals(zoneId));
+        vehicleDwell.keySet().removeIf(visit -> visit.zoneId().equals(zoneId));
+        store.deleteZone(zoneId);
+        membership.delete(zoneId);
+    }
+
+    /**
+     * Adds the deltas accumulated since the last flush to Redis. On failure they are
+     * put back and retried with the next flush.
+     */
+    void flush() {
+        List<ZoneDelta> zoneDeltas = new ArrayList<>();
+        zones.forEach((zoneId, counters) -> {
+            ZoneDelta delta = counters.drain(zoneId);
+            if (delta.visits() != 0) {
+                zoneDeltas.add(delta);
+            }
+        });
+        List<VehicleDelta> vehicleDeltas = new ArrayList<>();
+        for (Visit visit : vehicleDwell.keySet()) {
+            // remove returns the value atomically; later merges start a new entry for the next flush
+            Long dwell = vehicleDwell.remove(visit);
+            if (dwell != null) {
+                vehicleDeltas.add(new VehicleDelta(visit.vehicleId(), visit.zoneId(), dwell));
+            }
+        }
+        if (zoneDeltas.isEmpty() && vehicleDeltas.isEmpty()) {
+            return;
+        }
+
+        long start = System.nanoTime();
+        try {
+            store.add(zoneDeltas, vehicleDeltas);
+            metrics.recordOccupancyFlush(System.nanoTime() - start);
+        } catch (RuntimeException e) {
+            log.error("Failed to flush occupancy for {} zones and {} vehicle dwell entries",
+                    zoneDeltas.size(), vehicleDeltas.size(), e);
+            for (ZoneDelta delta : zoneDeltas) {
+                counters(delta.zoneId()).restore(delta);
+            }
+            for (VehicleDelta delta : vehicleDeltas) {
+                vehicleDwell.merge(new Visit(delta.vehicleId(), delta.zoneId()), delta.dwellMs(), Long::sum);
+            }
+        }
+    }
+
+    private static List<String> orEmpty(List<String> zoneIds) {
+        return zoneIds != null ? zoneIds : List.of();
+    }
+
+    private ZoneCounters counters(String zoneId) {
+        return zones.computeIfAbsent(zoneId, id -> new ZoneCounters());
+    }
+
+    private record Visit(String vehicleId, String zoneId) {
+    }
+
+    private static final class ZoneCounters {
+
+        private final LongAdder visits = new LongAdder();
+        private final LongAdder dwell = new LongAdder();
+
+        // Each cell is reset atomically, so concurrent increments land in this drain or the next
+        private ZoneDelta drain(String zoneId) {
+            return new ZoneDelta(zoneId, visits.sumThenReset(), dwell.sumThenReset());
+        }
+
+        private void restore(ZoneDelta delta) {
+            visits.add(delta.visits());
+            dwell.add(delta.dwellMs());
+        }
+    }
+}
@@ -0,0 +1,80 @@
+package com.geofence.service.service;
+
+import com.geofence.service.exception.StaleVehicleStateException;
+import com.geofence.service.geo.ZoneIndex;
+import com.geofence.service.metrics.GeofenceMetrics;
+import com.geofence.service.metrics.GeofenceMetrics.IgnoredEvent;
+import com.geofence.service.metrics.GeofenceMetrics.Stage;
+import com.geofence.service.model.LocationEvent;
+import com.geofence.service.model.VehicleState;
+import com.geofence.service.model.ZoneMembershipChange;
+import com.geofence.service.model.ZoneTransitionEvent;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.stereotype.Service;
+import reactor.core.publisher.Mono;
+
+/**
+ * Non-blocking variant of {@link GeofenceService#process}.
+ *
+ * Zone detection and the transition logic are CPU-only and run synchronously once the
+ * state is read; only the state read and write are asynchronous, so no thread waits
+ * on Redis. Stale, duplicate and superseded events are ignored as in {@link GeofenceService}.
+ */
+@Service
+@ConditionalOnProperty(name = "geofence.reactive.enabled", havingValue = "true")
+public class ReactiveGeofenceService {
+
+    private final ZoneService zoneService;
+    private final GeofenceService geofenceService;
+    private final ReactiveVehicleStateService stateService;
+    private final GeofenceMetrics metrics;
+
+    public ReactiveGeofenceService(ZoneService zoneService, GeofenceService geofenceService,
+                                   ReactiveVehicleStateService stateService, GeofenceMetrics metrics) {
+        this.zoneService = zoneService;
+        this.geofenceService = geofenceService;
+        this.stateService = stateService;
+        this.metrics = metrics;
+    }
+
+    /**
+     * Emits the transition caused by the event, or completes empty if there is none.
+     */
+    public Mono<ZoneTransitionEvent> process(LocationEvent event) {
+        return Mono.defer(() -> {
+            long start = System.nanoTime();
+            return stateService.getState(event.getVehicleId())
+                    .switchIfEmpty(Mono.fromSupplier(() -> new VehicleState(event.getVehicleId(), null, 0)))
+                    .flatMap(prev -> {
+                        IgnoredEvent ignored = GeofenceService.outOfOrder(prev, event);
+                        if (ignored != null) {
+                            metrics.recordEventIgnored(ignored);
+                            return Mono.empty();
+                        }
+                        long read = System.nanoTime();
+                        ZoneIndex index = zoneService.currentIndex();
+                        int[] prevZones = prev.getZones();
+                        int[] zones = index.detectAll(event.getLat(), event.getLon(), prevZones);
+                        long detected = System.nanoTime();
+                        ZoneTransitionEvent transition = geofenceService.apply(prev, event, index, zones);
+                        Mono<Void> write = transition != null || prev.getZones() != prevZones
+                                ? stateService.saveState(prev, ZoneMembershipChange.of(transition))
+                                : stateService.touch(prev);
+                        return write.then(Mono.fromCallable(() -> {
+                            long written = System.nanoTime();
+                            metrics.recordStage(Stage.STATE_READ, read - start);
+                            metrics.recordStage(Stage.DETECT, detected - read);
+                            metrics.recordStage(Stage.STATE_WRITE, written - detected);
+                            metrics.recordProcess(written - start);
+                            if (transition != null) {
+                                geofenceService.publish(transition);
+                            }
+                            return transition;
+                        })).onErrorResume(StaleVehicleStateException.class, e -> {
+                            metrics.recordEventIgnored(IgnoredEvent.SUPERSEDED);
+                            return Mono.empty();
+                        });
+                    });
+        });
+    }
+}
@@ -0,0 +1,70 @@
+package com.geofence.service.service;
+
+import com.geofence.service.metrics.GeofenceMetrics;
+import com.geofence.service.metrics.GeofenceMetrics.RedisOperation;
+import com.geofence.service.model.VehicleState;
+import com.geofence.service.model.ZoneMembershipChange;
+import com.geofence.service.repository.ReactiveVehicleStateStore;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.stereotype.Service;
+import reactor.core.publisher.Mono;
+
+import java.util.function.Supplier;
+
+/**
+ * Non-blocking counterpart of {@link VehicleStateService}. Calls complete on the Redis
+ * client's event loop, so one thread can keep thousands of operations in flight.
+ *
+ * Goes straight to Redis: the in-process cache's write-through path blocks, so the two
+ * cannot be combined.
+ */
+@Service
+@ConditionalOnProperty(name = "geofence.reactive.enabled", havingValue = "true")
+public class ReactiveVehicleStateService {
+
+    private final ReactiveVehicleStateStore store;
+    private final GeofenceMetrics metrics;
+
+    public ReactiveVehicleStateService(ReactiveVehicleStateStore store, VehicleStateCache cache,
+                                       GeofenceMetrics metrics) {
+        if (cache.isEnabled()) {
+            throw new IllegalArgumentException(
+                    "geofence.reactive.enabled cannot be combined with geofence.state.cache.enabled");
+        }
+        this.store = store;
+        this.metrics = metrics;
+    }
+
+    /**
+     * Emits the state, or completes empty if the vehicle has none.
+     */
+    public Mono<VehicleState> getState(String vehicleId) {
+        return timed(RedisOperation.GET, () -> store.get(vehicleId));
+    }
+
+    public Mono<Void> saveState(VehicleState state) {
+        return timed(RedisOperation.SAVE, () -> store.save(state));
+    }
+
+    /**
+     * Stores the state and the vehicle's zone membership change in one atomic write.
+     */
+    public Mono<Void> saveState(VehicleState state, ZoneMembershipChange change) {
+        return timed(RedisOperation.SAVE, () -> store.save(state, change));
+    }
+
+    /**
+     * Stores a state whose zone did not change, see {@link VehicleStateService#touch}.
+     */
+    public Mono<Void> touch(VehicleState state) {
+        return timed(RedisOperation.TOUCH, () -> store.touch(state));
+    }
+
+    // Times the round trip from subscription to completion, like the blocking store calls
+    private <T> Mono<T> timed(RedisOperation operation, Supplier<Mono<T>> call) {
+        return Mono.defer(() -> {
+            long start = System.nanoTime();
+            return call.get().doFinally(signal -> metrics.recordRedis(operation, System.nanoTime() - start));
+        });
+    }
+}
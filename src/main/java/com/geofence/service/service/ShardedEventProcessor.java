@@ -0,0 +1,283 @@
+package com.geofence.service.service;
+
+import com.geofence.service.exception.IngestionOverloadedException;
+import com.geofence.service.metrics.GeofenceMetrics;
+import com.geofence.service.model.LocationEvent;
+import com.geofence.service.model.ZoneTransitionEvent;
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Optional ingestion mode ({@code geofence.ingest.mode=sharded}) that hashes each
+ * vehicle ID to one of N single-threaded shards.
+ *
+ * All events of a vehicle run one at a time on the same worker, in arrival order, so
+ * the state read-modify-write never races and needs no locks, and throughput scales
+ * with the number of shards. The request thread waits for its result, so the API is
+ * unchanged.
+ *
+ * Each shard holds at most {@code queue-capacity} pending tasks. A caller waits up to
+ * {@code enqueue-timeout} for room (0 rejects at once) and otherwise gets an
+ * {@link IngestionOverloadedException}, which the API maps to 429. A batch is admitted
+ * to all of its shards or to none, so a rejected batch has not been partly applied.
+ */
+@Slf4j
+@Component
+public class ShardedEventProcessor {
+
+    private final GeofenceService geofenceService;
+    private final GeofenceMetrics metrics;
+    private final boolean enabled;
+    private final long enqueueTimeoutNanos;
+    private final Shard[] shards;
+    private volatile boolean stopped;
+
+    public ShardedEventProcessor(GeofenceService geofenceService,
+                                 GeofenceMetrics metrics,
+                                 @Value("${geofence.ingest.mode:sync}") String mode,
+                                 @Value("${geofence.ingest.shards:0}") int shards,
+                                 @Value("${geofence.ingest.queue-capacity:1024}") int queueCapacity,
+                                 @Value("${geofence.ingest.enqueue-timeout:0ms}") Duration enqueueTimeout) {
+        this.geofenceService = geofenceService;
+        this.metrics = metrics;
+        this.enabled = switch (mode) {
+            case "sync" -> false;
+            case "sharded" -> true;
+            default -> throw new IllegalArgumentException(
+                    "geofence.ingest.mode must be 'sync' or 'sharded', was '" + mode + "'");
+        };
+        if (enabled && (queueCapacity < 1 || shards < 0 || enqueueTimeout.isNegative())) {
+            throw new IllegalArgumentException("geofence.ingest requires queue-capacity >= 1, shards >= 0 "
+                    + "and a non-negative enqueue-timeout");
+        }
+        this.enqueueTimeoutNanos = enqueueTimeout.toNanos();
+        int count = !enabled ? 0 : shards > 0 ? shards : Runtime.getRuntime().availableProcessors();
+        this.shards = new Shard[count];
+        for (int i = 0; i < count; i++) {
+            this.shards[i] = new Shard(i, queueCapacity);
+        }
+    }
+
+    @PostConstruct
+    public void start() {
+        for (Shard shard : shards) {
+            metrics.registerIngestQueue(shard.id, shard.queue);
+            shard.worker.start();
+        }
+        if (enabled) {
+            log.info("Sharded ingestion enabled with {} shards", shards.length);
+        }
+    }
+
+    @PreDestroy
+    public void stop() throws InterruptedException {
+        stopped = true;
+        for (Shard shard : shards) {
+            shard.worker.interrupt();
+        }
+        for (Shard shard : shards) {
+            shard.worker.join(TimeUnit.SECONDS.toMillis(5));
+        }
+    }
+
+    public boolean isEnabled() {
+        return enabled;
+    }
+
+    /**
+     * Processes the event on its vehicle's shard and waits for the result.
+     */
+    public ZoneTransitionEvent process(LocationEvent event) {
+        Shard shard = shardFor(event.getVehicleId());
+        admit(shard, 1);
+        CompletableFuture<ZoneTransitionEvent> result = new CompletableFuture<>();
+        enqueue(shard, result, () -> {
+            try {
+                result.complete(geofenceService.process(event));
+            } catch (Throwable t) {
+                result.completeExceptionally(t);
+            }
+        });
+        return await(result);
+    }
+
+    /**
+     * Splits the batch by shard, processes each part with {@link GeofenceService#processBatch}
+     * semantics on its shard, and returns the transitions in input order.
+     */
+    public List<ZoneTransitionEvent> processBatch(List<LocationEvent> events) {
+        // Input positions per shard, in input order
+        List<List<Integer>> positions = new ArrayList<>(shards.length);
+        for (int i = 0; i < shards.length; i++) {
+            positions.add(null);
+        }
+        for (int i = 0; i < events.size(); i++) {
+            int shard = shardIndex(events.get(i).getVehicleId());
+            if (positions.get(shard) == null) {
+                positions.set(shard, new ArrayList<>());
+            }
+            positions.get(shard).add(i);
+        }
+
+        List<Shard> admitted = new ArrayList<>();
+        try {
+            for (int i = 0; i < shards.length; i++) {
+                if (positions.get(i) != null) {
+                    admit(shards[i], events.size());
+                    admitted.add(shards[i]);
+                }
+            }
+        } catch (IngestionOverloadedException e) {
+            for (Shard shard : admitted) {
+                shard.permits.release();
+            }
+            throw e;
+        }
+
+        ZoneTransitionEvent[] transitions = new ZoneTransitionEvent[events.size()];
+        List<CompletableFuture<Void>> parts = new ArrayList<>();
+        for (int i = 0; i < shards.length; i++) {
+            List<Integer> part = positions.get(i);
+            if (part == null) {
+                continue;
+            }
+            CompletableFuture<Void> done = new CompletableFuture<>();
+            parts.add(done);
+            enqueue(shards[i], done, () -> {
+                try {
+                    List<LocationEvent> subBatch = new ArrayList<>(part.size());
+                    for (int position : part) {
+                        subBatch.add(events.get(position));
+                    }
+                    ZoneTransitionEvent[] result = geofenceService.processBatchAligned(subBatch);
+                    for (int j = 0; j < result.length; j++) {
+                        transitions[part.get(j)] = result[j];
+                    }
+                    done.complete(null);
+                } catch (Throwable t) {
+                    done.completeExceptionally(t);
+                }
+            });
+        }
+        await(CompletableFuture.allOf(parts.toArray(CompletableFuture[]::new)));
+
+        List<ZoneTransitionEvent> result = new ArrayList<>();
+        for (ZoneTransitionEvent transition : transitions) {
+            if (transition != null) {
+                result.add(transition);
+            }
+        }
+        return result;
+    }
+
+    private Shard shardFor(String vehicleId) {
+        return shards[shardIndex(vehicleId)];
+    }
+
+    private int shardIndex(String vehicleId) {
+        if (shards.length == 0) {
+            throw new IllegalStateException("Sharded ingestion is not enabled");
+        }
+        int h = vehicleId.hashCode();
+        return Math.floorMod(h ^ (h >>> 16), shards.length);
+    }
+
+    // Takes one queue slot, waiting up to enqueue-timeout; events is only used for the metric
+    private void admit(Shard shard, int events) {
+        if (stopped) {
+            throw new IngestionOverloadedException("Ingestion is shutting down, retry later");
+        }
+        boolean acquired;
+        try {
+            acquired = enqueueTimeoutNanos == 0
+                    ? shard.permits.tryAcquire()
+                    : shard.permits.tryAcquire(enqueueTimeoutNanos, TimeUnit.NANOSECONDS);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            acquired = false;
+        }
+        if (!acquired) {
+            metrics.recordIngestRejected(events);
+            throw new IngestionOverloadedException("Ingestion shard " + shard.id + " is full, retry later");
+        }
+    }
+
+    /**
+     * Queues an admitted task. A {@link #stop()} between admission and this call may
+     * already have drained the shard, so once stopped the task is taken back and its
+     * caller failed; if the worker took it first, it runs as usual.
+     */
+    private void enqueue(Shard shard, CompletableFuture<?> result, Runnable task) {
+        shard.queue.add(task);
+        if (stopped && shard.queue.remove(task)) {
+            shard.permits.release();
+            result.completeExceptionally(new IngestionOverloadedException("Ingestion is shutting down, retry later"));
+        }
+    }
+
+    private static <T> T await(CompletableFuture<T> future) {
+        try {
+            return future.join();
+        } catch (CompletionException e) {
+            if (e.getCause() instanceof RuntimeException cause) {
+                throw cause;
+            }
+            if (e.getCause() instanceof Error cause) {
+                throw cause;
+            }
+            throw e;
+        }
+    }
+
+    private static final class Shard {
+        private final int id;
+        // Queue slots; a worker frees one when it takes a task, so the queue can never overflow
+        private final Semaphore permits;
+        private final BlockingQueue<Runnable> queue;
+        private final Thread worker;
+
+        private Shard(int id, int capacity) {
+            this.id = id;
+            this.permits = new Semaphore(capacity);
+            this.queue = new ArrayBlockingQueue<>(capacity);
+            this.worker = new Thread(this::run, "geofence-shard-" + id);
+            this.worker.setDaemon(true);
+        }
+
+        private void run() {
+            while (true) {
+                Runnable task;
+                try {
+                    task = queue.take();
+                } catch (InterruptedException e) {
+                    drain();
+                    return;
+                }
+                permits.release();
+                task.run();
+            }
+        }
+
+        // Finishes tasks admitted before shutdown so no caller waits forever
+        private void drain() {
+            Runnable task;
+            while ((task = queue.poll()) != null) {
+                permits.release();
+                task.run();
+            }
+        }
+    }
+}
@@ -0,0 +1,251 @@
+package com.geofence.service.service;
+
+import com.geofence.service.exception.InvalidSubscriptionException;
+import com.geofence.service.exception.SubscriptionLimitException;
+import com.geofence.service.metrics.GeofenceMetrics;
+import com.geofence.service.model.ZoneTransitionEvent;
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import java.io.IOException;
+import java.time.Duration;
+import java.util.List;
+import java.util.Locale;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Fans out zone transitions to live subscribers, such as the SSE endpoint.
+ *
+ * Publishing never blocks: each subscriber has a bounded buffer and its own virtual
+ * thread that writes to the connection, so a slow consumer only backs up its own
+ * buffer. When a buffer is full, the subscriber's {@link OverflowPolicy} decides
+ * whether the oldest or the newest transition is dropped or the subscriber is
+ * disconnected. Dropped counts are reported to the subscriber before its next event.
+ */
+@Slf4j
+@Component
+public class TransitionBroadcaster {
+
+    public enum OverflowPolicy {
+        DROP_OLDEST, DROP_NEWEST, DISCONNECT;
+
+        /**
+         * Parses {@code drop-oldest}, {@code drop-newest} or {@code disconnect}.
+         */
+        public static OverflowPolicy from(String value) {
+            return switch (value.trim().toLowerCase(Locale.ROOT)) {
+                case "drop-oldest" -> DROP_OLDEST;
+                case "drop-newest" -> DROP_NEWEST;
+                case "disconnect" -> DISCONNECT;
+                default -> throw new InvalidSubscriptionException(
+                        "Overflow policy must be 'drop-oldest', 'drop-newest' or 'disconnect', was '" + value + "'");
+            };
+        }
+    }
+
+    /**
+     * Delivers transitions to one subscriber's connection. Called only from the
+     * subscriber's own thread, so implementations may block.
+     */
+    public interface Sink {
+
+        void send(ZoneTransitionEvent transition) throws IOException;
+
+        /**
+         * Reports transitions dropped since the last delivery.
+         */
+        void dropped(long count) throws IOException;
+
+        /**
+         * Keeps an idle connection open and detects clients that went away.
+         */
+        void heartbeat() throws IOException;
+
+        /**
+         * Ends the connection; {@code overflowed} is true if the disconnect policy fired.
+         */
+        void close(boolean overflowed);
+    }
+
+    private final GeofenceMetrics metrics;
+    private final int maxSubscribers;
+    private final int bufferSize;
+    private final OverflowPolicy defaultPolicy;
+    private final long heartbeatNanos;
+
+    private final List<Subscription> subscriptions = new CopyOnWriteArrayList<>();
+    private final AtomicInteger ids = new AtomicInteger();
+
+    public TransitionBroadcaster(GeofenceMetrics metrics,
+                                 @Value("${geofence.transitions.subscribers.max:100}") int maxSubscribers,
+                                 @Value("${geofence.transitions.subscribers.buffer-size:1024}") int bufferSize,
+                                 @Value("${geofence.transitions.subscribers.overflow:drop-oldest}") String overflow,
+                                 @Value("${geofence.transitions.subscribers.heartbeat:15s}") Duration heartbeat) {
+        if (maxSubscribers < 0 || bufferSize < 1 || heartbeat.isNegative() || heartbeat.isZero()) {
+            throw new IllegalArgumentException("geofence.transitions.subscribers requires max >= 0, "
+                    + "buffer-size >= 1 and a positive heartbeat");
+        }
+        this.metrics = metrics;
+        this.maxSubscribers = maxSubscribers;
+        this.bufferSize = bufferSize;
+        this.defaultPolicy = OverflowPolicy.from(overflow);
+        this.heartbeatNanos = heartbeat.toNanos();
+    }
+
+    @PostConstruct
+    public void registerMetrics() {
+        metrics.registerSubscribers(subscriptions);
+    }
+
+    @PreDestroy
+    public void shutdown() {
+        for (Subscription subscription : subscriptions) {
+            subscription.close();
+        }
+    }
+
+    /**
+     * Hands the transition to every matching subscriber without waiting for any of them.
+     */
+    public void publish(ZoneTransitionEvent transition) {
+        for (Subscription subscription : subscriptions) {
+            subscription.offer(transition);
+        }
+    }
+
+    /**
+     * Starts delivering transitions that match both filters (null matches everything).
+     *
+     * @param policy overflow policy, or null for the configured default
+     */
+    public Subscription subscribe(String zoneId, String vehicleId, OverflowPolicy policy, Sink sink) {
+        Subscription subscription = new Subscription(ids.incrementAndGet(), zoneId, vehicleId,
+                policy != null ? policy : defaultPolicy, sink);
+        synchronized (subscriptions) {
+            if (subscriptions.size() >= maxSubscribers) {
+                throw new SubscriptionLimitException("Transition subscriber limit of " + maxSubscribers + " reached");
+            }
+            subscriptions.add(subscription);
+        }
+        subscription.sender.start();
+        log.info("Transition subscriber {} connected (zone={}, vehicle={}, overflow={})",
+                subscription.id, zoneId, vehicleId, subscription.policy);
+        return subscription;
+    }
+
+    public int subscriberCount() {
+        return subscriptions.size();
+    }
+
+    public final class Subscription {
+
+        private final int id;
+        private final String zoneId;
+        private final String vehicleId;
+        private final OverflowPolicy policy;
+        private final Sink sink;
+        private final BlockingQueue<ZoneTransitionEvent> buffer;
+        private final AtomicLong dropped = new AtomicLong();
+        private final Thread sender;
+        private volatile boolean closed;
+        private volatile boolean overflowed;
+
+        private Subscription(int id, String zoneId, String vehicleId, OverflowPolicy policy, Sink sink) {
+            this.id = id;
+            this.zoneId = zoneId;
+            this.vehicleId = vehicleId;
+            this.policy = policy;
+            this.sink = sink;
+            this.buffer = new ArrayBlockingQueue<>(bufferSize);
+            this.sender = Thread.ofVirtual().name("transition-subscriber-" + id).unstarted(this::run);
+        }
+
+        public OverflowPolicy getPolicy() {
+            return policy;
+        }
+
+        /**
+         * Stops delivery and releases the subscriber slot; safe to call more than once.
+         */
+        public void close() {
+            if (closed) {
+                return;
+            }
+            closed = true;
+            subscriptions.remove(this);
+            sender.interrupt();
+        }
+
+        private void offer(ZoneTransitionEvent transition) {
+            if (closed || !matches(transition) || buffer.offer(transition)) {
+                return;
+            }
+            switch (policy) {
+                case DROP_NEWEST -> drop(1);
+                case DROP_OLDEST -> {
+                    // The sender may take from the buffer meanwhile, so retry until there is room
+                    do {
+                        if (buffer.poll() != null) {
+                            drop(1);
+                        }
+                    } while (!buffer.offer(transition));
+                }
+                case DISCONNECT -> {
+                    overflowed = true;
+                    metrics.recordSubscriberDisconnected();
+                    log.warn("Transition subscriber {} disconnected after its buffer of {} filled up", id, bufferSize);
+                    close();
+                }
+            }
+        }
+
+        private void drop(long count) {
+            dropped.addAndGet(count);
+            metrics.recordSubscriberDropped(count);
+        }
+
+        private boolean matches(ZoneTransitionEvent transition) {
+            if (vehicleId != null && !vehicleId.equals(transition.getVehicleId())) {
+                return false;
+            }
+            return zoneId == null
+                    || zoneId.equals(transition.getFromZone())
+                    || zoneId.equals(transition.getToZone())
+                    || (transition.getEntered() != null && transition.getEntered().contains(zoneId))
+                    || (transition.getExited() != null && transition.getExited().contains(zoneId));
+        }
+
+        private void run() {
+            try {
+                while (!closed) {
+                    ZoneTransitionEvent transition = buffer.poll(heartbeatNanos, TimeUnit.NANOSECONDS);
+                    long lost = dropped.getAndSet(0);
+                    if (lost > 0) {
+                        sink.dropped(lost);
+                    }
+                    if (transition != null) {
+                        sink.send(transition);
+                    } else {
+                        sink.heartbeat();
+                    }
+                }
+            } catch (InterruptedException e) {
+                // Closed
+            } catch (IOException | RuntimeException e) {
+                log.debug("Transition subscriber {} went away: {}", id, e.toString());
+            } finally {
+                close();
+                sink.close(overflowed);
+                log.info("Transition subscriber {} disconnected", id);
+            }
+        }
+    }
+}
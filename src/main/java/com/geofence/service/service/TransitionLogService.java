@@ -0,0 +1,221 @@
+package com.geofence.service.service;
+
+import com.geofence.service.metrics.GeofenceMetrics;
+import com.geofence.service.model.LoggedTransition;
+import com.geofence.service.model.TransitionPage;
+import com.geofence.service.model.ZoneTransitionEvent;
+import com.geofence.service.repository.TransitionLogStore;
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.data.redis.connection.stream.ReadOffset;
+import org.springframework.stereotype.Service;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.List;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Durable log of every zone transition, kept in a capped Redis stream.
+ *
+ * {@link #append} only puts the transition in a bounded in-memory buffer. A single
+ * writer thread drains whatever has accumulated, up to {@code batch-size} entries, and
+ * writes it in one pipelined round trip. The ingest path therefore never waits on
+ * Redis, and the write cost per transition drops as the load grows. If Redis is
+ * unreachable, the batch is retried and new transitions beyond {@code buffer-capacity}
+ * are dropped and counted.
+ *
+ * Reads page through the stream by entry ID. The time range applies to the time a
+ * transition was logged, which is the millisecond part of its entry ID.
+ */
+@Slf4j
+@Service
+public class TransitionLogService {
+
+    static final int MAX_PAGE_SIZE = 1000;
+    // Entries read per page at most when filtering by vehicle, so a rare vehicle cannot
+    // turn one request into a scan of the whole stream
+    static final int MAX_SCAN = 10_000;
+
+    private final TransitionLogStore store;
+    private final GeofenceMetrics metrics;
+    private final boolean enabled;
+    private final int batchSize;
+    private final BlockingQueue<ZoneTransitionEvent> buffer;
+    private final Thread writer;
+    private volatile boolean stopped;
+
+    public TransitionLogService(TransitionLogStore store,
+                                GeofenceMetrics metrics,
+                                @Value("${geofence.transitions.log.enabled:true}") boolean enabled,
+                                @Value("${geofence.transitions.log.buffer-capacity:100000}") int bufferCapacity,
+                                @Value("${geofence.transitions.log.batch-size:500}") int batchSize) {
+        if (enabled && (bufferCapacity < 1 || batchSize < 1)) {
+            throw new IllegalArgumentException("geofence.transitions.log requires positive buffer-capacity "
+                    + "and batch-size");
+        }
+        this.store = store;
+        this.metrics = metrics;
+        this.enabled = enabled;
+        this.batchSize = batchSize;
+        this.buffer = new ArrayBlockingQueue<>(enabled ? bufferCapacity : 1);
+        this.writer = new Thread(this::run, "transition-log-writer");
+        this.writer.setDaemon(true);
+    }
+
+    @PostConstruct
+    public void start() {
+        if (enabled) {
+            metrics.registerTransitionLogBuffer(buffer);
+            writer.start();
+        }
+    }
+
+    /**
+     * Writes the transitions still buffered before the application stops.
+     */
+    @PreDestroy
+    public void stop() throws InterruptedException {
+        if (!enabled) {
+            return;
+        }
+        // No interrupt: it would fail the Redis calls of the final flush
+        stopped = true;
+        writer.join(TimeUnit.SECONDS.toMillis(5));
+    }
+
+    public boolean isEnabled() {
+        return enabled;
+    }
+
+    /**
+     * Queues the transition for the log without blocking.
+     */
+    public void append(ZoneTransitionEvent transition) {
+        if (enabled && !buffer.offer(transition)) {
+            metrics.recordTransitionLogDropped(1);
+        }
+    }
+
+    /**
+     * Returns up to {@code limit} transitions logged between {@code from} and {@code to}
+     * (epoch millis, inclusive, null for unbounded), oldest first, starting after
+     * {@code cursor} if given.
+     */
+    public TransitionPage query(String vehicleId, Long from, Long to, String cursor, int limit) {
+        String start = cursor != null ? successor(cursor) : from != null ? Long.toString(from) : "-";
+        String end = to != null ? Long.toString(to) : "+";
+        // Unfiltered pages read exactly what they return; filtered ones read ahead in chunks
+        int chunk = vehicleId == null ? limit : Math.max(limit * 4, 256);
+
+        List<LoggedTransition> page = new ArrayList<>(limit);
+        int scanned = 0;
+        while (true) {
+            TransitionLogStore.Scan scan = store.scan(start, end, chunk, vehicleId);
+            scanned += scan.scanned();
+            for (LoggedTransition transition : scan.matches()) {
+                page.add(transition);
+                if (page.size() == limit) {
+                    return new TransitionPage(page, transition.getId());
+                }
+            }
+            if (scan.scanned() < chunk) {
+                return new TransitionPage(page, null);
+            }
+            if (scanned >= MAX_SCAN) {
+                // More may follow; let the caller continue from where the scan stopped
+                return new TransitionPage(page, scan.lastId());
+            }
+            start = successor(scan.lastId());
+        }
+    }
+
+    /**
+     * Creates a consumer group. {@code start} is {@code 0} to replay the whole log,
+     * {@code $} for new transitions only, or epoch millis to replay from that time.
+     */
+    public void createGroup(String group, String start) {
+        ReadOffset offset = switch (start) {
+            case "0" -> ReadOffset.from("0-0");
+            case "$" -> ReadOffset.latest();
+            // Delivery starts after the offset, so point it at the last possible ID before start
+            default -> {
+                long millis = Long.parseLong(start);
+                yield ReadOffset.from(millis <= 0 ? "0-0" : (millis - 1) + "-" + Long.toUnsignedString(-1L));
+            }
+        };
+        store.createGroup(group, offset);
+        log.info("Created transition consumer group {} starting at {}", group, start);
+    }
+
+    public boolean deleteGroup(String group) {
+        return store.destroyGroup(group);
+    }
+
+    /**
+     * Delivers up to {@code count} transitions to a group consumer; with {@code pending},
+     * redelivers the ones it has received but not acknowledged.
+     */
+    public List<LoggedTransition> readGroup(String group, String consumer, int count, boolean pending) {
+        return store.readGroup(group, consumer, count, pending);
+    }
+
+    public long acknowledge(String group, Collection<String> ids) {
+        return store.acknowledge(group, ids);
+    }
+
+    // Smallest entry ID after the given one, so pages never repeat an entry
+    static String successor(String id) {
+        int dash = id.indexOf('-');
+        if (dash < 0) {
+            return Long.parseUnsignedLong(id) + 1 + "-0";
+        }
+        long millis = Long.parseUnsignedLong(id, 0, dash, 10);
+        long sequence = Long.parseUnsignedLong(id, dash + 1, id.length(), 10);
+        return sequence == -1L
+                ? Long.toUnsignedString(millis + 1) + "-0"
+                : Long.toUnsignedString(millis) + "-" + Long.toUnsignedString(sequence + 1);
+    }
+
+    private void run() {
+        List<ZoneTransitionEvent> batch = new ArrayList<>(batchSize);
+        while (!stopped || !buffer.isEmpty()) {
+            ZoneTransitionEvent first;
+            try {
+                first = buffer.poll(100, TimeUnit.MILLISECONDS);
+            } catch (InterruptedException e) {
+                return;
+            }
+            if (first == null) {
+                continue;
+            }
+            batch.add(first);
+            buffer.drainTo(batch, batchSize - 1);
+            // Retried until it succeeds, or once more after shutdown began
+            while (!write(batch) && !stopped) {
+                try {
+                    Thread.sleep(1000);
+                } catch (InterruptedException e) {
+                    return;
+                }
+            }
+            batch.clear();
+        }
+    }
+
+    private boolean write(List<ZoneTransitionEvent> batch) {
+        long start = System.nanoTime();
+        try {
+            store.appendAll(batch);
+            metrics.recordTransitionLogWrite(batch.size(), System.nanoTime() - start);
+            return true;
+        } catch (RuntimeException e) {
+            log.error("Failed to write {} transitions to the transition log", batch.size(), e);
+            return false;
+        }
+    }
+}
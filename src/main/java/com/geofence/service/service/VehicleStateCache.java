@@ -0,0 +1,278 @@
+package com.geofence.service.service;
+
+import com.geofence.service.model.VehicleState;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Bounded in-process tier in front of the Redis vehicle state.
+ *
+ * Entries live in lock-striped LRU segments and expire after {@code ttl} without
+ * access. Saves that keep the cached zone and zone membership only advance {@code lastUpdated} in memory
+ * and mark the entry dirty; {@link VehicleStateService} writes zone changes through
+ * and periodically flushes the dirty entries returned by {@link #drainDirty()}.
+ *
+ * Only safe when each vehicle is handled by a single replica (sticky routing),
+ * because other replicas cannot see unflushed timestamps.
+ */
+@Component
+public class VehicleStateCache {
+
+    private static final int SEGMENTS = 16;
+
+    private final boolean enabled;
+    private final long ttlNanos;
+    private final Duration flushInterval;
+    private final Segment[] segments;
+
+    // Dirty entries pushed out by LRU eviction or expiry, waiting for the next flush
+    private final Map<String, VehicleState> evictedDirty = new ConcurrentHashMap<>();
+
+    public VehicleStateCache(@Value("${geofence.state.cache.enabled:false}") boolean enabled,
+                             @Value("${geofence.state.cache.max-size:100000}") int maxSize,
+                             @Value("${geofence.state.cache.ttl:5m}") Duration ttl,
+                             @Value("${geofence.state.cache.flush-interval:1s}") Duration flushInterval) {
+        if (enabled && (maxSize < SEGMENTS || ttl.isNegative() || ttl.isZero() || flushInterval.isNegative()
+                || flushInterval.isZero())) {
+            throw new IllegalArgumentException("geofence.state.cache requires max-size >= " + SEGMENTS
+                    + " and positive ttl and flush-interval");
+        }
+        this.enabled = enabled;
+        this.ttlNanos = ttl.toNanos();
+        this.flushInterval = flushInterval;
+        this.segments = new Segment[SEGMENTS];
+        for (int i = 0; i < SEGMENTS; i++) {
+            segments[i] = new Segment(Math.max(1, maxSize / SEGMENTS));
+        }
+    }
+
+    public boolean isEnabled() {
+        return enabled;
+    }
+
+    public Duration getFlushInterval() {
+        return flushInterval;
+    }
+
+    /**
+     * Returns a copy of the cached state, or null on a miss.
+     */
+    public VehicleState get(String vehicleId) {
+        Segment segment = segmentFor(vehicleId);
+        long now = System.nanoTime();
+        synchronized (segment) {
+            Entry entry = segment.get(vehicleId);
+            if (entry != null) {
+                if (!entry.dirty && now - entry.touchedAt > ttlNanos) {
+                    segment.remove(vehicleId);
+                    return null;
+                }
+                entry.touchedAt = now;
+                return new VehicleState(vehicleId, entry.zone, entry.lastUpdated, entry.zones);
+            }
+        }
+        VehicleState pending = evictedDirty.get(vehicleId);
+        return pending == null ? null : copy(pending);
+    }
+
+    /**
+     * Caches a state just read from Redis, unless a newer entry is already present.
+     */
+    public void putLoaded(VehicleState state) {
+        Segment segment = segmentFor(state.getVehicleId());
+        synchronized (segment) {
+            if (!segment.containsKey(state.getVehicleId())) {
+                segment.put(state.getVehicleId(), new Entry(state, false));
+            }
+        }
+    }
+
+    /**
+     * Caches a state that has just been written to Redis, unless a newer update is
+     * still pending: a concurrent event may have coalesced a later timestamp, which the
+     * next flush must still write.
+     */
+    public void putClean(VehicleState state) {
+        String vehicleId = state.getVehicleId();
+        Segment segment = segmentFor(vehicleId);
+        synchronized (segment) {
+            Entry entry = segment.get(vehicleId);
+            if (entry != null && entry.dirty && entry.lastUpdated > state.getLastUpdated()) {
+                return;
+            }
+            VehicleState pending = evictedDirty.get(vehicleId);
+            if (pending != null && pending.getLastUpdated() > state.getLastUpdated()) {
+                segment.remove(vehicleId);
+                return;
+            }
+            segment.put(vehicleId, new Entry(state, false));
+            evictedDirty.remove(vehicleId);
+        }
+    }
+
+    /**
+     * Drops the vehicle's entry, pending update included, so the next read goes to
+     * Redis. Used when Redis turned out to hold a newer state than this cache.
+     */
+    public void invalidate(String vehicleId) {
+        Segment segment = segmentFor(vehicleId);
+        synchronized (segment) {
+            segment.remove(vehicleId);
+            evictedDirty.remove(vehicleId);
+        }
+    }
+
+    /**
+     * Absorbs the save in memory if the zone and membership match the cached ones.
+     * The cached timestamp only moves forward, so of two concurrent pings that both
+     * read the same entry, the later one wins whichever coalesces last.
+     *
+     * @return true if the save was coalesced, false if it must be written through
+     */
+    public boolean coalesce(VehicleState state) {
+        String vehicleId = state.getVehicleId();
+        Segment segment = segmentFor(vehicleId);
+        synchronized (segment) {
+            Entry entry = segment.get(vehicleId);
+            if (entry == null) {
+                VehicleState pending = evictedDirty.get(vehicleId);
+                if (pending == null || !sameZones(pending, state.getCurrentZone(), state.getZones())) {
+                    return false;
+                }
+                evictedDirty.remove(vehicleId);
+                Entry restored = new Entry(pending, true);
+                restored.lastUpdated = Math.max(pending.getLastUpdated(), state.getLastUpdated());
+                segment.put(vehicleId, restored);
+                return true;
+            }
+            if (!entry.sameZones(state)) {
+                return false;
+            }
+            entry.lastUpdated = Math.max(entry.lastUpdated, state.getLastUpdated());
+            entry.dirty = true;
+            entry.touchedAt = System.nanoTime();
+            return true;
+        }
+    }
+
+    /**
+     * Returns every dirty state and marks it clean. Expired clean entries are dropped.
+     */
+    public List<VehicleState> drainDirty() {
+        List<VehicleState> dirty = new ArrayList<>();
+        for (Iterator<VehicleState> it = evictedDirty.values().iterator(); it.hasNext(); ) {
+            dirty.add(it.next());
+            it.remove();
+        }
+        long now = System.nanoTime();
+        for (Segment segment : segments) {
+            synchronized (segment) {
+                for (Iterator<Map.Entry<String, Entry>> it = segment.entrySet().iterator(); it.hasNext(); ) {
+                    Map.Entry<String, Entry> mapping = it.next();
+                    Entry entry = mapping.getValue();
+                    if (entry.dirty) {
+                        dirty.add(new VehicleState(mapping.getKey(), entry.zone, entry.lastUpdated, entry.zones));
+                        entry.dirty = false;
+                    } else if (now - entry.touchedAt > ttlNanos) {
+                        it.remove();
+                    }
+                }
+            }
+        }
+        return dirty;
+    }
+
+    /**
+     * Marks states from a failed flush dirty again, unless they were superseded meanwhile.
+     */
+    public void requeue(Collection<VehicleState> states) {
+        for (VehicleState state : states) {
+            Segment segment = segmentFor(state.getVehicleId());
+            synchronized (segment) {
+                Entry entry = segment.get(state.getVehicleId());
+                if (entry == null) {
+                    evictedDirty.putIfAbsent(state.getVehicleId(), state);
+                } else if (entry.sameZones(state)) {
+                    entry.dirty = true;
+                }
+            }
+        }
+    }
+
+    public int size() {
+        int size = 0;
+        for (Segment segment : segments) {
+            synchronized (segment) {
+                size += segment.size();
+            }
+        }
+        return size;
+    }
+
+    private Segment segmentFor(String vehicleId) {
+        int h = vehicleId.hashCode();
+        return segments[(h ^ (h >>> 16)) & (SEGMENTS - 1)];
+    }
+
+    private static VehicleState copy(VehicleState state) {
+        return new VehicleState(state.getVehicleId(), state.getCurrentZone(), state.getLastUpdated(), state.getZones());
+    }
+
+    private static boolean sameZones(VehicleState state, String zone, int[] zones) {
+        return Objects.equals(state.getCurrentZone(), zone) && Arrays.equals(state.getZones(), zones);
+    }
+
+    private static final class Entry {
+        private final String zone;
+        private final int[] zones;
+        private long lastUpdated;
+        private long touchedAt;
+        private boolean dirty;
+
+        private Entry(VehicleState state, boolean dirty) {
+            this.zone = state.getCurrentZone();
+            this.zones = state.getZones();
+            this.lastUpdated = state.getLastUpdated();
+            this.dirty = dirty;
+            this.touchedAt = System.nanoTime();
+        }
+
+        private boolean sameZones(VehicleState state) {
+            return VehicleStateCache.sameZones(state, zone, zones);
+        }
+    }
+
+    private final class Segment extends LinkedHashMap<String, Entry> {
+
+        private final int capacity;
+
+        private Segment(int capacity) {
+            super(16, 0.75f, true);
+            this.capacity = capacity;
+        }
+
+        @Override
+        protected boolean removeEldestEntry(Map.Entry<String, Entry> eldest) {
+            if (size() <= capacity) {
+                return false;
+            }
+            Entry entry = eldest.getValue();
+            if (entry.dirty) {
+                evictedDirty.put(eldest.getKey(),
+                        new VehicleState(eldest.getKey(), entry.zone, entry.lastUpdated, entry.zones));
+            }
+            return true;
+        }
+    }
+}
@@ -1,27 +1,347 @@
 package com.geofence.service.service;
 
+import com.geofence.service.exception.StaleVehicleStateException;
+import com.geofence.service.metrics.GeofenceMetrics;
+import com.geofence.service.metrics.GeofenceMetrics.RedisOperation;
 import com.geofence.service.model.VehicleState;
-import org.springframework.data.redis.core.RedisTemplate;
+import com.geofence.service.model.ZoneMembershipChange;
+import com.geofence.service.repository.VehicleStateStore;
+import com.geofence.service.repository.VehicleStateStore.Advance;
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+import lombok.extern.slf4j.Slf4j;
 import org.springframework.stereotype.Service;
 
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.locks.ReadWriteLock;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+
+@Slf4j
 @Service
 public class VehicleStateService {
 
-    private final RedisTemplate<String, Object> redisTemplate;
+    private final VehicleStateStore store;
+    private final VehicleStateCache cache;
+    private final GeofenceMetrics metrics;
 
-    private static final String KEY_PREFIX = "vehicle:";
+    // Write-throughs share the read side; a flush takes the write side so that a drained
+    // dirty entry can never land in Redis after a newer zone change for the same vehicle
+    private final ReadWriteLock flushLock = new ReentrantReadWriteLock();
+    private ScheduledExecutorService flusher;
 
-    public VehicleStateService(RedisTemplate<String, Object> redisTemplate) {
-        this.redisTemplate = redisTemplate;
+    public VehicleStateService(VehicleStateStore store, VehicleStateCache cache, GeofenceMetrics metrics) {
+        this.store = store;
+        this.cache = cache;
+        this.metrics = metrics;
     }
 
-    public VehicleState getState(String vehicleId) {
-        return (VehicleState) redisTemplate.opsForValue().get(KEY_PREFIX + vehicleId);
+    @PostConstruct
+    public void startFlusher() {
+        if (!cache.isEnabled()) {
+            return;
+        }
+        long interval = cache.getFlushInterval().toMillis();
+        flusher = Executors.newSingleThreadScheduledExecutor(runnable -> {
+            Thread thread = new Thread(runnable, "vehicle-state-flush");
+            thread.setDaemon(true);
+            return thread;
+        });
+        flusher.scheduleWithFixedDelay(this::flush, interval, interval, TimeUnit.MILLISECONDS);
+        log.info("Vehicle state cache enabled, flushing every {} ms", interval);
+    }
+
+    @PreDestroy
+    public void stopFlusher() {
+        if (flusher != null) {
+            flusher.shutdown();
+            flush();
+        }
+    }
 
+    public boolean isCacheEnabled() {
+        return cache.isEnabled();
     }
 
+    public VehicleState getState(String vehicleId) {
+        if (cache.isEnabled()) {
+            VehicleState cached = cache.get(vehicleId);
+            if (cached != null) {
+                metrics.recordCacheHit();
+                return cached;
+            }
+            metrics.recordCacheMiss();
+        }
+        VehicleState state = storeGet(vehicleId);
+        if (state != null && cache.isEnabled()) {
+            cache.putLoaded(state);
+        }
+        return state;
+    }
+
+    /**
+     * Stores the state. With the cache enabled, a save that keeps the cached zone is
+     * only recorded in memory and reaches Redis on the next flush; zone changes are
+     * written through immediately.
+     */
     public void saveState(VehicleState state) {
-        redisTemplate.opsForValue().set(KEY_PREFIX + state.getVehicleId(), state);
+        saveState(state, null);
+    }
+
+    /**
+     * Stores the state together with the vehicle's zone membership change, see
+     * {@link VehicleStateStore#save(VehicleState, ZoneMembershipChange)}. A save with a
+     * membership change is always written through.
+     *
+     * @throws StaleVehicleStateException if Redis already holds a state at least as new;
+     *         the vehicle's cache entry is dropped so the next read sees that state
+     */
+    public void saveState(VehicleState state, ZoneMembershipChange change) {
+        if (!cache.isEnabled()) {
+            storeSave(state, change);
+            return;
+        }
+        if (isEmpty(change) && cache.coalesce(state)) {
+            return;
+        }
+        flushLock.readLock().lock();
+        try {
+            storeSave(state, change);
+            cache.putClean(state);
+        } catch (StaleVehicleStateException e) {
+            cache.invalidate(state.getVehicleId());
+            throw e;
+        } finally {
+            flushLock.readLock().unlock();
+        }
+    }
+
+    /**
+     * Stores a state whose zone did not change, which lets the delta layout write only
+     * the timestamp.
+     *
+     * @throws StaleVehicleStateException as {@link #saveState(VehicleState, ZoneMembershipChange)}
+     */
+    public void touch(VehicleState state) {
+        if (!cache.isEnabled()) {
+            storeTouch(state);
+            return;
+        }
+        if (cache.coalesce(state)) {
+            return;
+        }
+        flushLock.readLock().lock();
+        try {
+            storeTouch(state);
+            cache.putClean(state);
+        } catch (StaleVehicleStateException e) {
+            cache.invalidate(state.getVehicleId());
+            throw e;
+        } finally {
+            flushLock.readLock().unlock();
+        }
+    }
+
+    /**
+     * Loads the states of several vehicles in one round trip, serving cached vehicles
+     * from memory. Vehicles without a stored state are absent from the returned map.
+     */
+    public Map<String, VehicleState> getStates(Collection<String> vehicleIds) {
+        if (vehicleIds.isEmpty()) {
+            return Map.of();
+        }
+        if (!cache.isEnabled()) {
+            return storeGetAll(vehicleIds);
+        }
+        Map<String, VehicleState> states = new HashMap<>();
+        List<String> misses = new ArrayList<>();
+        for (String vehicleId : vehicleIds) {
+            VehicleState cached = cache.get(vehicleId);
+            if (cached != null) {
+                metrics.recordCacheHit();
+                states.put(vehicleId, cached);
+            } else {
+                metrics.recordCacheMiss();
+                misses.add(vehicleId);
+            }
+        }
+        if (!misses.isEmpty()) {
+            Map<String, VehicleState> loaded = storeGetAll(misses);
+            loaded.values().forEach(cache::putLoaded);
+            states.putAll(loaded);
+        }
+        return states;
+    }
+
+    /**
+     * Stores the states of several vehicles in one round trip; with the cache enabled,
+     * saves that keep the cached zone are coalesced in memory as in
+     * {@link #saveState(VehicleState)}.
+     */
+    public void saveStates(Collection<VehicleState> states) {
+        saveStates(states, Map.of());
+    }
+
+    /**
+     * Bulk variant of {@link #saveState(VehicleState, ZoneMembershipChange)};
+     * {@code changes} is keyed by vehicle ID.
+     *
+     * @throws StaleVehicleStateException naming the vehicles whose state was not stored;
+     *         every other state was
+     */
+    public void saveStates(Collection<VehicleState> states, Map<String, ZoneMembershipChange> changes) {
+        if (states.isEmpty()) {
+            return;
+        }
+        if (!cache.isEnabled()) {
+            storeSaveAll(states, changes);
+            return;
+        }
+        List<VehicleState> writeThrough = new ArrayList<>();
+        for (VehicleState state : states) {
+            if (!isEmpty(changes.get(state.getVehicleId())) || !cache.coalesce(state)) {
+                writeThrough.add(state);
+            }
+        }
+        if (writeThrough.isEmpty()) {
+            return;
+        }
+        flushLock.readLock().lock();
+        try {
+            storeSaveAll(writeThrough, changes);
+            writeThrough.forEach(cache::putClean);
+        } catch (StaleVehicleStateException e) {
+            for (VehicleState state : writeThrough) {
+                if (e.getVehicleIds().contains(state.getVehicleId())) {
+                    cache.invalidate(state.getVehicleId());
+                } else {
+                    cache.putClean(state);
+                }
+            }
+            throw e;
+        } finally {
+            flushLock.readLock().unlock();
+        }
+    }
+
+    /**
+     * Stores the state if the vehicle is still in the zones of its stored state, or
+     * returns the stored state, in one round trip; see {@link VehicleStateStore#advanceAll}.
+     * Goes straight to Redis, so it cannot be combined with the cache.
+     */
+    public Advance advance(VehicleState state) {
+        long start = System.nanoTime();
+        try {
+            return store.advance(state);
+        } finally {
+            metrics.recordRedis(RedisOperation.ADVANCE, System.nanoTime() - start);
+        }
+    }
+
+    /**
+     * Bulk variant of {@link #advance}, in one round trip.
+     */
+    public Map<String, Advance> advanceAll(Collection<VehicleState> states) {
+        if (states.isEmpty()) {
+            return Map.of();
+        }
+        long start = System.nanoTime();
+        try {
+            return store.advanceAll(states);
+        } finally {
+            metrics.recordRedis(RedisOperation.ADVANCE_ALL, System.nanoTime() - start);
+        }
+    }
+
+    /**
+     * Writes every coalesced timestamp update to Redis in one bulk operation.
+     */
+    public void flush() {
+        flushLock.writeLock().lock();
+        try {
+            List<VehicleState> dirty = cache.drainDirty();
+            if (dirty.isEmpty()) {
+                return;
+            }
+            try {
+                storeTouchAll(dirty);
+                log.debug("Flushed {} cached vehicle states", dirty.size());
+            } catch (StaleVehicleStateException e) {
+                // Another replica wrote these vehicles since; the rest were flushed
+                e.getVehicleIds().forEach(cache::invalidate);
+                log.debug("Flushed cached vehicle states, {} superseded", e.getVehicleIds().size());
+            } catch (RuntimeException e) {
+                cache.requeue(dirty);
+                log.error("Failed to flush {} cached vehicle states", dirty.size(), e);
+            }
+        } finally {
+            flushLock.writeLock().unlock();
+        }
+    }
+
+    private static boolean isEmpty(ZoneMembershipChange change) {
+        return change == null || change.isEmpty();
+    }
+
+    // Store calls, timed as Redis round trips
+
+    private VehicleState storeGet(String vehicleId) {
+        long start = System.nanoTime();
+        try {
+            return store.get(vehicleId);
+        } finally {
+            metrics.recordRedis(RedisOperation.GET, System.nanoTime() - start);
+        }
+    }
+
+    private Map<String, VehicleState> storeGetAll(Collection<String> vehicleIds) {
+        long start = System.nanoTime();
+        try {
+            return store.getAll(vehicleIds);
+        } finally {
+            metrics.recordRedis(RedisOperation.GET_ALL, System.nanoTime() - start);
+        }
+    }
+
+    private void storeSave(VehicleState state, ZoneMembershipChange change) {
+        long start = System.nanoTime();
+        try {
+            store.save(state, change);
+        } finally {
+            metrics.recordRedis(RedisOperation.SAVE, System.nanoTime() - start);
+        }
+    }
+
+    private void storeSaveAll(Collection<VehicleState> states, Map<String, ZoneMembershipChange> changes) {
+        long start = System.nanoTime();
+        try {
+            store.saveAll(states, changes);
+        } finally {
+            metrics.recordRedis(RedisOperation.SAVE_ALL, System.nanoTime() - start);
+        }
+    }
+
+    private void storeTouch(VehicleState state) {
+        long start = System.nanoTime();
+        try {
+            store.touch(state);
+        } finally {
+            metrics.recordRedis(RedisOperation.TOUCH, System.nanoTime() - start);
+        }
+    }
 
+    private void storeTouchAll(Collection<VehicleState> states) {
+        long start = System.nanoTime();
+        try {
+            store.touchAll(states);
+        } finally {
+            metrics.recordRedis(RedisOperation.TOUCH_ALL, System.nanoTime() - start);
+        }
     }
 }
@@ -0,0 +1,362 @@
+package com.geofence.service.service;
+
+import com.fasterxml.jackson.core.type.TypeReference;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.geofence.service.geo.FlatPolygon;
+import com.geofence.service.geo.ZoneIndex;
+import com.geofence.service.geo.ZoneIndexFile;
+import com.geofence.service.repository.ZoneFileReader;
+import lombok.extern.slf4j.Slf4j;
+import org.locationtech.jts.geom.Coordinate;
+import org.locationtech.jts.geom.Geometry;
+import org.locationtech.jts.geom.LinearRing;
+import org.locationtech.jts.geom.GeometryFactory;
+import org.locationtech.jts.geom.Polygon;
+import org.locationtech.jts.geom.util.GeometryFixer;
+import org.locationtech.jts.simplify.TopologyPreservingSimplifier;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import java.io.IOException;
+import java.nio.file.AtomicMoveNotSupportedException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.CompletableFuture;
+import java.util.stream.IntStream;
+
+/**
+ * Bulk zone import from a GeoJSON or WKB file, see {@link ZoneFileReader} for the formats.
+ *
+ * The file is streamed on the calling thread in batches of {@value #BATCH_SIZE}
+ * features. Each batch is validated, repaired, simplified and flattened on all cores
+ * while the next one is read, so at most two batches of JTS geometries are alive at
+ * any time; only the flattened rings are kept. Each feature is one zone holding the
+ * shells and holes of all its polygons, largest polygon first, so a point in a hole
+ * is outside the zone and every part of a MultiPolygon answers with the feature's ID.
+ *
+ * Zone keys end up in stored vehicle states, the zone reverse index and occupancy
+ * counters, so a zone keeps its key across versions of the file. The keys given out so
+ * far are kept in a sidecar next to the file, {@code {file}.keys}, a JSON object of
+ * zone ID to key. Known zones keep their key, and zones new to the file get keys above
+ * every key given out before, in file order; the sidecar is then rewritten. Keys of
+ * zones removed from the file stay in it, so they are never given to another zone.
+ * Zones are registered in key order, so where zones overlap, those of earlier versions
+ * keep their precedence over new ones.
+ *
+ * A {@code .zidx} file, compiled ahead of time by {@link ZoneIndexCompiler}, is mapped
+ * as is instead, which takes about the same time whatever the number of zones.
+ */
+@Slf4j
+@Component
+public class ZoneFileLoader {
+
+    static final int BATCH_SIZE = 1024;
+    static final String KEYS_SUFFIX = ".keys";
+
+    private final ObjectMapper objectMapper;
+    private final ZoneFileReader reader;
+    private final String file;
+    private final double simplifyTolerance;
+    private final GeometryFactory geometryFactory = new GeometryFactory();
+
+    public ZoneFileLoader(ObjectMapper objectMapper,
+                          @Value("${geofence.zones.import.file:}") String file,
+                          @Value("${geofence.zones.import.id-property:id}") String idProperty,
+                          @Value("${geofence.zones.import.simplify-tolerance:0.00001}") double simplifyTolerance) {
+        if (simplifyTolerance < 0) {
+            throw new IllegalArgumentException("geofence.zones.import.simplify-tolerance must not be negative");
+        }
+        this.objectMapper = objectMapper;
+        this.reader = new ZoneFileReader(objectMapper, geometryFactory, idProperty);
+        this.file = file;
+        this.simplifyTolerance = simplifyTolerance;
+    }
+
+    /**
+     * True if zones are to be loaded from a file instead of the zone store.
+     */
+    public boolean isEnabled() {
+        return !file.isBlank();
+    }
+
+    public String getFile() {
+        return file;
+    }
+
+    /**
+     * Reads the configured file and builds the index, with the zone keys of its sidecar.
+     */
+    public LoadedZones load() throws IOException {
+        return load(Path.of(file));
+    }
+
+    LoadedZones load(Path path) throws IOException {
+        long start = System.nanoTime();
+        if (ZoneIndexFile.isIndexFile(path)) {
+            ZoneIndex index = ZoneIndexFile.map(path);
+            long mapped = System.nanoTime();
+            Runtime runtime = Runtime.getRuntime();
+            return new LoadedZones(index, new Report(true, index.size(), index.size(), 0, 0, 0,
+                    index.vertexCount(), index.vertexCount(), (mapped - start) / 1_000_000, 0,
+                    index.sizeInBytes(), runtime.totalMemory() - runtime.freeMemory()));
+        }
+        Assembler assembler = new Assembler(path);
+        reader.read(path, assembler);
+        assembler.finish();
+        long parsed = System.nanoTime();
+
+        int n = assembler.zoneIds.size();
+        int[] keys = assignKeys(keysFile(path), assembler.zoneIds);
+        // Registration order is key order: positions sorted by key
+        Integer[] order = new Integer[n];
+        for (int i = 0; i < n; i++) {
+            order[i] = i;
+        }
+        Arrays.sort(order, Comparator.comparingInt(i -> keys[i]));
+        String[] zoneIds = new String[n];
+        FlatPolygon[] polygons = new FlatPolygon[n];
+        int[] sortedKeys = new int[n];
+        for (int i = 0; i < n; i++) {
+            zoneIds[i] = assembler.zoneIds.get(order[i]);
+            polygons[i] = assembler.polygons.get(order[i]);
+            sortedKeys[i] = keys[order[i]];
+        }
+        ZoneIndex index = new ZoneIndex(zoneIds, polygons, sortedKeys);
+        long indexed = System.nanoTime();
+
+        Runtime runtime = Runtime.getRuntime();
+        Report report = new Report(false, assembler.features, n, assembler.skipped, assembler.repaired,
+                assembler.holes, assembler.verticesRead, assembler.verticesKept,
+                (parsed - start) / 1_000_000, (indexed - parsed) / 1_000_000,
+                index.sizeInBytes(), runtime.totalMemory() - runtime.freeMemory());
+        return new LoadedZones(index, report);
+    }
+
+    public record LoadedZones(ZoneIndex index, Report report) {
+    }
+
+    static Path keysFile(Path path) {
+        return path.resolveSibling(path.getFileName() + KEYS_SUFFIX);
+    }
+
+    /**
+     * Returns the key of each zone, from the sidecar or new, and saves new keys to it.
+     */
+    private int[] assignKeys(Path keysFile, List<String> zoneIds) throws IOException {
+        LinkedHashMap<String, Integer> known = Files.exists(keysFile)
+                ? objectMapper.readValue(keysFile.toFile(), new TypeReference<LinkedHashMap<String, Integer>>() {
+        })
+                : new LinkedHashMap<>();
+        int next = 1;
+        for (int key : known.values()) {
+            next = Math.max(next, Math.addExact(key, 1));
+        }
+        int[] keys = new int[zoneIds.size()];
+        int added = 0;
+        for (int i = 0; i < keys.length; i++) {
+            Integer key = known.get(zoneIds.get(i));
+            if (key == null) {
+                key = next;
+                next = Math.addExact(next, 1);
+                known.put(zoneIds.get(i), key);
+                added++;
+            }
+            keys[i] = key;
+        }
+        if (added > 0) {
+            saveKeys(keysFile, known);
+            log.info("Assigned keys to {} new zones, saved to {}", added, keysFile);
+        }
+        return keys;
+    }
+
+    // Replicas importing the same file write the same keys, so racing writes agree
+    private void saveKeys(Path keysFile, LinkedHashMap<String, Integer> keys) {
+        Path absolute = keysFile.toAbsolutePath();
+        Path temp = absolute.resolveSibling(absolute.getFileName() + ".tmp");
+        try {
+            try {
+                objectMapper.writeValue(temp.toFile(), keys);
+                try {
+                    Files.move(temp, absolute, StandardCopyOption.ATOMIC_MOVE, StandardCopyOption.REPLACE_EXISTING);
+                } catch (AtomicMoveNotSupportedException e) {
+                    Files.move(temp, absolute, StandardCopyOption.REPLACE_EXISTING);
+                }
+            } finally {
+                Files.deleteIfExists(temp);
+            }
+        } catch (IOException e) {
+            // Keys still agree across replicas loading this file, but not with a later version
+            log.warn("Could not save zone keys to {}, new zones may get other keys from the next version "
+                    + "of the file: {}", keysFile, e.getMessage());
+        }
+    }
+
+    /**
+     * Summary of one import, logged at startup.
+     *
+     * @param compiled true if a compiled index was mapped rather than a file parsed
+     * @param features features read from the file
+     * @param zones zones in the index, one per feature that was not skipped
+     * @param holes holes in the zones, which are indexed with their shells
+     * @param verticesKept vertices in the index after simplification, holes included
+     * @param indexBytes size of the index, off-heap if compiled
+     * @param heapUsedBytes heap in use once the index was built
+     */
+    public record Report(boolean compiled, int features, int zones, int skipped, int repaired, int holes,
+                         long verticesRead, long verticesKept, long readMillis, long indexMillis,
+                         long indexBytes, long heapUsedBytes) {
+    }
+
+    /**
+     * A feature turned into a zone, or the reason it was skipped.
+     */
+    private record Prepared(String zoneId, FlatPolygon polygon, boolean repaired, int holes,
+                            long verticesRead, String skipReason) {
+    }
+
+    private Prepared prepare(String zoneId, Geometry geometry) {
+        long verticesRead = geometry.getNumPoints();
+        if (geometry.isEmpty()) {
+            return skip(zoneId, "empty geometry", verticesRead);
+        }
+        for (Coordinate coordinate : geometry.getCoordinates()) {
+            if (coordinate.y < -90 || coordinate.y > 90 || coordinate.x < -180 || coordinate.x > 180) {
+                return skip(zoneId, "coordinate out of range: " + coordinate.y + "," + coordinate.x, verticesRead);
+            }
+        }
+        boolean repaired = false;
+        if (!geometry.isValid()) {
+            geometry = GeometryFixer.fix(geometry);
+            repaired = true;
+        }
+        if (simplifyTolerance > 0) {
+            geometry = TopologyPreservingSimplifier.simplify(geometry, simplifyTolerance);
+        }
+
+        List<Polygon> parts = new ArrayList<>(geometry.getNumGeometries());
+        for (int i = 0; i < geometry.getNumGeometries(); i++) {
+            if (geometry.getGeometryN(i) instanceof Polygon polygon && !polygon.isEmpty()) {
+                parts.add(polygon);
+            }
+        }
+        if (parts.isEmpty()) {
+            return skip(zoneId, "no polygon left after repair", verticesRead);
+        }
+        // Largest first, so the API's single-ring view of the zone is its main shell
+        parts.sort(Comparator.comparingDouble(Polygon::getArea).reversed());
+        List<Coordinate[]> rings = new ArrayList<>();
+        int holes = 0;
+        for (Polygon part : parts) {
+            rings.add(part.getExteriorRing().getCoordinates());
+            for (int i = 0; i < part.getNumInteriorRing(); i++) {
+                LinearRing hole = part.getInteriorRingN(i);
+                if (!hole.isEmpty()) {
+                    rings.add(hole.getCoordinates());
+                    holes++;
+                }
+            }
+        }
+        return new Prepared(zoneId, new FlatPolygon(rings), repaired, holes, verticesRead, null);
+    }
+
+    private static Prepared skip(String zoneId, String reason, long verticesRead) {
+        return new Prepared(zoneId, null, false, 0, verticesRead, reason);
+    }
+
+    /**
+     * Collects features from the reader thread into batches and appends prepared
+     * batches to the result in file order.
+     */
+    private final class Assembler implements ZoneFileReader.Sink {
+
+        private final List<String> zoneIds = new ArrayList<>();
+        private final List<FlatPolygon> polygons = new ArrayList<>();
+        private final Set<String> seen = new HashSet<>();
+        private final Path path;
+        private CompletableFuture<List<Prepared>> inFlight = CompletableFuture.completedFuture(List.of());
+
+        private final List<String> names = new ArrayList<>(BATCH_SIZE);
+        private final List<Geometry> geometries = new ArrayList<>(BATCH_SIZE);
+
+        private int features;
+        private int skipped;
+        private int repaired;
+        private int holes;
+        private long verticesRead;
+        private long verticesKept;
+
+        Assembler(Path path) {
+            this.path = path;
+        }
+
+        @Override
+        public void feature(String zoneId, Geometry geometry) {
+            features++;
+            names.add(zoneId);
+            geometries.add(geometry);
+            if (names.size() == BATCH_SIZE) {
+                submit();
+            }
+        }
+
+        @Override
+        public void skipped(String zoneId, String reason) {
+            features++;
+            skip(zoneId, reason);
+        }
+
+        void finish() {
+            submit();
+            append(inFlight.join());
+        }
+
+        // Prepares the batch in the background; the previous one must be appended first
+        private void submit() {
+            List<String> batchNames = List.copyOf(names);
+            List<Geometry> batchGeometries = List.copyOf(geometries);
+            names.clear();
+            geometries.clear();
+            List<Prepared> previous = inFlight.join();
+            inFlight = CompletableFuture.supplyAsync(() -> IntStream.range(0, batchNames.size())
+                    .parallel()
+                    .mapToObj(i -> prepare(batchNames.get(i), batchGeometries.get(i)))
+                    .toList());
+            append(previous);
+        }
+
+        private void append(List<Prepared> prepared) {
+            for (Prepared feature : prepared) {
+                verticesRead += feature.verticesRead();
+                if (feature.skipReason() != null) {
+                    skip(feature.zoneId(), feature.skipReason());
+                    continue;
+                }
+                if (!seen.add(feature.zoneId())) {
+                    skip(feature.zoneId(), "duplicate zone ID");
+                    continue;
+                }
+                if (feature.repaired()) {
+                    repaired++;
+                }
+                holes += feature.holes();
+                zoneIds.add(feature.zoneId());
+                polygons.add(feature.polygon());
+                verticesKept += feature.polygon().getVertexCount();
+            }
+        }
+
+        private void skip(String zoneId, String reason) {
+            skipped++;
+            log.debug("Skipped zone {} from {}: {}", zoneId, path, reason);
+        }
+    }
+}
@@ -0,0 +1,60 @@
+package com.geofence.service.service;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.geofence.service.geo.ZoneIndexFile;
+import lombok.extern.slf4j.Slf4j;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+
+/**
+ * Offline compiler from a GeoJSON or WKB zone file to a {@link ZoneIndexFile}, which
+ * replicas then map at startup through {@code geofence.zones.import.file}. The import
+ * runs exactly as at startup, so the compiled index holds the same zones and keys. It
+ * reads and updates the source file's key sidecar ({@code zones.geojson.keys}), which
+ * is to be kept with the source so the next version compiles to the same keys.
+ *
+ * Runs without Spring, from the packaged jar:
+ * <pre>
+ * java -cp geofence-service.jar -Dloader.main=com.geofence.service.service.ZoneIndexCompiler \
+ *     org.springframework.boot.loader.launch.PropertiesLauncher \
+ *     zones.geojson zones.zidx [id-property] [simplify-tolerance]
+ * </pre>
+ */
+@Slf4j
+public final class ZoneIndexCompiler {
+
+    private ZoneIndexCompiler() {
+    }
+
+    public static void main(String[] args) throws IOException {
+        if (args.length < 2 || args.length > 4) {
+            System.err.println("Usage: ZoneIndexCompiler <zones.geojson|zones.wkb> <output" + ZoneIndexFile.EXTENSION
+                    + "> [id-property, default id] [simplify-tolerance, default 0.00001]");
+            System.exit(2);
+        }
+        compile(Path.of(args[0]), Path.of(args[1]), args.length > 2 ? args[2] : "id",
+                args.length > 3 ? Double.parseDouble(args[3]) : 0.00001);
+    }
+
+    static ZoneFileLoader.Report compile(Path input, Path output, String idProperty, double simplifyTolerance)
+            throws IOException {
+        if (ZoneIndexFile.isIndexFile(input)) {
+            throw new IllegalArgumentException(input + " is already a compiled zone index");
+        }
+        if (!ZoneIndexFile.isIndexFile(output)) {
+            throw new IllegalArgumentException("Output file must end in " + ZoneIndexFile.EXTENSION);
+        }
+        ZoneFileLoader loader = new ZoneFileLoader(new ObjectMapper(), input.toString(), idProperty, simplifyTolerance);
+        ZoneFileLoader.LoadedZones loaded = loader.load();
+        ZoneIndexFile.write(loaded.index(), output);
+
+        ZoneFileLoader.Report report = loaded.report();
+        log.info("Compiled {} zones from {} features of {} into {} ({} bytes); {} skipped, {} repaired, "
+                        + "{} holes; {} of {} vertices kept",
+                report.zones(), report.features(), input, output, Files.size(output), report.skipped(),
+                report.repaired(), report.holes(), report.verticesKept(), report.verticesRead());
+        return report;
+    }
+}
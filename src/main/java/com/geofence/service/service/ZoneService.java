@@ -1,26 +1,516 @@
 package com.geofence.service.service;
 
 import com.geofence.service.dto.ZoneDTO;
+import com.geofence.service.exception.InvalidZoneException;
+import com.geofence.service.exception.ResourceConflictException;
+import com.geofence.service.exception.ResourceNotFoundException;
+import com.geofence.service.geo.CellCacheStats;
+import com.geofence.service.geo.FlatPolygon;
+import com.geofence.service.geo.ZoneIndex;
+import com.geofence.service.metrics.GeofenceMetrics;
 import com.geofence.service.model.Zone;
+import com.geofence.service.repository.ZoneRecord;
+import com.geofence.service.repository.ZoneStore;
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
 import lombok.extern.slf4j.Slf4j;
-import org.locationtech.jts.geom.*;
+import org.locationtech.jts.geom.Coordinate;
+import org.locationtech.jts.geom.GeometryFactory;
+import org.locationtech.jts.geom.Polygon;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.dao.DataAccessException;
 import org.springframework.stereotype.Service;
 
-import jakarta.annotation.PostConstruct;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.time.Duration;
 import java.util.ArrayList;
+import java.util.LinkedHashMap;
 import java.util.List;
-import java.util.stream.Collectors;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicReference;
+import java.util.concurrent.locks.ReentrantLock;
 
+/**
+ * Owns the zone set and the spatial index used for detection.
+ *
+ * Readers take the current {@link Snapshot} with a single volatile read, so
+ * {@link #detectZone} never blocks and never sees a partly built index. Mutations
+ * are validated and persisted on the caller thread, then a single background thread
+ * builds a new index from the latest zone set and swaps it in. Edits that arrive
+ * while a build is queued share that build, and each caller returns once an index
+ * containing its change is published.
+ *
+ * Replicas sharing a {@link ZoneStore} notice each other's edits through the store
+ * version, polled every {@code geofence.zones.refresh-interval}. A replica that started
+ * on the built-in zones because the store was unreachable loads the store's zones at the
+ * first refresh or edit that reaches it, since the built-in keys are not reserved there.
+ *
+ * With {@code geofence.zones.import.file} set, the zones come from that file instead,
+ * see {@link ZoneFileLoader}. Such a zone set is read-only, and zone keys come from the
+ * file's key sidecar, so they agree across replicas and across versions of the file.
+ *
+ * With {@code geofence.zones.cell-cache.enabled}, every published index carries a
+ * cell cache ({@link ZoneIndex#withCellCache}). A new index starts with an empty one,
+ * so zone changes can never be answered from stale cells.
+ */
 @Slf4j
 @Service
 public class ZoneService {
 
-    private final List<Zone> zones = new ArrayList<>();
+    private final ZoneStore zoneStore;
+    private final ZoneFileLoader fileLoader;
+    private final Duration refreshInterval;
+    private final boolean cellCacheEnabled;
+    private final double cellSize;
+    private final int maxCells;
+    private final CellCacheStats cellCacheStats = new CellCacheStats();
     private final GeometryFactory geometryFactory = new GeometryFactory();
 
+    private final AtomicReference<Snapshot> snapshot = new AtomicReference<>(Snapshot.of(List.of(), new int[0]));
+    private volatile boolean fromFile;
+
+    // Latest zone definitions in creation order; the fields below are guarded by mutationLock.
+    // A ReentrantLock rather than a monitor, so virtual threads doing store I/O under it can unmount.
+    private final ReentrantLock mutationLock = new ReentrantLock();
+    private final Map<String, ZoneRecord> records = new LinkedHashMap<>();
+    private long storeVersion;
+    private boolean builtInFallback;
+    private CompletableFuture<Void> pendingPublish;
+
+    private final ExecutorService indexBuilder = Executors.newSingleThreadExecutor(r -> {
+        Thread thread = new Thread(r, "zone-index-builder");
+        thread.setDaemon(true);
+        return thread;
+    });
+    private ScheduledExecutorService refresher;
+
+    @Autowired
+    public ZoneService(ZoneStore zoneStore,
+                       ZoneFileLoader fileLoader,
+                       GeofenceMetrics metrics,
+                       @Value("${geofence.zones.refresh-interval:10s}") Duration refreshInterval,
+                       @Value("${geofence.zones.cell-cache.enabled:false}") boolean cellCacheEnabled,
+                       @Value("${geofence.zones.cell-cache.cell-size:0.0005}") double cellSize,
+                       @Value("${geofence.zones.cell-cache.max-cells:65536}") int maxCells) {
+        if (cellCacheEnabled && (!(cellSize >= ZoneIndex.MIN_CELL_SIZE) || maxCells < 1)) {
+            throw new IllegalArgumentException("geofence.zones.cell-cache.cell-size must be at least "
+                    + ZoneIndex.MIN_CELL_SIZE + " and max-cells positive");
+        }
+        this.zoneStore = zoneStore;
+        this.fileLoader = fileLoader;
+        this.refreshInterval = refreshInterval;
+        this.cellCacheEnabled = cellCacheEnabled;
+        this.cellSize = cellSize;
+        this.maxCells = maxCells;
+        if (cellCacheEnabled && metrics != null) {
+            metrics.registerZoneCellCache(cellCacheStats);
+        }
+    }
+
+    /**
+     * Zones from the store or a file, without a cell cache.
+     */
+    public ZoneService(ZoneStore zoneStore, ZoneFileLoader fileLoader, Duration refreshInterval) {
+        this(zoneStore, fileLoader, null, refreshInterval, false, 0, 0);
+    }
+
+    /**
+     * Zones from the store only.
+     */
+    public ZoneService(ZoneStore zoneStore, Duration refreshInterval) {
+        this(zoneStore, null, refreshInterval);
+    }
+
     @PostConstruct
     public void init() {
+        if (fileLoader != null && fileLoader.isEnabled()) {
+            loadFromFile();
+            return;
+        }
         log.info("Initializing geofence zones...");
+        List<ZoneRecord> loaded;
+        boolean fallback = false;
+        try {
+            loaded = loadOrSeed();
+        } catch (DataAccessException e) {
+            log.warn("Could not load zones from the zone store, using built-in zones: {}", e.getMessage());
+            loaded = new ArrayList<>();
+            for (Zone zone : defaultZones()) {
+                loaded.add(new ZoneRecord(zone.getZoneId(), loaded.size() + 1, toCoordinateDtos(zone.getPolygon())));
+            }
+            fallback = true;
+        }
+        mutationLock.lock();
+        try {
+            builtInFallback = fallback;
+            replaceRecords(loaded);
+        } finally {
+            mutationLock.unlock();
+        }
+        publish(loaded);
+        log.info("Loaded {} geofence zones", snapshot.get().index().size());
+
+        if (refreshInterval.isPositive()) {
+            refresher = Executors.newSingleThreadScheduledExecutor(r -> {
+                Thread thread = new Thread(r, "zone-refresh");
+                thread.setDaemon(true);
+                return thread;
+            });
+            long millis = refreshInterval.toMillis();
+            refresher.scheduleWithFixedDelay(this::refresh, millis, millis, TimeUnit.MILLISECONDS);
+        }
+    }
+
+    @PreDestroy
+    public void shutdown() {
+        if (refresher != null) {
+            refresher.shutdownNow();
+        }
+        indexBuilder.shutdown();
+    }
+
+    public String detectZone(double lat, double lon) {
+        return snapshot.get().index().detect(lat, lon);
+    }
+
+    /**
+     * Returns the IDs of every zone containing the point, first-registered first.
+     */
+    public List<String> detectAllZones(double lat, double lon) {
+        ZoneIndex index = snapshot.get().index();
+        int[] keys = index.detectAll(lat, lon);
+        List<String> zoneIds = new ArrayList<>(keys.length);
+        for (int key : keys) {
+            zoneIds.add(index.zoneId(key));
+        }
+        return zoneIds;
+    }
+
+    /**
+     * Returns the published index. Zone keys are the zones' creation sequence, so
+     * membership keys stay valid across rebuilds and replicas.
+     */
+    public ZoneIndex currentIndex() {
+        return snapshot.get().index();
+    }
+
+    public List<ZoneDTO> getAllZones() {
+        ZoneIndex index = snapshot.get().index();
+        List<ZoneDTO> zones = new ArrayList<>(index.size());
+        for (int i = 0; i < index.size(); i++) {
+            zones.add(new ZoneDTO(index.zoneIdAt(i), toCoordinateDtos(index.polygonAt(i))));
+        }
+        return zones;
+    }
+
+    public ZoneDTO getZone(String zoneId) {
+        FlatPolygon polygon = snapshot.get().index().polygon(zoneId);
+        if (polygon == null) {
+            throw new ResourceNotFoundException("Zone not found: " + zoneId);
+        }
+        return new ZoneDTO(zoneId, toCoordinateDtos(polygon));
+    }
+
+    public ZoneDTO createZone(ZoneDTO zone) {
+        checkWritable();
+        validate(zone.getZoneId(), zone.getPolygon());
+        CompletableFuture<Void> published;
+        mutationLock.lock();
+        try {
+            leaveFallback();
+            if (records.containsKey(zone.getZoneId())) {
+                throw new ResourceConflictException("Zone already exists: " + zone.getZoneId());
+            }
+            ZoneRecord record = new ZoneRecord(zone.getZoneId(), zoneStore.nextSequence(), zone.getPolygon());
+            if (!zoneStore.saveIfAbsent(record)) {
+                // Created by another replica since our last refresh
+                reload();
+                schedulePublish();
+                throw new ResourceConflictException("Zone already exists: " + zone.getZoneId());
+            }
+            records.put(record.getZoneId(), record);
+            published = changed();
+        } finally {
+            mutationLock.unlock();
+        }
+        published.join();
+        log.info("Created zone {}", zone.getZoneId());
+        return zone;
+    }
+
+    public ZoneDTO updateZone(String zoneId, ZoneDTO zone) {
+        if (zone.getZoneId() != null && !zone.getZoneId().equals(zoneId)) {
+            throw new InvalidZoneException("Zone ID in body does not match path: " + zone.getZoneId());
+        }
+        checkWritable();
+        validate(zoneId, zone.getPolygon());
+        CompletableFuture<Void> published;
+        mutationLock.lock();
+        try {
+            leaveFallback();
+            ZoneRecord existing = records.get(zoneId);
+            if (existing == null) {
+                throw new ResourceNotFoundException("Zone not found: " + zoneId);
+            }
+            ZoneRecord record = new ZoneRecord(zoneId, existing.getSequence(), zone.getPolygon());
+            if (!zoneStore.replaceIfPresent(record)) {
+                // Deleted by another replica since our last refresh
+                reload();
+                schedulePublish();
+                throw new ResourceNotFoundException("Zone not found: " + zoneId);
+            }
+            records.put(zoneId, record);
+            published = changed();
+        } finally {
+            mutationLock.unlock();
+        }
+        published.join();
+        log.info("Updated zone {}", zoneId);
+        return new ZoneDTO(zoneId, zone.getPolygon());
+    }
+
+    public void deleteZone(String zoneId) {
+        checkWritable();
+        CompletableFuture<Void> published;
+        mutationLock.lock();
+        try {
+            leaveFallback();
+            if (!records.containsKey(zoneId)) {
+                throw new ResourceNotFoundException("Zone not found: " + zoneId);
+            }
+            zoneStore.delete(zoneId);
+            records.remove(zoneId);
+            published = changed();
+        } finally {
+            mutationLock.unlock();
+        }
+        published.join();
+        log.info("Deleted zone {}", zoneId);
+    }
+
+    /**
+     * Reloads the zones if another replica changed them since the last load.
+     */
+    void refresh() {
+        try {
+            long version = zoneStore.getVersion();
+            mutationLock.lock();
+            try {
+                if (builtInFallback) {
+                    leaveFallback();
+                } else if (version > storeVersion) {
+                    reload();
+                    schedulePublish();
+                }
+            } finally {
+                mutationLock.unlock();
+            }
+        } catch (DataAccessException e) {
+            log.debug("Zone refresh failed: {}", e.getMessage());
+        } catch (RuntimeException e) {
+            log.error("Zone refresh failed", e);
+        }
+    }
+
+    private void loadFromFile() {
+        log.info("Importing geofence zones from {}...", fileLoader.getFile());
+        ZoneFileLoader.LoadedZones loaded;
+        try {
+            loaded = fileLoader.load();
+        } catch (IOException e) {
+            throw new UncheckedIOException("Could not read zone file " + fileLoader.getFile(), e);
+        }
+        fromFile = true;
+        snapshot.set(snapshotOf(loaded.index()));
+        ZoneFileLoader.Report report = loaded.report();
+        if (report.compiled()) {
+            log.info("Mapped {} zones with {} vertices from compiled index {} in {} ms; "
+                            + "index {} MB off-heap, heap in use {} MB",
+                    report.zones(), report.verticesKept(), fileLoader.getFile(), report.readMillis(),
+                    report.indexBytes() >> 20, report.heapUsedBytes() >> 20);
+            return;
+        }
+        log.info("Imported {} zones from {} features in {} ms (read and prepare {} ms, index {} ms); "
+                        + "{} skipped, {} repaired, {} holes; {} of {} vertices kept; "
+                        + "index {} MB, heap in use {} MB",
+                report.zones(), report.features(), report.readMillis() + report.indexMillis(),
+                report.readMillis(), report.indexMillis(), report.skipped(), report.repaired(),
+                report.holes(), report.verticesKept(), report.verticesRead(),
+                report.indexBytes() >> 20, report.heapUsedBytes() >> 20);
+    }
+
+    private void checkWritable() {
+        if (fromFile) {
+            throw new ResourceConflictException("Zones are imported from " + fileLoader.getFile()
+                    + " and cannot be changed through the API");
+        }
+    }
+
+    private List<ZoneRecord> loadOrSeed() {
+        storeVersion = zoneStore.getVersion();
+        List<ZoneRecord> stored = zoneStore.findAll();
+        if (!stored.isEmpty()) {
+            return stored;
+        }
+        List<ZoneRecord> seeded = new ArrayList<>();
+        boolean raced = false;
+        for (Zone zone : defaultZones()) {
+            ZoneRecord record = new ZoneRecord(zone.getZoneId(), zoneStore.nextSequence(),
+                    toCoordinateDtos(zone.getPolygon()));
+            raced |= !zoneStore.saveIfAbsent(record);
+            seeded.add(record);
+        }
+        storeVersion = zoneStore.bumpVersion();
+        log.info("Seeded zone store with {} built-in zones", seeded.size());
+        // Another replica seeded concurrently; its records are the ones that were kept
+        return raced ? zoneStore.findAll() : seeded;
+    }
+
+    // Caller holds mutationLock. Swaps the built-in zones used while the store was down for
+    // the store's zones, seeding it if empty, so new zones get sequences the store handed out
+    private void leaveFallback() {
+        if (!builtInFallback) {
+            return;
+        }
+        replaceRecords(loadOrSeed());
+        builtInFallback = false;
+        schedulePublish();
+        log.info("Zone store is reachable, replaced the built-in zones with {} stored zones", records.size());
+    }
+
+    // Caller holds mutationLock
+    private CompletableFuture<Void> changed() {
+        long version = zoneStore.bumpVersion();
+        if (version != storeVersion + 1) {
+            // Another replica changed zones since our last load; pick its changes up too
+            reload();
+        }
+        storeVersion = version;
+        return schedulePublish();
+    }
+
+    // Caller holds mutationLock
+    private void reload() {
+        storeVersion = zoneStore.getVersion();
+        replaceRecords(zoneStore.findAll());
+    }
+
+    // Caller holds mutationLock
+    private void replaceRecords(List<ZoneRecord> loaded) {
+        records.clear();
+        for (ZoneRecord record : loaded) {
+            records.put(record.getZoneId(), record);
+        }
+    }
+
+    // Caller holds mutationLock
+    private CompletableFuture<Void> schedulePublish() {
+        if (pendingPublish == null) {
+            pendingPublish = new CompletableFuture<>();
+            indexBuilder.execute(this::rebuild);
+        }
+        return pendingPublish;
+    }
+
+    private void rebuild() {
+        List<ZoneRecord> current;
+        CompletableFuture<Void> done;
+        mutationLock.lock();
+        try {
+            current = List.copyOf(records.values());
+            done = pendingPublish;
+            pendingPublish = null;
+        } finally {
+            mutationLock.unlock();
+        }
+        try {
+            publish(current);
+            done.complete(null);
+        } catch (RuntimeException e) {
+            log.error("Failed to rebuild zone index", e);
+            done.completeExceptionally(e);
+        }
+    }
+
+    private void publish(List<ZoneRecord> current) {
+        List<Zone> zones = new ArrayList<>(current.size());
+        int[] keys = new int[current.size()];
+        for (ZoneRecord record : current) {
+            keys[zones.size()] = Math.toIntExact(record.getSequence());
+            zones.add(new Zone(record.getZoneId(), toCoordinates(record.getPolygon())));
+        }
+        long start = System.nanoTime();
+        Snapshot next = snapshotOf(new ZoneIndex(zones, keys));
+        snapshot.set(next);
+        log.debug("Published zone index with {} zones in {} us", zones.size(), (System.nanoTime() - start) / 1000);
+    }
+
+    private Snapshot snapshotOf(ZoneIndex index) {
+        return new Snapshot(cellCacheEnabled ? index.withCellCache(cellSize, maxCells, cellCacheStats) : index);
+    }
+
+    private void validate(String zoneId, List<ZoneDTO.CoordinateDTO> polygon) {
+        if (zoneId == null || zoneId.isBlank()) {
+            throw new InvalidZoneException("Zone ID must not be blank");
+        }
+        if (polygon == null || polygon.size() < 4) {
+            throw new InvalidZoneException("Polygon must have at least 4 coordinates");
+        }
+        for (ZoneDTO.CoordinateDTO point : polygon) {
+            if (point.getLat() < -90 || point.getLat() > 90 || point.getLon() < -180 || point.getLon() > 180) {
+                throw new InvalidZoneException("Coordinate out of range: " + point.getLat() + "," + point.getLon());
+            }
+        }
+        Coordinate[] ring = toCoordinates(polygon);
+        if (!ring[0].equals2D(ring[ring.length - 1])) {
+            throw new InvalidZoneException("Polygon ring must be closed (first and last coordinate equal)");
+        }
+        Polygon geometry = geometryFactory.createPolygon(ring);
+        if (!geometry.isValid()) {
+            throw new InvalidZoneException("Polygon is not valid (self-intersecting or degenerate)");
+        }
+    }
+
+    private static Coordinate[] toCoordinates(List<ZoneDTO.CoordinateDTO> polygon) {
+        Coordinate[] ring = new Coordinate[polygon.size()];
+        for (int i = 0; i < ring.length; i++) {
+            ZoneDTO.CoordinateDTO point = polygon.get(i);
+            ring[i] = new Coordinate(point.getLon(), point.getLat()); // x=lon, y=lat as in JTS
+        }
+        return ring;
+    }
+
+    // The API has one ring per zone: an imported zone with holes or several polygons
+    // shows its first ring, the shell of its largest polygon
+    private static List<ZoneDTO.CoordinateDTO> toCoordinateDtos(FlatPolygon polygon) {
+        int end = polygon.getRingStart(1);
+        List<ZoneDTO.CoordinateDTO> coordinates = new ArrayList<>(end);
+        for (int i = 0; i < end; i++) {
+            coordinates.add(new ZoneDTO.CoordinateDTO(polygon.getY(i), polygon.getX(i)));
+        }
+        return coordinates;
+    }
+
+    private static List<ZoneDTO.CoordinateDTO> toCoordinateDtos(Coordinate[] ring) {
+        List<ZoneDTO.CoordinateDTO> coordinates = new ArrayList<>(ring.length);
+        for (Coordinate coord : ring) {
+            coordinates.add(new ZoneDTO.CoordinateDTO(coord.y, coord.x));
+        }
+        return coordinates;
+    }
+
+    /**
+     * Zones the store is seeded with on first start.
+     */
+    static List<Zone> defaultZones() {
+        List<Zone> zones = new ArrayList<>();
         // Kempegowda International Airport (BLR Airport)
         zones.add(new Zone("airport", new Coordinate[]{
                 new Coordinate(77.6980, 13.2050),
@@ -83,31 +573,18 @@ public class ZoneService {
                 new Coordinate(77.6000, 12.9500),
                 new Coordinate(77.6000, 12.9100)
         }));
-        
-        log.info("Loaded {} geofence zones", zones.size());
+
+        return zones;
     }
 
-    public String detectZone(double lat, double lon) {
-        Point point = geometryFactory.createPoint(new Coordinate(lon, lat)); // JTS uses (x=lon,y=lat)
+    /**
+     * Immutable view published to readers. The index also holds the zones' rings, in
+     * creation order, so they are not kept twice.
+     */
+    private record Snapshot(ZoneIndex index) {
 
-        for (Zone zone : zones) {
-            Polygon polygon = geometryFactory.createPolygon(zone.getPolygon());
-            if (polygon.contains(point) || polygon.touches(point)) {
-                return zone.getZoneId();
-            }
+        static Snapshot of(List<Zone> zones, int[] keys) {
+            return new Snapshot(new ZoneIndex(zones, keys));
         }
-        return null;
-    }
-    
-    public List<ZoneDTO> getAllZones() {
-        return zones.stream()
-                .map(zone -> {
-                    List<ZoneDTO.CoordinateDTO> coordinates = new ArrayList<>();
-                    for (Coordinate coord : zone.getPolygon()) {
-                        coordinates.add(new ZoneDTO.CoordinateDTO(coord.y, coord.x));
-                    }
-                    return new ZoneDTO(zone.getZoneId(), coordinates);
-                })
-                .collect(Collectors.toList());
     }
 }
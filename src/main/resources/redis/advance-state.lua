@@ -0,0 +1,109 @@
+-- Stores a vehicle state if the vehicle is still in the same zones, comparing it with
+-- the stored state in the same atomic step. Otherwise returns the stored state, from
+-- which the caller works out the transition.
+--
+-- KEYS[1]      vehicle state key
+-- ARGV[1]      lastUpdated of the new state
+-- ARGV[2]      current zone of the new state, empty if none
+-- ARGV[3]      zone membership keys of the new state, comma-separated; '-' only reads
+-- ARGV[4..]    the state: one value (SET) or field/value pairs (HSET)
+-- Returns {'1'} if the state was stored. Otherwise {'0', stored}: the stored value, or
+-- its zone, ts and zones fields, nil where absent. Only bulk strings, no integers.
+
+local function varint(value, pos)
+    local result, scale = 0, 1
+    while pos <= #value do
+        local b = string.byte(value, pos)
+        pos = pos + 1
+        result = result + (b % 128) * scale
+        if b < 128 then
+            return result, pos
+        end
+        scale = scale * 128
+    end
+    return nil, pos
+end
+
+local function join(keys)
+    local parts = {}
+    for i, key in ipairs(keys) do
+        parts[i] = string.format('%d', key)
+    end
+    return table.concat(parts, ',')
+end
+
+-- lastUpdated, zone ('' if none) and membership (nil if unknown) of a stored value
+local function decode(value)
+    if string.byte(value, 1) == 0xB5 then
+        -- Binary codec: magic, version, lastUpdated, zone length + 1, zone, then in
+        -- version 2 the key count and the delta-encoded keys
+        local ts, pos = varint(value, 3)
+        local length
+        length, pos = varint(value, pos)
+        if not length then
+            return nil
+        end
+        local zone = ''
+        if length > 0 then
+            zone = string.sub(value, pos, pos + length - 2)
+            pos = pos + length - 1
+        end
+        if string.byte(value, 2) ~= 2 then
+            return ts, zone, nil
+        end
+        local count
+        count, pos = varint(value, pos)
+        local keys, key = {}, 0
+        for i = 1, count or 0 do
+            local delta
+            delta, pos = varint(value, pos)
+            if not delta then
+                return ts, zone, nil
+            end
+            key = key + delta
+            keys[i] = key
+        end
+        return ts, zone, join(keys)
+    end
+    local ok, state = pcall(cjson.decode, value)
+    if not ok or type(state) ~= 'table' then
+        return nil
+    end
+    local zone = state['currentZone']
+    if type(zone) ~= 'string' then
+        zone = ''
+    end
+    local membership = nil
+    if type(state['zones']) == 'table' then
+        membership = join(state['zones'])
+    end
+    return tonumber(state['lastUpdated']), zone, membership
+end
+
+local hash = #ARGV > 4
+local stored, ts, zone, membership
+if hash then
+    stored = redis.call('HMGET', KEYS[1], 'zone', 'ts', 'zones')
+    ts = tonumber(stored[2])
+    zone = stored[1] or ''
+    membership = stored[3] or nil
+else
+    stored = redis.call('GET', KEYS[1])
+    if stored then
+        ts, zone, membership = decode(stored)
+    end
+end
+
+if ARGV[3] ~= '-' and ts and ts < tonumber(ARGV[1]) and zone == ARGV[2] and membership == ARGV[3] then
+    if hash then
+        -- Zone and membership are unchanged, only the timestamp moves
+        redis.call('HSET', KEYS[1], 'ts', ARGV[1])
+    else
+        redis.call('SET', KEYS[1], ARGV[4])
+    end
+    return {'1'}
+end
+if hash then
+    return {'0', stored[1], stored[2], stored[3]}
+end
+return {'0', stored}
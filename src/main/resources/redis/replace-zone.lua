@@ -0,0 +1,13 @@
+-- Replaces a zone definition only while the zone exists, so an update cannot bring
+-- back a zone that another replica deleted.
+--
+-- KEYS[1]      zones hash
+-- ARGV[1]      zone ID
+-- ARGV[2]      zone record
+-- Returns 1 if the zone was replaced, 0 if it does not exist.
+
+if redis.call('HEXISTS', KEYS[1], ARGV[1]) == 0 then
+    return 0
+end
+redis.call('HSET', KEYS[1], ARGV[1], ARGV[2])
+return 1
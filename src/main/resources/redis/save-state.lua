@@ -0,0 +1,65 @@
+-- Saves a vehicle state and updates the per-zone reverse index in one atomic step.
+--
+-- KEYS[1]      vehicle state key
+-- KEYS[2..]    membership sets of the zones exited, then of the zones entered
+-- ARGV[1]      vehicle ID
+-- ARGV[2]      lastUpdated of the state; unless empty, nothing is written when the
+--              stored state is at least as new
+-- ARGV[3]      number of zones exited
+-- ARGV[4]      number of zones entered
+-- ARGV[5..]    entry time of each zone entered, in order
+-- then         the state: one value (SET) or field/value pairs (HSET)
+-- Returns 1 if the state was written, 0 if it was older than the stored one.
+
+-- lastUpdated of the stored state, or nil if there is none
+local function stored_timestamp(key, hash)
+    if hash then
+        return tonumber(redis.call('HGET', key, 'ts'))
+    end
+    local value = redis.call('GET', key)
+    if not value then
+        return nil
+    end
+    if string.byte(value, 1) == 0xB5 then
+        -- Binary codec: magic, version, then lastUpdated as an unsigned varint
+        local result, scale = 0, 1
+        for i = 3, #value do
+            local b = string.byte(value, i)
+            result = result + (b % 128) * scale
+            if b < 128 then
+                return result
+            end
+            scale = scale * 128
+        end
+        return nil
+    end
+    local ok, decoded = pcall(cjson.decode, value)
+    if ok and type(decoded) == 'table' then
+        return tonumber(decoded['lastUpdated'])
+    end
+    return nil
+end
+
+local vehicle = ARGV[1]
+local exited = tonumber(ARGV[3])
+local entered = tonumber(ARGV[4])
+local state = 5 + entered
+local hash = #ARGV > state
+if ARGV[2] ~= '' then
+    local stored = stored_timestamp(KEYS[1], hash)
+    if stored and stored >= tonumber(ARGV[2]) then
+        return 0
+    end
+end
+for i = 1, exited do
+    redis.call('ZREM', KEYS[1 + i], vehicle)
+end
+for i = 1, entered do
+    redis.call('ZADD', KEYS[1 + exited + i], ARGV[4 + i], vehicle)
+end
+if hash then
+    redis.call('HSET', KEYS[1], unpack(ARGV, state))
+else
+    redis.call('SET', KEYS[1], ARGV[state])
+end
+return 1
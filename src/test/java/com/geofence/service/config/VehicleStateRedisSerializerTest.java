@@ -0,0 +1,72 @@
+package com.geofence.service.config;
+
+import com.geofence.service.model.VehicleState;
+import org.junit.jupiter.api.Test;
+import org.springframework.data.redis.serializer.GenericJackson2JsonRedisSerializer;
+
+import java.util.Map;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+class VehicleStateRedisSerializerTest {
+
+    private final VehicleStateRedisSerializer binary = new VehicleStateRedisSerializer(true);
+    private final VehicleStateRedisSerializer json = new VehicleStateRedisSerializer(false);
+
+    @Test
+    void binary_RoundTrip() {
+        VehicleState state = new VehicleState("V001", "electronic_city", 1701234567890L);
+
+        VehicleState decoded = (VehicleState) binary.deserialize(binary.serialize(state));
+
+        // The vehicle ID lives in the key, not the value
+        assertThat(decoded).isEqualTo(new VehicleState(null, "electronic_city", 1701234567890L));
+    }
+
+    @Test
+    void binary_RoundTripOutsideAllZones() {
+        VehicleState decoded = (VehicleState) binary.deserialize(binary.serialize(new VehicleState("V001", null, 0L)));
+        assertThat(decoded).isEqualTo(new VehicleState(null, null, 0L));
+    }
+
+    @Test
+    void binary_RoundTripWithZoneMembership() {
+        VehicleState state = new VehicleState("V001", "bellandur", 1701234567890L, new int[]{4, 5, 300});
+
+        byte[] encoded = binary.serialize(state);
+
+        assertThat(binary.deserialize(encoded))
+                .isEqualTo(new VehicleState(null, "bellandur", 1701234567890L, new int[]{4, 5, 300}));
+        // Count plus delta-encoded keys: 1 + 1 + 1 + 2 bytes on top of the version 1 layout
+        assertThat(encoded).hasSize(18 + 5);
+    }
+
+    @Test
+    void deserialize_ReadsExistingJsonValues() {
+        VehicleState state = new VehicleState("V001", "bellandur", 1701234567890L);
+        byte[] legacy = new GenericJackson2JsonRedisSerializer().serialize(state);
+
+        assertThat(binary.deserialize(legacy)).isEqualTo(state);
+        // ...and a JSON writer can still read binary values after a rollback
+        assertThat(json.deserialize(binary.serialize(state)))
+                .isEqualTo(new VehicleState(null, "bellandur", 1701234567890L));
+    }
+
+    @Test
+    void serialize_OtherTypesStayJson() {
+        Map<String, String> value = Map.of("k", "v");
+        assertThat(binary.serialize(value)).isEqualTo(new GenericJackson2JsonRedisSerializer().serialize(value));
+    }
+
+    @Test
+    void binary_IsSeveralTimesSmallerThanJson() {
+        VehicleState state = new VehicleState("V001", "bellandur", 1701234567890L);
+
+        int jsonBytes = json.serialize(state).length;
+        int binaryBytes = binary.serialize(state).length;
+
+        // 125 bytes of JSON (type hint and field names included) vs 18 bytes
+        assertThat(jsonBytes).isEqualTo(125);
+        assertThat(binaryBytes).isEqualTo(18);
+    }
+}
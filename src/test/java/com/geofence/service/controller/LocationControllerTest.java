@@ -1,24 +1,39 @@
 package com.geofence.service.controller;
 
 import com.fasterxml.jackson.databind.ObjectMapper;
+import com.geofence.service.exception.IngestionOverloadedException;
 import com.geofence.service.model.LocationEvent;
+import com.geofence.service.model.VehicleDwell;
 import com.geofence.service.model.VehicleState;
 import com.geofence.service.model.ZoneTransitionEvent;
 import com.geofence.service.service.GeofenceService;
+import com.geofence.service.service.LocationStreamProcessor;
+import com.geofence.service.service.OccupancyService;
+import com.geofence.service.service.ShardedEventProcessor;
 import com.geofence.service.service.VehicleStateService;
 import org.junit.jupiter.api.Test;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.boot.test.autoconfigure.web.servlet.WebMvcTest;
 import org.springframework.boot.test.mock.mockito.MockBean;
+import org.springframework.context.annotation.Import;
 import org.springframework.http.MediaType;
 import org.springframework.test.web.servlet.MockMvc;
+import org.springframework.test.web.servlet.MvcResult;
 
+import java.util.List;
+import java.util.Map;
+
+import static org.assertj.core.api.Assertions.assertThat;
 import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyList;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.verify;
 import static org.mockito.Mockito.when;
 import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.*;
 import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.*;
 
 @WebMvcTest(LocationController.class)
+@Import(LocationStreamProcessor.class)
 class LocationControllerTest {
 
     @Autowired
@@ -30,9 +45,15 @@ class LocationControllerTest {
     @MockBean
     private GeofenceService geofenceService;
 
+    @MockBean
+    private ShardedEventProcessor shardedProcessor;
+
     @MockBean
     private VehicleStateService stateService;
 
+    @MockBean
+    private OccupancyService occupancyService;
+
     @Test
     @SuppressWarnings("null")
     void handleLocation_ValidEvent_ReturnsTransition() throws Exception {
@@ -60,6 +81,106 @@ class LocationControllerTest {
                 .andExpect(status().isBadRequest());
     }
 
+    @Test
+    @SuppressWarnings("null")
+    void handleLocationBatch_ValidEvents_ReturnsTransitions() throws Exception {
+        List<LocationEvent> events = List.of(
+                new LocationEvent("V001", 12.9350, 77.6650, 1000L),
+                new LocationEvent("V002", 12.9750, 77.6100, 1000L));
+        List<ZoneTransitionEvent> transitions = List.of(
+                new ZoneTransitionEvent("V001", null, "bellandur", 1000L),
+                new ZoneTransitionEvent("V002", null, "mg_road", 1000L));
+
+        when(geofenceService.processBatch(anyList())).thenReturn(transitions);
+
+        mockMvc.perform(post("/api/events/location/batch")
+                        .contentType(MediaType.APPLICATION_JSON)
+                        .content(objectMapper.writeValueAsString(events)))
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("$.length()").value(2))
+                .andExpect(jsonPath("$[0].toZone").value("bellandur"))
+                .andExpect(jsonPath("$[1].toZone").value("mg_road"));
+    }
+
+    @Test
+    @SuppressWarnings("null")
+    void handleLocationBatch_InvalidEvent_ReturnsBadRequest() throws Exception {
+        List<LocationEvent> events = List.of(
+                new LocationEvent("V001", 12.9350, 77.6650, 1000L),
+                new LocationEvent("V002", 200.0, 77.6100, 1000L));
+
+        mockMvc.perform(post("/api/events/location/batch")
+                        .contentType(MediaType.APPLICATION_JSON)
+                        .content(objectMapper.writeValueAsString(events)))
+                .andExpect(status().isBadRequest())
+                .andExpect(jsonPath("$.validationErrors['events[1].lat']").exists());
+
+        verify(geofenceService, never()).processBatch(anyList());
+    }
+
+    @Test
+    void handleLocationBatch_EmptyBatch_ReturnsBadRequest() throws Exception {
+        mockMvc.perform(post("/api/events/location/batch")
+                        .contentType(MediaType.APPLICATION_JSON)
+                        .content("[]"))
+                .andExpect(status().isBadRequest());
+    }
+
+    @Test
+    @SuppressWarnings("null")
+    void handleLocation_ShardQueueFull_ReturnsTooManyRequests() throws Exception {
+        when(shardedProcessor.isEnabled()).thenReturn(true);
+        when(shardedProcessor.process(any(LocationEvent.class)))
+                .thenThrow(new IngestionOverloadedException("Ingestion shard 3 is full, retry later"));
+
+        mockMvc.perform(post("/api/events/location")
+                        .contentType(MediaType.APPLICATION_JSON)
+                        .content(objectMapper.writeValueAsString(new LocationEvent("V001", 12.9350, 77.6650, 1000L))))
+                .andExpect(status().isTooManyRequests())
+                .andExpect(header().string("Retry-After", "1"));
+
+        verify(geofenceService, never()).process(any(LocationEvent.class));
+    }
+
+    @Test
+    void handleLocationStream_WritesOneLinePerTransition() throws Exception {
+        when(geofenceService.process(any(LocationEvent.class))).thenAnswer(invocation -> {
+            LocationEvent event = invocation.getArgument(0);
+            // Only the first ping of each vehicle is a transition
+            return event.getTimestamp() == 1000L
+                    ? new ZoneTransitionEvent(event.getVehicleId(), null, "bellandur", 1000L)
+                    : null;
+        });
+        String body = "{\"vehicleId\":\"V001\",\"lat\":12.935,\"lon\":77.665,\"timestamp\":1000}\n"
+                + "{\"vehicleId\":\"V001\",\"lat\":12.935,\"lon\":77.665,\"timestamp\":2000}\n"
+                + "{\"vehicleId\":\"V002\",\"lat\":12.935,\"lon\":77.665,\"timestamp\":1000}\n";
+
+        MvcResult stream = mockMvc.perform(post("/api/events/location/stream")
+                        .contentType(MediaType.APPLICATION_NDJSON)
+                        .content(body))
+                .andExpect(request().asyncStarted())
+                .andReturn();
+        // The stream has no timeout, which asyncDispatch would take as no wait
+        stream.getAsyncResult(5000);
+        String response = mockMvc.perform(asyncDispatch(stream))
+                .andExpect(status().isOk())
+                .andExpect(content().contentType(MediaType.APPLICATION_NDJSON))
+                .andReturn().getResponse().getContentAsString();
+
+        String[] lines = response.split("\n");
+        assertThat(lines).hasSize(2);
+        assertThat(objectMapper.readValue(lines[0], ZoneTransitionEvent.class).getVehicleId()).isEqualTo("V001");
+        assertThat(objectMapper.readValue(lines[1], ZoneTransitionEvent.class).getVehicleId()).isEqualTo("V002");
+    }
+
+    @Test
+    void handleLocationStream_WrongContentType_ReturnsUnsupportedMediaType() throws Exception {
+        mockMvc.perform(post("/api/events/location/stream")
+                        .contentType(MediaType.APPLICATION_JSON)
+                        .content("[]"))
+                .andExpect(status().isUnsupportedMediaType());
+    }
+
     @Test
     void getZone_ExistingVehicle_ReturnsState() throws Exception {
         VehicleState state = new VehicleState("V001", "bellandur", 1000L);
@@ -78,5 +199,13 @@ class LocationControllerTest {
         mockMvc.perform(get("/api/vehicles/V999/zone"))
                 .andExpect(status().isNotFound());
     }
-}
 
+    @Test
+    void getDwell_ReturnsTotalsPerZone() throws Exception {
+        when(occupancyService.getVehicle("V001")).thenReturn(new VehicleDwell("V001", Map.of("airport", 90_000L)));
+
+        mockMvc.perform(get("/api/vehicles/V001/dwell"))
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("$.dwellMs.airport").value(90_000));
+    }
+}
@@ -0,0 +1,101 @@
+package com.geofence.service.controller;
+
+import com.geofence.service.model.LocationEvent;
+import com.geofence.service.model.ZoneTransitionEvent;
+import com.geofence.service.service.GeofenceService;
+import org.junit.jupiter.api.Test;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.boot.test.mock.mockito.MockBean;
+import org.springframework.boot.test.web.server.LocalServerPort;
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.io.OutputStream;
+import java.net.Socket;
+import java.net.URI;
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.nio.charset.StandardCharsets;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.Mockito.when;
+
+/**
+ * Device streams on a real Tomcat with fewer request threads than open streams.
+ */
+@SpringBootTest(webEnvironment = SpringBootTest.WebEnvironment.RANDOM_PORT,
+        properties = {"server.tomcat.threads.max=2", "server.tomcat.threads.min-spare=2"})
+class LocationStreamServerTest {
+
+    private static final int STREAMS = 8;
+
+    @LocalServerPort
+    private int port;
+
+    @MockBean
+    private GeofenceService geofenceService;
+
+    @Test
+    void openStreams_DoNotHoldRequestThreads() throws Exception {
+        when(geofenceService.process(any(LocationEvent.class))).thenAnswer(invocation -> {
+            LocationEvent event = invocation.getArgument(0);
+            return new ZoneTransitionEvent(event.getVehicleId(), null, "bellandur", event.getTimestamp());
+        });
+
+        List<Socket> streams = new ArrayList<>();
+        try {
+            for (int i = 0; i < STREAMS; i++) {
+                streams.add(openStream("S" + i));
+            }
+
+            HttpResponse<String> ping = HttpClient.newHttpClient().send(
+                    HttpRequest.newBuilder(URI.create("http://localhost:" + port + "/api/events/location"))
+                            .timeout(Duration.ofSeconds(5))
+                            .header("Content-Type", "application/json")
+                            .POST(HttpRequest.BodyPublishers.ofString(event("V001")))
+                            .build(),
+                    HttpResponse.BodyHandlers.ofString());
+
+            assertThat(ping.statusCode()).isEqualTo(200);
+            assertThat(ping.body()).contains("\"vehicleId\":\"V001\"");
+        } finally {
+            for (Socket stream : streams) {
+                // Last chunk: the stream ends normally
+                stream.getOutputStream().write("0\r\n\r\n".getBytes(StandardCharsets.UTF_8));
+                stream.close();
+            }
+        }
+    }
+
+    // Sends one event on a new stream and waits for its transition, leaving the stream open
+    private Socket openStream(String vehicleId) throws IOException {
+        Socket socket = new Socket("localhost", port);
+        socket.setSoTimeout(5000);
+        String line = event(vehicleId) + "\n";
+        OutputStream out = socket.getOutputStream();
+        out.write(("POST /api/events/location/stream HTTP/1.1\r\n"
+                + "Host: localhost\r\n"
+                + "Content-Type: application/x-ndjson\r\n"
+                + "Transfer-Encoding: chunked\r\n\r\n"
+                + Integer.toHexString(line.length()) + "\r\n" + line + "\r\n").getBytes(StandardCharsets.UTF_8));
+        out.flush();
+
+        BufferedReader in = new BufferedReader(new InputStreamReader(socket.getInputStream(), StandardCharsets.UTF_8));
+        String received;
+        do {
+            received = in.readLine();
+        } while (received != null && !received.contains(vehicleId));
+        assertThat(received).contains("\"toZone\":\"bellandur\"");
+        return socket;
+    }
+
+    private static String event(String vehicleId) {
+        return "{\"vehicleId\":\"" + vehicleId + "\",\"lat\":12.935,\"lon\":77.665,\"timestamp\":1000}";
+    }
+}
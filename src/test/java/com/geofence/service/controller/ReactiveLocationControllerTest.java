@@ -0,0 +1,104 @@
+package com.geofence.service.controller;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.geofence.service.model.LocationEvent;
+import com.geofence.service.model.VehicleState;
+import com.geofence.service.model.ZoneTransitionEvent;
+import com.geofence.service.service.ReactiveGeofenceService;
+import com.geofence.service.service.ReactiveVehicleStateService;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.web.servlet.WebMvcTest;
+import org.springframework.boot.test.mock.mockito.MockBean;
+import org.springframework.http.MediaType;
+import org.springframework.test.web.servlet.MockMvc;
+import org.springframework.test.web.servlet.MvcResult;
+import reactor.core.publisher.Mono;
+
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.Mockito.when;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.*;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.*;
+
+@WebMvcTest(value = ReactiveLocationController.class, properties = "geofence.reactive.enabled=true")
+class ReactiveLocationControllerTest {
+
+    @Autowired
+    private MockMvc mockMvc;
+
+    @Autowired
+    private ObjectMapper objectMapper;
+
+    @MockBean
+    private ReactiveGeofenceService geofenceService;
+
+    @MockBean
+    private ReactiveVehicleStateService stateService;
+
+    @Test
+    @SuppressWarnings("null")
+    void handleLocation_Transition_ReturnsItAsynchronously() throws Exception {
+        LocationEvent event = new LocationEvent("V001", 12.9350, 77.6650, 1000L);
+        when(geofenceService.process(any(LocationEvent.class)))
+                .thenReturn(Mono.just(new ZoneTransitionEvent("V001", null, "bellandur", 1000L)));
+
+        MvcResult result = mockMvc.perform(post("/api/reactive/events/location")
+                        .contentType(MediaType.APPLICATION_JSON)
+                        .content(objectMapper.writeValueAsString(event)))
+                .andExpect(request().asyncStarted())
+                .andReturn();
+
+        mockMvc.perform(asyncDispatch(result))
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("$.toZone").value("bellandur"));
+    }
+
+    @Test
+    @SuppressWarnings("null")
+    void handleLocation_NoTransition_ReturnsMessage() throws Exception {
+        LocationEvent event = new LocationEvent("V001", 12.9350, 77.6650, 1000L);
+        when(geofenceService.process(any(LocationEvent.class))).thenReturn(Mono.empty());
+
+        MvcResult result = mockMvc.perform(post("/api/reactive/events/location")
+                        .contentType(MediaType.APPLICATION_JSON)
+                        .content(objectMapper.writeValueAsString(event)))
+                .andReturn();
+
+        mockMvc.perform(asyncDispatch(result))
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("$.message").value("No zone change detected"))
+                .andExpect(jsonPath("$.vehicleId").value("V001"));
+    }
+
+    @Test
+    @SuppressWarnings("null")
+    void handleLocation_InvalidEvent_ReturnsBadRequest() throws Exception {
+        LocationEvent event = new LocationEvent("", 200.0, 200.0, -1L);
+
+        mockMvc.perform(post("/api/reactive/events/location")
+                        .contentType(MediaType.APPLICATION_JSON)
+                        .content(objectMapper.writeValueAsString(event)))
+                .andExpect(status().isBadRequest());
+    }
+
+    @Test
+    void getZone_Found_ReturnsState() throws Exception {
+        when(stateService.getState("V001")).thenReturn(Mono.just(new VehicleState("V001", "bellandur", 1000L)));
+
+        MvcResult result = mockMvc.perform(get("/api/reactive/vehicles/V001/zone")).andReturn();
+
+        mockMvc.perform(asyncDispatch(result))
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("$.currentZone").value("bellandur"));
+    }
+
+    @Test
+    void getZone_Missing_ReturnsNotFound() throws Exception {
+        when(stateService.getState("V404")).thenReturn(Mono.empty());
+
+        MvcResult result = mockMvc.perform(get("/api/reactive/vehicles/V404/zone")).andReturn();
+
+        mockMvc.perform(asyncDispatch(result))
+                .andExpect(status().isNotFound());
+    }
+}
@@ -0,0 +1,171 @@
+package com.geofence.service.controller;
+
+import com.geofence.service.exception.ResourceConflictException;
+import com.geofence.service.exception.ResourceNotFoundException;
+import com.geofence.service.exception.SubscriptionLimitException;
+import com.geofence.service.model.LoggedTransition;
+import com.geofence.service.model.TransitionPage;
+import com.geofence.service.model.ZoneTransitionEvent;
+import com.geofence.service.service.TransitionBroadcaster;
+import com.geofence.service.service.TransitionBroadcaster.OverflowPolicy;
+import com.geofence.service.service.TransitionLogService;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.web.servlet.WebMvcTest;
+import org.springframework.boot.test.mock.mockito.MockBean;
+import org.springframework.http.MediaType;
+import org.springframework.test.web.servlet.MockMvc;
+
+import java.util.List;
+
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyBoolean;
+import static org.mockito.ArgumentMatchers.anyInt;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.ArgumentMatchers.isNull;
+import static org.mockito.Mockito.doThrow;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.delete;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.get;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.post;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.*;
+
+@WebMvcTest(TransitionController.class)
+class TransitionControllerTest {
+
+    @Autowired
+    private MockMvc mockMvc;
+
+    @MockBean
+    private TransitionBroadcaster broadcaster;
+
+    @MockBean
+    private TransitionLogService transitionLog;
+
+    @Test
+    void stream_SubscribesWithFiltersAndStaysOpen() throws Exception {
+        when(broadcaster.subscribe(eq("mg_road"), isNull(), eq(OverflowPolicy.DISCONNECT), any()))
+                .thenReturn(mock(TransitionBroadcaster.Subscription.class));
+
+        mockMvc.perform(get("/api/transitions/stream")
+                        .param("zoneId", "mg_road")
+                        .param("overflow", "disconnect"))
+                .andExpect(status().isOk())
+                .andExpect(request().asyncStarted());
+
+        verify(broadcaster).subscribe(eq("mg_road"), isNull(), eq(OverflowPolicy.DISCONNECT), any());
+    }
+
+    @Test
+    void stream_UnknownOverflowPolicy_ReturnsBadRequest() throws Exception {
+        mockMvc.perform(get("/api/transitions/stream").param("overflow", "block"))
+                .andExpect(status().isBadRequest())
+                .andExpect(jsonPath("$.error").value("Invalid Subscription"));
+
+        verify(broadcaster, never()).subscribe(any(), any(), any(), any());
+    }
+
+    @Test
+    void stream_LimitReached_ReturnsServiceUnavailable() throws Exception {
+        when(broadcaster.subscribe(any(), any(), any(), any()))
+                .thenThrow(new SubscriptionLimitException("Transition subscriber limit of 100 reached"));
+
+        mockMvc.perform(get("/api/transitions/stream"))
+                .andExpect(status().isServiceUnavailable());
+    }
+
+    @Test
+    void query_ReturnsPageWithCursor() throws Exception {
+        when(transitionLog.query("V001", 1000L, null, null, 100)).thenReturn(new TransitionPage(
+                List.of(new LoggedTransition("1000-0", new ZoneTransitionEvent("V001", null, "bellandur", 900L))),
+                "1000-0"));
+
+        mockMvc.perform(get("/api/transitions").param("vehicleId", "V001").param("from", "1000"))
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("$.transitions[0].id").value("1000-0"))
+                .andExpect(jsonPath("$.transitions[0].toZone").value("bellandur"))
+                .andExpect(jsonPath("$.nextCursor").value("1000-0"));
+    }
+
+    @Test
+    void query_InvalidCursorOrLimit_ReturnsBadRequest() throws Exception {
+        mockMvc.perform(get("/api/transitions").param("cursor", "abc"))
+                .andExpect(status().isBadRequest())
+                .andExpect(jsonPath("$.validationErrors.cursor").exists());
+        mockMvc.perform(get("/api/transitions").param("limit", "5000"))
+                .andExpect(status().isBadRequest())
+                .andExpect(jsonPath("$.validationErrors.limit").exists());
+
+        verify(transitionLog, never()).query(any(), any(), any(), any(), anyInt());
+    }
+
+    @Test
+    void createGroup_ReturnsCreated() throws Exception {
+        mockMvc.perform(post("/api/transitions/groups/billing").param("start", "0"))
+                .andExpect(status().isCreated())
+                .andExpect(header().string("Location", "/api/transitions/groups/billing"));
+
+        verify(transitionLog).createGroup("billing", "0");
+    }
+
+    @Test
+    void createGroup_Exists_ReturnsConflict() throws Exception {
+        doThrow(new ResourceConflictException("Consumer group already exists: billing"))
+                .when(transitionLog).createGroup("billing", "$");
+
+        mockMvc.perform(post("/api/transitions/groups/billing"))
+                .andExpect(status().isConflict());
+    }
+
+    @Test
+    void deleteGroup_Missing_ReturnsNotFound() throws Exception {
+        when(transitionLog.deleteGroup("billing")).thenReturn(false);
+
+        mockMvc.perform(delete("/api/transitions/groups/billing"))
+                .andExpect(status().isNotFound());
+    }
+
+    @Test
+    void readGroup_ReturnsDeliveredTransitions() throws Exception {
+        when(transitionLog.readGroup("billing", "worker-1", 10, true)).thenReturn(
+                List.of(new LoggedTransition("1000-0", new ZoneTransitionEvent("V001", null, "bellandur", 900L))));
+
+        mockMvc.perform(get("/api/transitions/groups/billing/entries")
+                        .param("consumer", "worker-1").param("count", "10").param("pending", "true"))
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("$[0].id").value("1000-0"));
+    }
+
+    @Test
+    void readGroup_UnknownGroup_ReturnsNotFound() throws Exception {
+        when(transitionLog.readGroup(any(), any(), anyInt(), anyBoolean()))
+                .thenThrow(new ResourceNotFoundException("Consumer group not found: billing"));
+
+        mockMvc.perform(get("/api/transitions/groups/billing/entries").param("consumer", "worker-1"))
+                .andExpect(status().isNotFound());
+    }
+
+    @Test
+    void acknowledge_ReturnsCount() throws Exception {
+        when(transitionLog.acknowledge("billing", List.of("1000-0", "1000-1"))).thenReturn(2L);
+
+        mockMvc.perform(post("/api/transitions/groups/billing/ack")
+                        .contentType(MediaType.APPLICATION_JSON)
+                        .content("[\"1000-0\", \"1000-1\"]"))
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("$.acknowledged").value(2));
+    }
+
+    @Test
+    void acknowledge_InvalidId_ReturnsBadRequest() throws Exception {
+        mockMvc.perform(post("/api/transitions/groups/billing/ack")
+                        .contentType(MediaType.APPLICATION_JSON)
+                        .content("[\"1000-0\", \"nope\"]"))
+                .andExpect(status().isBadRequest());
+
+        verify(transitionLog, never()).acknowledge(any(), any());
+    }
+}
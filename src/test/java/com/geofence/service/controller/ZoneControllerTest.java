@@ -0,0 +1,187 @@
+package com.geofence.service.controller;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.geofence.service.dto.ZoneDTO;
+import com.geofence.service.exception.InvalidZoneException;
+import com.geofence.service.exception.ResourceConflictException;
+import com.geofence.service.exception.ResourceNotFoundException;
+import com.geofence.service.model.ZoneOccupancy;
+import com.geofence.service.model.ZoneVehicle;
+import com.geofence.service.model.ZoneVehiclesPage;
+import com.geofence.service.service.OccupancyService;
+import com.geofence.service.service.ZoneService;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.web.servlet.WebMvcTest;
+import org.springframework.boot.test.mock.mockito.MockBean;
+import org.springframework.http.MediaType;
+import org.springframework.test.web.servlet.MockMvc;
+
+import java.util.List;
+
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyInt;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.doThrow;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.*;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.*;
+
+@WebMvcTest(ZoneController.class)
+class ZoneControllerTest {
+
+    private static final List<ZoneDTO.CoordinateDTO> SQUARE = List.of(
+            new ZoneDTO.CoordinateDTO(12.96, 77.74),
+            new ZoneDTO.CoordinateDTO(12.96, 77.76),
+            new ZoneDTO.CoordinateDTO(12.98, 77.76),
+            new ZoneDTO.CoordinateDTO(12.98, 77.74),
+            new ZoneDTO.CoordinateDTO(12.96, 77.74));
+
+    @Autowired
+    private MockMvc mockMvc;
+
+    @Autowired
+    private ObjectMapper objectMapper;
+
+    @MockBean
+    private ZoneService zoneService;
+
+    @MockBean
+    private OccupancyService occupancyService;
+
+    @Test
+    @SuppressWarnings("null")
+    void createZone_ReturnsCreated() throws Exception {
+        ZoneDTO zone = new ZoneDTO("whitefield", SQUARE);
+        when(zoneService.createZone(any(ZoneDTO.class))).thenReturn(zone);
+
+        mockMvc.perform(post("/api/zones")
+                        .contentType(MediaType.APPLICATION_JSON)
+                        .content(objectMapper.writeValueAsString(zone)))
+                .andExpect(status().isCreated())
+                .andExpect(header().string("Location", "/api/zones/whitefield"))
+                .andExpect(jsonPath("$.zoneId").value("whitefield"));
+    }
+
+    @Test
+    @SuppressWarnings("null")
+    void createZone_Existing_ReturnsConflict() throws Exception {
+        when(zoneService.createZone(any(ZoneDTO.class)))
+                .thenThrow(new ResourceConflictException("Zone already exists: airport"));
+
+        mockMvc.perform(post("/api/zones")
+                        .contentType(MediaType.APPLICATION_JSON)
+                        .content(objectMapper.writeValueAsString(new ZoneDTO("airport", SQUARE))))
+                .andExpect(status().isConflict());
+    }
+
+    @Test
+    @SuppressWarnings("null")
+    void createZone_InvalidPolygon_ReturnsBadRequest() throws Exception {
+        when(zoneService.createZone(any(ZoneDTO.class)))
+                .thenThrow(new InvalidZoneException("Polygon must have at least 4 coordinates"));
+
+        mockMvc.perform(post("/api/zones")
+                        .contentType(MediaType.APPLICATION_JSON)
+                        .content(objectMapper.writeValueAsString(new ZoneDTO("tiny", SQUARE.subList(0, 2)))))
+                .andExpect(status().isBadRequest())
+                .andExpect(jsonPath("$.error").value("Invalid Zone"));
+    }
+
+    @Test
+    @SuppressWarnings("null")
+    void updateZone_ReturnsUpdatedZone() throws Exception {
+        ZoneDTO zone = new ZoneDTO("mg_road", SQUARE);
+        when(zoneService.updateZone(eq("mg_road"), any(ZoneDTO.class))).thenReturn(zone);
+
+        mockMvc.perform(put("/api/zones/mg_road")
+                        .contentType(MediaType.APPLICATION_JSON)
+                        .content(objectMapper.writeValueAsString(zone)))
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("$.polygon.length()").value(5));
+    }
+
+    @Test
+    void deleteZone_Unknown_ReturnsNotFound() throws Exception {
+        doThrow(new ResourceNotFoundException("Zone not found: nowhere")).when(zoneService).deleteZone("nowhere");
+
+        mockMvc.perform(delete("/api/zones/nowhere"))
+                .andExpect(status().isNotFound());
+        verify(occupancyService, never()).deleteZone(any());
+    }
+
+    @Test
+    void deleteZone_ReturnsNoContent() throws Exception {
+        mockMvc.perform(delete("/api/zones/mg_road"))
+                .andExpect(status().isNoContent());
+
+        verify(zoneService).deleteZone("mg_road");
+        verify(occupancyService).deleteZone("mg_road");
+    }
+
+    @Test
+    void getOccupancy_ReturnsCountsAndAverageDwell() throws Exception {
+        when(occupancyService.getZone("airport")).thenReturn(new ZoneOccupancy("airport", 42, 10, 6_000_000, 600_000L));
+
+        mockMvc.perform(get("/api/zones/airport/occupancy"))
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("$.vehicles").value(42))
+                .andExpect(jsonPath("$.averageDwellMs").value(600_000));
+    }
+
+    @Test
+    void getOccupancy_UnknownZone_ReturnsNotFound() throws Exception {
+        when(zoneService.getZone("nowhere")).thenThrow(new ResourceNotFoundException("Zone not found: nowhere"));
+
+        mockMvc.perform(get("/api/zones/nowhere/occupancy"))
+                .andExpect(status().isNotFound());
+        verify(occupancyService, never()).getZone(any());
+    }
+
+    @Test
+    void getVehicles_ReturnsPageWithCursor() throws Exception {
+        when(occupancyService.getVehicles("airport", "1000:V001", 2)).thenReturn(new ZoneVehiclesPage("airport", 5,
+                List.of(new ZoneVehicle("V002", 1000L), new ZoneVehicle("V003", 1500L)), "1500:V003"));
+
+        mockMvc.perform(get("/api/zones/airport/vehicles").param("cursor", "1000:V001").param("limit", "2"))
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("$.total").value(5))
+                .andExpect(jsonPath("$.vehicles[0].vehicleId").value("V002"))
+                .andExpect(jsonPath("$.vehicles[1].enteredAt").value(1500))
+                .andExpect(jsonPath("$.nextCursor").value("1500:V003"));
+    }
+
+    @Test
+    void getVehicles_LastPage_OmitsCursor() throws Exception {
+        when(occupancyService.getVehicles("airport", null, 100))
+                .thenReturn(new ZoneVehiclesPage("airport", 1, List.of(new ZoneVehicle("V001", 1000L)), null));
+
+        mockMvc.perform(get("/api/zones/airport/vehicles"))
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("$.vehicles.length()").value(1))
+                .andExpect(jsonPath("$.nextCursor").doesNotExist());
+    }
+
+    @Test
+    void getVehicles_InvalidCursorOrLimit_ReturnsBadRequest() throws Exception {
+        mockMvc.perform(get("/api/zones/airport/vehicles").param("cursor", "V001"))
+                .andExpect(status().isBadRequest())
+                .andExpect(jsonPath("$.validationErrors.cursor").exists());
+        mockMvc.perform(get("/api/zones/airport/vehicles").param("limit", "0"))
+                .andExpect(status().isBadRequest())
+                .andExpect(jsonPath("$.validationErrors.limit").exists());
+
+        verify(occupancyService, never()).getVehicles(any(), any(), anyInt());
+    }
+
+    @Test
+    void getVehicles_UnknownZone_ReturnsNotFound() throws Exception {
+        when(zoneService.getZone("nowhere")).thenThrow(new ResourceNotFoundException("Zone not found: nowhere"));
+
+        mockMvc.perform(get("/api/zones/nowhere/vehicles"))
+                .andExpect(status().isNotFound());
+        verify(occupancyService, never()).getVehicles(any(), any(), anyInt());
+    }
+}
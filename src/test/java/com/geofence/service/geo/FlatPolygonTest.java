@@ -0,0 +1,118 @@
+package com.geofence.service.geo;
+
+import org.junit.jupiter.api.Test;
+import org.locationtech.jts.geom.Coordinate;
+import org.locationtech.jts.geom.Geometry;
+import org.locationtech.jts.geom.GeometryFactory;
+import org.locationtech.jts.geom.LinearRing;
+import org.locationtech.jts.geom.Point;
+import org.locationtech.jts.geom.Polygon;
+
+import java.util.List;
+import java.util.Random;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+class FlatPolygonTest {
+
+    private final GeometryFactory geometryFactory = new GeometryFactory();
+
+    // Concave "C" shape with horizontal, vertical and diagonal edges
+    private final Coordinate[] ring = {
+            new Coordinate(0, 0),
+            new Coordinate(4, 0),
+            new Coordinate(4, 1),
+            new Coordinate(1, 1),
+            new Coordinate(1, 3),
+            new Coordinate(4, 3),
+            new Coordinate(3, 4),
+            new Coordinate(0, 4),
+            new Coordinate(0, 0)
+    };
+
+    @Test
+    void contains_InteriorAndExterior() {
+        FlatPolygon polygon = new FlatPolygon(ring);
+        assertThat(polygon.contains(0.5, 2)).isTrue();
+        assertThat(polygon.contains(2, 0.5)).isTrue();
+        assertThat(polygon.contains(2, 2)).isFalse();
+        assertThat(polygon.contains(5, 5)).isFalse();
+    }
+
+    @Test
+    void contains_BoundaryPointsAreInside() {
+        FlatPolygon polygon = new FlatPolygon(ring);
+        assertThat(polygon.contains(0, 0)).isTrue();
+        assertThat(polygon.contains(2, 0)).isTrue();
+        assertThat(polygon.contains(1, 2)).isTrue();
+        assertThat(polygon.contains(3.5, 3.5)).isTrue();
+        assertThat(polygon.contains(2.5, 1)).isTrue();
+    }
+
+    @Test
+    void contains_MatchesJts() {
+        FlatPolygon polygon = new FlatPolygon(ring);
+        Polygon jts = geometryFactory.createPolygon(ring);
+        Random random = new Random(7);
+
+        for (int i = 0; i < 20_000; i++) {
+            // Snap half of the samples to a coarse grid so many land exactly on edges and vertices
+            double x = -0.5 + random.nextDouble() * 5;
+            double y = -0.5 + random.nextDouble() * 5;
+            if (i % 2 == 0) {
+                x = Math.round(x * 4) / 4.0;
+                y = Math.round(y * 4) / 4.0;
+            }
+            Point point = geometryFactory.createPoint(new Coordinate(x, y));
+            boolean expected = jts.contains(point) || jts.touches(point);
+            assertThat(polygon.contains(x, y)).as("(%s, %s)", x, y).isEqualTo(expected);
+        }
+    }
+
+    @Test
+    void contains_MultiPolygonWithHoles_MatchesJts() {
+        // A square with a hole, an island in the hole, and a separate square
+        Coordinate[] shell = square(0, 0, 4);
+        Coordinate[] hole = square(1, 1, 2);
+        Coordinate[] island = square(1.5, 1.5, 1);
+        Coordinate[] apart = square(5, 0, 1);
+        FlatPolygon polygon = new FlatPolygon(List.of(shell, hole, island, apart));
+        Geometry jts = geometryFactory.createMultiPolygon(new Polygon[]{
+                geometryFactory.createPolygon(geometryFactory.createLinearRing(shell),
+                        new LinearRing[]{geometryFactory.createLinearRing(hole)}),
+                geometryFactory.createPolygon(island),
+                geometryFactory.createPolygon(apart)});
+        Random random = new Random(7);
+
+        assertThat(polygon.getRingCount()).isEqualTo(4);
+        assertThat(polygon.contains(1.2, 1.2)).isFalse();
+        assertThat(polygon.contains(2, 2)).isTrue();
+        for (int i = 0; i < 20_000; i++) {
+            double x = -0.5 + random.nextDouble() * 7;
+            double y = -0.5 + random.nextDouble() * 5;
+            if (i % 2 == 0) {
+                x = Math.round(x * 4) / 4.0;
+                y = Math.round(y * 4) / 4.0;
+            }
+            Point point = geometryFactory.createPoint(new Coordinate(x, y));
+            boolean expected = jts.contains(point) || jts.touches(point);
+            assertThat(polygon.contains(x, y)).as("(%s, %s)", x, y).isEqualTo(expected);
+        }
+    }
+
+    private static Coordinate[] square(double x, double y, double size) {
+        return new Coordinate[]{
+                new Coordinate(x, y), new Coordinate(x + size, y), new Coordinate(x + size, y + size),
+                new Coordinate(x, y + size), new Coordinate(x, y)
+        };
+    }
+
+    @Test
+    void constructor_OpenRing_Throws() {
+        Coordinate[] open = {
+                new Coordinate(0, 0), new Coordinate(1, 0), new Coordinate(1, 1), new Coordinate(0, 1)
+        };
+        assertThatThrownBy(() -> new FlatPolygon(open)).isInstanceOf(IllegalArgumentException.class);
+    }
+}
@@ -0,0 +1,143 @@
+package com.geofence.service.geo;
+
+import com.geofence.service.model.Zone;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import org.locationtech.jts.geom.Coordinate;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Random;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+class ZoneIndexFileTest {
+
+    @TempDir
+    private Path dir;
+
+    @Test
+    void map_AnswersLikeTheBuiltIndex() throws IOException {
+        Random random = new Random(7);
+        List<Zone> zones = new ArrayList<>();
+        int[] keys = new int[300];
+        for (int i = 0; i < keys.length; i++) {
+            double lon = 77.0 + random.nextDouble();
+            double lat = 12.5 + random.nextDouble();
+            double size = 0.01 + random.nextDouble() * 0.1;
+            // Non-ASCII IDs check the UTF-8 table
+            zones.add(new Zone(i % 3 == 0 ? "zone_" + i : "zóna-" + i, new Coordinate[]{
+                    new Coordinate(lon, lat),
+                    new Coordinate(lon + size, lat + size / 3),
+                    new Coordinate(lon + size / 2, lat + size),
+                    new Coordinate(lon, lat)
+            }));
+            keys[i] = 2 * i + 5;
+        }
+        ZoneIndex built = new ZoneIndex(zones, keys);
+        Path file = dir.resolve("zones.zidx");
+
+        ZoneIndexFile.write(built, file);
+        ZoneIndex mapped = ZoneIndexFile.map(file);
+
+        assertThat(mapped.size()).isEqualTo(built.size());
+        assertThat(mapped.vertexCount()).isEqualTo(built.vertexCount());
+        assertThat(mapped.sizeInBytes()).isEqualTo(built.sizeInBytes());
+        for (int i = 0; i < 5_000; i++) {
+            double lat = 12.5 + random.nextDouble() * 1.1;
+            double lon = 77.0 + random.nextDouble() * 1.1;
+            assertThat(mapped.detect(lat, lon)).isEqualTo(built.detect(lat, lon));
+            assertThat(mapped.detectAll(lat, lon)).isEqualTo(built.detectAll(lat, lon));
+        }
+        for (int i = 0; i < zones.size(); i++) {
+            String zoneId = zones.get(i).getZoneId();
+            assertThat(mapped.zoneIdAt(i)).isEqualTo(zoneId);
+            assertThat(mapped.key(zoneId)).isEqualTo(keys[i]);
+            assertThat(mapped.zoneId(keys[i])).isEqualTo(zoneId);
+            assertThat(mapped.polygon(zoneId).getVertexCount()).isEqualTo(4);
+            assertThat(mapped.polygonAt(i).getX(1)).isEqualTo(zones.get(i).getPolygon()[1].x);
+        }
+        assertThat(mapped.key("missing")).isEqualTo(-1);
+        assertThat(mapped.zoneId(6)).isNull();
+        assertThat(mapped.polygon("missing")).isNull();
+    }
+
+    @Test
+    void map_ZonesWithSeveralRings() throws IOException {
+        Coordinate[] shell = square("a").getPolygon();
+        Coordinate[] hole = {new Coordinate(0.25, 0.25), new Coordinate(0.75, 0.25), new Coordinate(0.75, 0.75),
+                new Coordinate(0.25, 0.75), new Coordinate(0.25, 0.25)};
+        Coordinate[] apart = {new Coordinate(2, 0), new Coordinate(3, 0), new Coordinate(3, 1), new Coordinate(2, 0)};
+        ZoneIndex built = new ZoneIndex(new String[]{"ring", "single"},
+                new FlatPolygon[]{new FlatPolygon(List.of(shell, hole, apart)), new FlatPolygon(apart)},
+                new int[]{1, 2});
+        Path file = dir.resolve("rings.zidx");
+
+        ZoneIndexFile.write(built, file);
+        ZoneIndex mapped = ZoneIndexFile.map(file);
+
+        assertThat(mapped.vertexCount()).isEqualTo(18);
+        assertThat(mapped.sizeInBytes()).isEqualTo(built.sizeInBytes());
+        assertThat(mapped.detect(0.1, 0.1)).isEqualTo("ring");
+        assertThat(mapped.detect(0.5, 0.5)).isNull();
+        assertThat(mapped.detectAll(0.25, 2.75)).containsExactly(1, 2);
+        assertThat(mapped.polygon("ring").getRingCount()).isEqualTo(3);
+        assertThat(mapped.polygon("ring").getRingStart(2)).isEqualTo(10);
+        assertThat(mapped.polygon("single").getVertexCount()).isEqualTo(4);
+    }
+
+    @Test
+    void map_EmptyIndex() throws IOException {
+        Path file = dir.resolve("empty.zidx");
+
+        ZoneIndexFile.write(new ZoneIndex(List.of()), file);
+        ZoneIndex mapped = ZoneIndexFile.map(file);
+
+        assertThat(mapped.size()).isZero();
+        assertThat(mapped.detect(12.9, 77.6)).isNull();
+        assertThat(mapped.detectAll(12.9, 77.6)).isEmpty();
+    }
+
+    @Test
+    void map_OtherVersion_Throws() throws IOException {
+        Path file = dir.resolve("zones.zidx");
+        ZoneIndexFile.write(new ZoneIndex(List.of(square("a"))), file);
+        try (FileChannel channel = FileChannel.open(file, StandardOpenOption.WRITE)) {
+            channel.write(ByteBuffer.allocate(4).order(ByteOrder.LITTLE_ENDIAN).putInt(0, ZoneIndexFile.VERSION + 1), 4);
+        }
+
+        assertThatThrownBy(() -> ZoneIndexFile.map(file))
+                .isInstanceOf(IOException.class)
+                .hasMessageContaining("recompile");
+    }
+
+    @Test
+    void map_TruncatedOrForeignFile_Throws() throws IOException {
+        Path file = dir.resolve("zones.zidx");
+        ZoneIndexFile.write(new ZoneIndex(List.of(square("a"))), file);
+        byte[] bytes = Files.readAllBytes(file);
+        Files.write(file, Arrays.copyOf(bytes, bytes.length - 3));
+        Path foreign = Files.writeString(dir.resolve("foreign.zidx"), "{\"type\":\"FeatureCollection\"}");
+
+        assertThatThrownBy(() -> ZoneIndexFile.map(file)).isInstanceOf(IOException.class);
+        assertThatThrownBy(() -> ZoneIndexFile.map(foreign))
+                .isInstanceOf(IOException.class)
+                .hasMessageContaining("not a compiled zone index");
+    }
+
+    private static Zone square(String zoneId) {
+        return new Zone(zoneId, new Coordinate[]{
+                new Coordinate(0, 0), new Coordinate(1, 0), new Coordinate(1, 1), new Coordinate(0, 1),
+                new Coordinate(0, 0)
+        });
+    }
+}
@@ -0,0 +1,266 @@
+package com.geofence.service.geo;
+
+import com.geofence.service.model.Zone;
+import org.junit.jupiter.api.Test;
+import org.locationtech.jts.geom.Coordinate;
+import org.locationtech.jts.geom.GeometryFactory;
+import org.locationtech.jts.geom.Point;
+import org.locationtech.jts.geom.Polygon;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Random;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+class ZoneIndexTest {
+
+    private final GeometryFactory geometryFactory = new GeometryFactory();
+
+    @Test
+    void detect_EmptyIndex_ReturnsNull() {
+        ZoneIndex index = new ZoneIndex(List.of());
+        assertThat(index.detect(12.9, 77.6)).isNull();
+    }
+
+    @Test
+    void detect_MatchesLinearScan() {
+        Random random = new Random(42);
+        List<Zone> zones = new ArrayList<>();
+        for (int i = 0; i < 500; i++) {
+            double lon = 77.0 + random.nextDouble();
+            double lat = 12.5 + random.nextDouble();
+            double size = 0.005 + random.nextDouble() * 0.05;
+            zones.add(new Zone("zone_" + i, new Coordinate[]{
+                    new Coordinate(lon, lat),
+                    new Coordinate(lon + size, lat + size / 3),
+                    new Coordinate(lon + size / 2, lat + size),
+                    new Coordinate(lon - size / 4, lat + size / 2),
+                    new Coordinate(lon, lat)
+            }));
+        }
+        ZoneIndex index = new ZoneIndex(zones);
+
+        for (int i = 0; i < 5_000; i++) {
+            double lat = 12.5 + random.nextDouble() * 1.1;
+            double lon = 77.0 + random.nextDouble() * 1.1;
+            assertThat(index.detect(lat, lon)).isEqualTo(linearScan(zones, lat, lon));
+            int[] all = index.detectAll(lat, lon);
+            assertThat(Arrays.stream(all).mapToObj(index::zoneId).toList()).isEqualTo(linearScanAll(zones, lat, lon));
+        }
+        // Vertices are on the boundary and must be detected too
+        for (Zone zone : zones) {
+            Coordinate vertex = zone.getPolygon()[1];
+            assertThat(index.detect(vertex.y, vertex.x)).isEqualTo(linearScan(zones, vertex.y, vertex.x));
+        }
+    }
+
+    @Test
+    void detectAll_ReturnsKeysOfOverlappingZonesInRegistrationOrder() {
+        List<Zone> zones = List.of(square("a", 0, 0, 2), square("b", 1, 1, 2), square("c", 5, 5, 1));
+        ZoneIndex index = new ZoneIndex(zones, new int[]{3, 10, 11});
+
+        assertThat(index.detectAll(1.5, 1.5)).containsExactly(3, 10);
+        assertThat(index.detectAll(2.5, 2.5)).containsExactly(10);
+        assertThat(index.detectAll(4, 4)).isEmpty();
+        assertThat(index.zoneId(10)).isEqualTo("b");
+        assertThat(index.zoneId(4)).isNull();
+        assertThat(index.key("c")).isEqualTo(11);
+    }
+
+    @Test
+    void detectAll_WithPrevious_MatchesPlainLookup() {
+        Random random = new Random(11);
+        List<Zone> zones = new ArrayList<>();
+        for (int i = 0; i < 200; i++) {
+            double lat = random.nextDouble() * 10;
+            double lon = random.nextDouble() * 10;
+            zones.add(square("zone_" + i, lat, lon, 0.1 + random.nextDouble() * 0.5));
+        }
+        ZoneIndex index = new ZoneIndex(zones);
+
+        for (int i = 0; i < 5_000; i++) {
+            double lat = random.nextDouble() * 10.5;
+            double lon = random.nextDouble() * 10.5;
+            int[] expected = index.detectAll(lat, lon);
+            // The real previous zone, another zone and no zone at all
+            int[] previous = expected.length == 1 && random.nextBoolean()
+                    ? new int[]{expected[0]}
+                    : new int[]{random.nextInt(zones.size())};
+            assertThat(index.detectAll(lat, lon, previous)).isEqualTo(expected);
+            assertThat(index.detectAll(lat, lon, null)).isEqualTo(expected);
+        }
+    }
+
+    @Test
+    void detectAll_WithPreviousIsolatedZone_ReturnsPrevious() {
+        List<Zone> zones = List.of(square("a", 0, 0, 2), square("b", 1, 1, 2), square("c", 5, 5, 1));
+        ZoneIndex index = new ZoneIndex(zones);
+
+        int[] previous = {2};
+        assertThat(index.detectAll(5.5, 5.5, previous)).isSameAs(previous);
+        // a's box overlaps b's, so the full lookup runs and finds both
+        assertThat(index.detectAll(1.5, 1.5, new int[]{0})).containsExactly(0, 1);
+        assertThat(index.detectAll(0.5, 0.5, new int[]{0})).containsExactly(0);
+        assertThat(index.detectAll(4, 4, previous)).isEmpty();
+    }
+
+    @Test
+    void isWithinDistance_MeasuresFromBoundary() {
+        // 0.001 degrees of latitude is about 111 m
+        ZoneIndex index = new ZoneIndex(List.of(square("a", 12, 77, 0.01)), new int[]{7});
+
+        assertThat(index.isWithinDistance(7, 12.005, 77.005, 0)).isTrue();
+        assertThat(index.isWithinDistance(7, 12.0105, 77.005, 60)).isTrue();
+        assertThat(index.isWithinDistance(7, 12.0105, 77.005, 50)).isFalse();
+        assertThat(index.isWithinDistance(7, 11.9995, 76.9995, 80)).isTrue();
+        assertThat(index.isWithinDistance(7, 11.9995, 76.9995, 70)).isFalse();
+        assertThat(index.isWithinDistance(3, 12.005, 77.005, 100)).isFalse();
+    }
+
+    @Test
+    void withCellCache_MatchesUncachedIndex() {
+        Random random = new Random(7);
+        List<Zone> zones = new ArrayList<>();
+        for (int i = 0; i < 300; i++) {
+            double lon = 77.0 + random.nextDouble() * 0.5;
+            double lat = 12.5 + random.nextDouble() * 0.5;
+            double size = 0.01 + random.nextDouble() * 0.05;
+            zones.add(new Zone("zone_" + i, new Coordinate[]{
+                    new Coordinate(lon, lat),
+                    new Coordinate(lon + size, lat + size / 3),
+                    new Coordinate(lon + size / 2, lat + size),
+                    new Coordinate(lon - size / 4, lat + size / 2),
+                    new Coordinate(lon, lat)
+            }));
+        }
+        ZoneIndex index = new ZoneIndex(zones);
+        CellCacheStats stats = new CellCacheStats();
+        // Few slots, so cells also get replaced
+        ZoneIndex cached = index.withCellCache(0.002, 256, stats);
+
+        // Vehicles move in small steps, so most lookups revisit a cell
+        double[][] vehicles = new double[200][2];
+        for (double[] vehicle : vehicles) {
+            vehicle[0] = 12.5 + random.nextDouble() * 0.55;
+            vehicle[1] = 77.0 + random.nextDouble() * 0.55;
+        }
+        int lookups = 0;
+        for (int step = 0; step < 50; step++) {
+            for (double[] vehicle : vehicles) {
+                vehicle[0] += (random.nextDouble() - 0.5) * 0.001;
+                vehicle[1] += (random.nextDouble() - 0.5) * 0.001;
+                assertThat(cached.detect(vehicle[0], vehicle[1])).isEqualTo(index.detect(vehicle[0], vehicle[1]));
+                assertThat(cached.detectAll(vehicle[0], vehicle[1])).isEqualTo(index.detectAll(vehicle[0], vehicle[1]));
+                lookups += 2;
+            }
+        }
+        for (Zone zone : zones) {
+            for (Coordinate vertex : zone.getPolygon()) {
+                assertThat(cached.detectAll(vertex.y, vertex.x)).isEqualTo(index.detectAll(vertex.y, vertex.x));
+                lookups++;
+            }
+        }
+        assertThat(stats.hits() + stats.boundary() + stats.misses()).isEqualTo(lookups);
+        assertThat(stats.hits()).isGreaterThan(stats.misses());
+    }
+
+    @Test
+    void zoneWithHoleAndTwoParts_AnswersLikeItsPolygon() {
+        // Ring around a hole, plus a detached part; "hole" fills the hole
+        FlatPolygon ring = new FlatPolygon(List.of(square("", 0, 0, 4).getPolygon(), square("", 1, 1, 2).getPolygon(),
+                square("", 0, 6, 1).getPolygon()));
+        FlatPolygon hole = new FlatPolygon(square("", 1, 1, 2).getPolygon());
+        ZoneIndex index = new ZoneIndex(new String[]{"ring", "hole"}, new FlatPolygon[]{ring, hole}, new int[]{1, 2});
+        ZoneIndex cached = index.withCellCache(0.25, 1024, new CellCacheStats());
+
+        for (double lat = -0.5; lat <= 4.5; lat += 0.125) {
+            for (double lon = -0.5; lon <= 7.5; lon += 0.125) {
+                int[] expected = ring.contains(lon, lat)
+                        ? (hole.contains(lon, lat) ? new int[]{1, 2} : new int[]{1})
+                        : (hole.contains(lon, lat) ? new int[]{2} : new int[0]);
+                assertThat(index.detectAll(lat, lon)).as("(%s, %s)", lat, lon).isEqualTo(expected);
+                assertThat(cached.detectAll(lat, lon)).as("(%s, %s)", lat, lon).isEqualTo(expected);
+                assertThat(index.detectAll(lat, lon, new int[]{1})).as("(%s, %s)", lat, lon).isEqualTo(expected);
+            }
+        }
+        assertThat(index.detect(2, 2)).isEqualTo("hole");
+        assertThat(index.detect(0.5, 6.5)).isEqualTo("ring");
+        assertThat(index.polygon("ring").getRingCount()).isEqualTo(3);
+        assertThat(index.vertexCount()).isEqualTo(20);
+    }
+
+    @Test
+    void isWithinDistance_MeasuresFromHolesToo() {
+        // 0.001 degrees of latitude is about 111 m
+        FlatPolygon ring = new FlatPolygon(List.of(square("", 12, 77, 0.01).getPolygon(),
+                square("", 12.002, 77.002, 0.006).getPolygon()));
+        ZoneIndex index = new ZoneIndex(new String[]{"ring"}, new FlatPolygon[]{ring}, new int[]{7});
+
+        assertThat(index.isWithinDistance(7, 12.001, 77.005, 0)).isTrue();
+        assertThat(index.isWithinDistance(7, 12.0025, 77.005, 60)).isTrue();
+        assertThat(index.isWithinDistance(7, 12.0025, 77.005, 50)).isFalse();
+        assertThat(index.isWithinDistance(7, 12.005, 77.005, 100)).isFalse();
+    }
+
+    @Test
+    void withCellCache_EdgesOnCellBorders_StillDetected() {
+        List<Zone> zones = List.of(square("a", 0, 0, 2), square("b", 2, 0, 2));
+        ZoneIndex cached = new ZoneIndex(zones).withCellCache(1, 16, new CellCacheStats());
+
+        // Interior cells first, so the cells around them are classified separately
+        assertThat(cached.detectAll(0.5, 0.5)).containsExactly(0);
+        assertThat(cached.detectAll(3.5, 0.5)).containsExactly(1);
+        assertThat(cached.detect(2, 1)).isEqualTo("a");
+        assertThat(cached.detectAll(2, 1)).containsExactly(0, 1);
+        assertThat(cached.detect(1, 2)).isEqualTo("a");
+        assertThat(cached.detect(1, 2.0000001)).isNull();
+        assertThat(cached.detectAll(-0.5, -0.5)).isEmpty();
+    }
+
+    @Test
+    void withCellCache_SmallestCells_KeepCellsAcrossTheGlobeApart() {
+        List<Zone> zones = List.of(square("west", 0, -180, 0.001), square("east", 0, 179.999, 0.001));
+        ZoneIndex cached = new ZoneIndex(zones).withCellCache(ZoneIndex.MIN_CELL_SIZE, 16, new CellCacheStats());
+
+        assertThat(cached.detect(0.0005, 179.9995)).isEqualTo("east");
+        assertThat(cached.detect(0.0005, -179.9995)).isEqualTo("west");
+        assertThatThrownBy(() -> new ZoneIndex(zones).withCellCache(ZoneIndex.MIN_CELL_SIZE / 2, 16,
+                new CellCacheStats())).isInstanceOf(IllegalArgumentException.class);
+    }
+
+    private static Zone square(String zoneId, double lat, double lon, double size) {
+        return new Zone(zoneId, new Coordinate[]{
+                new Coordinate(lon, lat),
+                new Coordinate(lon + size, lat),
+                new Coordinate(lon + size, lat + size),
+                new Coordinate(lon, lat + size),
+                new Coordinate(lon, lat)
+        });
+    }
+
+    private List<String> linearScanAll(List<Zone> zones, double lat, double lon) {
+        Point point = geometryFactory.createPoint(new Coordinate(lon, lat));
+        List<String> matches = new ArrayList<>();
+        for (Zone zone : zones) {
+            Polygon polygon = geometryFactory.createPolygon(zone.getPolygon());
+            if (polygon.contains(point) || polygon.touches(point)) {
+                matches.add(zone.getZoneId());
+            }
+        }
+        return matches;
+    }
+
+    private String linearScan(List<Zone> zones, double lat, double lon) {
+        Point point = geometryFactory.createPoint(new Coordinate(lon, lat));
+        for (Zone zone : zones) {
+            Polygon polygon = geometryFactory.createPolygon(zone.getPolygon());
+            if (polygon.contains(point) || polygon.touches(point)) {
+                return zone.getZoneId();
+            }
+        }
+        return null;
+    }
+}
@@ -0,0 +1,113 @@
+package com.geofence.service.repository;
+
+import com.geofence.service.model.VehicleState;
+import org.junit.jupiter.params.ParameterizedTest;
+import org.junit.jupiter.params.provider.ValueSource;
+
+import java.util.List;
+import java.util.Map;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+class AdvanceStateScriptTest extends RedisContainerTest {
+
+    private static final VehicleState STORED = new VehicleState("V001", "mg_road", 1000L, new int[]{3, 200});
+
+    @ParameterizedTest
+    @ValueSource(strings = {"hash", "json", "binary"})
+    void advance_SameZones_StoresNewerState(String layout) {
+        VehicleStateStore store = store(layout);
+        store.save(STORED);
+
+        VehicleState next = new VehicleState("V001", "mg_road", 2000L, new int[]{3, 200});
+        assertThat(store.advance(next)).isEqualTo(new VehicleStateStore.Advance(true, null));
+
+        assertThat(store.get("V001")).isEqualTo(next);
+    }
+
+    @ParameterizedTest
+    @ValueSource(strings = {"hash", "json", "binary"})
+    void advance_ZoneChange_ReturnsStoredStateAndWritesNothing(String layout) {
+        VehicleStateStore store = store(layout);
+        store.save(STORED);
+
+        VehicleStateStore.Advance moved = store.advance(new VehicleState("V001", "bellandur", 2000L, new int[]{4}));
+        VehicleStateStore.Advance rejoined = store.advance(new VehicleState("V001", "mg_road", 2000L, new int[]{3}));
+
+        assertThat(moved).isEqualTo(new VehicleStateStore.Advance(false, STORED));
+        assertThat(rejoined).isEqualTo(new VehicleStateStore.Advance(false, STORED));
+        assertThat(store.get("V001")).isEqualTo(STORED);
+    }
+
+    @ParameterizedTest
+    @ValueSource(strings = {"hash", "json", "binary"})
+    void advance_StaleOrDuplicate_ReturnsStoredStateAndWritesNothing(String layout) {
+        VehicleStateStore store = store(layout);
+        store.save(STORED);
+
+        VehicleStateStore.Advance duplicate = store.advance(STORED);
+        VehicleStateStore.Advance stale = store.advance(new VehicleState("V001", "mg_road", 500L, new int[]{3, 200}));
+
+        assertThat(duplicate).isEqualTo(new VehicleStateStore.Advance(false, STORED));
+        assertThat(stale).isEqualTo(new VehicleStateStore.Advance(false, STORED));
+        assertThat(store.get("V001")).isEqualTo(STORED);
+    }
+
+    @ParameterizedTest
+    @ValueSource(strings = {"hash", "json", "binary"})
+    void advance_NothingStored_ReturnsNoStateAndWritesNothing(String layout) {
+        VehicleStateStore store = store(layout);
+
+        assertThat(store.advance(STORED)).isEqualTo(new VehicleStateStore.Advance(false, null));
+
+        assertThat(store.get("V001")).isNull();
+    }
+
+    @ParameterizedTest
+    @ValueSource(strings = {"hash", "json", "binary"})
+    void advance_ReadOnly_ReturnsStoredStateEvenIfUnchanged(String layout) {
+        VehicleStateStore store = store(layout);
+        store.save(STORED);
+
+        VehicleStateStore.Advance advance = store.advance(new VehicleState("V001", "mg_road", 2000L));
+
+        assertThat(advance).isEqualTo(new VehicleStateStore.Advance(false, STORED));
+        assertThat(store.get("V001")).isEqualTo(STORED);
+    }
+
+    @ParameterizedTest
+    @ValueSource(strings = {"json", "binary"})
+    void advance_LegacyValueWithoutZones_ReturnsStoredState(String codec) {
+        VehicleStateStore store = store(codec);
+        VehicleState legacy = new VehicleState("V001", "mg_road", 1000L);
+        store.save(legacy);
+
+        VehicleStateStore.Advance advance = store.advance(new VehicleState("V001", "mg_road", 2000L, new int[]{3}));
+
+        assertThat(advance).isEqualTo(new VehicleStateStore.Advance(false, legacy));
+        assertThat(store.get("V001")).isEqualTo(legacy);
+    }
+
+    @ParameterizedTest
+    @ValueSource(strings = {"hash", "json", "binary"})
+    void advanceAll_AfterScriptFlush_LoadsScriptAndRunsEveryCall(String layout) {
+        VehicleStateStore store = store(layout);
+        store.save(STORED);
+        store.save(new VehicleState("V002", null, 1000L, new int[0]));
+        store.advance(new VehicleState("V003", null, 1000L, new int[0]));
+        flushScripts();
+
+        VehicleState stayed = new VehicleState("V001", "mg_road", 2000L, new int[]{3, 200});
+        VehicleState outside = new VehicleState("V002", null, 2000L, new int[0]);
+        VehicleState moved = new VehicleState("V002", "bellandur", 2000L, new int[]{4});
+        Map<String, VehicleStateStore.Advance> advances = store.advanceAll(List.of(stayed, outside));
+        VehicleStateStore.Advance change = store.advance(moved);
+
+        assertThat(advances).containsOnly(
+                Map.entry("V001", new VehicleStateStore.Advance(true, null)),
+                Map.entry("V002", new VehicleStateStore.Advance(true, null)));
+        assertThat(change).isEqualTo(new VehicleStateStore.Advance(false, outside));
+        assertThat(store.getAll(List.of("V001", "V002")))
+                .containsOnly(Map.entry("V001", stayed), Map.entry("V002", outside));
+    }
+}
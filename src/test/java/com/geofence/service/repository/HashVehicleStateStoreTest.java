@@ -0,0 +1,123 @@
+package com.geofence.service.repository;
+
+import com.geofence.service.exception.StaleVehicleStateException;
+import com.geofence.service.model.VehicleState;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.ArgumentCaptor;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+import org.springframework.data.redis.core.HashOperations;
+import org.springframework.data.redis.core.RedisCallback;
+import org.springframework.data.redis.core.StringRedisTemplate;
+
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Map;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyList;
+import static org.mockito.ArgumentMatchers.anyMap;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.ArgumentMatchers.same;
+import static org.mockito.Mockito.*;
+
+@ExtendWith(MockitoExtension.class)
+class HashVehicleStateStoreTest {
+
+    @Mock
+    private StringRedisTemplate redisTemplate;
+
+    @Mock
+    private HashOperations<String, Object, Object> hashOperations;
+
+    private HashVehicleStateStore store;
+
+    @BeforeEach
+    void setUp() {
+        lenient().when(redisTemplate.opsForHash()).thenReturn(hashOperations);
+        store = new HashVehicleStateStore(redisTemplate, false);
+    }
+
+    @Test
+    void touch_WritesOnlyTimestampField() {
+        store.touch(new VehicleState("V001", "bellandur", 2000L));
+
+        verify(hashOperations).put("vstate:V001", "ts", "2000");
+        verify(hashOperations, never()).putAll(anyString(), anyMap());
+    }
+
+    @Test
+    void touch_Guarded_RunsScriptWithTimestampOnly() {
+        doReturn(1L).when(redisTemplate).execute(same(SaveStateScript.SCRIPT), any(), any(), anyList(),
+                any(Object[].class));
+
+        new HashVehicleStateStore(redisTemplate, true).touch(new VehicleState("V001", "bellandur", 2000L));
+
+        ArgumentCaptor<Object[]> args = ArgumentCaptor.forClass(Object[].class);
+        verify(redisTemplate).execute(same(SaveStateScript.SCRIPT), any(), any(), eq(List.of("vstate:V001")),
+                args.capture());
+        assertThat(args.getValue()).containsExactly(
+                (Object) bytes("V001"), bytes("2000"), bytes("0"), bytes("0"), bytes("ts"), bytes("2000"));
+        verifyNoInteractions(hashOperations);
+    }
+
+    @Test
+    void save_Guarded_RejectsStaleState() {
+        doReturn(0L).when(redisTemplate).execute(same(SaveStateScript.SCRIPT), any(), any(), anyList(),
+                any(Object[].class));
+
+        HashVehicleStateStore guarded = new HashVehicleStateStore(redisTemplate, true);
+        assertThatThrownBy(() -> guarded.save(new VehicleState("V001", "bellandur", 2000L), null))
+                .isInstanceOf(StaleVehicleStateException.class);
+        verifyNoInteractions(hashOperations);
+    }
+
+    @Test
+    void save_WritesZoneAndTimestamp() {
+        store.save(new VehicleState("V001", null, 2000L));
+
+        verify(hashOperations).putAll("vstate:V001", Map.of("zone", "", "ts", "2000"));
+    }
+
+    @Test
+    void save_WritesMembershipWhenKnown() {
+        store.save(new VehicleState("V001", "bellandur", 2000L, new int[]{4, 5}));
+
+        verify(hashOperations).putAll("vstate:V001", Map.of("zone", "bellandur", "ts", "2000", "zones", "4,5"));
+    }
+
+    @Test
+    @SuppressWarnings("unchecked")
+    void advance_ChangedZone_ReturnsStoredFields() {
+        when(redisTemplate.executePipelined(any(RedisCallback.class), any()))
+                .thenReturn(List.of(List.of(bytes("0"), bytes("bellandur"), bytes("2000"), bytes("4,5"))));
+
+        VehicleStateStore.Advance advance = store.advance(new VehicleState("V001", "mg_road", 3000L, new int[]{6}));
+
+        assertThat(advance.written()).isFalse();
+        assertThat(advance.previous()).isEqualTo(new VehicleState("V001", "bellandur", 2000L, new int[]{4, 5}));
+    }
+
+    @Test
+    void get_MapsFields() {
+        List<Object> fields = List.of("zone", "ts", "zones");
+        when(hashOperations.multiGet("vstate:V001", fields)).thenReturn(Arrays.asList("bellandur", "2000", null));
+        when(hashOperations.multiGet("vstate:V002", fields)).thenReturn(List.of("", "3000", ""));
+        when(hashOperations.multiGet("vstate:V003", fields)).thenReturn(Arrays.asList(null, null, null));
+        when(hashOperations.multiGet("vstate:V004", fields)).thenReturn(List.of("bellandur", "4000", "4,5,12"));
+
+        assertThat(store.get("V001")).isEqualTo(new VehicleState("V001", "bellandur", 2000L));
+        assertThat(store.get("V002")).isEqualTo(new VehicleState("V002", null, 3000L, new int[0]));
+        assertThat(store.get("V003")).isNull();
+        assertThat(store.get("V004")).isEqualTo(new VehicleState("V004", "bellandur", 4000L, new int[]{4, 5, 12}));
+    }
+
+    private static byte[] bytes(String value) {
+        return value.getBytes(StandardCharsets.UTF_8);
+    }
+}
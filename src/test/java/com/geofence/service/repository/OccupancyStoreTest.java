@@ -0,0 +1,117 @@
+package com.geofence.service.repository;
+
+import com.geofence.service.model.VehicleDwell;
+import com.geofence.service.model.ZoneOccupancy;
+import com.geofence.service.repository.OccupancyStore.VehicleDelta;
+import com.geofence.service.repository.OccupancyStore.ZoneDelta;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+import org.springframework.data.redis.connection.StringRedisConnection;
+import org.springframework.data.redis.core.Cursor;
+import org.springframework.data.redis.core.HashOperations;
+import org.springframework.data.redis.core.RedisCallback;
+import org.springframework.data.redis.core.ScanOptions;
+import org.springframework.data.redis.core.SetOperations;
+import org.springframework.data.redis.core.StringRedisTemplate;
+
+import java.util.Arrays;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.*;
+
+@ExtendWith(MockitoExtension.class)
+class OccupancyStoreTest {
+
+    @Mock
+    private StringRedisTemplate redisTemplate;
+
+    @Mock
+    private HashOperations<String, Object, Object> hashOperations;
+
+    @Mock
+    private SetOperations<String, String> setOperations;
+
+    @Mock
+    private StringRedisConnection connection;
+
+    private OccupancyStore store;
+
+    @BeforeEach
+    void setUp() {
+        store = new OccupancyStore(redisTemplate);
+    }
+
+    @Test
+    void getZone_CountsVehiclesFromReverseIndexAndComputesAverageDwell() {
+        answerPipeline(List.of(List.of("4", "1000"), 42L));
+
+        assertThat(store.getZone("airport")).isEqualTo(new ZoneOccupancy("airport", 42, 4, 1000, 250L));
+
+        verify(connection).hMGet("zonestats:airport", "visits", "dwell");
+        verify(connection).zCard("zones:vehicles:airport");
+    }
+
+    @Test
+    void getZone_NoData_ReturnsZeroWithoutAverage() {
+        answerPipeline(List.of(Arrays.asList(null, null), 0L));
+
+        assertThat(store.getZone("airport")).isEqualTo(new ZoneOccupancy("airport", 0, 0, 0, null));
+    }
+
+    @Test
+    void add_RecordsWhichVehiclesHaveDwellInTheZone() {
+        answerPipeline(List.of());
+
+        store.add(List.of(new ZoneDelta("airport", 1, 60_000)), List.of(new VehicleDelta("V001", "airport", 60_000)));
+
+        verify(connection).hIncrBy("zonestats:airport", "visits", 1);
+        verify(connection).hIncrBy("zonestats:airport", "dwell", 60_000);
+        verify(connection).hIncrBy("dwell:V001", "airport", 60_000);
+        verify(connection).sAdd("dwellers:airport", "V001");
+    }
+
+    @Test
+    @SuppressWarnings("unchecked")
+    void deleteZone_RemovesZoneFromEveryVehiclesDwell() {
+        Cursor<String> dwellers = mock(Cursor.class);
+        Iterator<String> members = List.of("V001", "V002").iterator();
+        when(dwellers.hasNext()).thenAnswer(invocation -> members.hasNext());
+        when(dwellers.next()).thenAnswer(invocation -> members.next());
+        when(redisTemplate.opsForSet()).thenReturn(setOperations);
+        when(setOperations.scan(eq("dwellers:airport"), any(ScanOptions.class))).thenReturn(dwellers);
+        answerPipeline(List.of());
+
+        store.deleteZone("airport");
+
+        verify(connection).hDel("dwell:V001", "airport");
+        verify(connection).hDel("dwell:V002", "airport");
+        verify(redisTemplate).delete(List.of("zonestats:airport", "dwellers:airport"));
+        verify(dwellers).close();
+    }
+
+    @Test
+    void getVehicle_ReturnsDwellPerZone() {
+        when(redisTemplate.opsForHash()).thenReturn(hashOperations);
+        when(hashOperations.entries("dwell:V001")).thenReturn(Map.of("airport", "90000", "hebbal", "5000"));
+
+        VehicleDwell dwell = store.getVehicle("V001");
+
+        assertThat(dwell.getDwellMs()).containsExactly(Map.entry("airport", 90_000L), Map.entry("hebbal", 5_000L));
+    }
+
+    @SuppressWarnings("unchecked")
+    private void answerPipeline(List<?> replies) {
+        when(redisTemplate.executePipelined(any(RedisCallback.class))).thenAnswer(invocation -> {
+            invocation.<RedisCallback<Object>>getArgument(0).doInRedis(connection);
+            return replies;
+        });
+    }
+}
@@ -0,0 +1,73 @@
+package com.geofence.service.repository;
+
+import com.geofence.service.config.RedisConfig;
+import com.redis.testcontainers.RedisContainer;
+import org.junit.jupiter.api.AfterAll;
+import org.junit.jupiter.api.BeforeAll;
+import org.junit.jupiter.api.BeforeEach;
+import org.springframework.data.redis.connection.RedisStandaloneConfiguration;
+import org.springframework.data.redis.connection.lettuce.LettuceConnectionFactory;
+import org.springframework.data.redis.core.RedisCallback;
+import org.springframework.data.redis.core.RedisTemplate;
+import org.springframework.data.redis.core.StringRedisTemplate;
+import org.testcontainers.junit.jupiter.Container;
+import org.testcontainers.junit.jupiter.Testcontainers;
+
+/**
+ * Base of the tests that run the Lua scripts against a real Redis, skipped where Docker
+ * is not available. Every test starts from an empty database.
+ */
+@Testcontainers(disabledWithoutDocker = true)
+abstract class RedisContainerTest {
+
+    @Container
+    static final RedisContainer REDIS = new RedisContainer(RedisContainer.DEFAULT_IMAGE_NAME.withTag("7.2"));
+
+    static LettuceConnectionFactory connectionFactory;
+    static StringRedisTemplate stringTemplate;
+
+    @BeforeAll
+    static void connect() {
+        connectionFactory = new LettuceConnectionFactory(
+                new RedisStandaloneConfiguration(REDIS.getHost(), REDIS.getFirstMappedPort()));
+        connectionFactory.afterPropertiesSet();
+        connectionFactory.start();
+        stringTemplate = new StringRedisTemplate(connectionFactory);
+    }
+
+    @AfterAll
+    static void disconnect() {
+        connectionFactory.destroy();
+    }
+
+    @BeforeEach
+    void flush() {
+        stringTemplate.execute((RedisCallback<Void>) connection -> {
+            connection.serverCommands().flushAll();
+            return null;
+        });
+    }
+
+    /**
+     * The application's value template, writing states as JSON or in the binary codec.
+     */
+    static RedisTemplate<String, Object> valueTemplate(String codec) {
+        return new RedisConfig().redisTemplate(connectionFactory, codec);
+    }
+
+    /**
+     * The store of {@code layout}: "hash", or the value layout with the "json" or "binary" codec.
+     */
+    static VehicleStateStore store(String layout) {
+        return layout.equals("hash")
+                ? new HashVehicleStateStore(stringTemplate, true)
+                : new ValueVehicleStateStore(valueTemplate(layout), 500, true);
+    }
+
+    static void flushScripts() {
+        stringTemplate.execute((RedisCallback<Void>) connection -> {
+            connection.scriptingCommands().scriptFlush();
+            return null;
+        });
+    }
+}
@@ -0,0 +1,45 @@
+package com.geofence.service.repository;
+
+import com.geofence.service.dto.ZoneDTO;
+import org.junit.jupiter.api.Test;
+
+import java.util.List;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+/**
+ * Conditional zone writes of {@code redis/replace-zone.lua}.
+ */
+class RedisZoneStoreTest extends RedisContainerTest {
+
+    @Test
+    void replaceIfPresent_ExistingZone_StoresRecord() {
+        RedisZoneStore store = new RedisZoneStore(valueTemplate("json"));
+        store.save(new ZoneRecord("mg_road", 3, square(12.96, 77.60)));
+
+        ZoneRecord moved = new ZoneRecord("mg_road", 3, square(13.10, 77.50));
+        assertThat(store.replaceIfPresent(moved)).isTrue();
+
+        assertThat(store.findAll()).containsExactly(moved);
+    }
+
+    @Test
+    void replaceIfPresent_DeletedZone_WritesNothing() {
+        RedisZoneStore store = new RedisZoneStore(valueTemplate("json"));
+        store.save(new ZoneRecord("mg_road", 3, square(12.96, 77.60)));
+        store.delete("mg_road");
+
+        assertThat(store.replaceIfPresent(new ZoneRecord("mg_road", 3, square(13.10, 77.50)))).isFalse();
+
+        assertThat(store.findAll()).isEmpty();
+    }
+
+    private static List<ZoneDTO.CoordinateDTO> square(double lat, double lon) {
+        return List.of(
+                new ZoneDTO.CoordinateDTO(lat, lon),
+                new ZoneDTO.CoordinateDTO(lat, lon + 0.01),
+                new ZoneDTO.CoordinateDTO(lat + 0.01, lon + 0.01),
+                new ZoneDTO.CoordinateDTO(lat + 0.01, lon),
+                new ZoneDTO.CoordinateDTO(lat, lon));
+    }
+}
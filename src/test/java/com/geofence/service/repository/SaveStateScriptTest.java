@@ -0,0 +1,114 @@
+package com.geofence.service.repository;
+
+import com.geofence.service.exception.StaleVehicleStateException;
+import com.geofence.service.model.VehicleState;
+import com.geofence.service.model.ZoneMembershipChange;
+import com.geofence.service.model.ZoneTransitionEvent;
+import org.junit.jupiter.params.ParameterizedTest;
+import org.junit.jupiter.params.provider.CsvSource;
+import org.springframework.data.redis.core.ZSetOperations;
+
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+/**
+ * Guarded writes of {@code redis/save-state.lua} against every stored encoding: the hash
+ * layout, JSON, and binary version 1 (no zones) and 2 (zones).
+ */
+class SaveStateScriptTest extends RedisContainerTest {
+
+    // Several varint bytes in the binary codec
+    private static final long STORED_AT = 1_700_000_000_123L;
+    private static final String FROM = ZoneMembershipStore.KEY_PREFIX + "mg_road";
+    private static final String TO = ZoneMembershipStore.KEY_PREFIX + "bellandur";
+
+    @ParameterizedTest
+    @CsvSource({"hash, true", "hash, false", "json, true", "json, false", "binary, true", "binary, false"})
+    void save_NewerState_WritesStateAndMembership(String layout, boolean withZones) {
+        VehicleStateStore store = store(layout);
+        storeInMgRoad(store, withZones);
+
+        VehicleState next = new VehicleState("V001", "bellandur", STORED_AT + 1, new int[]{4});
+        store.save(next, moveToBellandur(STORED_AT + 1));
+
+        assertThat(store.get("V001")).isEqualTo(next);
+        assertThat(zset().rangeWithScores(FROM, 0, -1)).isEmpty();
+        assertThat(zset().score(TO, "V001")).isEqualTo((double) (STORED_AT + 1));
+    }
+
+    @ParameterizedTest
+    @CsvSource({"hash, true, 0", "hash, false, 0", "json, true, 0", "json, false, 0",
+            "binary, true, 0", "binary, false, 0", "hash, true, -1000", "hash, false, -1000",
+            "json, true, -1000", "json, false, -1000", "binary, true, -1000", "binary, false, -1000"})
+    void save_EqualOrOlderState_IsRejectedWithoutTouchingMembership(String layout, boolean withZones,
+                                                                    long offset) {
+        VehicleStateStore store = store(layout);
+        VehicleState stored = storeInMgRoad(store, withZones);
+
+        VehicleState next = new VehicleState("V001", "bellandur", STORED_AT + offset, new int[]{4});
+        assertThatThrownBy(() -> store.save(next, moveToBellandur(STORED_AT + offset)))
+                .isInstanceOfSatisfying(StaleVehicleStateException.class,
+                        e -> assertThat(e.getVehicleIds()).containsExactly("V001"));
+
+        assertThat(store.get("V001")).isEqualTo(stored);
+        assertThat(zset().score(FROM, "V001")).isEqualTo((double) STORED_AT);
+        assertThat(stringTemplate.hasKey(TO)).isFalse();
+    }
+
+    @ParameterizedTest
+    @CsvSource({"hash, true", "json, true", "json, false", "binary, true", "binary, false"})
+    void saveAll_MixedTimestamps_WritesNewerAndNamesStale(String layout, boolean withZones) {
+        VehicleStateStore store = store(layout);
+        VehicleState stored = storeInMgRoad(store, withZones);
+        store.save(new VehicleState("V002", null, STORED_AT, new int[0]));
+
+        VehicleState stale = new VehicleState("V001", "bellandur", STORED_AT, new int[]{4});
+        VehicleState newer = new VehicleState("V002", "bellandur", STORED_AT + 1, new int[]{4});
+        Map<String, ZoneMembershipChange> changes = Map.of(
+                "V001", moveToBellandur(STORED_AT),
+                "V002", ZoneMembershipChange.of(new ZoneTransitionEvent(
+                        "V002", null, "bellandur", STORED_AT + 1, List.of("bellandur"), List.of())));
+        assertThatThrownBy(() -> store.saveAll(List.of(stale, newer), changes))
+                .isInstanceOfSatisfying(StaleVehicleStateException.class,
+                        e -> assertThat(e.getVehicleIds()).containsExactly("V001"));
+
+        assertThat(store.getAll(List.of("V001", "V002")))
+                .containsOnly(Map.entry("V001", stored), Map.entry("V002", newer));
+        assertThat(zset().range(FROM, 0, -1)).isEqualTo(Set.of("V001"));
+        assertThat(zset().range(TO, 0, -1)).isEqualTo(Set.of("V002"));
+    }
+
+    @ParameterizedTest
+    @CsvSource({"hash, true", "json, true", "binary, false"})
+    void save_NothingStored_Writes(String layout, boolean withZones) {
+        VehicleStateStore store = store(layout);
+
+        VehicleState state = new VehicleState("V001", "bellandur", STORED_AT, withZones ? new int[]{4} : null);
+        store.save(state, null);
+
+        assertThat(store.get("V001")).isEqualTo(state);
+    }
+
+    /**
+     * Stores V001 in mg_road at {@link #STORED_AT}, with its membership.
+     */
+    private static VehicleState storeInMgRoad(VehicleStateStore store, boolean withZones) {
+        VehicleState stored = new VehicleState("V001", "mg_road", STORED_AT, withZones ? new int[]{3, 200} : null);
+        store.save(stored);
+        zset().add(FROM, "V001", STORED_AT);
+        return stored;
+    }
+
+    private static ZoneMembershipChange moveToBellandur(long timestamp) {
+        return ZoneMembershipChange.of(new ZoneTransitionEvent(
+                "V001", "mg_road", "bellandur", timestamp, List.of("bellandur"), List.of("mg_road")));
+    }
+
+    private static ZSetOperations<String, String> zset() {
+        return stringTemplate.opsForZSet();
+    }
+}
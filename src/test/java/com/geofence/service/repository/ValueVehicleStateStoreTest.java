@@ -0,0 +1,322 @@
+package com.geofence.service.repository;
+
+import com.geofence.service.exception.StaleVehicleStateException;
+import com.geofence.service.model.VehicleState;
+import com.geofence.service.model.ZoneMembershipChange;
+import com.geofence.service.model.ZoneTransitionEvent;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.ArgumentCaptor;
+import org.mockito.Mock;
+import org.mockito.invocation.Invocation;
+import org.mockito.junit.jupiter.MockitoExtension;
+import org.springframework.data.redis.RedisSystemException;
+import org.springframework.data.redis.connection.RedisConnection;
+import org.springframework.data.redis.connection.RedisPipelineException;
+import org.springframework.data.redis.connection.RedisScriptingCommands;
+import org.springframework.data.redis.connection.ReturnType;
+import org.springframework.data.redis.core.RedisCallback;
+import org.springframework.data.redis.core.RedisOperations;
+import org.springframework.data.redis.core.RedisTemplate;
+import org.springframework.data.redis.core.SessionCallback;
+import org.springframework.data.redis.core.ValueOperations;
+import org.springframework.data.redis.serializer.RedisSerializer;
+
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Map;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyList;
+import static org.mockito.ArgumentMatchers.anyMap;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.ArgumentMatchers.same;
+import static org.mockito.Mockito.*;
+
+@ExtendWith(MockitoExtension.class)
+class ValueVehicleStateStoreTest {
+
+    @Mock
+    private RedisTemplate<String, Object> redisTemplate;
+
+    @Mock
+    private ValueOperations<String, Object> valueOperations;
+
+    @Mock
+    private RedisOperations<String, Object> pipelineOperations;
+
+    @Mock
+    private ValueOperations<String, Object> pipelineValueOperations;
+
+    @Mock
+    private RedisConnection connection;
+
+    @Mock
+    private RedisScriptingCommands scriptingCommands;
+
+    private ValueVehicleStateStore store;
+
+    @BeforeEach
+    void setUp() {
+        store = new ValueVehicleStateStore(redisTemplate, 2, false);
+    }
+
+    @Test
+    void getAll_SingleChunk_UsesOneMget() {
+        when(redisTemplate.opsForValue()).thenReturn(valueOperations);
+        when(valueOperations.multiGet(List.of("vehicle:V001", "vehicle:V002")))
+                .thenReturn(List.of(new VehicleState("V001", "bellandur", 1000L)));
+
+        Map<String, VehicleState> states = store.getAll(List.of("V001", "V002"));
+
+        assertThat(states).containsOnlyKeys("V001");
+        verify(redisTemplate, never()).executePipelined(any(SessionCallback.class));
+    }
+
+    @Test
+    @SuppressWarnings("unchecked")
+    void getAll_SeveralChunks_PipelinesMgets() {
+        List<List<String>> sentChunks = new ArrayList<>();
+        when(pipelineOperations.opsForValue()).thenReturn(pipelineValueOperations);
+        when(pipelineValueOperations.multiGet(anyList())).thenAnswer(invocation -> {
+            sentChunks.add(List.copyOf(invocation.getArgument(0)));
+            return null;
+        });
+        when(redisTemplate.executePipelined(any(SessionCallback.class))).thenAnswer(invocation -> {
+            invocation.<SessionCallback<Object>>getArgument(0).execute(pipelineOperations);
+            List<Object> first = new ArrayList<>();
+            first.add(new VehicleState("V001", "bellandur", 1000L));
+            first.add(null);
+            List<Object> second = new ArrayList<>();
+            second.add(new VehicleState("V003", "mg_road", 2000L));
+            return List.of(first, second);
+        });
+
+        Map<String, VehicleState> states = store.getAll(List.of("V001", "V002", "V003"));
+
+        assertThat(sentChunks).containsExactly(
+                List.of("vehicle:V001", "vehicle:V002"),
+                List.of("vehicle:V003"));
+        assertThat(states).containsOnlyKeys("V001", "V003");
+        assertThat(states.get("V003").getCurrentZone()).isEqualTo("mg_road");
+        verify(redisTemplate, never()).opsForValue();
+    }
+
+    @Test
+    @SuppressWarnings("unchecked")
+    void saveAll_SeveralChunks_PipelinesMsets() {
+        List<Map<String, Object>> sentChunks = new ArrayList<>();
+        when(pipelineOperations.opsForValue()).thenReturn(pipelineValueOperations);
+        doAnswer(invocation -> {
+            sentChunks.add(Map.copyOf(invocation.getArgument(0)));
+            return null;
+        }).when(pipelineValueOperations).multiSet(anyMap());
+        when(redisTemplate.executePipelined(any(SessionCallback.class))).thenAnswer(invocation -> {
+            invocation.<SessionCallback<Object>>getArgument(0).execute(pipelineOperations);
+            return List.of();
+        });
+
+        store.saveAll(List.of(
+                new VehicleState("V001", "bellandur", 1000L),
+                new VehicleState("V002", null, 1000L),
+                new VehicleState("V003", "mg_road", 1000L)));
+
+        assertThat(sentChunks).hasSize(2);
+        assertThat(sentChunks.get(0)).containsOnlyKeys("vehicle:V001", "vehicle:V002");
+        assertThat(sentChunks.get(1)).containsOnlyKeys("vehicle:V003");
+    }
+
+    @Test
+    void getAll_Empty_SkipsRedis() {
+        assertThat(store.getAll(List.of())).isEmpty();
+        verifyNoInteractions(redisTemplate);
+    }
+
+    @Test
+    @SuppressWarnings({"unchecked", "rawtypes"})
+    void save_WithMembershipChange_WritesStateAndIndexInOneScript() {
+        VehicleState state = new VehicleState("V001", "bellandur", 2000L);
+        RedisSerializer serializer = mock(RedisSerializer.class);
+        when(serializer.serialize(state)).thenReturn(bytes("state"));
+        when(redisTemplate.getValueSerializer()).thenReturn(serializer);
+
+        store.save(state, ZoneMembershipChange.of(
+                new ZoneTransitionEvent("V001", "mg_road", "bellandur", 2000L, List.of("bellandur"), List.of("mg_road"))));
+
+        ArgumentCaptor<Object[]> args = ArgumentCaptor.forClass(Object[].class);
+        verify(redisTemplate).execute(same(SaveStateScript.SCRIPT), any(), any(),
+                eq(List.of("vehicle:V001", "zones:vehicles:mg_road", "zones:vehicles:bellandur")), args.capture());
+        assertThat(args.getValue()).containsExactly(
+                (Object) bytes("V001"), bytes(""), bytes("1"), bytes("1"), bytes("2000"), bytes("state"));
+        verify(redisTemplate, never()).opsForValue();
+    }
+
+    @Test
+    void save_WithoutMembershipChange_IsPlainSet() {
+        VehicleState state = new VehicleState("V001", "bellandur", 2000L);
+        when(redisTemplate.opsForValue()).thenReturn(valueOperations);
+
+        store.save(state, ZoneMembershipChange.of(null));
+
+        verify(valueOperations).set("vehicle:V001", state);
+    }
+
+    @Test
+    @SuppressWarnings({"unchecked", "rawtypes"})
+    void saveAll_WithChanges_ScriptsChangedVehiclesOnly() {
+        VehicleState moved = new VehicleState("V001", "bellandur", 2000L);
+        VehicleState stayed = new VehicleState("V002", "mg_road", 2000L);
+        RedisSerializer serializer = mock(RedisSerializer.class);
+        when(serializer.serialize(moved)).thenReturn(bytes("state"));
+        when(redisTemplate.getValueSerializer()).thenReturn(serializer);
+        when(redisTemplate.opsForValue()).thenReturn(valueOperations);
+        answerScriptPipeline(List.of());
+
+        store.saveAll(List.of(moved, stayed), Map.of("V001", ZoneMembershipChange.of(
+                new ZoneTransitionEvent("V001", null, "bellandur", 2000L, List.of("bellandur"), List.of()))));
+
+        List<Invocation> sent = scriptCalls(SaveStateScript.SCRIPT.getSha1(), ReturnType.INTEGER);
+        assertThat(sent).hasSize(1);
+        assertThat(keys(sent.get(0))).containsExactly("vehicle:V001", "zones:vehicles:bellandur");
+        verify(valueOperations).multiSet(Map.of("vehicle:V002", stayed));
+    }
+
+    @Test
+    @SuppressWarnings({"unchecked", "rawtypes"})
+    void save_Guarded_PassesTimestampAndRejectsStaleState() {
+        ValueVehicleStateStore guarded = new ValueVehicleStateStore(redisTemplate, 2, true);
+        VehicleState state = new VehicleState("V001", "bellandur", 2000L);
+        RedisSerializer serializer = mock(RedisSerializer.class);
+        when(serializer.serialize(state)).thenReturn(bytes("state"));
+        when(redisTemplate.getValueSerializer()).thenReturn(serializer);
+        doReturn(0L).when(redisTemplate).execute(same(SaveStateScript.SCRIPT), any(), any(), anyList(),
+                any(Object[].class));
+
+        assertThatThrownBy(() -> guarded.save(state, null))
+                .isInstanceOfSatisfying(StaleVehicleStateException.class,
+                        e -> assertThat(e.getVehicleIds()).containsExactly("V001"));
+
+        ArgumentCaptor<Object[]> args = ArgumentCaptor.forClass(Object[].class);
+        verify(redisTemplate).execute(same(SaveStateScript.SCRIPT), any(), any(),
+                eq(List.of("vehicle:V001")), args.capture());
+        assertThat(args.getValue()).containsExactly(
+                (Object) bytes("V001"), bytes("2000"), bytes("0"), bytes("0"), bytes("state"));
+        verify(redisTemplate, never()).opsForValue();
+    }
+
+    @Test
+    @SuppressWarnings({"unchecked", "rawtypes"})
+    void saveAll_Guarded_ScriptsEveryVehicleAndNamesStaleOnes() {
+        VehicleState moved = new VehicleState("V001", "bellandur", 2000L);
+        VehicleState stale = new VehicleState("V002", "mg_road", 2000L);
+        RedisSerializer serializer = mock(RedisSerializer.class);
+        when(serializer.serialize(any())).thenReturn(bytes("state"));
+        when(redisTemplate.getValueSerializer()).thenReturn(serializer);
+        answerScriptPipeline(List.of(1L, 0L));
+
+        ValueVehicleStateStore guarded = new ValueVehicleStateStore(redisTemplate, 2, true);
+        assertThatThrownBy(() -> guarded.saveAll(List.of(moved, stale), Map.of("V001", ZoneMembershipChange.of(
+                new ZoneTransitionEvent("V001", null, "bellandur", 2000L, List.of("bellandur"), List.of())))))
+                .isInstanceOfSatisfying(StaleVehicleStateException.class,
+                        e -> assertThat(e.getVehicleIds()).containsExactly("V002"));
+
+        List<Invocation> sent = scriptCalls(SaveStateScript.SCRIPT.getSha1(), ReturnType.INTEGER);
+        assertThat(sent).hasSize(2);
+        assertThat(keys(sent.get(0))).containsExactly("vehicle:V001", "zones:vehicles:bellandur");
+        assertThat(keys(sent.get(1))).containsExactly("vehicle:V002");
+        verify(redisTemplate, never()).opsForValue();
+    }
+
+    @Test
+    @SuppressWarnings({"unchecked", "rawtypes"})
+    void advanceAll_StoresUnchangedVehiclesAndReturnsStoredStateOfOthers() {
+        VehicleState stayed = new VehicleState("V001", "bellandur", 2000L, new int[]{4, 5});
+        VehicleState moved = new VehicleState("V002", "mg_road", 2000L, new int[]{6});
+        VehicleState fresh = new VehicleState("V003", null, 2000L, new int[0]);
+        RedisSerializer serializer = mock(RedisSerializer.class);
+        when(serializer.serialize(any())).thenReturn(bytes("state"));
+        when(serializer.deserialize(any())).thenAnswer(invocation -> invocation.getArgument(0) == null
+                ? null
+                : new VehicleState(null, "bellandur", 1000L, new int[]{4}));
+        when(redisTemplate.getValueSerializer()).thenReturn(serializer);
+        answerScriptPipeline(List.of(List.of(bytes("1")), List.of(bytes("0"), bytes("stored")),
+                Arrays.asList(bytes("0"), null)));
+
+        Map<String, VehicleStateStore.Advance> advances = store.advanceAll(List.of(stayed, moved, fresh));
+
+        assertThat(advances.get("V001")).isEqualTo(new VehicleStateStore.Advance(true, null));
+        assertThat(advances.get("V002").written()).isFalse();
+        assertThat(advances.get("V002").previous())
+                .isEqualTo(new VehicleState("V002", "bellandur", 1000L, new int[]{4}));
+        assertThat(advances.get("V003")).isEqualTo(new VehicleStateStore.Advance(false, null));
+        List<Invocation> sent = scriptCalls(AdvanceStateScript.SCRIPT.getSha1(), ReturnType.MULTI);
+        assertThat(sent).hasSize(3);
+        assertThat(keys(sent.get(0))).containsExactly("vehicle:V001");
+        assertThat(args(sent.get(0))).containsExactly("2000", "bellandur", "4,5", "state");
+    }
+
+    @Test
+    @SuppressWarnings({"unchecked", "rawtypes"})
+    void advanceAll_ScriptMissingFromRedis_LoadsItAndResends() {
+        VehicleState state = new VehicleState("V001", "bellandur", 2000L, new int[]{4});
+        RedisSerializer serializer = mock(RedisSerializer.class);
+        when(serializer.serialize(state)).thenReturn(bytes("state"));
+        when(redisTemplate.getValueSerializer()).thenReturn(serializer);
+        when(redisTemplate.executePipelined(any(RedisCallback.class), any()))
+                .thenThrow(new RedisPipelineException(
+                        new RedisSystemException("NOSCRIPT No matching script. Please use EVAL.", null), List.of()))
+                .thenReturn(List.of(List.of(bytes("1"))));
+
+        assertThat(store.advanceAll(List.of(state)).get("V001").written()).isTrue();
+
+        verify(redisTemplate).execute(any(RedisCallback.class));
+        verify(redisTemplate, times(2)).executePipelined(any(RedisCallback.class), any());
+    }
+
+    /**
+     * Answers the script pipeline with {@code replies}, running its calls against a mock connection.
+     */
+    @SuppressWarnings("unchecked")
+    private void answerScriptPipeline(List<?> replies) {
+        when(connection.scriptingCommands()).thenReturn(scriptingCommands);
+        when(redisTemplate.executePipelined(any(RedisCallback.class), any())).thenAnswer(invocation -> {
+            invocation.<RedisCallback<Object>>getArgument(0).doInRedis(connection);
+            return replies;
+        });
+    }
+
+    private List<Invocation> scriptCalls(String sha, ReturnType returnType) {
+        List<Invocation> calls = mockingDetails(scriptingCommands).getInvocations().stream()
+                .filter(invocation -> invocation.getMethod().getName().equals("evalSha"))
+                .toList();
+        assertThat(calls).allSatisfy(call -> {
+            assertThat(call.getRawArguments()[0]).isEqualTo(sha);
+            assertThat(call.getRawArguments()[1]).isEqualTo(returnType);
+        });
+        return calls;
+    }
+
+    private static List<String> keys(Invocation call) {
+        return strings(call).subList(0, (Integer) call.getRawArguments()[2]);
+    }
+
+    private static List<String> args(Invocation call) {
+        List<String> keysAndArgs = strings(call);
+        return keysAndArgs.subList((Integer) call.getRawArguments()[2], keysAndArgs.size());
+    }
+
+    private static List<String> strings(Invocation call) {
+        return Arrays.stream((byte[][]) call.getRawArguments()[3])
+                .map(value -> new String(value, StandardCharsets.UTF_8))
+                .toList();
+    }
+
+    private static byte[] bytes(String value) {
+        return value.getBytes(StandardCharsets.UTF_8);
+    }
+}
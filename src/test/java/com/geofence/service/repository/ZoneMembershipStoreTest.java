@@ -0,0 +1,96 @@
+package com.geofence.service.repository;
+
+import com.geofence.service.model.ZoneVehicle;
+import com.geofence.service.model.ZoneVehiclesPage;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+import org.springframework.data.redis.core.DefaultTypedTuple;
+import org.springframework.data.redis.core.StringRedisTemplate;
+import org.springframework.data.redis.core.ZSetOperations;
+import org.springframework.data.redis.core.ZSetOperations.TypedTuple;
+
+import java.util.LinkedHashSet;
+import java.util.Set;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.mockito.Mockito.when;
+
+@ExtendWith(MockitoExtension.class)
+class ZoneMembershipStoreTest {
+
+    private static final String KEY = "zones:vehicles:airport";
+
+    @Mock
+    private StringRedisTemplate redisTemplate;
+
+    @Mock
+    private ZSetOperations<String, String> zSetOperations;
+
+    private ZoneMembershipStore store;
+
+    @BeforeEach
+    void setUp() {
+        when(redisTemplate.opsForZSet()).thenReturn(zSetOperations);
+        store = new ZoneMembershipStore(redisTemplate);
+    }
+
+    @Test
+    void page_First_ReadsFromRankZero() {
+        when(zSetOperations.rangeWithScores(KEY, 0, 1)).thenReturn(members("V001", 1000, "V002", 1500));
+        when(zSetOperations.zCard(KEY)).thenReturn(3L);
+
+        ZoneVehiclesPage page = store.page("airport", null, 2);
+
+        assertThat(page.getTotal()).isEqualTo(3);
+        assertThat(page.getVehicles()).containsExactly(new ZoneVehicle("V001", 1000), new ZoneVehicle("V002", 1500));
+        assertThat(page.getNextCursor()).isEqualTo("1500:V002");
+    }
+
+    @Test
+    void page_CursorStillInZone_ContinuesAfterItsRank() {
+        when(zSetOperations.score(KEY, "V002")).thenReturn(1500.0);
+        when(zSetOperations.rank(KEY, "V002")).thenReturn(1L);
+        when(zSetOperations.rangeWithScores(KEY, 2, 3)).thenReturn(members("V003", 2000));
+        when(zSetOperations.zCard(KEY)).thenReturn(3L);
+
+        ZoneVehiclesPage page = store.page("airport", "1500:V002", 2);
+
+        assertThat(page.getVehicles()).containsExactly(new ZoneVehicle("V003", 2000));
+        assertThat(page.getNextCursor()).isNull();
+    }
+
+    @Test
+    void page_CursorLeftZone_ContinuesAfterItsPosition() {
+        // V002 left; V001 entered before it, V004 at the same time but sorts after it
+        when(zSetOperations.score(KEY, "V002")).thenReturn(null);
+        when(zSetOperations.count(KEY, Double.NEGATIVE_INFINITY, 1499)).thenReturn(1L);
+        when(zSetOperations.rangeByScore(KEY, 1500, 1500)).thenReturn(Set.of("V004"));
+        when(zSetOperations.rangeWithScores(KEY, 1, 2)).thenReturn(members("V004", 1500, "V003", 2000));
+        when(zSetOperations.zCard(KEY)).thenReturn(3L);
+
+        ZoneVehiclesPage page = store.page("airport", "1500:V002", 2);
+
+        assertThat(page.getVehicles()).extracting(ZoneVehicle::getVehicleId).containsExactly("V004", "V003");
+    }
+
+    @Test
+    void page_VehicleIdWithColon_SplitsCursorOnFirstColon() {
+        when(zSetOperations.score(KEY, "fleet:7")).thenReturn(1500.0);
+        when(zSetOperations.rank(KEY, "fleet:7")).thenReturn(0L);
+        when(zSetOperations.rangeWithScores(KEY, 1, 10)).thenReturn(Set.of());
+        when(zSetOperations.zCard(KEY)).thenReturn(1L);
+
+        assertThat(store.page("airport", "1500:fleet:7", 10).getVehicles()).isEmpty();
+    }
+
+    private static Set<TypedTuple<String>> members(Object... idsAndScores) {
+        Set<TypedTuple<String>> members = new LinkedHashSet<>();
+        for (int i = 0; i < idsAndScores.length; i += 2) {
+            members.add(new DefaultTypedTuple<>((String) idsAndScores[i], ((Integer) idsAndScores[i + 1]).doubleValue()));
+        }
+        return members;
+    }
+}
@@ -1,42 +1,85 @@
 package com.geofence.service.service;
 
+import com.geofence.service.exception.StaleVehicleStateException;
+import com.geofence.service.metrics.GeofenceMetrics;
 import com.geofence.service.model.LocationEvent;
 import com.geofence.service.model.VehicleState;
+import com.geofence.service.model.ZoneMembershipChange;
 import com.geofence.service.model.ZoneTransitionEvent;
+import com.geofence.service.repository.InMemoryZoneStore;
+import com.geofence.service.repository.VehicleStateStore.Advance;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.AfterEach;
 import org.junit.jupiter.api.BeforeEach;
 import org.junit.jupiter.api.Test;
 import org.junit.jupiter.api.extension.ExtendWith;
-import org.mockito.InjectMocks;
+import org.mockito.ArgumentCaptor;
 import org.mockito.Mock;
+import org.mockito.Spy;
 import org.mockito.junit.jupiter.MockitoExtension;
 
+import java.time.Duration;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.Set;
+
 import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+import static org.assertj.core.api.Assertions.entry;
+import static org.assertj.core.groups.Tuple.tuple;
 import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyCollection;
+import static org.mockito.ArgumentMatchers.anyMap;
 import static org.mockito.Mockito.*;
 
 @ExtendWith(MockitoExtension.class)
 class GeofenceServiceTest {
 
     @Mock
-    private ZoneService zoneService;
+    private VehicleStateService stateService;
 
     @Mock
-    private VehicleStateService stateService;
+    private TransitionBroadcaster broadcaster;
+
+    @Mock
+    private TransitionLogService transitionLog;
+
+    @Mock
+    private OccupancyService occupancy;
+
+    private final SimpleMeterRegistry meterRegistry = new SimpleMeterRegistry();
+
+    @Spy
+    private GeofenceMetrics metrics = new GeofenceMetrics(meterRegistry, 100);
+
+    private ZoneService zoneService;
 
-    @InjectMocks
     private GeofenceService geofenceService;
 
     private LocationEvent locationEvent;
 
     @BeforeEach
     void setUp() {
+        // Real zones: the built-in Bangalore rectangles
+        zoneService = new ZoneService(new InMemoryZoneStore(), Duration.ZERO);
+        zoneService.init();
+        geofenceService = new GeofenceService(zoneService, stateService, metrics, broadcaster, transitionLog,
+                occupancy, 0, false);
         locationEvent = new LocationEvent("V001", 12.9350, 77.6650, 1000L);
     }
 
+    @AfterEach
+    void tearDown() {
+        zoneService.shutdown();
+    }
+
     @Test
     void process_FirstEvent_CreatesTransition() {
         // Arrange
-        when(zoneService.detectZone(12.9350, 77.6650)).thenReturn("bellandur");
         when(stateService.getState("V001")).thenReturn(null);
 
         // Act
@@ -49,14 +92,16 @@ class GeofenceServiceTest {
         assertThat(result.getToZone()).isEqualTo("bellandur");
         assertThat(result.getTimestamp()).isEqualTo(1000L);
 
-        verify(stateService).saveState(any(VehicleState.class));
+        verify(stateService).saveState(any(VehicleState.class), any());
+        verify(broadcaster).publish(result);
+        verify(transitionLog).append(result);
+        verify(occupancy).record(result);
     }
 
     @Test
     void process_SameZone_NoTransition() {
         // Arrange
-        VehicleState existingState = new VehicleState("V001", "bellandur", 500L);
-        when(zoneService.detectZone(12.9350, 77.6650)).thenReturn("bellandur");
+        VehicleState existingState = new VehicleState("V001", "bellandur", 500L, keys("bellandur"));
         when(stateService.getState("V001")).thenReturn(existingState);
 
         // Act
@@ -64,14 +109,16 @@ class GeofenceServiceTest {
 
         // Assert
         assertThat(result).isNull();
-        verify(stateService).saveState(any(VehicleState.class));
+        verify(stateService).touch(any(VehicleState.class));
+        verify(stateService, never()).saveState(any(VehicleState.class), any());
+        verify(broadcaster, never()).publish(any());
+        verify(transitionLog, never()).append(any());
     }
 
     @Test
     void process_ZoneChange_CreatesTransition() {
         // Arrange
         VehicleState existingState = new VehicleState("V001", "bellandur", 500L);
-        when(zoneService.detectZone(12.9750, 77.6100)).thenReturn("mg_road");
         when(stateService.getState("V001")).thenReturn(existingState);
 
         LocationEvent newEvent = new LocationEvent("V001", 12.9750, 77.6100, 2000L);
@@ -83,14 +130,16 @@ class GeofenceServiceTest {
         assertThat(result).isNotNull();
         assertThat(result.getFromZone()).isEqualTo("bellandur");
         assertThat(result.getToZone()).isEqualTo("mg_road");
-        verify(stateService).saveState(any(VehicleState.class));
+        verify(stateService).saveState(any(VehicleState.class), any());
+        assertThat(meterRegistry.get("geofence.transitions").tag("from", "bellandur").tag("to", "mg_road")
+                .counter().count()).isEqualTo(1.0);
+        assertThat(meterRegistry.get("geofence.process").timer().count()).isEqualTo(1);
     }
 
     @Test
     void process_ExitToOutside_CreatesTransition() {
         // Arrange
         VehicleState existingState = new VehicleState("V001", "bellandur", 500L);
-        when(zoneService.detectZone(12.9900, 77.5400)).thenReturn(null);
         when(stateService.getState("V001")).thenReturn(existingState);
 
         LocationEvent outsideEvent = new LocationEvent("V001", 12.9900, 77.5400, 3000L);
@@ -103,5 +152,338 @@ class GeofenceServiceTest {
         assertThat(result.getFromZone()).isEqualTo("bellandur");
         assertThat(result.getToZone()).isNull();
     }
-}
 
+    @Test
+    @SuppressWarnings("unchecked")
+    void processBatch_AppliesEventsInTimestampOrderWithOneReadAndWrite() {
+        // Arrange: V001 pings arrive out of order, V002 is new
+        when(stateService.getStates(anyCollection()))
+                .thenReturn(Map.of("V001", new VehicleState("V001", "bellandur", 500L)));
+
+        List<LocationEvent> events = List.of(
+                new LocationEvent("V001", 12.9350, 77.6650, 3000L),
+                new LocationEvent("V002", 12.9750, 77.6100, 1500L),
+                new LocationEvent("V001", 12.9750, 77.6100, 2000L));
+
+        // Act
+        List<ZoneTransitionEvent> result = geofenceService.processBatch(events);
+
+        // Assert: transitions follow input order, state followed timestamp order
+        assertThat(result).extracting(ZoneTransitionEvent::getVehicleId, ZoneTransitionEvent::getFromZone,
+                        ZoneTransitionEvent::getToZone, ZoneTransitionEvent::getTimestamp)
+                .containsExactly(
+                        tuple("V001", "mg_road", "bellandur", 3000L),
+                        tuple("V002", null, "mg_road", 1500L),
+                        tuple("V001", "bellandur", "mg_road", 2000L));
+
+        verify(stateService, times(1)).getStates(anyCollection());
+        var saved = ArgumentCaptor.forClass(Collection.class);
+        var changes = ArgumentCaptor.forClass(Map.class);
+        verify(stateService, times(1)).saveStates(saved.capture(), changes.capture());
+        assertThat((Collection<VehicleState>) saved.getValue())
+                .extracting(VehicleState::getVehicleId, VehicleState::getCurrentZone, VehicleState::getLastUpdated)
+                .containsExactlyInAnyOrder(
+                        tuple("V001", "bellandur", 3000L),
+                        tuple("V002", "mg_road", 1500L));
+        // Net membership change per vehicle: V001 went to MG Road and back
+        Map<String, ZoneMembershipChange> membership = changes.getValue();
+        assertThat(membership.get("V001").getEntered()).containsExactly(entry("bellandur", 3000L));
+        assertThat(membership.get("V001").getExited()).containsExactly("mg_road");
+        assertThat(membership.get("V002").getEntered()).containsExactly(entry("mg_road", 1500L));
+        assertThat(membership.get("V002").getExited()).isEmpty();
+        verify(stateService, never()).getState(any());
+    }
+
+    @Test
+    void process_StaleOrDuplicateEvent_IsIgnored() {
+        VehicleState existingState = new VehicleState("V001", "mg_road", 1000L);
+        when(stateService.getState("V001")).thenReturn(existingState);
+
+        // Bellandur ping older than, then as old as, the stored MG Road state
+        assertThat(geofenceService.process(new LocationEvent("V001", 12.9350, 77.6650, 900L))).isNull();
+        assertThat(geofenceService.process(new LocationEvent("V001", 12.9350, 77.6650, 1000L))).isNull();
+
+        assertThat(existingState.getCurrentZone()).isEqualTo("mg_road");
+        verify(stateService, never()).saveState(any(VehicleState.class), any());
+        verify(stateService, never()).touch(any());
+        verify(broadcaster, never()).publish(any());
+        assertThat(meterRegistry.get("geofence.events.ignored").tag("reason", "stale").counter().count())
+                .isEqualTo(1.0);
+        assertThat(meterRegistry.get("geofence.events.ignored").tag("reason", "duplicate").counter().count())
+                .isEqualTo(1.0);
+    }
+
+    @Test
+    void process_SupersededWrite_DoesNotPublish() {
+        when(stateService.getState("V001")).thenReturn(new VehicleState("V001", "mg_road", 500L));
+        doThrow(new StaleVehicleStateException(Set.of("V001")))
+                .when(stateService).saveState(any(VehicleState.class), any());
+
+        assertThat(geofenceService.process(locationEvent)).isNull();
+
+        verify(broadcaster, never()).publish(any());
+        verify(transitionLog, never()).append(any());
+        assertThat(meterRegistry.get("geofence.events.ignored").tag("reason", "superseded").counter().count())
+                .isEqualTo(1.0);
+    }
+
+    @Test
+    @SuppressWarnings("unchecked")
+    void processBatch_IgnoresStaleEventsAndDropsSupersededVehicles() {
+        when(stateService.getStates(anyCollection())).thenReturn(Map.of(
+                "V001", new VehicleState("V001", "bellandur", 2000L),
+                "V002", new VehicleState("V002", "bellandur", 500L)));
+        doThrow(new StaleVehicleStateException(Set.of("V002")))
+                .when(stateService).saveStates(anyCollection(), anyMap());
+
+        // V001's only ping is older than its state; V003 is new; V002 lost a race to another replica
+        List<LocationEvent> events = List.of(
+                new LocationEvent("V001", 12.9750, 77.6100, 1500L),
+                new LocationEvent("V002", 12.9750, 77.6100, 1500L),
+                new LocationEvent("V003", 12.9750, 77.6100, 1500L));
+
+        List<ZoneTransitionEvent> result = geofenceService.processBatch(events);
+
+        assertThat(result).extracting(ZoneTransitionEvent::getVehicleId).containsExactly("V003");
+        var saved = ArgumentCaptor.forClass(Collection.class);
+        verify(stateService).saveStates(saved.capture(), anyMap());
+        assertThat((Collection<VehicleState>) saved.getValue())
+                .extracting(VehicleState::getVehicleId)
+                .containsExactlyInAnyOrder("V002", "V003");
+        verify(broadcaster, times(1)).publish(any());
+        assertThat(meterRegistry.get("geofence.events.ignored").tag("reason", "stale").counter().count())
+                .isEqualTo(1.0);
+        assertThat(meterRegistry.get("geofence.events.ignored").tag("reason", "superseded").counter().count())
+                .isEqualTo(1.0);
+    }
+
+    @Test
+    void process_SingleTrip_SameZoneIsStoredInOneCall() {
+        GeofenceService singleTrip = new GeofenceService(zoneService, stateService, metrics, broadcaster,
+                transitionLog, occupancy, 0, true);
+        when(stateService.advance(any())).thenReturn(new Advance(true, null));
+
+        assertThat(singleTrip.process(locationEvent)).isNull();
+
+        verify(stateService).advance(new VehicleState("V001", "bellandur", 1000L, keys("bellandur")));
+        verify(stateService, never()).getState(any());
+        verify(stateService, never()).touch(any());
+        verify(stateService, never()).saveState(any(VehicleState.class), any());
+    }
+
+    @Test
+    void process_SingleTrip_ZoneChangeContinuesFromReturnedState() {
+        GeofenceService singleTrip = new GeofenceService(zoneService, stateService, metrics, broadcaster,
+                transitionLog, occupancy, 0, true);
+        when(stateService.advance(any()))
+                .thenReturn(new Advance(false, new VehicleState("V001", "mg_road", 500L, keys("mg_road"))));
+
+        ZoneTransitionEvent result = singleTrip.process(locationEvent);
+
+        assertThat(result.getFromZone()).isEqualTo("mg_road");
+        assertThat(result.getToZone()).isEqualTo("bellandur");
+        verify(stateService).saveState(any(VehicleState.class), any());
+        verify(broadcaster).publish(result);
+        verify(stateService, never()).getState(any());
+    }
+
+    @Test
+    void process_SingleTrip_StaleEventIsIgnored() {
+        GeofenceService singleTrip = new GeofenceService(zoneService, stateService, metrics, broadcaster,
+                transitionLog, occupancy, 0, true);
+        when(stateService.advance(any()))
+                .thenReturn(new Advance(false, new VehicleState("V001", "mg_road", 5000L, keys("mg_road"))));
+
+        assertThat(singleTrip.process(locationEvent)).isNull();
+
+        verify(stateService, never()).saveState(any(VehicleState.class), any());
+        assertThat(meterRegistry.get("geofence.events.ignored").tag("reason", "stale").counter().count())
+                .isEqualTo(1.0);
+    }
+
+    @Test
+    void process_SingleTrip_NewVehicleOutsideZonesAdvancesFromSecondPing() {
+        GeofenceService singleTrip = new GeofenceService(zoneService, stateService, metrics, broadcaster,
+                transitionLog, occupancy, 0, true);
+        Map<String, VehicleState> stored = storeLikeAdvanceScript();
+
+        assertThat(singleTrip.process(new LocationEvent("V001", 12.9900, 77.5400, 1000L))).isNull();
+        assertThat(singleTrip.process(new LocationEvent("V001", 12.9900, 77.5400, 2000L))).isNull();
+
+        // The first ping stores the empty membership, so the second is written by advance alone
+        verify(stateService, times(1)).saveState(any(VehicleState.class), any());
+        verify(stateService, times(2)).advance(any());
+        verify(stateService, never()).touch(any());
+        assertThat(stored.get("V001")).isEqualTo(new VehicleState("V001", null, 2000L, new int[0]));
+    }
+
+    @Test
+    void process_SingleTrip_LegacyStateAdvancesFromSecondPing() {
+        GeofenceService singleTrip = new GeofenceService(zoneService, stateService, metrics, broadcaster,
+                transitionLog, occupancy, 0, true);
+        Map<String, VehicleState> stored = storeLikeAdvanceScript();
+        stored.put("V001", new VehicleState("V001", "bellandur", 500L));
+
+        assertThat(singleTrip.process(locationEvent)).isNull();
+        assertThat(singleTrip.process(new LocationEvent("V001", 12.9350, 77.6650, 2000L))).isNull();
+
+        verify(stateService, times(1)).saveState(any(VehicleState.class), any());
+        verify(stateService, times(2)).advance(any());
+        verify(stateService, never()).touch(any());
+        assertThat(stored.get("V001")).isEqualTo(new VehicleState("V001", "bellandur", 2000L, keys("bellandur")));
+        verify(broadcaster, never()).publish(any());
+    }
+
+    @Test
+    @SuppressWarnings("unchecked")
+    void processBatch_SingleTrip_OnlyAppliesVehiclesThatWereNotStored() {
+        GeofenceService singleTrip = new GeofenceService(zoneService, stateService, metrics, broadcaster,
+                transitionLog, occupancy, 0, true);
+        // V001 pings twice in Bellandur and is stored; V002 moves within the batch and is only read
+        when(stateService.advanceAll(anyCollection())).thenReturn(Map.of(
+                "V001", new Advance(true, null),
+                "V002", new Advance(false, new VehicleState("V002", "bellandur", 500L, keys("bellandur")))));
+
+        List<ZoneTransitionEvent> result = singleTrip.processBatch(List.of(
+                new LocationEvent("V001", 12.9350, 77.6650, 1000L),
+                new LocationEvent("V002", 12.9750, 77.6100, 1000L),
+                new LocationEvent("V001", 12.9350, 77.6650, 2000L),
+                new LocationEvent("V002", 12.9350, 77.6650, 2000L)));
+
+        assertThat(result).extracting(ZoneTransitionEvent::getVehicleId, ZoneTransitionEvent::getFromZone,
+                        ZoneTransitionEvent::getToZone)
+                .containsExactly(tuple("V002", "bellandur", "mg_road"), tuple("V002", "mg_road", "bellandur"));
+        var offered = ArgumentCaptor.forClass(Collection.class);
+        verify(stateService).advanceAll(offered.capture());
+        assertThat((Collection<VehicleState>) offered.getValue())
+                .extracting(VehicleState::getVehicleId, VehicleState::getLastUpdated, VehicleState::getZones)
+                .containsExactlyInAnyOrder(
+                        tuple("V001", 2000L, keys("bellandur")),
+                        tuple("V002", 1000L, null));
+        var saved = ArgumentCaptor.forClass(Collection.class);
+        verify(stateService).saveStates(saved.capture(), anyMap());
+        assertThat((Collection<VehicleState>) saved.getValue()).extracting(VehicleState::getVehicleId)
+                .containsExactly("V002");
+        verify(stateService, never()).getStates(anyCollection());
+    }
+
+    @Test
+    void constructor_SingleTripWithStateCache_IsRejected() {
+        when(stateService.isCacheEnabled()).thenReturn(true);
+
+        assertThatThrownBy(() -> new GeofenceService(zoneService, stateService, metrics, broadcaster,
+                transitionLog, occupancy, 0, true))
+                .isInstanceOf(IllegalArgumentException.class);
+    }
+
+    @Test
+    void process_EnterOverlappingZone_ReportsMembershipChangeOnly() {
+        // In Bellandur, moving into the part that overlaps HSR Layout
+        VehicleState existingState = new VehicleState("V001", "bellandur", 500L, keys("bellandur"));
+        when(stateService.getState("V001")).thenReturn(existingState);
+
+        ZoneTransitionEvent result = geofenceService.process(new LocationEvent("V001", 12.9200, 77.6500, 2000L));
+
+        assertThat(result).isNotNull();
+        assertThat(result.getFromZone()).isEqualTo("bellandur");
+        assertThat(result.getToZone()).isEqualTo("bellandur");
+        assertThat(result.getEntered()).containsExactly("hsr_layout");
+        assertThat(result.getExited()).isEmpty();
+        var change = ArgumentCaptor.forClass(ZoneMembershipChange.class);
+        verify(stateService).saveState(eq(existingState), change.capture());
+        assertThat(change.getValue().getEntered()).containsExactly(entry("hsr_layout", 2000L));
+        assertThat(existingState.getZones()).containsExactly(keys("bellandur", "hsr_layout"));
+    }
+
+    @Test
+    void process_LeaveOverlap_ReportsExitAndNewPrimaryZone() {
+        VehicleState existingState = new VehicleState("V001", "bellandur", 500L, keys("bellandur", "hsr_layout"));
+        when(stateService.getState("V001")).thenReturn(existingState);
+
+        ZoneTransitionEvent result = geofenceService.process(new LocationEvent("V001", 12.9050, 77.6400, 2000L));
+
+        assertThat(result.getFromZone()).isEqualTo("bellandur");
+        assertThat(result.getToZone()).isEqualTo("hsr_layout");
+        assertThat(result.getEntered()).isEmpty();
+        assertThat(result.getExited()).containsExactly("bellandur");
+    }
+
+    @Test
+    void process_SameOverlap_NoTransition() {
+        VehicleState existingState = new VehicleState("V001", "bellandur", 500L, keys("bellandur", "hsr_layout"));
+        when(stateService.getState("V001")).thenReturn(existingState);
+
+        assertThat(geofenceService.process(new LocationEvent("V001", 12.9200, 77.6500, 2000L))).isNull();
+        verify(stateService).touch(existingState);
+    }
+
+    @Test
+    void process_JitterWithinExitBuffer_StaysInZone() {
+        GeofenceService buffered = new GeofenceService(zoneService, stateService, metrics, broadcaster,
+                transitionLog, occupancy, 50, false);
+        VehicleState existingState = new VehicleState("V001", "airport", 500L, keys("airport"));
+        when(stateService.getState("V001")).thenReturn(existingState);
+
+        // About 33 m north of the airport's edge
+        assertThat(buffered.process(new LocationEvent("V001", 13.2503, 77.7100, 2000L))).isNull();
+        verify(stateService).touch(existingState);
+        assertThat(existingState.getZones()).containsExactly(keys("airport"));
+
+        // About 110 m out
+        ZoneTransitionEvent result = buffered.process(new LocationEvent("V001", 13.2510, 77.7100, 3000L));
+        assertThat(result.getFromZone()).isEqualTo("airport");
+        assertThat(result.getToZone()).isNull();
+        assertThat(result.getExited()).containsExactly("airport");
+    }
+
+    @Test
+    void process_ExitBuffer_DoesNotDelayEntries() {
+        GeofenceService buffered = new GeofenceService(zoneService, stateService, metrics, broadcaster,
+                transitionLog, occupancy, 50, false);
+        VehicleState existingState = new VehicleState("V001", null, 500L, new int[0]);
+        when(stateService.getState("V001")).thenReturn(existingState);
+
+        // Just outside the airport: no zone yet
+        assertThat(buffered.process(new LocationEvent("V001", 13.2503, 77.7100, 2000L))).isNull();
+        ZoneTransitionEvent result = buffered.process(new LocationEvent("V001", 13.2490, 77.7100, 3000L));
+        assertThat(result.getToZone()).isEqualTo("airport");
+    }
+
+    /**
+     * Backs {@code saveState} and {@code advance} with a map, advancing the way
+     * {@code redis/advance-state.lua} does: only over a stored state with the same zone
+     * and membership, so a state stored without membership never advances.
+     */
+    private Map<String, VehicleState> storeLikeAdvanceScript() {
+        Map<String, VehicleState> stored = new HashMap<>();
+        doAnswer(invocation -> {
+            stored.put(invocation.<VehicleState>getArgument(0).getVehicleId(), copy(invocation.getArgument(0)));
+            return null;
+        }).when(stateService).saveState(any(VehicleState.class), any());
+        when(stateService.advance(any())).thenAnswer(invocation -> {
+            VehicleState next = invocation.getArgument(0);
+            VehicleState prev = stored.get(next.getVehicleId());
+            if (prev != null && prev.getZones() != null && next.getZones() != null
+                    && prev.getLastUpdated() < next.getLastUpdated()
+                    && Objects.equals(prev.getCurrentZone(), next.getCurrentZone())
+                    && Arrays.equals(prev.getZones(), next.getZones())) {
+                stored.put(next.getVehicleId(), copy(next));
+                return new Advance(true, null);
+            }
+            return new Advance(false, prev == null ? null : copy(prev));
+        });
+        return stored;
+    }
+
+    private static VehicleState copy(VehicleState state) {
+        return new VehicleState(state.getVehicleId(), state.getCurrentZone(), state.getLastUpdated(), state.getZones());
+    }
+
+    private int[] keys(String... zoneIds) {
+        int[] keys = new int[zoneIds.length];
+        for (int i = 0; i < zoneIds.length; i++) {
+            keys[i] = zoneService.currentIndex().key(zoneIds[i]);
+        }
+        return keys;
+    }
+}
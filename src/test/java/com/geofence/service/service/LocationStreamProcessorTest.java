@@ -0,0 +1,139 @@
+package com.geofence.service.service;
+
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.geofence.service.exception.IngestionOverloadedException;
+import com.geofence.service.model.LocationEvent;
+import com.geofence.service.model.ZoneTransitionEvent;
+import jakarta.validation.Validation;
+import jakarta.validation.Validator;
+import jakarta.validation.ValidatorFactory;
+import org.junit.jupiter.api.AfterAll;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.PipedInputStream;
+import java.io.PipedOutputStream;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.TimeUnit;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.Mockito.*;
+
+class LocationStreamProcessorTest {
+
+    private static final ValidatorFactory VALIDATION = Validation.buildDefaultValidatorFactory();
+
+    private final GeofenceService geofenceService = mock(GeofenceService.class);
+    private final ShardedEventProcessor shardedProcessor = mock(ShardedEventProcessor.class);
+    private final ObjectMapper objectMapper = new ObjectMapper();
+    private LocationStreamProcessor processor;
+
+    @BeforeEach
+    void setUp() {
+        Validator validator = VALIDATION.getValidator();
+        processor = new LocationStreamProcessor(geofenceService, shardedProcessor, objectMapper, validator);
+        when(geofenceService.process(any(LocationEvent.class))).thenAnswer(invocation -> {
+            LocationEvent event = invocation.getArgument(0);
+            return new ZoneTransitionEvent(event.getVehicleId(), null, "bellandur", event.getTimestamp());
+        });
+    }
+
+    @AfterAll
+    static void closeValidation() {
+        VALIDATION.close();
+    }
+
+    @Test
+    void process_InvalidEvent_ReportsItAndContinues() throws IOException {
+        List<JsonNode> lines = run(line("V001", 12.9, 1000) + line("V002", 200.0, 1000) + line("V003", 12.9, 1000));
+
+        assertThat(lines).hasSize(3);
+        assertThat(lines.get(0).get("vehicleId").asText()).isEqualTo("V001");
+        assertThat(lines.get(1).get("status").asInt()).isEqualTo(400);
+        assertThat(lines.get(1).get("message").asText()).startsWith("Event 2:");
+        assertThat(lines.get(1).get("validationErrors").has("lat")).isTrue();
+        assertThat(lines.get(2).get("vehicleId").asText()).isEqualTo("V003");
+    }
+
+    @Test
+    void process_MalformedJson_EndsStream() throws IOException {
+        List<JsonNode> lines = run(line("V001", 12.9, 1000) + "{\"vehicleId\":\n" + line("V003", 12.9, 1000));
+
+        assertThat(lines).hasSize(2);
+        assertThat(lines.get(1).get("status").asInt()).isEqualTo(400);
+        assertThat(lines.get(1).get("message").asText()).startsWith("Event 2: Malformed event");
+        verify(geofenceService, times(1)).process(any(LocationEvent.class));
+    }
+
+    @Test
+    void process_Sharded_RejectedEventReportedWith429() throws IOException {
+        when(shardedProcessor.isEnabled()).thenReturn(true);
+        when(shardedProcessor.process(any(LocationEvent.class)))
+                .thenThrow(new IngestionOverloadedException("Ingestion shard 0 is full, retry later"))
+                .thenReturn(null);
+
+        List<JsonNode> lines = run(line("V001", 12.9, 1000) + line("V002", 12.9, 1000));
+
+        assertThat(lines).hasSize(1);
+        assertThat(lines.get(0).get("status").asInt()).isEqualTo(429);
+        verify(shardedProcessor, times(2)).process(any(LocationEvent.class));
+        verify(geofenceService, never()).process(any(LocationEvent.class));
+    }
+
+    @Test
+    void process_WritesTransitionBeforeInputEnds() throws Exception {
+        PipedOutputStream client = new PipedOutputStream();
+        PipedInputStream in = new PipedInputStream(client);
+        PipedOutputStream server = new PipedOutputStream();
+        PipedInputStream responses = new PipedInputStream(server);
+
+        CompletableFuture<Long> done = CompletableFuture.supplyAsync(() -> {
+            try {
+                return processor.process(in, server);
+            } catch (IOException e) {
+                throw new RuntimeException(e);
+            }
+        });
+
+        client.write(line("V001", 12.9, 1000).getBytes(StandardCharsets.UTF_8));
+        client.flush();
+        assertThat(readLine(responses)).contains("\"vehicleId\":\"V001\"");
+
+        client.close();
+        assertThat(done.get(5, TimeUnit.SECONDS)).isEqualTo(1L);
+    }
+
+    private List<JsonNode> run(String body) throws IOException {
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        processor.process(new ByteArrayInputStream(body.getBytes(StandardCharsets.UTF_8)), out);
+        List<JsonNode> lines = new ArrayList<>();
+        for (String line : out.toString(StandardCharsets.UTF_8).split("\n")) {
+            if (!line.isEmpty()) {
+                lines.add(objectMapper.readTree(line));
+            }
+        }
+        return lines;
+    }
+
+    private static String readLine(InputStream in) throws IOException {
+        StringBuilder line = new StringBuilder();
+        int c;
+        while ((c = in.read()) >= 0 && c != '\n') {
+            line.append((char) c);
+        }
+        return line.toString();
+    }
+
+    private static String line(String vehicleId, double lat, long timestamp) {
+        return "{\"vehicleId\":\"" + vehicleId + "\",\"lat\":" + lat + ",\"lon\":77.6,\"timestamp\":" + timestamp + "}\n";
+    }
+}
@@ -0,0 +1,156 @@
+package com.geofence.service.service;
+
+import com.geofence.service.metrics.GeofenceMetrics;
+import com.geofence.service.model.ZoneTransitionEvent;
+import com.geofence.service.repository.OccupancyStore;
+import com.geofence.service.repository.OccupancyStore.VehicleDelta;
+import com.geofence.service.repository.OccupancyStore.ZoneDelta;
+import com.geofence.service.repository.ZoneMembershipStore;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.ArgumentCaptor;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+import org.springframework.data.redis.RedisConnectionFailureException;
+
+import java.time.Duration;
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.mockito.ArgumentMatchers.anyList;
+import static org.mockito.Mockito.doThrow;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.verifyNoInteractions;
+
+@ExtendWith(MockitoExtension.class)
+class OccupancyServiceTest {
+
+    @Mock
+    private OccupancyStore store;
+
+    @Mock
+    private ZoneMembershipStore membership;
+
+    private final GeofenceMetrics metrics = new GeofenceMetrics(new SimpleMeterRegistry(), 100);
+
+    @Test
+    void record_EnterAndExit_CountsVisitsAndDwell() {
+        OccupancyService occupancy = new OccupancyService(store, membership, metrics, true, Duration.ofSeconds(5));
+
+        occupancy.record(transition("V001", 1_000, List.of("airport"), List.of()));
+        occupancy.record(transition("V002", 2_000, List.of("airport"), List.of()));
+        occupancy.record(transition("V001", 61_000, List.of("hebbal"), List.of("airport")));
+        occupancy.flush();
+
+        List<ZoneDelta> zones = captureZones(1);
+        assertThat(zones).containsExactly(new ZoneDelta("airport", 1, 60_000));
+        assertThat(captureVehicles(1)).containsExactly(new VehicleDelta("V001", "airport", 60_000));
+    }
+
+    @Test
+    void record_ExitWithoutSeenEntry_CountsNothing() {
+        OccupancyService occupancy = new OccupancyService(store, membership, metrics, true, Duration.ofSeconds(5));
+
+        occupancy.record(transition("V001", 5_000, List.of(), List.of("airport")));
+        occupancy.flush();
+
+        verify(store, never()).add(anyList(), anyList());
+    }
+
+    @Test
+    void record_ConcurrentVehicles_LosesNoUpdates() throws InterruptedException {
+        OccupancyService occupancy = new OccupancyService(store, membership, metrics, true, Duration.ofSeconds(5));
+        ExecutorService executor = Executors.newFixedThreadPool(8);
+        for (int v = 0; v < 1000; v++) {
+            String vehicleId = "V" + v;
+            executor.submit(() -> {
+                occupancy.record(transition(vehicleId, 1_000, List.of("airport"), List.of()));
+                occupancy.record(transition(vehicleId, 2_000, List.of(), List.of("airport")));
+                occupancy.record(transition(vehicleId, 3_000, List.of("airport"), List.of()));
+            });
+        }
+        executor.shutdown();
+        assertThat(executor.awaitTermination(10, TimeUnit.SECONDS)).isTrue();
+        occupancy.flush();
+
+        assertThat(captureZones(1)).containsExactly(new ZoneDelta("airport", 1000, 1_000_000));
+        assertThat(captureVehicles(1)).hasSize(1000);
+    }
+
+    @Test
+    void flush_RedisDown_KeepsDeltasForNextFlush() {
+        OccupancyService occupancy = new OccupancyService(store, membership, metrics, true, Duration.ofSeconds(5));
+        occupancy.record(transition("V001", 1_000, List.of("airport"), List.of()));
+        occupancy.record(transition("V001", 4_000, List.of(), List.of("airport")));
+        doThrow(new RedisConnectionFailureException("down")).doNothing().when(store).add(anyList(), anyList());
+
+        occupancy.flush();
+        occupancy.flush();
+
+        assertThat(captureZones(2)).containsExactly(new ZoneDelta("airport", 1, 3_000));
+        assertThat(captureVehicles(2)).containsExactly(new VehicleDelta("V001", "airport", 3_000));
+    }
+
+    @Test
+    void flush_NothingChanged_SkipsRedis() {
+        OccupancyService occupancy = new OccupancyService(store, membership, metrics, true, Duration.ofSeconds(5));
+        occupancy.record(transition("V001", 1_000, List.of("airport"), List.of()));
+        occupancy.record(transition("V001", 2_000, List.of(), List.of("airport")));
+        occupancy.flush();
+
+        occupancy.flush();
+
+        verify(store, times(1)).add(anyList(), anyList());
+    }
+
+    @Test
+    void deleteZone_ForgetsCountersOpenVisitsDwellAndMembers() {
+        OccupancyService occupancy = new OccupancyService(store, membership, metrics, true, Duration.ofSeconds(5));
+        occupancy.record(transition("V001", 1_000, List.of("airport"), List.of()));
+        occupancy.record(transition("V002", 1_000, List.of("airport"), List.of()));
+        occupancy.record(transition("V002", 2_000, List.of(), List.of("airport")));
+
+        occupancy.deleteZone("airport");
+        occupancy.record(transition("V001", 3_000, List.of(), List.of("airport")));
+        occupancy.flush();
+
+        verify(store).deleteZone("airport");
+        verify(membership).delete("airport");
+        verify(store, never()).add(anyList(), anyList());
+    }
+
+    @Test
+    void record_Disabled_DoesNothing() {
+        OccupancyService occupancy = new OccupancyService(store, membership, metrics, false, Duration.ZERO);
+
+        occupancy.record(transition("V001", 1_000, List.of("airport"), List.of()));
+        occupancy.flush();
+
+        verifyNoInteractions(store);
+    }
+
+    @SuppressWarnings("unchecked")
+    private List<ZoneDelta> captureZones(int flushes) {
+        ArgumentCaptor<List<ZoneDelta>> zones = ArgumentCaptor.forClass(List.class);
+        verify(store, times(flushes)).add(zones.capture(), anyList());
+        return zones.getValue();
+    }
+
+    @SuppressWarnings("unchecked")
+    private List<VehicleDelta> captureVehicles(int flushes) {
+        ArgumentCaptor<List<VehicleDelta>> vehicles = ArgumentCaptor.forClass(List.class);
+        verify(store, times(flushes)).add(anyList(), vehicles.capture());
+        return vehicles.getValue();
+    }
+
+    private static ZoneTransitionEvent transition(String vehicleId, long timestamp,
+                                                  List<String> entered, List<String> exited) {
+        return new ZoneTransitionEvent(vehicleId, null, null, timestamp, entered, exited);
+    }
+}
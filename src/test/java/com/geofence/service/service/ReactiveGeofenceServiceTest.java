@@ -0,0 +1,119 @@
+package com.geofence.service.service;
+
+import com.geofence.service.metrics.GeofenceMetrics;
+import com.geofence.service.model.LocationEvent;
+import com.geofence.service.model.VehicleState;
+import com.geofence.service.model.ZoneTransitionEvent;
+import com.geofence.service.repository.InMemoryZoneStore;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.ArgumentCaptor;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+import reactor.core.publisher.Mono;
+
+import java.time.Duration;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.Mockito.*;
+
+@ExtendWith(MockitoExtension.class)
+class ReactiveGeofenceServiceTest {
+
+    @Mock
+    private ReactiveVehicleStateService stateService;
+
+    @Mock
+    private VehicleStateService blockingStateService;
+
+    @Mock
+    private TransitionBroadcaster broadcaster;
+
+    @Mock
+    private TransitionLogService transitionLog;
+
+    @Mock
+    private OccupancyService occupancy;
+
+    private final SimpleMeterRegistry meterRegistry = new SimpleMeterRegistry();
+    private final GeofenceMetrics metrics = new GeofenceMetrics(meterRegistry, 100);
+
+    private ZoneService zoneService;
+    private ReactiveGeofenceService geofenceService;
+
+    @BeforeEach
+    void setUp() {
+        zoneService = new ZoneService(new InMemoryZoneStore(), Duration.ZERO);
+        zoneService.init();
+        GeofenceService blocking = new GeofenceService(zoneService, blockingStateService, metrics, broadcaster,
+                transitionLog, occupancy, 0, false);
+        geofenceService = new ReactiveGeofenceService(zoneService, blocking, stateService, metrics);
+    }
+
+    @AfterEach
+    void tearDown() {
+        zoneService.shutdown();
+        verifyNoInteractions(blockingStateService);
+    }
+
+    @Test
+    void process_FirstEvent_SavesAndEmitsTransition() {
+        when(stateService.getState("V001")).thenReturn(Mono.empty());
+        when(stateService.saveState(any(VehicleState.class), any())).thenReturn(Mono.empty());
+
+        ZoneTransitionEvent result = geofenceService.process(event(12.9350, 77.6650)).block();
+
+        assertThat(result).isNotNull();
+        assertThat(result.getFromZone()).isNull();
+        assertThat(result.getToZone()).isEqualTo("bellandur");
+        ArgumentCaptor<VehicleState> saved = ArgumentCaptor.forClass(VehicleState.class);
+        verify(stateService).saveState(saved.capture(), any());
+        assertThat(saved.getValue().getCurrentZone()).isEqualTo("bellandur");
+        assertThat(meterRegistry.get("geofence.process").timer().count()).isEqualTo(1);
+        verify(broadcaster).publish(result);
+        verify(transitionLog).append(result);
+        verify(occupancy).record(result);
+    }
+
+    @Test
+    void process_SameZone_TouchesAndCompletesEmpty() {
+        VehicleState prev = new VehicleState("V001", "bellandur", 500L);
+        prev.setZones(new int[]{zoneService.currentIndex().key("bellandur")});
+        when(stateService.getState("V001")).thenReturn(Mono.just(prev));
+        when(stateService.touch(prev)).thenReturn(Mono.empty());
+
+        ZoneTransitionEvent result = geofenceService.process(event(12.9350, 77.6650)).block();
+
+        assertThat(result).isNull();
+        assertThat(prev.getLastUpdated()).isEqualTo(1000L);
+        verify(stateService, never()).saveState(any(), any());
+    }
+
+    @Test
+    void process_NothingRunsUntilSubscribed() {
+        Mono<ZoneTransitionEvent> pending = geofenceService.process(event(12.9350, 77.6650));
+
+        assertThat(pending).isNotNull();
+        verifyNoInteractions(stateService);
+        assertThat(meterRegistry.get("geofence.process").timer().count()).isZero();
+    }
+
+    @Test
+    void process_WriteFails_PropagatesError() {
+        when(stateService.getState("V001")).thenReturn(Mono.empty());
+        when(stateService.saveState(any(VehicleState.class), any()))
+                .thenReturn(Mono.error(new IllegalStateException("redis down")));
+
+        assertThatThrownBy(() -> geofenceService.process(event(12.9350, 77.6650)).block())
+                .hasMessageContaining("redis down");
+    }
+
+    private static LocationEvent event(double lat, double lon) {
+        return new LocationEvent("V001", lat, lon, 1000L);
+    }
+}
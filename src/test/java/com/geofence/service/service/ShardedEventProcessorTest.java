@@ -0,0 +1,182 @@
+package com.geofence.service.service;
+
+import com.geofence.service.exception.IngestionOverloadedException;
+import com.geofence.service.metrics.GeofenceMetrics;
+import com.geofence.service.model.LocationEvent;
+import com.geofence.service.model.ZoneTransitionEvent;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyList;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+
+class ShardedEventProcessorTest {
+
+    private final GeofenceService geofenceService = mock(GeofenceService.class);
+    private final SimpleMeterRegistry meterRegistry = new SimpleMeterRegistry();
+    private final GeofenceMetrics metrics = new GeofenceMetrics(meterRegistry, 100);
+    private final ExecutorService callers = Executors.newCachedThreadPool();
+    private ShardedEventProcessor processor;
+
+    @AfterEach
+    void tearDown() throws InterruptedException {
+        callers.shutdownNow();
+        processor.stop();
+    }
+
+    @Test
+    void process_SameVehicleAlwaysRunsOnOneWorkerInOrder() throws Exception {
+        processor = start(4, 1024);
+        Map<String, List<String>> seen = new ConcurrentHashMap<>();
+        when(geofenceService.process(any(LocationEvent.class))).thenAnswer(invocation -> {
+            LocationEvent event = invocation.getArgument(0);
+            seen.computeIfAbsent(event.getVehicleId(), id -> new ArrayList<>())
+                    .add(Thread.currentThread().getName() + "@" + event.getTimestamp());
+            return null;
+        });
+
+        for (long ts = 1; ts <= 50; ts++) {
+            for (String vehicleId : List.of("V001", "V002", "V003", "V004", "V005")) {
+                processor.process(new LocationEvent(vehicleId, 12.9, 77.6, ts));
+            }
+        }
+
+        assertThat(seen).hasSize(5);
+        for (List<String> calls : seen.values()) {
+            String worker = calls.get(0).substring(0, calls.get(0).indexOf('@'));
+            assertThat(worker).startsWith("geofence-shard-");
+            for (int i = 0; i < calls.size(); i++) {
+                assertThat(calls.get(i)).isEqualTo(worker + "@" + (i + 1));
+            }
+        }
+    }
+
+    @Test
+    void process_ShardFull_Rejects() throws Exception {
+        processor = start(1, 1);
+        CountDownLatch started = new CountDownLatch(1);
+        CountDownLatch release = new CountDownLatch(1);
+        when(geofenceService.process(any(LocationEvent.class))).thenAnswer(invocation -> {
+            started.countDown();
+            release.await();
+            return new ZoneTransitionEvent("V001", null, "bellandur", 1L);
+        });
+
+        // First event occupies the worker, second fills the single queue slot
+        Future<ZoneTransitionEvent> running = callers.submit(() -> processor.process(event("V001")));
+        assertThat(started.await(5, TimeUnit.SECONDS)).isTrue();
+        Future<ZoneTransitionEvent> queued = callers.submit(() -> processor.process(event("V002")));
+        waitForQueuedTask();
+
+        assertThatThrownBy(() -> processor.process(event("V003")))
+                .isInstanceOf(IngestionOverloadedException.class);
+        assertThat(meterRegistry.get("geofence.ingest.rejected").counter().count()).isEqualTo(1.0);
+
+        release.countDown();
+        assertThat(running.get(5, TimeUnit.SECONDS).getToZone()).isEqualTo("bellandur");
+        assertThat(queued.get(5, TimeUnit.SECONDS)).isNotNull();
+    }
+
+    @Test
+    void processBatch_MergesShardResultsInInputOrder() {
+        processor = start(4, 16);
+        when(geofenceService.processBatchAligned(anyList())).thenAnswer(invocation -> {
+            List<LocationEvent> part = invocation.getArgument(0);
+            ZoneTransitionEvent[] result = new ZoneTransitionEvent[part.size()];
+            for (int i = 0; i < part.size(); i++) {
+                LocationEvent event = part.get(i);
+                // Odd timestamps cause a transition
+                if (event.getTimestamp() % 2 == 1) {
+                    result[i] = new ZoneTransitionEvent(event.getVehicleId(), null, "z", event.getTimestamp());
+                }
+            }
+            return result;
+        });
+
+        List<LocationEvent> events = new ArrayList<>();
+        for (int i = 1; i <= 40; i++) {
+            events.add(new LocationEvent("V" + (i % 7), 12.9, 77.6, i));
+        }
+
+        List<ZoneTransitionEvent> transitions = processor.processBatch(events);
+
+        assertThat(transitions).extracting(ZoneTransitionEvent::getTimestamp)
+                .containsExactly(1L, 3L, 5L, 7L, 9L, 11L, 13L, 15L, 17L, 19L,
+                        21L, 23L, 25L, 27L, 29L, 31L, 33L, 35L, 37L, 39L);
+    }
+
+    @Test
+    void stop_RacingCallers_EveryCallReturnsOrFails() throws Exception {
+        for (int round = 0; round < 20; round++) {
+            processor = start(1, 1024);
+            List<Future<?>> loops = new ArrayList<>();
+            CountDownLatch running = new CountDownLatch(16);
+            for (int i = 0; i < 16; i++) {
+                String vehicleId = "V" + i;
+                loops.add(callers.submit(() -> {
+                    running.countDown();
+                    try {
+                        while (true) {
+                            processor.process(event(vehicleId));
+                        }
+                    } catch (IngestionOverloadedException e) {
+                        return null;
+                    }
+                }));
+            }
+            assertThat(running.await(5, TimeUnit.SECONDS)).isTrue();
+
+            processor.stop();
+
+            for (Future<?> loop : loops) {
+                loop.get(5, TimeUnit.SECONDS);
+            }
+        }
+    }
+
+    @Test
+    void syncMode_HasNoShards() {
+        processor = new ShardedEventProcessor(geofenceService, metrics, "sync", 4, 16, Duration.ZERO);
+        processor.start();
+
+        assertThat(processor.isEnabled()).isFalse();
+        assertThatThrownBy(() -> processor.process(event("V001"))).isInstanceOf(IllegalStateException.class);
+    }
+
+    private ShardedEventProcessor start(int shards, int capacity) {
+        ShardedEventProcessor started = new ShardedEventProcessor(
+                geofenceService, metrics, "sharded", shards, capacity, Duration.ZERO);
+        started.start();
+        return started;
+    }
+
+    private void waitForQueuedTask() throws InterruptedException {
+        long deadline = System.nanoTime() + TimeUnit.SECONDS.toNanos(5);
+        while (meterRegistry.get("geofence.ingest.queue.size").gauge().value() < 1) {
+            if (System.nanoTime() > deadline) {
+                throw new AssertionError("Task was not queued");
+            }
+            Thread.sleep(5);
+        }
+    }
+
+    private static LocationEvent event(String vehicleId) {
+        return new LocationEvent(vehicleId, 12.9, 77.6, 1L);
+    }
+}
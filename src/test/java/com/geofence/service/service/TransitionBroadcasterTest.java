@@ -0,0 +1,176 @@
+package com.geofence.service.service;
+
+import com.geofence.service.exception.InvalidSubscriptionException;
+import com.geofence.service.exception.SubscriptionLimitException;
+import com.geofence.service.metrics.GeofenceMetrics;
+import com.geofence.service.model.ZoneTransitionEvent;
+import com.geofence.service.service.TransitionBroadcaster.OverflowPolicy;
+import com.geofence.service.service.TransitionBroadcaster.Subscription;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+
+import java.io.IOException;
+import java.time.Duration;
+import java.util.List;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.TimeUnit;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+class TransitionBroadcasterTest {
+
+    private final SimpleMeterRegistry meterRegistry = new SimpleMeterRegistry();
+    private final GeofenceMetrics metrics = new GeofenceMetrics(meterRegistry, 100);
+    private TransitionBroadcaster broadcaster;
+
+    @AfterEach
+    void tearDown() {
+        if (broadcaster != null) {
+            broadcaster.shutdown();
+        }
+    }
+
+    @Test
+    void publish_DeliversOnlyMatchingTransitions() throws Exception {
+        broadcaster = start(2, 16);
+        RecordingSink byZone = new RecordingSink();
+        RecordingSink byVehicle = new RecordingSink();
+        broadcaster.subscribe("mg_road", null, null, byZone);
+        broadcaster.subscribe(null, "V002", null, byVehicle);
+
+        broadcaster.publish(transition("V001", null, "bellandur", 1));
+        broadcaster.publish(transition("V001", "bellandur", "mg_road", 2));
+        broadcaster.publish(new ZoneTransitionEvent("V002", "airport", "airport", 3,
+                List.of("mg_road"), List.of()));
+
+        assertThat(byZone.next().getTimestamp()).isEqualTo(2L);
+        assertThat(byZone.next().getTimestamp()).isEqualTo(3L);
+        assertThat(byVehicle.next().getTimestamp()).isEqualTo(3L);
+        assertThat(byZone.events.poll(100, TimeUnit.MILLISECONDS)).isNull();
+    }
+
+    @Test
+    void publish_SlowSubscriber_DropsOldestWithoutBlocking() throws Exception {
+        broadcaster = start(1, 2);
+        RecordingSink sink = new RecordingSink();
+        sink.blockSends();
+        broadcaster.subscribe(null, null, OverflowPolicy.DROP_OLDEST, sink);
+
+        // The first transition is taken by the sender, which then blocks on the connection
+        broadcaster.publish(transition("V001", null, "a", 1));
+        assertThat(sink.sending.await(5, TimeUnit.SECONDS)).isTrue();
+        for (int ts = 2; ts <= 6; ts++) {
+            broadcaster.publish(transition("V001", null, "a", ts));
+        }
+        sink.release.countDown();
+
+        assertThat(sink.next().getTimestamp()).isEqualTo(1L);
+        assertThat(sink.drops.poll(5, TimeUnit.SECONDS)).isEqualTo(3L);
+        assertThat(sink.next().getTimestamp()).isEqualTo(5L);
+        assertThat(sink.next().getTimestamp()).isEqualTo(6L);
+        assertThat(meterRegistry.get("geofence.transitions.subscriber.dropped").counter().count()).isEqualTo(3.0);
+    }
+
+    @Test
+    void publish_DisconnectPolicy_ClosesOverflowingSubscriber() throws Exception {
+        broadcaster = start(1, 1);
+        RecordingSink sink = new RecordingSink();
+        sink.blockSends();
+        broadcaster.subscribe(null, null, OverflowPolicy.DISCONNECT, sink);
+
+        broadcaster.publish(transition("V001", null, "a", 1));
+        assertThat(sink.sending.await(5, TimeUnit.SECONDS)).isTrue();
+        broadcaster.publish(transition("V001", null, "a", 2));
+        broadcaster.publish(transition("V001", null, "a", 3));
+
+        assertThat(broadcaster.subscriberCount()).isZero();
+        sink.release.countDown();
+        assertThat(sink.closed.await(5, TimeUnit.SECONDS)).isTrue();
+        assertThat(sink.overflowed).isTrue();
+    }
+
+    @Test
+    void subscribe_LimitReached_Rejects() {
+        broadcaster = start(1, 4);
+        Subscription first = broadcaster.subscribe(null, null, null, new RecordingSink());
+
+        assertThatThrownBy(() -> broadcaster.subscribe(null, null, null, new RecordingSink()))
+                .isInstanceOf(SubscriptionLimitException.class);
+
+        first.close();
+        broadcaster.subscribe(null, null, null, new RecordingSink());
+        assertThat(broadcaster.subscriberCount()).isEqualTo(1);
+    }
+
+    @Test
+    void overflowPolicy_ParsesConfigNames() {
+        assertThat(OverflowPolicy.from("drop-newest")).isEqualTo(OverflowPolicy.DROP_NEWEST);
+        assertThatThrownBy(() -> OverflowPolicy.from("block")).isInstanceOf(InvalidSubscriptionException.class);
+    }
+
+    private TransitionBroadcaster start(int maxSubscribers, int bufferSize) {
+        TransitionBroadcaster started = new TransitionBroadcaster(
+                metrics, maxSubscribers, bufferSize, "drop-oldest", Duration.ofSeconds(30));
+        started.registerMetrics();
+        return started;
+    }
+
+    private static ZoneTransitionEvent transition(String vehicleId, String from, String to, long timestamp) {
+        return new ZoneTransitionEvent(vehicleId, from, to, timestamp);
+    }
+
+    private static final class RecordingSink implements TransitionBroadcaster.Sink {
+
+        private final BlockingQueue<ZoneTransitionEvent> events = new LinkedBlockingQueue<>();
+        private final BlockingQueue<Long> drops = new LinkedBlockingQueue<>();
+        private final CountDownLatch sending = new CountDownLatch(1);
+        private final CountDownLatch release = new CountDownLatch(1);
+        private final CountDownLatch closed = new CountDownLatch(1);
+        private volatile boolean blocking;
+        private volatile boolean overflowed;
+
+        void blockSends() {
+            blocking = true;
+        }
+
+        ZoneTransitionEvent next() throws InterruptedException {
+            ZoneTransitionEvent event = events.poll(5, TimeUnit.SECONDS);
+            assertThat(event).isNotNull();
+            return event;
+        }
+
+        @Override
+        public void send(ZoneTransitionEvent transition) throws IOException {
+            if (blocking) {
+                sending.countDown();
+                try {
+                    release.await();
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                    throw new IOException("interrupted");
+                }
+                blocking = false;
+            }
+            events.add(transition);
+        }
+
+        @Override
+        public void dropped(long count) {
+            drops.add(count);
+        }
+
+        @Override
+        public void heartbeat() {
+        }
+
+        @Override
+        public void close(boolean overflowed) {
+            this.overflowed = overflowed;
+            closed.countDown();
+        }
+    }
+}
@@ -0,0 +1,196 @@
+package com.geofence.service.service;
+
+import com.geofence.service.metrics.GeofenceMetrics;
+import com.geofence.service.model.LoggedTransition;
+import com.geofence.service.model.TransitionPage;
+import com.geofence.service.model.ZoneTransitionEvent;
+import com.geofence.service.repository.TransitionLogStore;
+import com.geofence.service.repository.TransitionLogStore.Scan;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.ArgumentCaptor;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+import org.springframework.data.redis.RedisConnectionFailureException;
+import org.springframework.data.redis.connection.stream.ReadOffset;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyInt;
+import static org.mockito.ArgumentMatchers.anyString;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.doAnswer;
+import static org.mockito.Mockito.timeout;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.verifyNoInteractions;
+import static org.mockito.Mockito.when;
+
+@ExtendWith(MockitoExtension.class)
+class TransitionLogServiceTest {
+
+    @Mock
+    private TransitionLogStore store;
+
+    private final SimpleMeterRegistry meterRegistry = new SimpleMeterRegistry();
+    private final GeofenceMetrics metrics = new GeofenceMetrics(meterRegistry, 100);
+    private TransitionLogService transitionLog;
+
+    @AfterEach
+    void tearDown() throws InterruptedException {
+        if (transitionLog != null) {
+            transitionLog.stop();
+        }
+    }
+
+    @Test
+    void append_WritesBufferedTransitionsInBatches() throws Exception {
+        CountDownLatch firstWrite = new CountDownLatch(1);
+        CountDownLatch release = new CountDownLatch(1);
+        List<Integer> batchSizes = new ArrayList<>();
+        doAnswer(invocation -> {
+            batchSizes.add(invocation.<Collection<?>>getArgument(0).size());
+            firstWrite.countDown();
+            release.await(5, TimeUnit.SECONDS);
+            return null;
+        }).when(store).appendAll(any());
+        transitionLog = new TransitionLogService(store, metrics, true, 100, 3);
+        transitionLog.start();
+
+        transitionLog.append(transition("V001", 1));
+        assertThat(firstWrite.await(5, TimeUnit.SECONDS)).isTrue();
+        // Accumulate while the first write is in flight
+        for (int i = 2; i <= 6; i++) {
+            transitionLog.append(transition("V001", i));
+        }
+        release.countDown();
+        transitionLog.stop();
+
+        assertThat(batchSizes).containsExactly(1, 3, 2);
+        assertThat(meterRegistry.get("geofence.transitions.log.appended").counter().count()).isEqualTo(6);
+        assertThat(meterRegistry.get("geofence.transitions.log.write").timer().count()).isEqualTo(3);
+    }
+
+    @Test
+    void append_BufferFull_DropsAndCounts() {
+        transitionLog = new TransitionLogService(store, metrics, true, 2, 10);
+        // Writer not started, so nothing drains the buffer
+
+        for (int i = 0; i < 5; i++) {
+            transitionLog.append(transition("V001", i));
+        }
+
+        assertThat(meterRegistry.get("geofence.transitions.log.dropped").counter().count()).isEqualTo(3);
+    }
+
+    @Test
+    void append_RedisDown_RetriesTheBatch() {
+        doAnswer(invocation -> {
+            throw new RedisConnectionFailureException("down");
+        }).doAnswer(invocation -> null).when(store).appendAll(any());
+        transitionLog = new TransitionLogService(store, metrics, true, 100, 10);
+        transitionLog.start();
+
+        transitionLog.append(transition("V001", 1));
+
+        verify(store, timeout(5000).times(2)).appendAll(any());
+    }
+
+    @Test
+    void append_Disabled_DoesNothing() {
+        transitionLog = new TransitionLogService(store, metrics, false, 1, 1);
+        transitionLog.start();
+
+        transitionLog.append(transition("V001", 1));
+
+        verifyNoInteractions(store);
+    }
+
+    @Test
+    void query_Unfiltered_ReturnsPageWithCursorAfterLastEntry() {
+        when(store.scan("1000", "+", 2, null)).thenReturn(new Scan(
+                List.of(logged("1000-0", "V001"), logged("1000-1", "V002")), "1000-1", 2));
+        transitionLog = new TransitionLogService(store, metrics, false, 1, 1);
+
+        TransitionPage page = transitionLog.query(null, 1000L, null, null, 2);
+
+        assertThat(page.getTransitions()).extracting(LoggedTransition::getId).containsExactly("1000-0", "1000-1");
+        assertThat(page.getNextCursor()).isEqualTo("1000-1");
+    }
+
+    @Test
+    void query_Cursor_StartsAfterIt() {
+        when(store.scan("1000-2", "2000", 2, null)).thenReturn(new Scan(
+                List.of(logged("1500-0", "V001")), "1500-0", 1));
+        transitionLog = new TransitionLogService(store, metrics, false, 1, 1);
+
+        TransitionPage page = transitionLog.query(null, 0L, 2000L, "1000-1", 2);
+
+        assertThat(page.getTransitions()).hasSize(1);
+        assertThat(page.getNextCursor()).isNull();
+    }
+
+    @Test
+    void query_VehicleFilter_ScansAheadUntilThePageIsFull() {
+        when(store.scan("-", "+", 256, "V001"))
+                .thenReturn(new Scan(List.of(logged("1-0", "V001")), "9-0", 256));
+        when(store.scan("9-1", "+", 256, "V001"))
+                .thenReturn(new Scan(List.of(logged("10-0", "V001"), logged("11-0", "V001")), "20-0", 256));
+        transitionLog = new TransitionLogService(store, metrics, false, 1, 1);
+
+        TransitionPage page = transitionLog.query("V001", null, null, null, 2);
+
+        assertThat(page.getTransitions()).extracting(LoggedTransition::getId).containsExactly("1-0", "10-0");
+        assertThat(page.getNextCursor()).isEqualTo("10-0");
+    }
+
+    @Test
+    void query_VehicleFilter_StopsAtScanCapWithCursor() {
+        AtomicLong lastMillis = new AtomicLong();
+        when(store.scan(anyString(), eq("+"), anyInt(), eq("V404")))
+                .thenAnswer(invocation -> new Scan(List.of(), lastMillis.incrementAndGet() + "-0", 256));
+        transitionLog = new TransitionLogService(store, metrics, false, 1, 1);
+
+        TransitionPage page = transitionLog.query("V404", null, null, null, 10);
+
+        assertThat(page.getTransitions()).isEmpty();
+        assertThat(page.getNextCursor()).isNotNull();
+        int scans = (TransitionLogService.MAX_SCAN + 255) / 256;
+        verify(store, times(scans)).scan(anyString(), eq("+"), anyInt(), eq("V404"));
+    }
+
+    @Test
+    void successor_IncrementsSequenceAndRollsOverToNextMillisecond() {
+        assertThat(TransitionLogService.successor("1700000000000-0")).isEqualTo("1700000000000-1");
+        assertThat(TransitionLogService.successor("1700000000000-18446744073709551615"))
+                .isEqualTo("1700000000001-0");
+    }
+
+    @Test
+    void createGroup_FromTime_DeliversEntriesLoggedAtOrAfterIt() {
+        transitionLog = new TransitionLogService(store, metrics, false, 1, 1);
+
+        transitionLog.createGroup("billing", "1700000000000");
+
+        ArgumentCaptor<ReadOffset> offset = ArgumentCaptor.forClass(ReadOffset.class);
+        verify(store).createGroup(eq("billing"), offset.capture());
+        assertThat(offset.getValue().getOffset()).isEqualTo("1699999999999-18446744073709551615");
+    }
+
+    private static ZoneTransitionEvent transition(String vehicleId, long timestamp) {
+        return new ZoneTransitionEvent(vehicleId, null, "bellandur", timestamp);
+    }
+
+    private static LoggedTransition logged(String id, String vehicleId) {
+        return new LoggedTransition(id, transition(vehicleId, 1));
+    }
+}
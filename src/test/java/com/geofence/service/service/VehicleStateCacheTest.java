@@ -0,0 +1,156 @@
+package com.geofence.service.service;
+
+import com.geofence.service.model.VehicleState;
+import org.junit.jupiter.api.Test;
+
+import java.time.Duration;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+class VehicleStateCacheTest {
+
+    private VehicleStateCache newCache(int maxSize, Duration ttl) {
+        return new VehicleStateCache(true, maxSize, ttl, Duration.ofSeconds(1));
+    }
+
+    @Test
+    void coalesce_SameZone_MarksDirty() {
+        VehicleStateCache cache = newCache(1000, Duration.ofMinutes(5));
+        cache.putClean(new VehicleState("V001", "bellandur", 1000L));
+
+        assertThat(cache.coalesce(new VehicleState("V001", "bellandur", 2000L))).isTrue();
+        assertThat(cache.coalesce(new VehicleState("V001", "mg_road", 3000L))).isFalse();
+
+        assertThat(cache.get("V001")).isEqualTo(new VehicleState("V001", "bellandur", 2000L));
+        assertThat(cache.drainDirty()).containsExactly(new VehicleState("V001", "bellandur", 2000L));
+        assertThat(cache.drainDirty()).isEmpty();
+    }
+
+    @Test
+    void coalesce_OlderTimestamp_KeepsNewerOne() {
+        VehicleStateCache cache = newCache(1000, Duration.ofMinutes(5));
+        cache.putClean(new VehicleState("V001", "bellandur", 1000L));
+
+        assertThat(cache.coalesce(new VehicleState("V001", "bellandur", 3000L))).isTrue();
+        assertThat(cache.coalesce(new VehicleState("V001", "bellandur", 2000L))).isTrue();
+
+        assertThat(cache.drainDirty()).containsExactly(new VehicleState("V001", "bellandur", 3000L));
+    }
+
+    @Test
+    void coalesce_ConcurrentPingsOnSameEntry_KeepLatestTimestamp() throws Exception {
+        VehicleStateCache cache = newCache(10_000, Duration.ofMinutes(5));
+        int vehicles = 2000;
+        for (int i = 0; i < vehicles; i++) {
+            cache.putClean(new VehicleState("V" + i, "bellandur", 0L));
+        }
+
+        // Both pings read the entry at 0; whichever coalesces last must not win if it is older
+        ExecutorService executor = Executors.newFixedThreadPool(2);
+        try {
+            CountDownLatch start = new CountDownLatch(1);
+            Future<?> late = executor.submit(() -> coalesceAll(cache, start, vehicles, 2000L));
+            Future<?> early = executor.submit(() -> coalesceAll(cache, start, vehicles, 1000L));
+            start.countDown();
+            late.get();
+            early.get();
+        } finally {
+            executor.shutdownNow();
+        }
+
+        assertThat(cache.drainDirty()).hasSize(vehicles).allMatch(state -> state.getLastUpdated() == 2000L);
+    }
+
+    private static Void coalesceAll(VehicleStateCache cache, CountDownLatch start, int vehicles, long timestamp)
+            throws InterruptedException {
+        start.await();
+        for (int i = 0; i < vehicles; i++) {
+            cache.coalesce(new VehicleState("V" + i, "bellandur", timestamp));
+        }
+        return null;
+    }
+
+    @Test
+    void coalesce_EvictedDirtyEntry_KeepsNewerTimestamp() {
+        // 16 segments of one entry each, so the other vehicles push V0 out
+        VehicleStateCache cache = newCache(16, Duration.ofMinutes(5));
+        cache.putClean(new VehicleState("V0", "bellandur", 1000L));
+        cache.coalesce(new VehicleState("V0", "bellandur", 3000L));
+        for (int i = 1; i < 200; i++) {
+            cache.putClean(new VehicleState("V" + i, "bellandur", 1L));
+        }
+
+        assertThat(cache.coalesce(new VehicleState("V0", "bellandur", 2000L))).isTrue();
+
+        assertThat(cache.drainDirty()).containsExactly(new VehicleState("V0", "bellandur", 3000L));
+    }
+
+    @Test
+    void putClean_OlderThanPendingUpdate_KeepsPendingUpdate() {
+        VehicleStateCache cache = newCache(1000, Duration.ofMinutes(5));
+        cache.putClean(new VehicleState("V001", "bellandur", 1000L));
+        cache.coalesce(new VehicleState("V001", "bellandur", 3000L));
+
+        // Written through by an event that read the state before the coalesced ping
+        cache.putClean(new VehicleState("V001", "mg_road", 2000L));
+
+        assertThat(cache.get("V001")).isEqualTo(new VehicleState("V001", "bellandur", 3000L));
+        assertThat(cache.drainDirty()).containsExactly(new VehicleState("V001", "bellandur", 3000L));
+    }
+
+    @Test
+    void putClean_NewerThanCachedEntry_ReplacesIt() {
+        VehicleStateCache cache = newCache(1000, Duration.ofMinutes(5));
+        cache.putClean(new VehicleState("V001", "bellandur", 1000L));
+        cache.coalesce(new VehicleState("V001", "bellandur", 2000L));
+
+        cache.putClean(new VehicleState("V001", "mg_road", 3000L));
+
+        assertThat(cache.get("V001")).isEqualTo(new VehicleState("V001", "mg_road", 3000L));
+        assertThat(cache.drainDirty()).isEmpty();
+    }
+
+    @Test
+    void coalesce_UnknownVehicle_RequiresWriteThrough() {
+        VehicleStateCache cache = newCache(1000, Duration.ofMinutes(5));
+        assertThat(cache.coalesce(new VehicleState("V001", null, 1000L))).isFalse();
+        assertThat(cache.get("V001")).isNull();
+    }
+
+    @Test
+    void get_ReturnsCopy() {
+        VehicleStateCache cache = newCache(1000, Duration.ofMinutes(5));
+        cache.putClean(new VehicleState("V001", "bellandur", 1000L));
+
+        cache.get("V001").setLastUpdated(9999L);
+        assertThat(cache.get("V001").getLastUpdated()).isEqualTo(1000L);
+    }
+
+    @Test
+    void eviction_KeepsDirtyStatesForNextFlush() {
+        // 16 segments of one entry each
+        VehicleStateCache cache = newCache(16, Duration.ofMinutes(5));
+        for (int i = 0; i < 200; i++) {
+            String vehicleId = "V" + i;
+            cache.putClean(new VehicleState(vehicleId, "bellandur", 1L));
+            cache.coalesce(new VehicleState(vehicleId, "bellandur", 2L));
+        }
+        assertThat(cache.size()).isLessThanOrEqualTo(16);
+
+        List<VehicleState> dirty = cache.drainDirty();
+        assertThat(dirty).hasSize(200).allMatch(state -> state.getLastUpdated() == 2L);
+    }
+
+    @Test
+    void expiry_DropsCleanEntries() throws InterruptedException {
+        VehicleStateCache cache = newCache(1000, Duration.ofMillis(1));
+        cache.putClean(new VehicleState("V001", "bellandur", 1000L));
+        Thread.sleep(5);
+        assertThat(cache.get("V001")).isNull();
+    }
+}
@@ -0,0 +1,141 @@
+package com.geofence.service.service;
+
+import com.geofence.service.exception.StaleVehicleStateException;
+import com.geofence.service.metrics.GeofenceMetrics;
+import com.geofence.service.model.VehicleState;
+import com.geofence.service.model.ZoneMembershipChange;
+import com.geofence.service.model.ZoneTransitionEvent;
+import com.geofence.service.repository.VehicleStateStore;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+
+import java.time.Duration;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyCollection;
+import static org.mockito.Mockito.*;
+
+@ExtendWith(MockitoExtension.class)
+class VehicleStateServiceTest {
+
+    @Mock
+    private VehicleStateStore store;
+
+    private final SimpleMeterRegistry meterRegistry = new SimpleMeterRegistry();
+
+    private VehicleStateService newService(boolean cacheEnabled) {
+        return new VehicleStateService(store,
+                new VehicleStateCache(cacheEnabled, 1000, Duration.ofMinutes(5), Duration.ofSeconds(1)),
+                new GeofenceMetrics(meterRegistry, 100));
+    }
+
+    @Test
+    void touch_CacheDisabled_DelegatesToStore() {
+        VehicleStateService stateService = newService(false);
+        VehicleState state = new VehicleState("V001", "bellandur", 2000L);
+
+        stateService.touch(state);
+
+        verify(store).touch(state);
+        verify(store, never()).save(any(), any());
+    }
+
+    @Test
+    void saveState_CacheEnabled_CoalescesSameZoneUntilFlush() {
+        VehicleStateService stateService = newService(true);
+
+        stateService.saveState(new VehicleState("V001", "bellandur", 1000L));
+        stateService.touch(new VehicleState("V001", "bellandur", 2000L));
+        stateService.touch(new VehicleState("V001", "bellandur", 3000L));
+
+        // Only the first save (unknown vehicle) is written through
+        verify(store, times(1)).save(any(), any());
+        verify(store, never()).touch(any());
+        assertThat(stateService.getState("V001").getLastUpdated()).isEqualTo(3000L);
+        verify(store, never()).get(any());
+
+        stateService.flush();
+        verify(store).touchAll(List.of(new VehicleState("V001", "bellandur", 3000L)));
+
+        // A zone change is written through right away
+        stateService.saveState(new VehicleState("V001", "mg_road", 4000L));
+        verify(store).save(new VehicleState("V001", "mg_road", 4000L), null);
+    }
+
+    @Test
+    void saveState_MembershipChange_IsWrittenThroughEvenForSameZone() {
+        VehicleStateService stateService = newService(true);
+        stateService.saveState(new VehicleState("V001", "bellandur", 1000L));
+        ZoneMembershipChange change = ZoneMembershipChange.of(new ZoneTransitionEvent(
+                "V001", "bellandur", "bellandur", 2000L, List.of("hsr_layout"), List.of()));
+
+        stateService.saveState(new VehicleState("V001", "bellandur", 2000L), change);
+
+        verify(store).save(new VehicleState("V001", "bellandur", 2000L), change);
+    }
+
+    @Test
+    void getStates_CacheEnabled_OnlyLoadsMisses() {
+        VehicleStateService stateService = newService(true);
+        stateService.saveState(new VehicleState("V001", "bellandur", 1000L));
+        when(store.getAll(anyCollection())).thenReturn(Map.of("V002", new VehicleState("V002", "mg_road", 500L)));
+
+        Map<String, VehicleState> states = stateService.getStates(List.of("V001", "V002", "V003"));
+
+        assertThat(states).containsOnlyKeys("V001", "V002");
+        verify(store).getAll(List.of("V002", "V003"));
+        assertThat(meterRegistry.get("geofence.state.cache.requests").tag("result", "hit").counter().count())
+                .isEqualTo(1.0);
+        assertThat(meterRegistry.get("geofence.state.cache.requests").tag("result", "miss").counter().count())
+                .isEqualTo(2.0);
+    }
+
+    @Test
+    void saveState_StaleInRedis_DropsCachedStateAndRethrows() {
+        VehicleStateService stateService = newService(true);
+        stateService.saveState(new VehicleState("V001", "bellandur", 1000L));
+        VehicleState state = new VehicleState("V001", "mg_road", 2000L);
+        doThrow(new StaleVehicleStateException(Set.of("V001"))).when(store).save(state, null);
+        when(store.get("V001")).thenReturn(new VehicleState("V001", "hsr_layout", 3000L));
+
+        assertThatThrownBy(() -> stateService.saveState(state))
+                .isInstanceOf(StaleVehicleStateException.class);
+
+        assertThat(stateService.getState("V001")).isEqualTo(new VehicleState("V001", "hsr_layout", 3000L));
+    }
+
+    @Test
+    void flush_StaleStates_AreDroppedNotRequeued() {
+        VehicleStateService stateService = newService(true);
+        stateService.saveState(new VehicleState("V001", "bellandur", 1000L));
+        stateService.touch(new VehicleState("V001", "bellandur", 2000L));
+        doThrow(new StaleVehicleStateException(Set.of("V001"))).when(store).touchAll(anyCollection());
+
+        stateService.flush();
+        stateService.flush();
+
+        verify(store, times(1)).touchAll(anyCollection());
+        assertThat(stateService.getState("V001")).isNull();
+    }
+
+    @Test
+    void flush_Failure_RequeuesDirtyStates() {
+        VehicleStateService stateService = newService(true);
+        stateService.saveState(new VehicleState("V001", "bellandur", 1000L));
+        stateService.touch(new VehicleState("V001", "bellandur", 2000L));
+        doThrow(new IllegalStateException("Redis down")).doNothing().when(store).touchAll(anyCollection());
+
+        stateService.flush();
+        stateService.flush();
+
+        verify(store, times(2)).touchAll(List.of(new VehicleState("V001", "bellandur", 2000L)));
+    }
+}
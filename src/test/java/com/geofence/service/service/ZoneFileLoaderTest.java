@@ -0,0 +1,258 @@
+package com.geofence.service.service;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.geofence.service.dto.ZoneDTO;
+import com.geofence.service.exception.ResourceConflictException;
+import com.geofence.service.geo.ZoneIndex;
+import com.geofence.service.repository.InMemoryZoneStore;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import org.locationtech.jts.geom.Coordinate;
+import org.locationtech.jts.geom.GeometryFactory;
+import org.locationtech.jts.io.WKBWriter;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+class ZoneFileLoaderTest {
+
+    private static final String SQUARE = "[[[77.74,12.96],[77.76,12.96],[77.76,12.98],[77.74,12.98],[77.74,12.96]]]";
+    private static final String FAR_SQUARE = "[[[77.80,12.96],[77.82,12.96],[77.82,12.98],[77.80,12.98],[77.80,12.96]]]";
+
+    @TempDir
+    private Path dir;
+
+    @Test
+    void load_GeoJson_IndexesPolygonsInFileOrder() throws IOException {
+        Path file = write("zones.geojson", featureCollection(
+                feature("{\"ward\": \"whitefield\"}", "Polygon", SQUARE),
+                // No ward property: falls back to the feature id
+                "{\"type\":\"Feature\",\"id\":\"varthur\",\"properties\":{},"
+                        + "\"geometry\":{\"type\":\"Polygon\",\"coordinates\":" + FAR_SQUARE + "}}"));
+
+        ZoneFileLoader.LoadedZones loaded = loader(file, 0).load();
+
+        ZoneIndex index = loaded.index();
+        assertThat(index.size()).isEqualTo(2);
+        assertThat(index.detect(12.97, 77.75)).isEqualTo("whitefield");
+        assertThat(index.detect(12.97, 77.81)).isEqualTo("varthur");
+        assertThat(index.key("whitefield")).isEqualTo(1);
+        assertThat(index.key("varthur")).isEqualTo(2);
+        assertThat(loaded.report().features()).isEqualTo(2);
+        assertThat(loaded.report().verticesKept()).isEqualTo(10);
+        assertThat(loaded.report().indexBytes()).isPositive();
+    }
+
+    @Test
+    void load_NewVersionOfFile_KeepsKeysOfKnownZones() throws IOException {
+        String middle = "[[[77.77,12.96],[77.79,12.96],[77.79,12.98],[77.77,12.98],[77.77,12.96]]]";
+        Path file = write("zones.geojson", featureCollection(
+                feature("{\"ward\": \"whitefield\"}", "Polygon", SQUARE),
+                feature("{\"ward\": \"varthur\"}", "Polygon", FAR_SQUARE)));
+        loader(file, 0).load();
+
+        // Whitefield removed, a new ward inserted before Varthur
+        write("zones.geojson", featureCollection(
+                feature("{\"ward\": \"kadugodi\"}", "Polygon", middle),
+                feature("{\"ward\": \"varthur\"}", "Polygon", FAR_SQUARE)));
+        ZoneIndex second = loader(file, 0).load().index();
+
+        assertThat(second.key("varthur")).isEqualTo(2);
+        assertThat(second.key("kadugodi")).isEqualTo(3);
+        assertThat(second.zoneIdAt(0)).isEqualTo("varthur");
+
+        // A returning zone gets its old key back, and no key is given out twice
+        write("zones.geojson", featureCollection(
+                feature("{\"ward\": \"hoodi\"}", "Polygon", middle),
+                feature("{\"ward\": \"whitefield\"}", "Polygon", SQUARE)));
+        ZoneIndex third = loader(file, 0).load().index();
+
+        assertThat(third.key("whitefield")).isEqualTo(1);
+        assertThat(third.key("hoodi")).isEqualTo(4);
+        assertThat(Files.readString(ZoneFileLoader.keysFile(file))).contains("\"kadugodi\":3");
+    }
+
+    @Test
+    void load_MultiPolygon_IsOneZoneWithEveryPart() throws IOException {
+        String small = "[[[77.80,12.96],[77.81,12.96],[77.81,12.97],[77.80,12.97],[77.80,12.96]]]";
+        Path file = write("zones.geojson", featureCollection(
+                feature("{\"ward\": \"bellandur\"}", "MultiPolygon", "[" + small + "," + SQUARE + "]")));
+
+        ZoneIndex index = loader(file, 0).load().index();
+
+        assertThat(index.size()).isEqualTo(1);
+        assertThat(index.detect(12.97, 77.75)).isEqualTo("bellandur");
+        assertThat(index.detect(12.965, 77.805)).isEqualTo("bellandur");
+        assertThat(index.detect(12.965, 77.79)).isNull();
+        // The largest part comes first
+        assertThat(index.polygon("bellandur").getRingCount()).isEqualTo(2);
+        assertThat(index.polygon("bellandur").getX(1)).isEqualTo(77.76);
+    }
+
+    @Test
+    void load_PolygonWithEnclave_LeavesHoleOutsideTheZone() throws IOException {
+        // A municipality around an enclave, and the enclave itself
+        String shell = "[77.70,12.90],[77.80,12.90],[77.80,13.00],[77.70,13.00],[77.70,12.90]";
+        String enclave = "[77.74,12.94],[77.76,12.94],[77.76,12.96],[77.74,12.96],[77.74,12.94]";
+        Path file = write("zones.geojson", featureCollection(
+                feature("{\"ward\": \"municipality\"}", "Polygon", "[[" + shell + "],[" + enclave + "]]"),
+                feature("{\"ward\": \"enclave\"}", "Polygon", "[[" + enclave + "]]")));
+
+        ZoneFileLoader.LoadedZones loaded = loader(file, 0).load();
+        ZoneIndex index = loaded.index();
+
+        assertThat(index.detect(12.95, 77.75)).isEqualTo("enclave");
+        assertThat(index.detectAll(12.95, 77.75)).containsExactly(index.key("enclave"));
+        assertThat(index.detect(12.92, 77.72)).isEqualTo("municipality");
+        // The hole's edge is the boundary of both zones
+        assertThat(index.detectAll(12.94, 77.75)).containsExactly(index.key("municipality"), index.key("enclave"));
+        assertThat(loaded.report().holes()).isEqualTo(1);
+        assertThat(loaded.report().verticesKept()).isEqualTo(15);
+    }
+
+    @Test
+    void load_InvalidFeatures_RepairsOrSkipsThem() throws IOException {
+        // Bow tie: self-intersecting, repaired into two triangles
+        String bowTie = "[[[77.74,12.96],[77.76,12.98],[77.76,12.96],[77.74,12.98],[77.74,12.96]]]";
+        String outOfRange = "[[[190,12.96],[191,12.96],[191,12.98],[190,12.98],[190,12.96]]]";
+        String open = "[[[77.74,12.96],[77.76,12.96],[77.76,12.98],[77.74,12.98]]]";
+        Path file = write("zones.geojson", featureCollection(
+                feature("{\"ward\": \"bowtie\"}", "Polygon", bowTie),
+                feature("{\"ward\": \"nowhere\"}", "Polygon", outOfRange),
+                feature("{\"ward\": \"open\"}", "Polygon", open),
+                feature("{\"ward\": \"line\"}", "LineString", "[[77.74,12.96],[77.76,12.96]]"),
+                feature("{\"ward\": \"bowtie\"}", "Polygon", FAR_SQUARE)));
+
+        ZoneFileLoader.LoadedZones loaded = loader(file, 0).load();
+
+        assertThat(loaded.report().features()).isEqualTo(5);
+        assertThat(loaded.report().repaired()).isEqualTo(1);
+        assertThat(loaded.report().skipped()).isEqualTo(4);
+        // Both triangles of the repaired bow tie form one zone; the later duplicate is skipped
+        assertThat(loaded.index().size()).isEqualTo(1);
+        assertThat(loaded.index().polygon("bowtie").getRingCount()).isEqualTo(2);
+        assertThat(loaded.index().detect(12.97, 77.745)).isEqualTo("bowtie");
+        assertThat(loaded.index().detect(12.97, 77.755)).isEqualTo("bowtie");
+        assertThat(loaded.index().detect(12.962, 77.75)).isNull();
+    }
+
+    @Test
+    void load_Simplification_DropsRedundantVerticesAndKeepsHoles() throws IOException {
+        // Nearly collinear midpoints on every edge, and a hole
+        String ring = "[[77.74,12.96],[77.75,12.960000001],[77.76,12.96],[77.76,12.98],[77.74,12.98],[77.74,12.96]]";
+        String hole = "[[77.745,12.965],[77.747,12.965],[77.747,12.967],[77.745,12.967],[77.745,12.965]]";
+        Path file = write("zones.geojson", featureCollection(
+                feature("{\"ward\": \"whitefield\"}", "Polygon", "[" + ring + "," + hole + "]")));
+
+        ZoneFileLoader.LoadedZones loaded = loader(file, 0.00001).load();
+
+        assertThat(loaded.report().verticesRead()).isEqualTo(11);
+        assertThat(loaded.report().verticesKept()).isEqualTo(10);
+        assertThat(loaded.report().holes()).isEqualTo(1);
+        assertThat(loaded.index().detect(12.966, 77.746)).isNull();
+        assertThat(loaded.index().detect(12.97, 77.75)).isEqualTo("whitefield");
+    }
+
+    @Test
+    void load_HexWkb_ReadsOneZonePerLine() throws IOException {
+        GeometryFactory factory = new GeometryFactory();
+        String wkb = WKBWriter.toHex(new WKBWriter().write(factory.createPolygon(new Coordinate[]{
+                new Coordinate(77.74, 12.96), new Coordinate(77.76, 12.96), new Coordinate(77.76, 12.98),
+                new Coordinate(77.74, 12.98), new Coordinate(77.74, 12.96)})));
+        Path file = write("zones.tsv", "whitefield\t" + wkb + "\n\nbroken\tzz\n");
+
+        ZoneFileLoader.LoadedZones loaded = loader(file, 0).load();
+
+        assertThat(loaded.index().size()).isEqualTo(1);
+        assertThat(loaded.index().detect(12.97, 77.75)).isEqualTo("whitefield");
+        assertThat(loaded.report().skipped()).isEqualTo(1);
+    }
+
+    @Test
+    void load_ManyFeatures_KeepsFileOrderAcrossBatches() throws IOException {
+        List<String> features = new ArrayList<>();
+        int count = ZoneFileLoader.BATCH_SIZE * 2 + 10;
+        for (int i = 0; i < count; i++) {
+            double lon = 70 + (i % 100) * 0.1;
+            double lat = 10 + (i / 100) * 0.1;
+            features.add(feature("{\"ward\": \"w" + i + "\"}", "Polygon", String.format(
+                    "[[[%1$.2f,%2$.2f],[%3$.2f,%2$.2f],[%3$.2f,%4$.2f],[%1$.2f,%4$.2f],[%1$.2f,%2$.2f]]]",
+                    lon, lat, lon + 0.05, lat + 0.05)));
+        }
+        Path file = write("zones.geojson", featureCollection(features.toArray(String[]::new)));
+
+        ZoneIndex index = loader(file, 0).load().index();
+
+        assertThat(index.size()).isEqualTo(count);
+        for (int i = 0; i < count; i += 97) {
+            assertThat(index.zoneIdAt(i)).isEqualTo("w" + i);
+        }
+        assertThat(index.detect(10.02, 70.02)).isEqualTo("w0");
+    }
+
+    @Test
+    void zoneService_FromFile_ServesImportedZonesReadOnly() throws IOException {
+        Path file = write("zones.geojson", featureCollection(feature("{\"ward\": \"whitefield\"}", "Polygon", SQUARE)));
+        ZoneService zoneService = new ZoneService(new InMemoryZoneStore(), loader(file, 0), Duration.ZERO);
+        zoneService.init();
+        try {
+            assertThat(zoneService.getAllZones()).extracting(ZoneDTO::getZoneId).containsExactly("whitefield");
+            assertThat(zoneService.getZone("whitefield").getPolygon()).hasSize(5);
+            assertThat(zoneService.detectZone(12.97, 77.75)).isEqualTo("whitefield");
+            assertThatThrownBy(() -> zoneService.deleteZone("whitefield"))
+                    .isInstanceOf(ResourceConflictException.class);
+        } finally {
+            zoneService.shutdown();
+        }
+    }
+
+    @Test
+    void load_CompiledIndex_MapsWhatTheCompilerImported() throws IOException {
+        Path source = write("zones.geojson", featureCollection(
+                feature("{\"ward\": \"whitefield\"}", "Polygon", SQUARE),
+                feature("{\"ward\": \"varthur\"}", "Polygon", FAR_SQUARE)));
+        Path compiled = dir.resolve("zones.zidx");
+
+        ZoneFileLoader.Report compiledReport = ZoneIndexCompiler.compile(source, compiled, "ward", 0);
+        ZoneFileLoader.LoadedZones loaded = loader(compiled, 0).load();
+
+        assertThat(compiledReport.zones()).isEqualTo(2);
+        assertThat(loaded.report().compiled()).isTrue();
+        assertThat(loaded.report().zones()).isEqualTo(2);
+        assertThat(loaded.report().verticesKept()).isEqualTo(10);
+        assertThat(loaded.index().detect(12.97, 77.81)).isEqualTo("varthur");
+        assertThat(loaded.index().key("varthur")).isEqualTo(2);
+    }
+
+    @Test
+    void load_UnknownExtension_Throws() throws IOException {
+        Path file = write("zones.kml", "<kml/>");
+
+        assertThatThrownBy(() -> loader(file, 0).load()).isInstanceOf(IllegalArgumentException.class);
+    }
+
+    private ZoneFileLoader loader(Path file, double tolerance) {
+        return new ZoneFileLoader(new ObjectMapper(), file.toString(), "ward", tolerance);
+    }
+
+    private Path write(String name, String content) throws IOException {
+        return Files.writeString(dir.resolve(name), content);
+    }
+
+    private static String featureCollection(String... features) {
+        return "{\"type\":\"FeatureCollection\",\"name\":\"wards\",\"features\":[" + String.join(",", features)
+                + "],\"crs\":{\"type\":\"name\"}}";
+    }
+
+    private static String feature(String properties, String type, String coordinates) {
+        return "{\"type\":\"Feature\",\"properties\":" + properties
+                + ",\"geometry\":{\"type\":\"" + type + "\",\"coordinates\":" + coordinates + "}}";
+    }
+}
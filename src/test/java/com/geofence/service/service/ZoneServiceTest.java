@@ -1,20 +1,39 @@
 package com.geofence.service.service;
 
+import com.geofence.service.dto.ZoneDTO;
+import com.geofence.service.exception.InvalidZoneException;
+import com.geofence.service.exception.ResourceConflictException;
+import com.geofence.service.exception.ResourceNotFoundException;
+import com.geofence.service.repository.InMemoryZoneStore;
+import com.geofence.service.repository.ZoneRecord;
+import org.junit.jupiter.api.AfterEach;
 import org.junit.jupiter.api.BeforeEach;
 import org.junit.jupiter.api.Test;
+import org.springframework.data.redis.RedisConnectionFailureException;
+
+import java.time.Duration;
+import java.util.List;
 
 import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
 
 class ZoneServiceTest {
 
+    private InMemoryZoneStore zoneStore;
     private ZoneService zoneService;
 
     @BeforeEach
     void setUp() {
-        zoneService = new ZoneService();
+        zoneStore = new InMemoryZoneStore();
+        zoneService = new ZoneService(zoneStore, Duration.ZERO);
         zoneService.init();
     }
 
+    @AfterEach
+    void tearDown() {
+        zoneService.shutdown();
+    }
+
     @Test
     void detectZone_Bellandur_ReturnsCorrectZone() {
         String zone = zoneService.detectZone(12.9350, 77.6650);
@@ -58,6 +77,20 @@ class ZoneServiceTest {
         assertThat(zone).isNull();
     }
 
+    @Test
+    void detectZone_OnBoundary_ReturnsZone() {
+        // Southern edge of MG Road
+        String zone = zoneService.detectZone(12.9600, 77.6100);
+        assertThat(zone).isEqualTo("mg_road");
+    }
+
+    @Test
+    void detectZone_OverlappingZones_ReturnsFirstRegistered() {
+        // Inside both Bellandur and HSR Layout; Bellandur is registered first
+        String zone = zoneService.detectZone(12.9200, 77.6500);
+        assertThat(zone).isEqualTo("bellandur");
+    }
+
     @Test
     void getAllZones_ReturnsAllConfiguredZones() {
         var zones = zoneService.getAllZones();
@@ -66,5 +99,213 @@ class ZoneServiceTest {
                 .contains("airport", "electronic_city", "mg_road", "bellandur", 
                          "hsr_layout", "indiranagar", "koramangala");
     }
-}
 
+    @Test
+    void init_SeedsEmptyStoreWithBuiltInZones() {
+        assertThat(zoneStore.findAll()).extracting("zoneId")
+                .containsExactly("airport", "electronic_city", "mg_road", "bellandur",
+                        "hsr_layout", "indiranagar", "koramangala");
+    }
+
+    @Test
+    void createZone_IsDetectedWhenCallReturns() {
+        zoneService.createZone(new ZoneDTO("whitefield", square(12.96, 77.74, 0.02)));
+
+        assertThat(zoneService.detectZone(12.97, 77.75)).isEqualTo("whitefield");
+        assertThat(zoneService.getZone("whitefield").getPolygon()).hasSize(5);
+        assertThat(zoneStore.findAll()).extracting("zoneId").contains("whitefield");
+    }
+
+    @Test
+    void createZone_OverlappingExistingZone_ExistingZoneStillWins() {
+        zoneService.createZone(new ZoneDTO("bellandur_east", square(12.915, 77.66, 0.03)));
+
+        assertThat(zoneService.detectZone(12.92, 77.67)).isEqualTo("bellandur");
+    }
+
+    @Test
+    void createZone_ExistingId_ThrowsConflict() {
+        assertThatThrownBy(() -> zoneService.createZone(new ZoneDTO("airport", square(13.0, 77.0, 0.01))))
+                .isInstanceOf(ResourceConflictException.class);
+    }
+
+    @Test
+    void createZone_OpenRing_ThrowsInvalidZone() {
+        List<ZoneDTO.CoordinateDTO> open = List.of(
+                new ZoneDTO.CoordinateDTO(13.0, 77.0),
+                new ZoneDTO.CoordinateDTO(13.0, 77.1),
+                new ZoneDTO.CoordinateDTO(13.1, 77.1),
+                new ZoneDTO.CoordinateDTO(13.1, 77.0));
+
+        assertThatThrownBy(() -> zoneService.createZone(new ZoneDTO("open", open)))
+                .isInstanceOf(InvalidZoneException.class);
+    }
+
+    @Test
+    void createZone_SelfIntersecting_ThrowsInvalidZone() {
+        List<ZoneDTO.CoordinateDTO> bowtie = List.of(
+                new ZoneDTO.CoordinateDTO(13.0, 77.0),
+                new ZoneDTO.CoordinateDTO(13.1, 77.1),
+                new ZoneDTO.CoordinateDTO(13.0, 77.1),
+                new ZoneDTO.CoordinateDTO(13.1, 77.0),
+                new ZoneDTO.CoordinateDTO(13.0, 77.0));
+
+        assertThatThrownBy(() -> zoneService.createZone(new ZoneDTO("bowtie", bowtie)))
+                .isInstanceOf(InvalidZoneException.class);
+    }
+
+    @Test
+    void updateZone_MovesZoneAndKeepsPrecedence() {
+        // Move Bellandur away from the HSR Layout overlap and back
+        zoneService.updateZone("bellandur", new ZoneDTO(null, square(13.10, 77.50, 0.01)));
+        assertThat(zoneService.detectZone(12.9200, 77.6500)).isEqualTo("hsr_layout");
+
+        zoneService.updateZone("bellandur", new ZoneDTO("bellandur", square(12.91, 77.64, 0.05)));
+        assertThat(zoneService.detectZone(12.9200, 77.6500)).isEqualTo("bellandur");
+    }
+
+    @Test
+    void updateZone_Unknown_ThrowsNotFound() {
+        assertThatThrownBy(() -> zoneService.updateZone("nowhere", new ZoneDTO(null, square(13.0, 77.0, 0.01))))
+                .isInstanceOf(ResourceNotFoundException.class);
+    }
+
+    @Test
+    void updateZone_DeletedByOtherReplica_ThrowsNotFoundAndStaysDeleted() {
+        zoneStore.delete("mg_road");
+        zoneStore.bumpVersion();
+
+        assertThatThrownBy(() -> zoneService.updateZone("mg_road", new ZoneDTO(null, square(13.10, 77.50, 0.01))))
+                .isInstanceOf(ResourceNotFoundException.class);
+
+        assertThat(zoneStore.findAll()).extracting(ZoneRecord::getZoneId).doesNotContain("mg_road");
+        // The rebuild runs on the builder thread; a mutation after it queues behind it
+        zoneService.deleteZone("airport");
+        assertThat(zoneService.detectZone(12.9750, 77.6100)).isNull();
+        assertThat(zoneService.detectZone(13.1050, 77.5050)).isNull();
+    }
+
+    @Test
+    void deleteZone_StopsDetection() {
+        zoneService.deleteZone("mg_road");
+
+        assertThat(zoneService.detectZone(12.9750, 77.6100)).isNull();
+        assertThat(zoneService.getAllZones()).hasSize(6);
+        assertThatThrownBy(() -> zoneService.getZone("mg_road")).isInstanceOf(ResourceNotFoundException.class);
+    }
+
+    @Test
+    void refresh_PicksUpChangesFromOtherReplicas() {
+        zoneStore.save(new ZoneRecord("whitefield", zoneStore.nextSequence(), square(12.96, 77.74, 0.02)));
+        zoneStore.bumpVersion();
+
+        zoneService.refresh();
+
+        // The rebuild runs on the builder thread; a mutation after it queues behind it
+        zoneService.deleteZone("airport");
+        assertThat(zoneService.detectZone(12.97, 77.75)).isEqualTo("whitefield");
+    }
+
+    @Test
+    void createZone_AfterStartingOnBuiltInZones_LoadsStoreFirst() {
+        FlakyZoneStore store = new FlakyZoneStore();
+        store.down = true;
+        ZoneService fallback = new ZoneService(store, Duration.ZERO);
+        fallback.init();
+        try {
+            assertThat(fallback.detectZone(12.9750, 77.6100)).isEqualTo("mg_road");
+            store.down = false;
+
+            fallback.createZone(new ZoneDTO("whitefield", square(12.96, 77.74, 0.02)));
+
+            // The store is seeded first, so the new zone's sequence follows the built-in ones
+            assertThat(store.findAll()).extracting(ZoneRecord::getSequence)
+                    .containsExactly(1L, 2L, 3L, 4L, 5L, 6L, 7L, 8L);
+            assertThat(fallback.currentIndex().key("whitefield")).isEqualTo(8);
+            assertThat(fallback.detectZone(12.97, 77.75)).isEqualTo("whitefield");
+            assertThat(fallback.detectZone(12.9750, 77.6100)).isEqualTo("mg_road");
+        } finally {
+            fallback.shutdown();
+        }
+    }
+
+    @Test
+    void refresh_AfterStartingOnBuiltInZones_LoadsStore() {
+        FlakyZoneStore store = new FlakyZoneStore();
+        store.down = true;
+        ZoneService fallback = new ZoneService(store, Duration.ZERO);
+        fallback.init();
+        try {
+            store.down = false;
+            store.save(new ZoneRecord("whitefield", store.nextSequence(), square(12.96, 77.74, 0.02)));
+
+            fallback.refresh();
+
+            // The rebuild runs on the builder thread; a mutation after it queues behind it
+            fallback.deleteZone("whitefield");
+            assertThat(fallback.getAllZones()).isEmpty();
+        } finally {
+            fallback.shutdown();
+        }
+    }
+
+    @Test
+    void updateZone_WithCellCache_DropsCachedCells() {
+        ZoneService cached = new ZoneService(new InMemoryZoneStore(), null, null, Duration.ZERO, true, 0.001, 1024);
+        cached.init();
+        try {
+            assertThat(cached.detectZone(12.9750, 77.6100)).isEqualTo("mg_road");
+            assertThat(cached.detectZone(13.1050, 77.5050)).isNull();
+
+            cached.updateZone("mg_road", new ZoneDTO(null, square(13.10, 77.50, 0.01)));
+
+            assertThat(cached.detectZone(12.9750, 77.6100)).isNull();
+            assertThat(cached.detectZone(13.1050, 77.5050)).isEqualTo("mg_road");
+            assertThat(cached.detectAllZones(13.1050, 77.5050)).containsExactly("mg_road");
+        } finally {
+            cached.shutdown();
+        }
+    }
+
+    @Test
+    void cellCache_CellSizeBelowMinimum_IsRejected() {
+        assertThatThrownBy(() -> new ZoneService(new InMemoryZoneStore(), null, null, Duration.ZERO, true, 5e-8, 1024))
+                .isInstanceOf(IllegalArgumentException.class)
+                .hasMessageContaining("cell-size");
+    }
+
+    /**
+     * In-memory store that fails like an unreachable Redis while {@code down}.
+     */
+    private static class FlakyZoneStore extends InMemoryZoneStore {
+
+        volatile boolean down;
+
+        @Override
+        public List<ZoneRecord> findAll() {
+            check();
+            return super.findAll();
+        }
+
+        @Override
+        public long getVersion() {
+            check();
+            return super.getVersion();
+        }
+
+        private void check() {
+            if (down) {
+                throw new RedisConnectionFailureException("Unable to connect to Redis");
+            }
+        }
+    }
+
+    private static List<ZoneDTO.CoordinateDTO> square(double lat, double lon, double size) {
+        return List.of(
+                new ZoneDTO.CoordinateDTO(lat, lon),
+                new ZoneDTO.CoordinateDTO(lat, lon + size),
+                new ZoneDTO.CoordinateDTO(lat + size, lon + size),
+                new ZoneDTO.CoordinateDTO(lat + size, lon),
+                new ZoneDTO.CoordinateDTO(lat, lon));
+    }
+}